@@ -0,0 +1,200 @@
+package lemon.engine.draw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Best-fit free-list sub-allocator over a range of [0, capacity) units, with no GL state of its own.
+ * <p>
+ * Freed blocks are merged with their free neighbors. When the free space is too fragmented to fit an allocation,
+ * {@link #compact(Mover)} slides every live block down to the start of the range and reports each move,
+ * so that the owner can copy the contents and the blocks keep pointing at their data.
+ */
+public class ArenaAllocator {
+	private final int capacity;
+	private final TreeMap<Integer, Integer> freeBlocks = new TreeMap<>(); // offset -> size
+	private final TreeMap<Integer, Block> blocks = new TreeMap<>(); // offset -> live block
+	private int usedUnits = 0;
+
+	public ArenaAllocator(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		freeBlocks.put(0, capacity);
+	}
+
+	/**
+	 * Returns the smallest free block that fits, split to size, or empty if no single free block is big enough
+	 */
+	public Optional<Block> allocate(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be positive: " + size);
+		}
+		Map.Entry<Integer, Integer> best = null;
+		for (var entry : freeBlocks.entrySet()) {
+			if (entry.getValue() >= size && (best == null || entry.getValue() < best.getValue())) {
+				best = entry;
+				if (entry.getValue() == size) {
+					break;
+				}
+			}
+		}
+		if (best == null) {
+			return Optional.empty();
+		}
+		int offset = best.getKey();
+		int remaining = best.getValue() - size;
+		freeBlocks.remove(offset);
+		if (remaining > 0) {
+			freeBlocks.put(offset + size, remaining);
+		}
+		var block = new Block(this, offset, size);
+		blocks.put(offset, block);
+		usedUnits += size;
+		return Optional.of(block);
+	}
+
+	public void free(Block block) {
+		if (block.allocator != this || blocks.get(block.offset) != block) {
+			throw new IllegalArgumentException("Not a live block of this allocator: " + block);
+		}
+		blocks.remove(block.offset);
+		usedUnits -= block.size;
+		block.freed = true;
+		int offset = block.offset;
+		int size = block.size;
+		var previous = freeBlocks.floorEntry(offset);
+		if (previous != null && previous.getKey() + previous.getValue() == offset) {
+			offset = previous.getKey();
+			size += previous.getValue();
+			freeBlocks.remove(offset);
+		}
+		var next = freeBlocks.get(offset + size);
+		if (next != null) {
+			freeBlocks.remove(offset + size);
+			size += next;
+		}
+		freeBlocks.put(offset, size);
+	}
+
+	/**
+	 * Moves every live block down to leave a single free block at the end, in offset order.
+	 * Destinations never overlap blocks that have yet to be moved, but may overlap the block's own old range.
+	 *
+	 * @return number of blocks moved
+	 */
+	public int compact(Mover mover) {
+		int moved = 0;
+		int next = 0;
+		var compacted = new ArrayList<Block>(blocks.values());
+		blocks.clear();
+		for (var block : compacted) {
+			if (block.offset != next) {
+				mover.move(block.offset, next, block.size);
+				block.offset = next;
+				moved++;
+			}
+			blocks.put(block.offset, block);
+			next += block.size;
+		}
+		freeBlocks.clear();
+		if (next < capacity) {
+			freeBlocks.put(next, capacity - next);
+		}
+		return moved;
+	}
+
+	/**
+	 * Whether an allocation of this size would fit after compacting
+	 */
+	public boolean fitsAfterCompaction(int size) {
+		return freeUnits() >= size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int usedUnits() {
+		return usedUnits;
+	}
+
+	public int freeUnits() {
+		return capacity - usedUnits;
+	}
+
+	public int largestFreeBlock() {
+		int largest = 0;
+		for (int size : freeBlocks.values()) {
+			largest = Math.max(largest, size);
+		}
+		return largest;
+	}
+
+	public int freeBlockCount() {
+		return freeBlocks.size();
+	}
+
+	public int blockCount() {
+		return blocks.size();
+	}
+
+	/**
+	 * 0 when all free space is contiguous, approaching 1 as it is split into many small blocks
+	 */
+	public float fragmentation() {
+		int free = freeUnits();
+		return free == 0 ? 0f : 1f - ((float) largestFreeBlock()) / free;
+	}
+
+	public List<Block> blocks() {
+		return List.copyOf(blocks.values());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ArenaAllocator[used=%d/%d, blocks=%d, freeBlocks=%d, fragmentation=%.2f]",
+				usedUnits, capacity, blocks.size(), freeBlocks.size(), fragmentation());
+	}
+
+	public interface Mover {
+		void move(int from, int to, int size);
+	}
+
+	/**
+	 * A live allocation; its offset changes when the allocator is compacted
+	 */
+	public static class Block {
+		private final ArenaAllocator allocator;
+		private final int size;
+		private int offset;
+		private boolean freed = false;
+
+		private Block(ArenaAllocator allocator, int offset, int size) {
+			this.allocator = allocator;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		public int offset() {
+			return offset;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public boolean isFreed() {
+			return freed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Block[offset=%d, size=%d%s]", offset, size, freed ? ", freed" : "");
+		}
+	}
+}
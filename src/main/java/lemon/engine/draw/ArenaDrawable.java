@@ -0,0 +1,39 @@
+package lemon.engine.draw;
+
+import lemon.engine.toolbox.Disposable;
+
+/**
+ * An indexed drawable whose vertices and indices live in a {@link BufferArena}
+ */
+public class ArenaDrawable implements Drawable, Disposable {
+	private final BufferArena arena;
+	BufferArena.Page page;
+	ArenaAllocator.Block vertexBlock;
+	ArenaAllocator.Block indexBlock;
+	int numIndices;
+
+	ArenaDrawable(BufferArena arena) {
+		this.arena = arena;
+	}
+
+	/**
+	 * Uploads in place if the data fits in the current allocation, and reallocates otherwise
+	 */
+	public void setData(DrawableData data) {
+		arena.upload(this, data);
+	}
+
+	@Override
+	public void draw() {
+		arena.draw(this);
+	}
+
+	public int numIndices() {
+		return numIndices;
+	}
+
+	@Override
+	public void dispose() {
+		arena.free(this);
+	}
+}
@@ -0,0 +1,289 @@
+package lemon.engine.draw;
+
+import lemon.engine.render.VertexArray;
+import lemon.engine.render.VertexBuffer;
+import lemon.engine.toolbox.Disposable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Shares a few large vertex and index buffers between many indexed drawables of the same layout.
+ * <p>
+ * Each page is one VAO with a vertex buffer and an index buffer, sub-allocated by {@link ArenaAllocator}s.
+ * Indices stay local to their drawable and are drawn with a base vertex, so a page's VAO only needs to be bound
+ * once for all of its drawables inside {@link #drawAll(Runnable)}.
+ * Pages are created lazily, so the arena itself can be constructed without a GL context.
+ */
+public class BufferArena implements Disposable {
+	private static final Logger logger = Logger.getLogger(BufferArena.class.getName());
+	private static final float HEADROOM = 1.25f;
+	private final VertexLayout layout;
+	private final int verticesPerPage;
+	private final int indicesPerPage;
+	private final int drawMode;
+	private final List<Page> pages = new ArrayList<>();
+	private VertexBuffer scratchBuffer;
+	private long scratchBufferBytes;
+	private Page boundPage;
+	private boolean batching = false;
+	private int compactions = 0;
+	private int pageBinds = 0;
+	private int drawCalls = 0;
+
+	public BufferArena(VertexLayout layout, int verticesPerPage, int indicesPerPage) {
+		this(layout, verticesPerPage, indicesPerPage, GL11.GL_TRIANGLES);
+	}
+
+	public BufferArena(VertexLayout layout, int verticesPerPage, int indicesPerPage, int drawMode) {
+		this.layout = layout;
+		this.verticesPerPage = verticesPerPage;
+		this.indicesPerPage = indicesPerPage;
+		this.drawMode = drawMode;
+	}
+
+	/**
+	 * Uploads the data into a new drawable; must be called on the GL thread
+	 */
+	public ArenaDrawable allocate(DrawableData data) {
+		var drawable = new ArenaDrawable(this);
+		drawable.setData(data);
+		return drawable;
+	}
+
+	void upload(ArenaDrawable drawable, DrawableData data) {
+		if (!layout.equals(data.layout())) {
+			throw new IllegalArgumentException("Expected " + layout + ", but got " + data.layout());
+		}
+		var vertices = data.floatBuffer();
+		int numVertices = vertices.remaining() / layout.stride();
+		int numIndices = data.indices().length;
+		if (numIndices == 0 || numVertices == 0) {
+			free(drawable);
+			return;
+		}
+		if (drawable.page == null || drawable.vertexBlock.size() < numVertices || drawable.indexBlock.size() < numIndices) {
+			free(drawable);
+			reserve(drawable, (int) Math.ceil(numVertices * HEADROOM), (int) Math.ceil(numIndices * HEADROOM));
+		}
+		var page = drawable.page;
+		page.vertexBuffer.bind(GL31.GL_COPY_WRITE_BUFFER, (target, vbo) ->
+				GL15.glBufferSubData(target, ((long) drawable.vertexBlock.offset()) * vertexBytes(), vertices));
+		page.indexBuffer.bind(GL31.GL_COPY_WRITE_BUFFER, (target, vbo) ->
+				GL15.glBufferSubData(target, ((long) drawable.indexBlock.offset()) * Integer.BYTES, data.indices()));
+		drawable.numIndices = numIndices;
+	}
+
+	private void reserve(ArenaDrawable drawable, int numVertices, int numIndices) {
+		for (var page : pages) {
+			if (page.tryAllocate(drawable, numVertices, numIndices)) {
+				return;
+			}
+		}
+		for (var page : pages) {
+			if (page.vertexAllocator.fitsAfterCompaction(numVertices) && page.indexAllocator.fitsAfterCompaction(numIndices)) {
+				page.compact();
+				if (page.tryAllocate(drawable, numVertices, numIndices)) {
+					return;
+				}
+			}
+		}
+		var page = new Page(Math.max(verticesPerPage, numVertices), Math.max(indicesPerPage, numIndices));
+		pages.add(page);
+		logger.fine(() -> "Allocated page " + pages.size() + " of " + layout);
+		if (!page.tryAllocate(drawable, numVertices, numIndices)) {
+			throw new IllegalStateException("New page cannot fit " + numVertices + " vertices and " + numIndices + " indices");
+		}
+	}
+
+	void free(ArenaDrawable drawable) {
+		if (drawable.page != null) {
+			drawable.page.vertexAllocator.free(drawable.vertexBlock);
+			drawable.page.indexAllocator.free(drawable.indexBlock);
+			drawable.page = null;
+			drawable.vertexBlock = null;
+			drawable.indexBlock = null;
+		}
+		drawable.numIndices = 0;
+	}
+
+	void draw(ArenaDrawable drawable) {
+		var page = drawable.page;
+		if (page == null || drawable.numIndices == 0) {
+			return;
+		}
+		if (boundPage != page) {
+			GL30.glBindVertexArray(page.vertexArray.id());
+			boundPage = page;
+			pageBinds++;
+		}
+		GL32.glDrawElementsBaseVertex(drawMode, drawable.numIndices, GL11.GL_UNSIGNED_INT,
+				((long) drawable.indexBlock.offset()) * Integer.BYTES, drawable.vertexBlock.offset());
+		drawCalls++;
+		if (!batching) {
+			GL30.glBindVertexArray(0);
+			boundPage = null;
+		}
+	}
+
+	/**
+	 * Draws issued by the runnable keep their page's VAO bound between consecutive draws
+	 */
+	public void drawAll(Runnable draws) {
+		batching = true;
+		try {
+			draws.run();
+		} finally {
+			batching = false;
+			if (boundPage != null) {
+				GL30.glBindVertexArray(0);
+				boundPage = null;
+			}
+		}
+	}
+
+	private long vertexBytes() {
+		return ((long) layout.stride()) * Float.BYTES;
+	}
+
+	// Copies through a scratch buffer, because the source and destination ranges may overlap
+	private void move(VertexBuffer buffer, long from, long to, long bytes) {
+		if (scratchBuffer == null || scratchBufferBytes < bytes) {
+			if (scratchBuffer != null) {
+				scratchBuffer.dispose();
+			}
+			scratchBuffer = new VertexBuffer();
+			scratchBufferBytes = bytes;
+			scratchBuffer.bind(GL31.GL_COPY_WRITE_BUFFER, (target, vbo) -> GL15.glBufferData(target, bytes, GL15.GL_STREAM_COPY));
+		}
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, buffer.id());
+		GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, scratchBuffer.id());
+		GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, from, 0, bytes);
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, scratchBuffer.id());
+		GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, buffer.id());
+		GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, 0, to, bytes);
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+		GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+	}
+
+	public VertexLayout layout() {
+		return layout;
+	}
+
+	public int pageCount() {
+		return pages.size();
+	}
+
+	public int compactionCount() {
+		return compactions;
+	}
+
+	/**
+	 * Number of VAO binds since the last call
+	 */
+	public int pollPageBinds() {
+		int binds = pageBinds;
+		pageBinds = 0;
+		return binds;
+	}
+
+	/**
+	 * Number of draw calls since the last call
+	 */
+	public int pollDrawCalls() {
+		int calls = drawCalls;
+		drawCalls = 0;
+		return calls;
+	}
+
+	public long capacityBytes() {
+		long bytes = 0;
+		for (var page : pages) {
+			bytes += page.vertexAllocator.capacity() * vertexBytes() + ((long) page.indexAllocator.capacity()) * Integer.BYTES;
+		}
+		return bytes;
+	}
+
+	public long usedBytes() {
+		long bytes = 0;
+		for (var page : pages) {
+			bytes += page.vertexAllocator.usedUnits() * vertexBytes() + ((long) page.indexAllocator.usedUnits()) * Integer.BYTES;
+		}
+		return bytes;
+	}
+
+	@Override
+	public void dispose() {
+		for (var page : pages) {
+			page.dispose();
+		}
+		pages.clear();
+		if (scratchBuffer != null) {
+			scratchBuffer.dispose();
+			scratchBuffer = null;
+		}
+	}
+
+	class Page implements Disposable {
+		private final ArenaAllocator vertexAllocator;
+		private final ArenaAllocator indexAllocator;
+		private final VertexArray vertexArray;
+		private VertexBuffer vertexBuffer;
+		private VertexBuffer indexBuffer;
+
+		private Page(int numVertices, int numIndices) {
+			this.vertexAllocator = new ArenaAllocator(numVertices);
+			this.indexAllocator = new ArenaAllocator(numIndices);
+			this.vertexArray = new VertexArray();
+			vertexArray.bind(vao -> {
+				indexBuffer = new VertexBuffer();
+				indexBuffer.bind(GL15.GL_ELEMENT_ARRAY_BUFFER, (target, vbo) ->
+						GL15.glBufferData(target, ((long) numIndices) * Integer.BYTES, GL15.GL_DYNAMIC_DRAW), false);
+				vertexBuffer = new VertexBuffer();
+				vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
+					GL15.glBufferData(target, numVertices * vertexBytes(), GL15.GL_DYNAMIC_DRAW);
+					layout.setAttributePointers();
+				});
+				layout.enableAttributes();
+			});
+		}
+
+		private boolean tryAllocate(ArenaDrawable drawable, int numVertices, int numIndices) {
+			var vertexBlock = vertexAllocator.allocate(numVertices);
+			if (vertexBlock.isEmpty()) {
+				return false;
+			}
+			var indexBlock = indexAllocator.allocate(numIndices);
+			if (indexBlock.isEmpty()) {
+				vertexAllocator.free(vertexBlock.get());
+				return false;
+			}
+			drawable.page = this;
+			drawable.vertexBlock = vertexBlock.get();
+			drawable.indexBlock = indexBlock.get();
+			return true;
+		}
+
+		private void compact() {
+			vertexAllocator.compact((from, to, size) ->
+					move(vertexBuffer, from * vertexBytes(), to * vertexBytes(), size * vertexBytes()));
+			indexAllocator.compact((from, to, size) ->
+					move(indexBuffer, ((long) from) * Integer.BYTES, ((long) to) * Integer.BYTES, ((long) size) * Integer.BYTES));
+			compactions++;
+			logger.fine(() -> "Compacted " + vertexAllocator + " and " + indexAllocator);
+		}
+
+		@Override
+		public void dispose() {
+			vertexArray.dispose();
+			vertexBuffer.dispose();
+			indexBuffer.dispose();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package lemon.engine.draw;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Size-classed pool of native-order direct buffers for uploads.
+ * <p>
+ * Buffers are rounded up to a power of two number of elements and handed out cleared, with their limit set to the
+ * requested size. Releasing a buffer returns it to the pool for reuse by any thread; a buffer that is never released
+ * is reclaimed by the garbage collector, but keeps counting as in use.
+ */
+public class BufferPool {
+	private static final BufferPool shared = new BufferPool(256L * 1024 * 1024);
+	private static final int MIN_SIZE_CLASS = 8; // 256 elements
+	private static final int MAX_SIZE_CLASS = 24; // 16M elements
+	private final long maxPooledBytes;
+	private final Pool<ByteBuffer> bytes = new Pool<>(Byte.BYTES, size -> allocateDirect(size));
+	private final Pool<FloatBuffer> floats = new Pool<>(Float.BYTES, size -> allocateDirect(size * Float.BYTES).asFloatBuffer());
+	private final Pool<IntBuffer> ints = new Pool<>(Integer.BYTES, size -> allocateDirect(size * Integer.BYTES).asIntBuffer());
+	private final AtomicLong offHeapBytes = new AtomicLong();
+	private final AtomicLong peakOffHeapBytes = new AtomicLong();
+	private final AtomicLong pooledBytes = new AtomicLong();
+
+	/**
+	 * @param maxPooledBytes released buffers beyond this many bytes are dropped instead of pooled
+	 */
+	public BufferPool(long maxPooledBytes) {
+		this.maxPooledBytes = maxPooledBytes;
+	}
+
+	public static BufferPool shared() {
+		return shared;
+	}
+
+	public ByteBuffer bytes(int size) {
+		return bytes.borrow(size);
+	}
+
+	public FloatBuffer floats(int size) {
+		return floats.borrow(size);
+	}
+
+	public IntBuffer ints(int size) {
+		return ints.borrow(size);
+	}
+
+	public void release(ByteBuffer buffer) {
+		bytes.release(buffer);
+	}
+
+	public void release(FloatBuffer buffer) {
+		floats.release(buffer);
+	}
+
+	public void release(IntBuffer buffer) {
+		ints.release(buffer);
+	}
+
+	/**
+	 * Bytes of direct memory allocated by this pool that have not been dropped, whether in use or pooled
+	 */
+	public long offHeapBytes() {
+		return offHeapBytes.get();
+	}
+
+	public long peakOffHeapBytes() {
+		return peakOffHeapBytes.get();
+	}
+
+	/**
+	 * Bytes of released buffers waiting to be reused
+	 */
+	public long pooledBytes() {
+		return pooledBytes.get();
+	}
+
+	public long inUseBytes() {
+		return offHeapBytes() - pooledBytes();
+	}
+
+	private ByteBuffer allocateDirect(int bytes) {
+		var buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		peakOffHeapBytes.accumulateAndGet(offHeapBytes.addAndGet(bytes), Math::max);
+		return buffer;
+	}
+
+	private static int sizeClass(int size) {
+		return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+	}
+
+	private class Pool<T extends Buffer> {
+		private final int bytesPerElement;
+		private final IntFunction<T> allocator;
+		@SuppressWarnings("unchecked")
+		private final Queue<T>[] queues = (Queue<T>[]) new Queue<?>[MAX_SIZE_CLASS + 1];
+
+		public Pool(int bytesPerElement, IntFunction<T> allocator) {
+			this.bytesPerElement = bytesPerElement;
+			this.allocator = allocator;
+			for (int i = MIN_SIZE_CLASS; i <= MAX_SIZE_CLASS; i++) {
+				queues[i] = new ConcurrentLinkedQueue<>();
+			}
+		}
+
+		public T borrow(int size) {
+			if (size < 0) {
+				throw new IllegalArgumentException("Negative size: " + size);
+			}
+			int sizeClass = sizeClass(size);
+			if (sizeClass > MAX_SIZE_CLASS) {
+				// Too big to pool
+				var buffer = allocator.apply(size);
+				buffer.limit(size);
+				return buffer;
+			}
+			T buffer = queues[sizeClass].poll();
+			if (buffer == null) {
+				buffer = allocator.apply(1 << sizeClass);
+			} else {
+				pooledBytes.addAndGet(-((long) buffer.capacity()) * bytesPerElement);
+			}
+			buffer.clear();
+			buffer.limit(size);
+			return buffer;
+		}
+
+		// Buffers must have been borrowed from this pool
+		public void release(T buffer) {
+			if (!buffer.isDirect()) {
+				throw new IllegalArgumentException("Not a pooled buffer: " + buffer);
+			}
+			int capacity = buffer.capacity();
+			long bytes = ((long) capacity) * bytesPerElement;
+			int sizeClass = sizeClass(capacity);
+			if (capacity != (1 << Math.min(sizeClass, 30)) || sizeClass > MAX_SIZE_CLASS) {
+				offHeapBytes.addAndGet(-bytes);
+				return;
+			}
+			if (pooledBytes.addAndGet(bytes) > maxPooledBytes) {
+				pooledBytes.addAndGet(-bytes);
+				offHeapBytes.addAndGet(-bytes);
+				return;
+			}
+			queues[sizeClass].add(buffer);
+		}
+	}
+}
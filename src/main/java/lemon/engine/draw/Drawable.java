@@ -1,7 +1,6 @@
 package lemon.engine.draw;
 
 import lemon.engine.math.FloatData;
-import org.lwjgl.BufferUtils;
 
 import java.nio.FloatBuffer;
 
@@ -20,15 +19,10 @@ public interface Drawable {
 		return stride;
 	}
 
+	/**
+	 * Interleaves the vertices into a buffer from {@link BufferPool#shared()}, which should be released once uploaded
+	 */
 	public static FloatBuffer getFloatBuffer(FloatData[][] vertices, int stride) {
-		int numVertices = vertices[0].length;
-		FloatBuffer buffer = BufferUtils.createFloatBuffer(numVertices * stride);
-		for (int i = 0; i < numVertices; i++) {
-			for (int j = 0; j < vertices.length; j++) {
-				vertices[j][i].putInBuffer(buffer);
-			}
-		}
-		buffer.flip();
-		return buffer;
+		return VertexWriter.of(vertices).write();
 	}
 }
@@ -4,12 +4,30 @@ import lemon.engine.math.FloatData;
 
 import java.nio.FloatBuffer;
 
-public record DrawableData(int[] indices, FloatData[][] vertices, int stride, FloatBuffer floatBuffer) {
+public record DrawableData(int[] indices, VertexLayout layout, FloatBuffer floatBuffer) {
     public DrawableData(int[] indices, FloatData[][] vertices) {
-        this(indices, vertices, Drawable.getStride(vertices));
+        this(indices, VertexWriter.of(vertices));
     }
 
-    public DrawableData(int[] indices, FloatData[][] vertices, int stride) {
-        this(indices, vertices, stride, Drawable.getFloatBuffer(vertices, stride));
+    public DrawableData(int[] indices, VertexWriter vertices) {
+        this(indices, vertices.layout(), vertices.write());
+    }
+
+    public int stride() {
+        return layout.stride();
+    }
+
+    /**
+     * Number of bytes uploaded to the GPU for this data
+     */
+    public long byteSize() {
+        return ((long) indices.length) * Integer.BYTES + ((long) floatBuffer.limit()) * Float.BYTES;
+    }
+
+    /**
+     * Returns the vertex buffer to {@link BufferPool#shared()} once it has been uploaded; the data is unusable afterwards
+     */
+    public void release() {
+        BufferPool.shared().release(floatBuffer);
     }
 }
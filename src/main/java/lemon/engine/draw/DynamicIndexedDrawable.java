@@ -4,14 +4,13 @@ import lemon.engine.render.VertexArray;
 import lemon.engine.render.VertexBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
 
 import java.nio.FloatBuffer;
 
 public class DynamicIndexedDrawable implements Drawable {
 	private VertexArray vertexArray = null;
 	private int numIndices;
-	private int currentStride;
+	private VertexLayout currentLayout;
 	private int drawMode;
 	private VertexBuffer indexBuffer;
 	private int indexBufferSize;
@@ -32,7 +31,7 @@ public class DynamicIndexedDrawable implements Drawable {
 	private void initVertexArray(DrawableData data) {
 		this.numIndices = data.indices().length;
 		if (numIndices > 0) {
-			currentStride = data.stride();
+			currentLayout = data.layout();
 			vertexArray = new VertexArray();
 			vertexArray.bind(vao -> {
 				indexBuffer = new VertexBuffer();
@@ -40,42 +39,25 @@ public class DynamicIndexedDrawable implements Drawable {
 					this.indexBufferSize = numIndices;
 					GL15.glBufferData(target, data.indices(), hint);
 				}, false);
-				var vertices = data.vertices();
 				vertexBuffer = new VertexBuffer();
 				vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-					FloatBuffer buffer = Drawable.getFloatBuffer(vertices, currentStride);
-					this.vertexBufferSize = buffer.capacity();
+					FloatBuffer buffer = data.floatBuffer();
+					this.vertexBufferSize = buffer.remaining();
 					GL15.glBufferData(target, buffer, hint);
-					long offset = 0;
-					for (int i = 0; i < vertices.length; i++) {
-						if (vertices[i].length > 0) {
-							int dimensions = vertices[i][0].numDimensions();
-							if (dimensions <= 0 || dimensions > 4) {
-								throw new IllegalArgumentException("Dimensions can only be 1, 2, 3, or 4");
-							}
-							GL20.glVertexAttribPointer(i, dimensions, GL11.GL_FLOAT, false,
-									currentStride * BYTES_PER_FLOAT, offset * BYTES_PER_FLOAT);
-							offset += dimensions;
-						}
-					}
+					currentLayout.setAttributePointers();
 				});
-				for (int i = 0; i < vertices.length; i++) {
-					GL20.glEnableVertexAttribArray(i);
-				}
+				currentLayout.enableAttributes();
 			});
 		}
 	}
 
 	public void setData(DrawableData data) {
-		// Technically we need to compare more than just the stride to adjust glVertexAttribPointer
-		// Also maybe need more glEnableVertexAttribArray
+		// Attributes are only re-pointed when the layout changes; new attributes are enabled as well
 		if (vertexArray == null) {
 			initVertexArray(data);
 		} else {
 			this.numIndices = data.indices().length;
 			if (numIndices > 0) {
-				var oldStride = currentStride;
-				currentStride = data.stride();
 				indexBuffer.bind(GL15.GL_ELEMENT_ARRAY_BUFFER, (target, vbo) -> {
 					if (numIndices > indexBufferSize) {
 						indexBufferSize = numIndices;
@@ -86,7 +68,7 @@ public class DynamicIndexedDrawable implements Drawable {
 				});
 				vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
 					var newBuffer = data.floatBuffer();
-					int newBufferSize = newBuffer.capacity();
+					int newBufferSize = newBuffer.remaining();
 					if (newBufferSize > 0) {
 						if (newBufferSize > vertexBufferSize) {
 							vertexBufferSize = newBufferSize;
@@ -95,18 +77,11 @@ public class DynamicIndexedDrawable implements Drawable {
 							GL15.glBufferSubData(target, 0, newBuffer);
 						}
 					}
-					if (currentStride != 0 && currentStride != oldStride) {
+					if (!data.layout().equals(currentLayout)) {
+						currentLayout = data.layout();
 						vertexArray.bind(vao -> {
-							long offset = 0;
-							var vertices = data.vertices();
-							for (int i = 0; i < vertices.length; i++) {
-								if (vertices[i].length > 0) {
-									int dimensions = vertices[i][0].numDimensions();
-									GL20.glVertexAttribPointer(i, dimensions, GL11.GL_FLOAT, false,
-											currentStride * BYTES_PER_FLOAT, offset * BYTES_PER_FLOAT);
-									offset += dimensions;
-								}
-							}
+							currentLayout.setAttributePointers();
+							currentLayout.enableAttributes();
 						});
 					}
 				});
@@ -5,13 +5,10 @@ import lemon.engine.render.VertexArray;
 import lemon.engine.render.VertexBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
 
 public class IndexedDrawable implements Drawable {
 	private VertexArray vertexArray;
-	private FloatData[][] vertices;
 	private int[] indices;
-	private int stride;
 	private int drawMode;
 
 	public IndexedDrawable(int[] indices, FloatData[][] vertices) {
@@ -19,30 +16,29 @@ public class IndexedDrawable implements Drawable {
 	}
 
 	public IndexedDrawable(int[] indices, FloatData[][] vertices, int drawMode) {
-		this.vertices = vertices;
+		this(indices, VertexWriter.of(vertices), drawMode);
+	}
+
+	public IndexedDrawable(int[] indices, VertexWriter vertices) {
+		this(indices, vertices, GL11.GL_TRIANGLES);
+	}
+
+	public IndexedDrawable(int[] indices, VertexWriter vertices, int drawMode) {
 		this.indices = indices;
 		this.drawMode = drawMode;
-		this.stride = Drawable.getStride(vertices);
+		var layout = vertices.layout();
 		vertexArray = new VertexArray();
 		vertexArray.bind(vao -> {
 			new VertexBuffer().bind(GL15.GL_ELEMENT_ARRAY_BUFFER, (target, vbo) -> {
 				GL15.glBufferData(target, indices, GL15.GL_STATIC_DRAW);
 			}, false);
 			new VertexBuffer().bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-				GL15.glBufferData(target, Drawable.getFloatBuffer(vertices, stride), GL15.GL_STATIC_DRAW);
-				long offset = 0;
-				for (int i = 0; i < vertices.length; i++) {
-					if (vertices[i].length > 0) {
-						int dimensions = vertices[i][0].numDimensions();
-						GL20.glVertexAttribPointer(i, dimensions, GL11.GL_FLOAT, false,
-								stride * BYTES_PER_FLOAT, offset * BYTES_PER_FLOAT);
-						offset += dimensions;
-					}
-				}
+				var buffer = vertices.write();
+				GL15.glBufferData(target, buffer, GL15.GL_STATIC_DRAW);
+				BufferPool.shared().release(buffer);
+				layout.setAttributePointers();
 			});
-			for (int i = 0; i < vertices.length; i++) {
-				GL20.glEnableVertexAttribArray(i);
-			}
+			layout.enableAttributes();
 		});
 	}
 
@@ -5,14 +5,14 @@ import lemon.engine.font.Font;
 import lemon.engine.render.VertexArray;
 import lemon.engine.render.VertexBuffer;
 import lemon.engine.toolbox.Disposable;
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
 
 import java.nio.FloatBuffer;
 
 public class TextModel implements Drawable, Disposable {
+	// [x, y, u, v]
+	private static final VertexLayout LAYOUT = VertexLayout.of(2, 2);
 	private VertexArray vertexArray;
 	private VertexBuffer vertexBuffer;
 	private Font font;
@@ -42,20 +42,21 @@ public class TextModel implements Drawable, Disposable {
 			vertexBuffer = new VertexBuffer();
 			vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
 				this.calculateData(text);
-				bufferSize = buffer.capacity();
+				bufferSize = buffer.remaining();
 				GL15.glBufferData(target, buffer, hint);
-				GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 4 * 4, 0);
-				GL20.glVertexAttribPointer(1, 2, GL11.GL_FLOAT, false, 4 * 4, 2 * 4);
+				LAYOUT.setAttributePointers();
 			});
-			GL20.glEnableVertexAttribArray(0);
-			GL20.glEnableVertexAttribArray(1);
+			LAYOUT.enableAttributes();
 		});
 	}
 
 	private void calculateData(CharSequence text) {
-		int newCapacity = text.length() * 4 * 6;
+		int newCapacity = text.length() * LAYOUT.stride() * 6;
 		if (buffer == null || buffer.capacity() < newCapacity) {
-			buffer = BufferUtils.createFloatBuffer(newCapacity);
+			if (buffer != null) {
+				BufferPool.shared().release(buffer);
+			}
+			buffer = BufferPool.shared().floats(newCapacity);
 		} else {
 			buffer.clear();
 		}
@@ -117,7 +118,7 @@ public class TextModel implements Drawable, Disposable {
 		this.text = text;
 		vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
 			this.calculateData(text);
-			int newBufferSize = buffer.capacity();
+			int newBufferSize = buffer.remaining();
 			if (newBufferSize > bufferSize) {
 				bufferSize = newBufferSize;
 				GL15.glBufferData(target, buffer, hint);
@@ -141,6 +142,7 @@ public class TextModel implements Drawable, Disposable {
 
 	@Override
 	public void dispose() {
+		BufferPool.shared().release(buffer);
 		vertexBuffer.dispose();
 		vertexArray.dispose();
 	}
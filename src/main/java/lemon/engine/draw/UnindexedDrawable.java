@@ -22,7 +22,9 @@ public class UnindexedDrawable implements Drawable {
 		vertexArray = new VertexArray();
 		vertexArray.bind(vao -> {
 			new VertexBuffer().bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-				GL15.glBufferData(target, Drawable.getFloatBuffer(vertices, stride), GL15.GL_STATIC_DRAW);
+				var buffer = Drawable.getFloatBuffer(vertices, stride);
+				GL15.glBufferData(target, buffer, GL15.GL_STATIC_DRAW);
+				BufferPool.shared().release(buffer);
 				long offset = 0;
 				for (int i = 0; i < vertices.length; i++) {
 					int dimensions = vertices[i][0].numDimensions();
@@ -0,0 +1,83 @@
+package lemon.engine.draw;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+
+import java.util.Arrays;
+
+/**
+ * Interleaved float vertex attributes: attribute i has dimensions(i) floats, at offset(i) floats into each vertex
+ */
+public final class VertexLayout {
+	private final int[] dimensions;
+	private final int[] offsets;
+	private final int stride;
+
+	private VertexLayout(int[] dimensions) {
+		this.dimensions = dimensions;
+		this.offsets = new int[dimensions.length];
+		int stride = 0;
+		for (int i = 0; i < dimensions.length; i++) {
+			if (dimensions[i] <= 0 || dimensions[i] > 4) {
+				throw new IllegalArgumentException("Dimensions can only be 1, 2, 3, or 4");
+			}
+			offsets[i] = stride;
+			stride += dimensions[i];
+		}
+		this.stride = stride;
+	}
+
+	public static VertexLayout of(int... dimensions) {
+		return new VertexLayout(dimensions.clone());
+	}
+
+	public int numAttributes() {
+		return dimensions.length;
+	}
+
+	public int dimensions(int attribute) {
+		return dimensions[attribute];
+	}
+
+	public int offset(int attribute) {
+		return offsets[attribute];
+	}
+
+	/**
+	 * Number of floats per vertex
+	 */
+	public int stride() {
+		return stride;
+	}
+
+	/**
+	 * Points every attribute at the currently bound GL_ARRAY_BUFFER
+	 */
+	public void setAttributePointers() {
+		for (int i = 0; i < dimensions.length; i++) {
+			GL20.glVertexAttribPointer(i, dimensions[i], GL11.GL_FLOAT, false,
+					stride * Drawable.BYTES_PER_FLOAT, ((long) offsets[i]) * Drawable.BYTES_PER_FLOAT);
+		}
+	}
+
+	public void enableAttributes() {
+		for (int i = 0; i < dimensions.length; i++) {
+			GL20.glEnableVertexAttribArray(i);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof VertexLayout layout && Arrays.equals(dimensions, layout.dimensions);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(dimensions);
+	}
+
+	@Override
+	public String toString() {
+		return "VertexLayout" + Arrays.toString(dimensions);
+	}
+}
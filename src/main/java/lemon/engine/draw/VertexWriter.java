@@ -0,0 +1,169 @@
+package lemon.engine.draw;
+
+import lemon.engine.math.FloatData;
+import lemon.engine.math.Vector3D;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interleaves per-vertex attributes from their source arrays into a float buffer in a single pass.
+ * <p>
+ * Attributes are numbered in the order they are added. Consecutive attributes that come from the same row of a
+ * float[][] are copied with one bulk put per vertex.
+ */
+public class VertexWriter {
+	private final int numVertices;
+	private final Source[] sources;
+	private final VertexLayout layout;
+
+	private VertexWriter(int numVertices, Source[] sources, VertexLayout layout) {
+		this.numVertices = numVertices;
+		this.sources = sources;
+		this.layout = layout;
+	}
+
+	public static Builder builder(int numVertices) {
+		return new Builder(numVertices);
+	}
+
+	/**
+	 * One attribute per column, with the dimensions of its first element
+	 */
+	public static VertexWriter of(FloatData[][] vertices) {
+		var builder = builder(vertices.length == 0 ? 0 : vertices[0].length);
+		for (var data : vertices) {
+			builder.add(data);
+		}
+		return builder.build();
+	}
+
+	public VertexLayout layout() {
+		return layout;
+	}
+
+	public int numVertices() {
+		return numVertices;
+	}
+
+	public int numFloats() {
+		return numVertices * layout.stride();
+	}
+
+	/**
+	 * Writes into a buffer from {@link BufferPool#shared()}, which should be released once uploaded
+	 */
+	public FloatBuffer write() {
+		var buffer = BufferPool.shared().floats(numFloats());
+		write(buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	public void write(FloatBuffer buffer) {
+		var sources = this.sources;
+		for (int i = 0; i < numVertices; i++) {
+			for (var source : sources) {
+				source.write(buffer, i);
+			}
+		}
+	}
+
+	public static class Builder {
+		private final int numVertices;
+		private final List<Source> sources = new ArrayList<>();
+		private final List<Integer> dimensions = new ArrayList<>();
+
+		private Builder(int numVertices) {
+			this.numVertices = numVertices;
+		}
+
+		public Builder add(Vector3D[] vectors) {
+			checkLength(vectors.length);
+			sources.add(new VectorSource(vectors));
+			dimensions.add(3);
+			return this;
+		}
+
+		/**
+		 * Adds an attribute stored contiguously as [x0, y0, ..., x1, y1, ...]
+		 */
+		public Builder add(float[] data, int dimensions) {
+			checkLength(data.length / dimensions);
+			sources.add(new ArraySource(data, dimensions));
+			this.dimensions.add(dimensions);
+			return this;
+		}
+
+		/**
+		 * Adds count attributes of the given dimensions, read from consecutive columns of each vertex's row
+		 */
+		public Builder add(float[][] rows, int offset, int dimensions, int count) {
+			checkLength(rows.length);
+			var last = sources.isEmpty() ? null : sources.get(sources.size() - 1);
+			if (last instanceof RowSource row && row.rows() == rows && row.offset() + row.length() == offset) {
+				sources.set(sources.size() - 1, new RowSource(rows, row.offset(), row.length() + dimensions * count));
+			} else {
+				sources.add(new RowSource(rows, offset, dimensions * count));
+			}
+			for (int i = 0; i < count; i++) {
+				this.dimensions.add(dimensions);
+			}
+			return this;
+		}
+
+		public Builder add(FloatData[] data) {
+			if (data.length > 0) {
+				checkLength(data.length);
+				sources.add(new FloatDataSource(data));
+				dimensions.add(data[0].numDimensions());
+			}
+			return this;
+		}
+
+		private void checkLength(int length) {
+			if (length != numVertices) {
+				throw new IllegalArgumentException(String.format("Expected %d vertices, got %d", numVertices, length));
+			}
+		}
+
+		public VertexWriter build() {
+			return new VertexWriter(numVertices, sources.toArray(Source[]::new),
+					VertexLayout.of(dimensions.stream().mapToInt(Integer::intValue).toArray()));
+		}
+	}
+
+	private sealed interface Source permits VectorSource, ArraySource, RowSource, FloatDataSource {
+		public void write(FloatBuffer buffer, int vertex);
+	}
+
+	private record VectorSource(Vector3D[] vectors) implements Source {
+		@Override
+		public void write(FloatBuffer buffer, int vertex) {
+			var vector = vectors[vertex];
+			buffer.put(vector.x()).put(vector.y()).put(vector.z());
+		}
+	}
+
+	private record ArraySource(float[] data, int dimensions) implements Source {
+		@Override
+		public void write(FloatBuffer buffer, int vertex) {
+			buffer.put(data, vertex * dimensions, dimensions);
+		}
+	}
+
+	private record RowSource(float[][] rows, int offset, int length) implements Source {
+		@Override
+		public void write(FloatBuffer buffer, int vertex) {
+			buffer.put(rows[vertex], offset, length);
+		}
+	}
+
+	private record FloatDataSource(FloatData[] data) implements Source {
+		@Override
+		public void write(FloatBuffer buffer, int vertex) {
+			data[vertex].putInBuffer(buffer);
+		}
+	}
+}
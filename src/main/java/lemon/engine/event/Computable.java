@@ -2,35 +2,57 @@ package lemon.engine.event;
 
 import lemon.engine.toolbox.Lazy;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
+/**
+ * A lazily computed value that forms a dependency graph with other computables.
+ * <p>
+ * The needs-update and computing flags live in a single atomic state word, and the value is published
+ * through a volatile field, so reads never block and requests never take a lock.
+ * Writers that mutate the value in place are serialized against each other, but never against readers.
+ */
 public class Computable<T> {
-	public boolean currentlyComputing = false;
-	public boolean needsUpdate = true;
+	private static final int NEEDS_UPDATE = 0b01;
+	private static final int COMPUTING = 0b10;
+	private final AtomicInteger state = new AtomicInteger(NEEDS_UPDATE);
 	private final Consumer<Computable<T>> computer;
-	private final List<Computable<?>> dependers = Collections.synchronizedList(new ArrayList<>());
-	private final OneTimeEventWith<T> whenCalculated = new OneTimeEventWith<>();
-	private T value = null;
+	private final List<Computable<?>> dependers = new CopyOnWriteArrayList<>();
+	private final Queue<Consumer<T>> whenCalculated = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile T value = null;
 
 	public Computable(Consumer<Computable<T>> computer) {
 		this.computer = computer;
 	}
 
 	private void propagateNeedsUpdate() {
-		synchronized (dependers) {
-			for (var depender : dependers) {
-				depender.needsUpdate = true;
-				depender.propagateNeedsUpdate();
+		if (dependers.isEmpty()) {
+			return;
+		}
+		Set<Computable<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		var stack = new ArrayDeque<Computable<?>>(dependers);
+		while (!stack.isEmpty()) {
+			var depender = stack.pop();
+			if (visited.add(depender)) {
+				depender.state.getAndUpdate(state -> state | NEEDS_UPDATE);
+				stack.addAll(depender.dependers);
 			}
 		}
 	}
@@ -39,25 +61,61 @@ public class Computable<T> {
 		this.dependers.add(depender);
 	}
 
-	public synchronized void compute() {
+	public void compute() {
 		propagateNeedsUpdate();
-		whenCalculated.callListeners(value);
-		currentlyComputing = false; // allow computable to be compute()ed again
+		while (true) {
+			// Listeners are taken while still computing, so none of them can have started a newer computation.
+			// Ones they add themselves are left for the checks below, in case they invalidated this value.
+			if (!whenCalculated.isEmpty()) {
+				List<Consumer<T>> listeners = new ArrayList<>();
+				Consumer<T> listener;
+				while ((listener = whenCalculated.poll()) != null) {
+					listeners.add(listener);
+				}
+				for (var calculated : listeners) {
+					calculated.accept(value);
+				}
+			}
+			state.getAndUpdate(state -> state & ~COMPUTING); // allow computable to be compute()ed again
+			if (whenCalculated.isEmpty()) {
+				return;
+			}
+			// Listeners added after the drain saw this computation running, so they are left to it,
+			// unless a newer computation has started since
+			int current;
+			do {
+				current = state.get();
+				if ((current & COMPUTING) != 0) {
+					return;
+				}
+			} while (!state.compareAndSet(current, COMPUTING));
+			if ((current & NEEDS_UPDATE) != 0) {
+				computer.accept(this);
+				return;
+			}
+		}
 	}
 
-	public synchronized void compute(T value) {
-		this.value = value;
+	public void compute(T value) {
+		writeLock.lock();
+		try {
+			this.value = value;
+		} finally {
+			writeLock.unlock();
+		}
 		this.compute();
 	}
 
 	/**
 	 * Applies the operator if value exists, otherwise retrieves from supplier
 	 */
-	public synchronized void compute(UnaryOperator<T> operator, Supplier<T> supplier) {
-		if (value == null) {
-			value = supplier.get();
-		} else {
-			value = operator.apply(value);
+	public void compute(UnaryOperator<T> operator, Supplier<T> supplier) {
+		writeLock.lock();
+		try {
+			var current = value;
+			value = current == null ? supplier.get() : operator.apply(current);
+		} finally {
+			writeLock.unlock();
 		}
 		this.compute();
 	}
@@ -65,11 +123,18 @@ public class Computable<T> {
 	/**
 	 * Calls the consumer if value exists, otherwise retrieves from supplier
 	 */
-	public synchronized void compute(Consumer<T> consumer, Supplier<T> supplier) {
-		if (value == null) {
-			value = supplier.get();
-		} else {
-			consumer.accept(value);
+	public void compute(Consumer<T> consumer, Supplier<T> supplier) {
+		writeLock.lock();
+		try {
+			var current = value;
+			if (current == null) {
+				value = supplier.get();
+			} else {
+				consumer.accept(current);
+				value = current; // republish in-place changes
+			}
+		} finally {
+			writeLock.unlock();
 		}
 		this.compute();
 	}
@@ -77,41 +142,61 @@ public class Computable<T> {
 	/**
 	 * Calls the consumer if value exists
 	 */
-	public synchronized void compute(Consumer<T> consumer) {
-		if (value != null) {
-			consumer.accept(value);
-			this.compute();
+	public void compute(Consumer<T> consumer) {
+		writeLock.lock();
+		try {
+			var current = value;
+			if (current == null) {
+				return;
+			}
+			consumer.accept(current);
+			value = current; // republish in-place changes
+		} finally {
+			writeLock.unlock();
 		}
+		this.compute();
 	}
 
-	public synchronized Optional<T> getValue() {
+	public Optional<T> getValue() {
 		return Optional.ofNullable(this.value);
 	}
-	public synchronized T getValueOrThrow() {
+
+	public T getValueOrThrow() {
+		var value = this.value;
 		if (value == null) {
 			throw new IllegalStateException();
 		}
 		return value;
 	}
 
-	public synchronized T getValueOrThrow(Supplier<? extends RuntimeException> exceptionSupplier) {
+	public T getValueOrThrow(Supplier<? extends RuntimeException> exceptionSupplier) {
+		var value = this.value;
 		if (value == null) {
 			throw exceptionSupplier.get();
 		}
 		return value;
 	}
 
-	public synchronized void request() {
-		if (needsUpdate) {
-			if (!currentlyComputing) {
-				currentlyComputing = true;
-				needsUpdate = false;
-				computer.accept(this);
+	public boolean needsUpdate() {
+		return (state.get() & NEEDS_UPDATE) != 0;
+	}
+
+	public boolean isComputing() {
+		return (state.get() & COMPUTING) != 0;
+	}
+
+	public void request() {
+		int current;
+		do {
+			current = state.get();
+			if ((current & NEEDS_UPDATE) == 0 || (current & COMPUTING) != 0) {
+				return;
 			}
-		}
+		} while (!state.compareAndSet(current, COMPUTING));
+		computer.accept(this);
 	}
 
-	public synchronized Optional<T> requestAndGetValue() {
+	public Optional<T> requestAndGetValue() {
 		request();
 		return getValue();
 	}
@@ -119,21 +204,12 @@ public class Computable<T> {
 	/**
 	 * Requests an update (if needed) and calls the callback when it is calculated
 	 */
-	public synchronized void request(Consumer<T> whenCalculated) {
-		if (needsUpdate) {
-			this.whenCalculated.add(whenCalculated);
-			if (!currentlyComputing) {
-				currentlyComputing = true;
-				needsUpdate = false;
-				computer.accept(this);
-			}
-		} else {
-			// we don't need an update
-			if (currentlyComputing) {
-				this.whenCalculated.add(whenCalculated);
-			} else {
-				whenCalculated.accept(value);
-			}
+	public void request(Consumer<T> whenCalculated) {
+		this.whenCalculated.add(whenCalculated);
+		request();
+		// If nothing is computing, the listener may have been added after the last drain
+		if ((state.get() & COMPUTING) == 0 && this.whenCalculated.remove(whenCalculated)) {
+			whenCalculated.accept(value);
 		}
 	}
 
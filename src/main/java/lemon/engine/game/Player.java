@@ -46,6 +46,11 @@ public class Player extends AbstractControllableEntity implements Disposable {
 		return CollisionResponse.SLIDE;
 	}
 
+	@Override
+	public boolean collidesWithEntities() {
+		return true;
+	}
+
 	public String name() {
 		return name;
 	}
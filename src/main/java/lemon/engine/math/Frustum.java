@@ -0,0 +1,104 @@
+package lemon.engine.math;
+
+/**
+ * Six clip planes extracted from a view-projection matrix (Gribb-Hartmann), with normals pointing inwards.
+ * <p>
+ * Plane order is left, right, bottom, top, near, far, and each plane is stored as normalized (a, b, c, d)
+ * so that a point p is inside when a * p.x + b * p.y + c * p.z + d >= 0.
+ */
+public class Frustum {
+	public static final int NUM_PLANES = 6;
+	private final float[] planes = new float[NUM_PLANES * 4];
+	private final Matrix viewProjection;
+
+	private Frustum(Matrix viewProjection) {
+		this.viewProjection = Matrix.unmodifiableMatrix(viewProjection);
+		for (int i = 0; i < 3; i++) {
+			setPlane(2 * i, viewProjection, i, 1f);
+			setPlane(2 * i + 1, viewProjection, i, -1f);
+		}
+	}
+
+	/**
+	 * @param viewProjection projection * view, applied to column vectors as in OpenGL
+	 */
+	public static Frustum of(Matrix viewProjection) {
+		return new Frustum(viewProjection);
+	}
+
+	public static Frustum of(Matrix projection, Matrix view) {
+		return new Frustum(projection.multiply(view));
+	}
+
+	// row 3 + sign * row
+	private void setPlane(int plane, Matrix matrix, int row, float sign) {
+		float a = matrix.get(3, 0) + sign * matrix.get(row, 0);
+		float b = matrix.get(3, 1) + sign * matrix.get(row, 1);
+		float c = matrix.get(3, 2) + sign * matrix.get(row, 2);
+		float d = matrix.get(3, 3) + sign * matrix.get(row, 3);
+		float length = (float) Math.sqrt(a * a + b * b + c * c);
+		if (length > 0f) {
+			a /= length;
+			b /= length;
+			c /= length;
+			d /= length;
+		}
+		planes[plane * 4] = a;
+		planes[plane * 4 + 1] = b;
+		planes[plane * 4 + 2] = c;
+		planes[plane * 4 + 3] = d;
+	}
+
+	public Matrix viewProjection() {
+		return viewProjection;
+	}
+
+	/**
+	 * Signed distance from the plane, positive on the inside
+	 */
+	public float getSignedDistance(int plane, float x, float y, float z) {
+		int i = plane * 4;
+		return planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+	}
+
+	public boolean contains(Vector3D point) {
+		for (int i = 0; i < NUM_PLANES; i++) {
+			if (getSignedDistance(i, point.x(), point.y(), point.z()) < 0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean intersects(Sphere sphere) {
+		var center = sphere.center();
+		for (int i = 0; i < NUM_PLANES; i++) {
+			if (getSignedDistance(i, center.x(), center.y(), center.z()) < -sphere.radius()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean intersects(Vector3D min, Vector3D max) {
+		return intersectsBox(min.x(), min.y(), min.z(), max.x(), max.y(), max.z());
+	}
+
+	/**
+	 * Conservative: a box is only rejected when it is entirely outside one plane,
+	 * so some boxes near the frustum's corners are reported as intersecting.
+	 */
+	public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		for (int i = 0; i < NUM_PLANES; i++) {
+			int j = i * 4;
+			// Corner of the box furthest along the plane's normal
+			float x = planes[j] >= 0f ? maxX : minX;
+			float y = planes[j + 1] >= 0f ? maxY : minY;
+			float z = planes[j + 2] >= 0f ? maxZ : minZ;
+			if (planes[j] * x + planes[j + 1] * y + planes[j + 2] * z + planes[j + 3] < 0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,9 +1,9 @@
 package lemon.engine.model;
 
+import lemon.engine.draw.BufferPool;
 import lemon.engine.render.Renderable;
 import lemon.engine.render.VertexArray;
 import lemon.engine.render.VertexBuffer;
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
@@ -31,7 +31,9 @@ public class LineGraph implements Renderable {
 		vertexArray.bind(vao -> {
 			vertexBuffer = new VertexBuffer();
 			vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-				GL15.glBufferData(target, getDataBuffer(), GL15.GL_STREAM_DRAW);
+				var buffer = getDataBuffer();
+				GL15.glBufferData(target, buffer, GL15.GL_STREAM_DRAW);
+				BufferPool.shared().release(buffer);
 				GL20.glVertexAttribPointer(0, 1, GL11.GL_FLOAT, false, 2 * 4, 0);
 				GL20.glVertexAttribPointer(1, 1, GL11.GL_FLOAT, false, 2 * 4, 1 * 4);
 			});
@@ -51,7 +53,7 @@ public class LineGraph implements Renderable {
 	}
 
 	private FloatBuffer getDataBuffer() {
-		FloatBuffer dataBuffer = BufferUtils.createFloatBuffer(size * 2);
+		FloatBuffer dataBuffer = BufferPool.shared().floats(size * 2);
 		int n = 0;
 		for (float f : values) {
 			dataBuffer.put(n++);
@@ -63,7 +65,9 @@ public class LineGraph implements Renderable {
 
 	private void updateVbo() {
 		vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-			GL15.glBufferSubData(target, 0, getDataBuffer());
+			var buffer = getDataBuffer();
+			GL15.glBufferSubData(target, 0, buffer);
+			BufferPool.shared().release(buffer);
 		});
 	}
 
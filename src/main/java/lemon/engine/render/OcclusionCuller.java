@@ -0,0 +1,346 @@
+package lemon.engine.render;
+
+import lemon.engine.math.Matrix;
+
+import java.util.Arrays;
+
+/**
+ * Software hierarchical-Z occlusion culling at a low resolution, independent of GL.
+ * <p>
+ * Each frame, {@link #begin(Matrix)} clears the depth buffer, occluders are rasterized with
+ * {@link #addOccluderBox} or {@link #addOccluderTriangle}, and {@link #finish()} builds a pyramid where each texel
+ * holds the farthest depth of the four below it. {@link #isVisible} then compares the nearest depth of a box against
+ * the pyramid level where the box covers at most 2x2 texels.
+ * <p>
+ * Occluders should lie inside the geometry they stand in for; tests err towards visible.
+ * Occluders are rasterized conservatively: a texel is only written if the occluder covers all of it,
+ * with the farthest depth it has over the texel, since a box is tested against every texel it touches.
+ * Rasterizing and testing must not overlap, but both can run on any thread.
+ */
+public class OcclusionCuller {
+	private static final float EPSILON = 1e-6f;
+	// Corners are indexed by bits (x, y, z); faces wind counter-clockwise when seen from outside.
+	// Faces are rasterized whole, since texels along the diagonal of a face split in two are covered by neither half.
+	private static final int[] BOX_FACES = {
+			0, 4, 6, 2, // -x
+			1, 3, 7, 5, // +x
+			0, 1, 5, 4, // -y
+			2, 6, 7, 3, // +y
+			0, 2, 3, 1, // -z
+			4, 5, 7, 6  // +z
+	};
+	// Clipping a quad against the near plane adds at most one vertex
+	private static final int MAX_VERTICES = 5;
+	private final int width;
+	private final int height;
+	private final float[][] levels;
+	private final int[] levelWidths;
+	private final int[] levelHeights;
+	private final float[] matrix = new float[16];
+	private final float[] corners = new float[8 * 4]; // clip space
+	private final float[] polygon = new float[4 * 4];
+	private final float[] clipped = new float[MAX_VERTICES * 4];
+	private final float[] screenX = new float[MAX_VERTICES];
+	private final float[] screenY = new float[MAX_VERTICES];
+	private final float[] screenZ = new float[MAX_VERTICES];
+	private int occluderTriangles = 0;
+	private int tested = 0;
+	private int occluded = 0;
+
+	public OcclusionCuller(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid size: %d x %d", width, height));
+		}
+		this.width = width;
+		this.height = height;
+		int numLevels = 1;
+		for (int levelWidth = width, levelHeight = height; levelWidth > 1 || levelHeight > 1; numLevels++) {
+			levelWidth = (levelWidth + 1) / 2;
+			levelHeight = (levelHeight + 1) / 2;
+		}
+		this.levels = new float[numLevels][];
+		this.levelWidths = new int[numLevels];
+		this.levelHeights = new int[numLevels];
+		int levelWidth = width;
+		int levelHeight = height;
+		for (int i = 0; i < numLevels; i++) {
+			levelWidths[i] = levelWidth;
+			levelHeights[i] = levelHeight;
+			levels[i] = new float[levelWidth * levelHeight];
+			levelWidth = (levelWidth + 1) / 2;
+			levelHeight = (levelHeight + 1) / 2;
+		}
+	}
+
+	/**
+	 * @param viewProjection projection * view, applied to column vectors as in OpenGL
+	 */
+	public void begin(Matrix viewProjection) {
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				matrix[i * 4 + j] = viewProjection.get(i, j);
+			}
+		}
+		Arrays.fill(levels[0], 1f);
+		occluderTriangles = 0;
+		tested = 0;
+		occluded = 0;
+	}
+
+	/**
+	 * Rasterizes the front faces of a box, so a box around the camera occludes nothing
+	 */
+	public void addOccluderBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		transformCorners(minX, minY, minZ, maxX, maxY, maxZ);
+		for (int i = 0; i < BOX_FACES.length; i += 4) {
+			for (int j = 0; j < 4; j++) {
+				System.arraycopy(corners, BOX_FACES[i + j] * 4, polygon, j * 4, 4);
+			}
+			rasterize(4, true);
+		}
+	}
+
+	/**
+	 * Rasterizes both sides of a triangle
+	 */
+	public void addOccluderTriangle(float ax, float ay, float az, float bx, float by, float bz, float cx, float cy, float cz) {
+		transform(ax, ay, az, corners, 0);
+		transform(bx, by, bz, corners, 4);
+		transform(cx, cy, cz, corners, 8);
+		System.arraycopy(corners, 0, polygon, 0, 12);
+		rasterize(3, false);
+	}
+
+	public void finish() {
+		for (int level = 1; level < levels.length; level++) {
+			var source = levels[level - 1];
+			var target = levels[level];
+			int sourceWidth = levelWidths[level - 1];
+			int sourceHeight = levelHeights[level - 1];
+			int targetWidth = levelWidths[level];
+			int targetHeight = levelHeights[level];
+			for (int y = 0; y < targetHeight; y++) {
+				int y0 = 2 * y;
+				int y1 = Math.min(y0 + 1, sourceHeight - 1);
+				for (int x = 0; x < targetWidth; x++) {
+					int x0 = 2 * x;
+					int x1 = Math.min(x0 + 1, sourceWidth - 1);
+					target[y * targetWidth + x] = Math.max(
+							Math.max(source[y0 * sourceWidth + x0], source[y0 * sourceWidth + x1]),
+							Math.max(source[y1 * sourceWidth + x0], source[y1 * sourceWidth + x1]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns false only if the box is entirely behind rasterized occluders (or entirely off screen)
+	 */
+	public boolean isVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		tested++;
+		transformCorners(minX, minY, minZ, maxX, maxY, maxZ);
+		float minScreenX = Float.MAX_VALUE;
+		float minScreenY = Float.MAX_VALUE;
+		float maxScreenX = -Float.MAX_VALUE;
+		float maxScreenY = -Float.MAX_VALUE;
+		float nearestDepth = Float.MAX_VALUE;
+		for (int i = 0; i < corners.length; i += 4) {
+			float w = corners[i + 3];
+			if (corners[i + 2] < -w || w <= EPSILON) {
+				// Crosses the near plane
+				return true;
+			}
+			float screenX = toScreenX(corners[i] / w);
+			float screenY = toScreenY(corners[i + 1] / w);
+			minScreenX = Math.min(minScreenX, screenX);
+			minScreenY = Math.min(minScreenY, screenY);
+			maxScreenX = Math.max(maxScreenX, screenX);
+			maxScreenY = Math.max(maxScreenY, screenY);
+			nearestDepth = Math.min(nearestDepth, corners[i + 2] / w);
+		}
+		if (maxScreenX < 0f || maxScreenY < 0f || minScreenX > width || minScreenY > height || nearestDepth > 1f) {
+			occluded++;
+			return false;
+		}
+		int x0 = Math.max(0, (int) Math.floor(minScreenX));
+		int y0 = Math.max(0, (int) Math.floor(minScreenY));
+		int x1 = Math.min(width - 1, (int) Math.floor(maxScreenX));
+		int y1 = Math.min(height - 1, (int) Math.floor(maxScreenY));
+		int level = 0;
+		while (level < levels.length - 1 && ((x1 >> level) - (x0 >> level) > 1 || (y1 >> level) - (y0 >> level) > 1)) {
+			level++;
+		}
+		var depths = levels[level];
+		int levelWidth = levelWidths[level];
+		for (int y = y0 >> level; y <= y1 >> level; y++) {
+			for (int x = x0 >> level; x <= x1 >> level; x++) {
+				if (nearestDepth <= depths[y * levelWidth + x]) {
+					return true;
+				}
+			}
+		}
+		occluded++;
+		return false;
+	}
+
+	private void transformCorners(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		for (int i = 0; i < 8; i++) {
+			transform((i & 1) == 0 ? minX : maxX, (i & 2) == 0 ? minY : maxY, (i & 4) == 0 ? minZ : maxZ, corners, i * 4);
+		}
+	}
+
+	private void transform(float x, float y, float z, float[] target, int offset) {
+		for (int row = 0; row < 4; row++) {
+			target[offset + row] = matrix[row * 4] * x + matrix[row * 4 + 1] * y + matrix[row * 4 + 2] * z + matrix[row * 4 + 3];
+		}
+	}
+
+	// Clips the convex polygon against the near plane (z >= -w) and rasterizes what remains
+	private void rasterize(int vertices, boolean cullBackFaces) {
+		int count = 0;
+		for (int i = 0; i < vertices; i++) {
+			int current = i * 4;
+			int next = ((i + 1) % vertices) * 4;
+			float currentDistance = polygon[current + 2] + polygon[current + 3];
+			float nextDistance = polygon[next + 2] + polygon[next + 3];
+			if (currentDistance >= 0f) {
+				System.arraycopy(polygon, current, clipped, count * 4, 4);
+				count++;
+			}
+			if ((currentDistance >= 0f) != (nextDistance >= 0f)) {
+				float t = currentDistance / (currentDistance - nextDistance);
+				for (int j = 0; j < 4; j++) {
+					clipped[count * 4 + j] = polygon[current + j] + t * (polygon[next + j] - polygon[current + j]);
+				}
+				count++;
+			}
+		}
+		if (count >= 3) {
+			rasterizeClipped(count, cullBackFaces);
+		}
+	}
+
+	private void rasterizeClipped(int count, boolean cullBackFaces) {
+		for (int i = 0; i < count; i++) {
+			float w = Math.max(clipped[i * 4 + 3], EPSILON);
+			screenX[i] = toScreenX(clipped[i * 4] / w);
+			screenY[i] = toScreenY(clipped[i * 4 + 1] / w);
+			screenZ[i] = clipped[i * 4 + 2] / w;
+		}
+		// Twice the signed area, and the fan triangle with the largest area to take the depth plane from
+		float area = 0f;
+		float planeArea = 0f;
+		int planeVertex = 1;
+		for (int i = 1; i + 1 < count; i++) {
+			float triangleArea = (screenX[i] - screenX[0]) * (screenY[i + 1] - screenY[0])
+					- (screenY[i] - screenY[0]) * (screenX[i + 1] - screenX[0]);
+			area += triangleArea;
+			if (Math.abs(triangleArea) > Math.abs(planeArea)) {
+				planeArea = triangleArea;
+				planeVertex = i;
+			}
+		}
+		if (Math.abs(area) < EPSILON || Math.abs(planeArea) < EPSILON || (cullBackFaces && area < 0f)) {
+			return;
+		}
+		occluderTriangles += count - 2;
+		// Depth is affine over the polygon, since it is planar
+		float z0 = screenZ[0];
+		float dx1 = screenX[planeVertex] - screenX[0];
+		float dy1 = screenY[planeVertex] - screenY[0];
+		float dz1 = screenZ[planeVertex] - z0;
+		float dx2 = screenX[planeVertex + 1] - screenX[0];
+		float dy2 = screenY[planeVertex + 1] - screenY[0];
+		float dz2 = screenZ[planeVertex + 1] - z0;
+		float depthPerX = (dz1 * dy2 - dz2 * dy1) / planeArea;
+		float depthPerY = (dz2 * dx1 - dz1 * dx2) / planeArea;
+		// The farthest depth over a texel is at the corner the depth increases towards
+		float depthOffset = Math.max(0f, depthPerX) + Math.max(0f, depthPerY);
+		float sign = Math.signum(area);
+		float minScreenX = Float.MAX_VALUE;
+		float minScreenY = Float.MAX_VALUE;
+		float maxScreenX = -Float.MAX_VALUE;
+		float maxScreenY = -Float.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			minScreenX = Math.min(minScreenX, screenX[i]);
+			minScreenY = Math.min(minScreenY, screenY[i]);
+			maxScreenX = Math.max(maxScreenX, screenX[i]);
+			maxScreenY = Math.max(maxScreenY, screenY[i]);
+		}
+		// Only texels entirely inside the bounds can be covered
+		int minX = Math.max(0, (int) Math.ceil(minScreenX));
+		int minY = Math.max(0, (int) Math.ceil(minScreenY));
+		int maxX = Math.min(width - 1, (int) Math.floor(maxScreenX) - 1);
+		int maxY = Math.min(height - 1, (int) Math.floor(maxScreenY) - 1);
+		var depths = levels[0];
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				if (!coversTexel(count, sign, x, y)) {
+					continue;
+				}
+				float depth = Math.max(-1f, z0 + depthPerX * (x - screenX[0]) + depthPerY * (y - screenY[0]) + depthOffset);
+				int index = y * width + x;
+				if (depth < depths[index]) {
+					depths[index] = depth;
+				}
+			}
+		}
+	}
+
+	// Whether the texel with its minimum corner at (x, y) is inside every edge, tested at its corner farthest out
+	private boolean coversTexel(int count, float sign, int x, int y) {
+		for (int i = 0; i < count; i++) {
+			int next = i + 1 == count ? 0 : i + 1;
+			float edgeX = (screenX[next] - screenX[i]) * sign;
+			float edgeY = (screenY[next] - screenY[i]) * sign;
+			// Positive on the inside of the edge for either winding
+			float inside = edgeX * (y - screenY[i]) - edgeY * (x - screenX[i]) + Math.min(0f, edgeX) + Math.min(0f, -edgeY);
+			if (inside < 0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private float toScreenX(float ndcX) {
+		return (ndcX * 0.5f + 0.5f) * width;
+	}
+
+	private float toScreenY(float ndcY) {
+		return (ndcY * 0.5f + 0.5f) * height;
+	}
+
+	/**
+	 * Depth in normalized device coordinates (-1 near, 1 far) at a full resolution texel
+	 */
+	public float getDepth(int x, int y) {
+		return levels[0][y * width + x];
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public int levelCount() {
+		return levels.length;
+	}
+
+	/**
+	 * Number of occluder triangles rasterized since {@link #begin(Matrix)}
+	 */
+	public int occluderTriangleCount() {
+		return occluderTriangles;
+	}
+
+	public int testedCount() {
+		return tested;
+	}
+
+	public int occludedCount() {
+		return occluded;
+	}
+}
@@ -8,6 +8,7 @@ import java.util.Set;
 
 public class Benchmarker {
 	private final Map<String, LineGraph> graphs = new LinkedHashMap<>();
+	private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
 
 	public void benchmark(Benchmark benchmark) {
 		float[] data = benchmark.data();
@@ -35,4 +36,16 @@ public class Benchmarker {
 	public int getSize() {
 		return graphs.size();
 	}
+
+	public void putHistogram(String name, LatencyHistogram histogram) {
+		histograms.put(name, histogram);
+	}
+
+	public LatencyHistogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	public Set<String> getHistogramNames() {
+		return histograms.keySet();
+	}
 }
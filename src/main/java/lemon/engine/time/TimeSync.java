@@ -1,9 +1,12 @@
 package lemon.engine.time;
 
 public class TimeSync {
+	private static final long DEFAULT_FRAME_NANOS = 1000000000L / 60;
 	private long variableYieldTime, lastTime, lastSecond;
 	private int fpsCounter;
 	private int fps;
+	private volatile int targetFps;
+	private volatile long frameStart;
 
 	public TimeSync() {
 		variableYieldTime = 0;
@@ -24,14 +27,17 @@ public class TimeSync {
 		if (lastSecond == 0) {
 			lastSecond = System.currentTimeMillis();
 		}
+		targetFps = fps;
 		fpsCounter++;
 		while (lastSecond + 1000 < System.currentTimeMillis()) {
 			lastSecond += 1000;
 			this.fps = fpsCounter;
 			fpsCounter = 0;
 		}
-		if (fps <= 0)
+		if (fps <= 0) {
+			frameStart = System.nanoTime();
 			return;
+		}
 
 		long sleepTime = 1000000000 / fps; // nanoseconds to sleep this frame
 		// yieldTime + remainder micro & nano seconds if smaller than sleepTime
@@ -56,6 +62,7 @@ public class TimeSync {
 			e.printStackTrace();
 		} finally {
 			lastTime = System.nanoTime() - Math.min(overSleep, sleepTime);
+			frameStart = System.nanoTime();
 
 			// auto tune the time sync should yield
 			if (overSleep > variableYieldTime) {
@@ -71,4 +78,23 @@ public class TimeSync {
 	public int getFps() {
 		return fps;
 	}
+
+	/**
+	 * Length of a frame at the target frame rate, or at 60 FPS if the frame rate is unlimited
+	 */
+	public long getFrameNanos() {
+		int targetFps = this.targetFps;
+		return targetFps > 0 ? 1000000000L / targetFps : DEFAULT_FRAME_NANOS;
+	}
+
+	/**
+	 * Time left in the current frame before it overruns the target frame rate (negative if it already has)
+	 */
+	public long getRemainingFrameNanos() {
+		long frameStart = this.frameStart;
+		if (frameStart == 0) {
+			return getFrameNanos();
+		}
+		return getFrameNanos() - (System.nanoTime() - frameStart);
+	}
 }
@@ -28,6 +28,9 @@ public class DebugOverlay implements Disposable {
 
 	private final Font font;
 	private final TextModel debugTextModel;
+	private final StringBuilder histogramMessage = new StringBuilder();
+	private final Formatter histogramFormatter = new Formatter(histogramMessage);
+	private final TextModel histogramTextModel;
 	private final Map<String, TextModel> keyTextModels = new HashMap<>();
 
 	private final Disposables disposables = new Disposables();
@@ -44,12 +47,24 @@ public class DebugOverlay implements Disposable {
 		this.benchmarker = benchmarker;
 		font = CommonFonts.freeSans();
 		debugTextModel = disposables.add(new TextModel(font, "[Unknown]", GL15.GL_DYNAMIC_DRAW));
+		histogramTextModel = disposables.add(new TextModel(font, "[Unknown]", GL15.GL_DYNAMIC_DRAW));
 	}
 
 	public void update(String format, Object... args) {
 		debugMessage.setLength(0);
 		debugFormatter.format(format, args);
 		debugTextModel.setText(debugMessage);
+		// p50/p99/max of every histogram, in milliseconds
+		histogramMessage.setLength(0);
+		for (String name : benchmarker.getHistogramNames()) {
+			var histogram = benchmarker.getHistogram(name);
+			if (histogramMessage.length() > 0) {
+				histogramMessage.append(", ");
+			}
+			histogramFormatter.format("%s=%.1f/%.1f/%.1f", name,
+					histogram.percentile(50) / 1e6, histogram.percentile(99) / 1e6, histogram.max() / 1e6);
+		}
+		histogramTextModel.setText(histogramMessage);
 	}
 
 	public void render() {
@@ -97,6 +112,15 @@ public class DebugOverlay implements Disposable {
 				program.loadColor3f("color", Color.WHITE);
 				debugTextModel.draw();
 			});
+			CommonPrograms2D.TEXT.use(program -> {
+				try (var translationMatrix = MatrixPool.ofTranslation(5f, window.getHeight() - 40, 0f);
+					 var scalarMatrix = MatrixPool.ofScalar(0.2f, 0.2f, 1f);
+					 var transformationMatrix = MatrixPool.ofMultiplied(translationMatrix, scalarMatrix)) {
+					program.loadMatrix(MatrixType.MODEL_MATRIX, transformationMatrix);
+				}
+				program.loadColor3f("color", Color.WHITE);
+				histogramTextModel.draw();
+			});
 		}
 		debugOverlayTime = System.nanoTime() - debugOverlayTime;
 		benchmarker.getLineGraph("debugOverlayTime").add(debugOverlayTime);
@@ -19,6 +19,7 @@ public enum EvolutionControls implements GLFWGameControls.DefaultBinder<Evolutio
 	FALL(keyboardHold(GLFW.GLFW_KEY_LEFT_SHIFT)),
 	CROUCH(keyboardHold(GLFW.GLFW_KEY_LEFT_SHIFT)),
 	DEBUG_TOGGLE(keyboardToggle(GLFW.GLFW_KEY_F3, false)),
+	LOD_TOGGLE(keyboardToggle(GLFW.GLFW_KEY_F4, true)),
 	END_TURN(keyboardHold(GLFW.GLFW_KEY_BACKSPACE)),
 	START_GAME(keyboardHold(GLFW.GLFW_KEY_ENTER)),
 	USE_ITEM(mouseHold(GLFW.GLFW_MOUSE_BUTTON_1)),
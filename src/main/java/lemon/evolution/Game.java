@@ -3,6 +3,7 @@ package lemon.evolution;
 import com.google.common.collect.ImmutableList;
 import lemon.engine.control.GLFWWindow;
 import lemon.engine.control.Loader;
+import lemon.engine.draw.BufferPool;
 import lemon.engine.draw.CommonDrawables;
 import lemon.engine.draw.IndexedDrawable;
 import lemon.engine.draw.TextModel;
@@ -27,10 +28,15 @@ import lemon.engine.toolbox.SkyboxLoader;
 import lemon.engine.toolbox.TaskQueue;
 import lemon.engine.toolbox.Toolbox;
 import lemon.evolution.audio.BackgroundAudio;
+import lemon.evolution.destructible.beta.PipelineStage;
 import lemon.evolution.destructible.beta.ScalarField;
 import lemon.evolution.destructible.beta.Terrain;
 import lemon.evolution.destructible.beta.TerrainChunk;
+import lemon.evolution.destructible.beta.TerrainExecutor;
 import lemon.evolution.destructible.beta.TerrainGenerator;
+import lemon.evolution.destructible.beta.TerrainSettings;
+import lemon.evolution.destructible.beta.TerrainStage;
+import lemon.evolution.destructible.beta.UploadBudget;
 import lemon.evolution.entity.*;
 import lemon.evolution.item.BasicItems;
 import lemon.evolution.particle.beta.ParticleSystem;
@@ -38,6 +44,7 @@ import lemon.evolution.physics.beta.CollisionContext;
 import lemon.evolution.pool.MatrixPool;
 import lemon.evolution.screen.beta.Screen;
 import lemon.evolution.setup.CommonProgramsSetup;
+import lemon.evolution.ui.beta.UIMinimap;
 import lemon.evolution.ui.beta.UIScreen;
 import lemon.evolution.util.CommonPrograms2D;
 import lemon.evolution.util.CommonPrograms3D;
@@ -67,8 +74,6 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -95,6 +100,7 @@ public class Game implements Screen {
 
 	private World world;
 	private WorldRenderer worldRenderer;
+	private Frustum frustum;
 
 	private ViewModel viewModel;
 
@@ -103,9 +109,9 @@ public class Game implements Screen {
 	private ParticleSystem particleSystem;
 
 	private UIScreen uiScreen;
+	private UIMinimap minimap;
 
-	private ThreadPoolExecutor pool;
-	private ThreadPoolExecutor pool2;
+	private TerrainExecutor terrainExecutor;
 
 	private final Disposables disposables = new Disposables();
 
@@ -129,14 +135,21 @@ public class Game implements Screen {
 			disposables.add(() -> BackgroundAudio.play(BackgroundAudio.Track.MENU));
 			// Prepare loaders
 			ScalarField<Vector3D> scalarField = vector -> -1f;
-			pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
-			pool2 = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
-			pool.setRejectedExecutionHandler((runnable, executor) -> {});
-			pool2.setRejectedExecutionHandler((runnable, executor) -> {});
-			disposables.add(() -> pool.shutdown());
-			disposables.add(() -> pool2.shutdown());
-			TerrainGenerator generator = new TerrainGenerator(pool, scalarField);
-			var terrain = new Terrain(generator, pool2, Vector3D.of(0.5f, 0.5f, 0.5f));
+			terrainExecutor = disposables.add(new TerrainExecutor());
+			TerrainGenerator generator = new TerrainGenerator(terrainExecutor.executor(TerrainStage.GENERATION), scalarField);
+			// Voxelized maps are mostly flat walls and floors, which decimate well
+			var terrainSettings = new TerrainSettings() {
+				@Override
+				public Mesher mesher() {
+					return map.mesher();
+				}
+
+				@Override
+				public float decimationError() {
+					return 0.01f;
+				}
+			};
+			var terrain = new Terrain(generator, terrainExecutor, Vector3D.of(0.5f, 0.5f, 0.5f), UploadBudget.of(window.timeSync()), terrainSettings);
 			CollisionContext collisionContext = (position, velocity, checker) -> {
 				var after = position.add(velocity);
 				int minCollideX = terrain.getCollideX(Math.min(position.x(), after.x()) - 1f);
@@ -222,11 +235,14 @@ public class Game implements Screen {
 				var angle = MathUtil.TAU * ((float) i) / numPlayers;
 				var cos = (float) Math.cos(angle);
 				var sin = (float) Math.sin(angle);
-				var player = disposables.add(new Player(namesList.random(), Team.values()[i % Team.values().length], new Location(world, Vector3D.of(distance * cos, 100f, distance * sin)), projection));
+				var player = disposables.add(new Player(namesList.random(), Team.values()[i % Team.values().length], new Location(world, Vector3D.of(distance * cos, World.SPAWN_Y_COORDINATE, distance * sin)), projection));
 				player.mutableRotation().asEulerAngles().setY(-angle + MathUtil.PI / 2);
 				playersBuilder.add(player);
 			}
 			var players = playersBuilder.build();
+			// Once the terrain around the spawns has loaded, place players on it rather than dropping them onto it
+			postLoadTasks.add(() -> players.forEach(player -> player.mutablePosition().set(
+					world.spawnPosition(player.position().x(), player.position().z(), player.scalar().y()))));
 			world.entities().addAll(players);
 			world.entities().flush();
 			gameLoop = disposables.add(new GameLoop(map, world, players, controls));
@@ -246,7 +262,7 @@ public class Game implements Screen {
 				public void load() {
 					var currentRenderDistance = worldRenderer.terrainRenderer().getRenderDistance();
 					postLoadTasks.add(() -> worldRenderer.terrainRenderer().setRenderDistance(currentRenderDistance));
-					worldRenderer.terrainRenderer().setRenderDistance(256f / TerrainChunk.SIZE);
+					worldRenderer.terrainRenderer().setRenderDistance(256f / world.terrain().chunkSize());
 					worldRenderer.terrainRenderer().preload(Vector3D.ZERO);
 					generatorStartSize = Math.max(1, generator.getQueueSize());
 				}
@@ -259,24 +275,24 @@ public class Game implements Screen {
 				int poolStartSize;
 				@Override
 				public void load() {
-					poolStartSize = Math.max(1, pool2.getQueue().size());
+					poolStartSize = Math.max(1, terrainExecutor.queueDepth());
 				}
 
 				@Override
 				public float getProgress() {
-					return 1f - ((float) pool2.getQueue().size()) / ((float) poolStartSize);
+					return 1f - ((float) terrainExecutor.queueDepth()) / ((float) poolStartSize);
 				}
 			}, new Loader() {
 				int poolStartSize;
 				@Override
 				public void load() {
 					worldRenderer.terrainRenderer().preinit(Vector3D.ZERO);
-					poolStartSize = Math.max(1, pool2.getQueue().size());
+					poolStartSize = Math.max(1, terrainExecutor.queueDepth());
 				}
 
 				@Override
 				public float getProgress() {
-					return 1f - ((float) pool2.getQueue().size()) / ((float) poolStartSize);
+					return 1f - ((float) terrainExecutor.queueDepth()) / ((float) poolStartSize);
 				}
 			}));
 			loaded = true;
@@ -305,8 +321,18 @@ public class Game implements Screen {
 			benchmarker.put("freeMemory", new LineGraph(1000, 5000000000f));
 			benchmarker.put("totalMemory", new LineGraph(1000, 5000000000f));
 			benchmarker.put("worldRenderTime", new LineGraph(1000, 100000000));
+			benchmarker.put("occlusionTime", new LineGraph(1000, 10000000));
+			benchmarker.put("terrainTriangles", new LineGraph(1000, 5000000));
 			benchmarker.put("particleTime", new LineGraph(1000, 100000000));
 			benchmarker.put("debugOverlayTime", new LineGraph(1000, 100000000));
+			benchmarker.put("terrainInFlight", new LineGraph(1000, 500));
+			benchmarker.put("uploadsPerFrame", new LineGraph(1000, 50));
+			var pipeline = world.terrain().pipeline();
+			for (var stage : PipelineStage.values()) {
+				benchmarker.putHistogram(stage.name().toLowerCase(), pipeline.runLatency(stage));
+			}
+			benchmarker.putHistogram("uploadWait", pipeline.waitLatency(PipelineStage.DRAWABLE));
+			benchmarker.putHistogram("editToVisible", pipeline.editToVisibleLatency());
 
 			debugOverlay = disposables.add(new DebugOverlay(window, controls, benchmarker));
 
@@ -401,7 +427,9 @@ public class Game implements Screen {
 						}
 					}
 					if (event.key() == GLFW.GLFW_KEY_T) {
-						world.entities().add(new ItemDropEntity(gameLoop.currentPlayer().location().add(Vector3D.of(0f, 100f, 0f))));
+						var position = gameLoop.currentPlayer().position();
+						world.entities().add(new ItemDropEntity(new Location(world,
+								world.spawnPosition(position.x(), position.z(), ItemDropEntity.DROP_HEIGHT))));
 					}
 				}
 			}));
@@ -409,8 +437,9 @@ public class Game implements Screen {
 			uiScreen = disposables.add(new UIScreen(window.input()));
 			disposables.add(controls.activated(EvolutionControls.SHOW_UI).onChangeAndRun(uiScreen::setEnabled));
 
-			var minimap = uiScreen.addMinimap(new Box2D(50f, windowHeight - 250f, 200f, 200f), world, () -> gameLoop.currentPlayer());
+			minimap = uiScreen.addMinimap(new Box2D(50f, windowHeight - 250f, 200f, 200f), world, () -> gameLoop.currentPlayer());
 			disposables.add(controls.activated(EvolutionControls.MINIMAP).onChangeAndRun(minimap::setEnabled));
+			disposables.add(controls.activated(EvolutionControls.LOD_TOGGLE).onChangeAndRun(worldRenderer.terrainRenderer()::setLodEnabled));
 
 			var playerInfoHeight = 35f;
 			for (int i = 0; i < gameLoop.players().size(); i++) {
@@ -493,6 +522,14 @@ public class Game implements Screen {
 		var totalLength = world.entities().stream().map(entity -> entity instanceof PuzzleBall ball ? ball.velocity().length() : 0f).reduce(0f, Float::sum);
 		world.entities().removeIf(entity -> entity instanceof PuzzleBall ball && ball.position().y() <= -300f);
 		world.update(dt);
+		var prefetcher = worldRenderer.terrainRenderer().prefetcher();
+		prefetcher.prefetchCamera(camera.camera());
+		world.entities().forEach(entity -> {
+			if (entity instanceof ExplodeOnHitProjectile || entity instanceof ExplodeOnTimeProjectile) {
+				prefetcher.prefetchPath(entity.position(), entity.velocity(), World.GRAVITY_VECTOR, dt);
+			}
+		});
+		prefetcher.flush(dt);
 
 		gameLoop.update();
 		freecam.update();
@@ -502,10 +539,15 @@ public class Game implements Screen {
 		float available = Runtime.getRuntime().totalMemory();
 		benchmarker.getLineGraph("freeMemory").add(current);
 		benchmarker.getLineGraph("totalMemory").add(available);
+		benchmarker.getLineGraph("terrainInFlight").add(world.terrain().pipeline().inFlight());
+		benchmarker.getLineGraph("uploadsPerFrame").add(world.terrain().uploads().uploadsLastFrame());
+		var arena = world.terrain().arena();
+		int terrainDrawCalls = arena.pollDrawCalls();
+		int terrainPageBinds = arena.pollPageBinds();
 		if (controls.isActivated(EvolutionControls.DEBUG_TOGGLE)) {
 			var player = gameLoop.currentPlayer();
 			debugOverlay.update(
-					"FPS=%d, Player=%s, Pos=[%.02f, %.02f, %.02f], Vel=%f, Chunk=[%d, %d, %d], NumTasks=%d, %d, ChunkCount=%d, NumEntities=%d, PlayerSpeed=%f, isOnGround=%s",
+					"FPS=%d, Player=%s, Pos=[%.02f, %.02f, %.02f], Vel=%f, Chunk=[%d, %d, %d], Queued=%d, Workers=%d/%d, Rejected=%d, Uploads=%d (%dKB), UploadBacklog=%d, OffHeap=%dMB (Peak=%dMB), VisibleChunks=%d/%d (Occluded=%d), LODs=%d/%d/%d, Triangles=%d (Meshed=%d), ACMR=%.2f (Unoptimized=%.2f), TerrainDraws=%d (VAOBinds=%d), Arena=%d/%dMB (Pages=%d), Edits=%d (SavedRemeshes=%d), Prefetched=%d (HitRate=%.2f, Expired=%d), MinimapRebuilds=%d, ChunkCount=%d, NumEntities=%d, PlayerSpeed=%f, isOnGround=%s",
 					window.timeSync().getFps(),
 					player.name(),
 					player.position().x(),
@@ -515,8 +557,36 @@ public class Game implements Screen {
 					world.terrain().getChunkX(player.position().x()),
 					world.terrain().getChunkY(player.position().y()),
 					world.terrain().getChunkZ(player.position().z()),
-					pool.getTaskCount() - pool.getCompletedTaskCount(),
-					pool2.getTaskCount() - pool2.getCompletedTaskCount(),
+					terrainExecutor.queueDepth(),
+					terrainExecutor.activeWorkers(),
+					terrainExecutor.parallelism(),
+					terrainExecutor.rejectedCount(),
+					world.terrain().uploads().uploadsLastFrame(),
+					world.terrain().uploads().bytesLastFrame() / 1024,
+					world.terrain().uploads().backlog(),
+					BufferPool.shared().offHeapBytes() / (1024 * 1024),
+					BufferPool.shared().peakOffHeapBytes() / (1024 * 1024),
+					worldRenderer.terrainRenderer().getVisibleChunkCount(),
+					worldRenderer.terrainRenderer().getTotalChunkCount(),
+					worldRenderer.terrainRenderer().getOccludedChunkCount(),
+					worldRenderer.terrainRenderer().getLodChunkCount(0),
+					worldRenderer.terrainRenderer().getLodChunkCount(1),
+					worldRenderer.terrainRenderer().getLodChunkCount(2),
+					worldRenderer.terrainRenderer().getTriangleCount(),
+					worldRenderer.terrainRenderer().getMeshedTriangleCount(),
+					worldRenderer.terrainRenderer().getOptimizedAcmr(),
+					worldRenderer.terrainRenderer().getOriginalAcmr(),
+					terrainDrawCalls,
+					terrainPageBinds,
+					arena.usedBytes() / (1024 * 1024),
+					arena.capacityBytes() / (1024 * 1024),
+					arena.pageCount(),
+					world.terrain().pipeline().batchedEditCount(),
+					world.terrain().pipeline().savedRemeshCount(),
+					prefetcher.requestCount(),
+					prefetcher.hitRate(),
+					prefetcher.expiredCount(),
+					minimap.rebuildCount(),
 					world.terrain().chunkCount(),
 					world.entities().size(),
 					gameLoop.controller().playerSpeed(),
@@ -532,6 +602,7 @@ public class Game implements Screen {
 		var transformationMatrix = rotationMatrix.multiply(translationMatrix);
 		CommonPrograms3D.setMatrices(MatrixType.VIEW_MATRIX, transformationMatrix);
 		CommonPrograms3D.setMatrices(MatrixType.PROJECTION_MATRIX, camera.projectionMatrix());
+		frustum = Frustum.of(camera.projectionMatrix(), transformationMatrix);
 		CommonPrograms3D.CUBEMAP.use(program -> {
 			CommonPrograms3D.CUBEMAP.loadMatrix(MatrixType.VIEW_MATRIX, rotationMatrix);
 		});
@@ -549,9 +620,11 @@ public class Game implements Screen {
 			});
 			GL11.glDepthMask(true);
 			var worldRenderTime = System.nanoTime();
-			worldRenderer.render(gameLoop.currentPlayer().position());
+			worldRenderer.render(gameLoop.currentPlayer().position(), frustum);
 			worldRenderTime = System.nanoTime() - worldRenderTime;
 			benchmarker.getLineGraph("worldRenderTime").add(worldRenderTime);
+			benchmarker.getLineGraph("occlusionTime").add(worldRenderer.terrainRenderer().getOcclusionNanos());
+			benchmarker.getLineGraph("terrainTriangles").add(worldRenderer.terrainRenderer().getTriangleCount());
 			var particleTime = System.nanoTime();
 			particleSystem.render(gameLoop.currentPlayer().position());
 			particleTime = System.nanoTime() - particleTime;
@@ -1,5 +1,7 @@
 package lemon.evolution;
 
+import lemon.evolution.destructible.beta.TerrainSettings;
+
 public interface MapInfo {
 	public String mapName();
 	public String csvPath();
@@ -7,4 +9,8 @@ public interface MapInfo {
 	public float playerSpawnRadius();
 	public float itemDropSpawnRadius();
 	public float worldRadius();
+
+	public default TerrainSettings.Mesher mesher() {
+		return TerrainSettings.Mesher.MARCHING_CUBES;
+	}
 }
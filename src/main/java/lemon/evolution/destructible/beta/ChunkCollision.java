@@ -0,0 +1,40 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Triangle;
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chunk's triangles in world coordinates, bucketed by collision cell (in chunk-local cell coordinates).
+ * Built straight from the mesh, so physics never waits on (or pays for) the render-only stages.
+ */
+public record ChunkCollision(SparseGrid3D<List<Triangle>> triangles) {
+	/**
+	 * @param cellSize samples along each side of a collision cell, a divisor of the chunk's size
+	 */
+	public static ChunkCollision of(MarchingCubeMesh mesh, Vector3D offset, Vector3D scalar, int chunkSize, int cellSize) {
+		var vertices = mesh.vertices();
+		var indices = mesh.indices();
+		var triangleCoords = mesh.triangleCoords();
+		int cells = chunkSize / cellSize;
+		SparseGrid3D<List<Triangle>> triangles = new SparseGrid3D<>(cells, cells, cells, ArrayList::new);
+		Vector3D[] transformed = new Vector3D[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			transformed[i] = vertices[i].add(offset).multiply(scalar);
+		}
+		for (int i = 0; i < indices.length; i += 3) {
+			Triangle triangle = Triangle.of(transformed[indices[i]], transformed[indices[i + 2]], transformed[indices[i + 1]]);
+			if (triangle.area() > 0f) {
+				var coords = triangleCoords[i / 3];
+				triangles.compute(coords.x() / cellSize, coords.y() / cellSize, coords.z() / cellSize).add(triangle);
+			}
+		}
+		return new ChunkCollision(triangles);
+	}
+
+	public List<Triangle> getTriangles(int x, int y, int z) {
+		return triangles.getOrDefault(x, y, z, List.of());
+	}
+}
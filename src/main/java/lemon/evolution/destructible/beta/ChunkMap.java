@@ -0,0 +1,109 @@
+package lemon.evolution.destructible.beta;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent map from chunk coordinates (packed into a long) to chunks, without boxing keys.
+ * <p>
+ * Chunks are only ever added, so the table is open-addressed with linear probing and no tombstones.
+ * Lookups never lock: a slot's value is published after its key, so a reader that sees the value also sees the key.
+ * Insertions lock, and a full table is copied into a larger one which is then published;
+ * a reader still probing the old table may miss a chunk inserted since, which {@link #computeIfAbsent} rechecks under the lock.
+ */
+public class ChunkMap<V> {
+	private static final int INITIAL_CAPACITY = 1024;
+	// Coordinates are 21-bit two's complement, from -2^20 to 2^20 - 1
+	private static final int COORDINATE_BITS = 21;
+	private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile Table<V> table = new Table<>(INITIAL_CAPACITY);
+	private volatile int size = 0;
+
+	public static long pack(int x, int y, int z) {
+		return ((x & COORDINATE_MASK) << (2 * COORDINATE_BITS)) | ((y & COORDINATE_MASK) << COORDINATE_BITS) | (z & COORDINATE_MASK);
+	}
+
+	/**
+	 * Returns the value, or null if there is none
+	 */
+	public V get(long key) {
+		var table = this.table;
+		int mask = table.keys.length - 1;
+		for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+			var value = table.values.get(i);
+			if (value == null) {
+				return null;
+			}
+			if (table.keys[i] == key) {
+				return value;
+			}
+		}
+	}
+
+	public V computeIfAbsent(long key, LongFunction<? extends V> function) {
+		var value = get(key);
+		if (value != null) {
+			return value;
+		}
+		lock.lock();
+		try {
+			value = get(key);
+			if (value != null) {
+				return value;
+			}
+			value = function.apply(key);
+			if ((size + 1) * 2 > table.keys.length) {
+				var grown = new Table<V>(table.keys.length * 2);
+				for (int i = 0; i < table.keys.length; i++) {
+					var existing = table.values.get(i);
+					if (existing != null) {
+						grown.insert(table.keys[i], existing);
+					}
+				}
+				table = grown;
+			}
+			table.insert(key, value);
+			size++;
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Spreads nearby coordinates across the table (the finalizer of MurmurHash3)
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private static class Table<V> {
+		private final long[] keys;
+		private final AtomicReferenceArray<V> values;
+
+		private Table(int capacity) {
+			this.keys = new long[capacity];
+			this.values = new AtomicReferenceArray<>(capacity);
+		}
+
+		// Only called with the lock held, for keys that are not in the table
+		private void insert(long key, V value) {
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (values.get(i) != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values.set(i, value);
+		}
+	}
+}
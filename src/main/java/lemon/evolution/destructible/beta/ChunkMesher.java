@@ -0,0 +1,33 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Extracts the surface (where the scalar crosses the threshold) of a chunk's grid
+ */
+public interface ChunkMesher {
+	public default MarchingCubeMesh generateMesh() {
+		return generateMesh(1);
+	}
+
+	/**
+	 * Meshes every step-th sample of the grid, for a coarser level of detail.
+	 * Cell coordinates (in triangle coords and prenormal hashes) are in units of step samples.
+	 *
+	 * @param step a divisor of the number of cells along each axis
+	 */
+	public MarchingCubeMesh generateMesh(int step);
+
+	/**
+	 * Meshes in up to the given number of fork/join tasks, for chunks where latency matters more than throughput.
+	 * Must give the same mesh as {@link #generateMesh(int)}; meshers that cannot split their work just mesh serially.
+	 */
+	public default MarchingCubeMesh generateMesh(int step, int slabs) {
+		return generateMesh(step);
+	}
+
+	/**
+	 * Largest distance (in the mesh's coordinates) from the grid's border of the vertices on the mesh's open edges
+	 */
+	public default float maxBorderDistance(int step) {
+		return 0f;
+	}
+}
@@ -0,0 +1,112 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Boxes that lie entirely inside the solid terrain of a chunk, used as occluders.
+ * <p>
+ * The chunk is split into blocks of {@value #BLOCK_SIZE} voxels; a block is solid when every sample on and inside it
+ * is above the surface threshold, so the surface can never cut through it. Solid blocks are greedily merged into
+ * boxes, stored as (minX, minY, minZ, maxX, maxY, maxZ) in voxel coordinates relative to the chunk.
+ */
+public record ChunkOccluders(int[] boxes) {
+	public static final int BLOCK_SIZE = 4;
+	public static final ChunkOccluders EMPTY = new ChunkOccluders(new int[0]);
+
+	/**
+	 * @param scalars a chunk's samples, whose size is a multiple of {@value #BLOCK_SIZE}
+	 */
+	public static ChunkOccluders of(float[][][] scalars, float threshold) {
+		int size = scalars.length;
+		int blocks = size / BLOCK_SIZE;
+		var solid = new boolean[blocks][blocks][blocks];
+		int numSolid = 0;
+		for (int i = 0; i < blocks; i++) {
+			for (int j = 0; j < blocks; j++) {
+				for (int k = 0; k < blocks; k++) {
+					if (isSolid(scalars, threshold, i, j, k)) {
+						solid[i][j][k] = true;
+						numSolid++;
+					}
+				}
+			}
+		}
+		if (numSolid == 0) {
+			return EMPTY;
+		}
+		var boxes = new int[numSolid * 6];
+		int numBoxes = 0;
+		for (int j = 0; j < blocks; j++) {
+			for (int k = 0; k < blocks; k++) {
+				for (int i = 0; i < blocks; i++) {
+					if (!solid[i][j][k]) {
+						continue;
+					}
+					// Grow along x, then z, then y while every block in the grown face is solid
+					int maxI = i;
+					while (maxI + 1 < blocks && solid[maxI + 1][j][k]) {
+						maxI++;
+					}
+					int maxK = k;
+					while (maxK + 1 < blocks && isFilled(solid, i, maxI, j, j, maxK + 1, maxK + 1)) {
+						maxK++;
+					}
+					int maxJ = j;
+					while (maxJ + 1 < blocks && isFilled(solid, i, maxI, maxJ + 1, maxJ + 1, k, maxK)) {
+						maxJ++;
+					}
+					for (int a = i; a <= maxI; a++) {
+						for (int b = j; b <= maxJ; b++) {
+							for (int c = k; c <= maxK; c++) {
+								solid[a][b][c] = false;
+							}
+						}
+					}
+					boxes[numBoxes * 6] = i * BLOCK_SIZE;
+					boxes[numBoxes * 6 + 1] = j * BLOCK_SIZE;
+					boxes[numBoxes * 6 + 2] = k * BLOCK_SIZE;
+					boxes[numBoxes * 6 + 3] = blockEnd(maxI, size);
+					boxes[numBoxes * 6 + 4] = blockEnd(maxJ, size);
+					boxes[numBoxes * 6 + 5] = blockEnd(maxK, size);
+					numBoxes++;
+				}
+			}
+		}
+		var trimmed = new int[numBoxes * 6];
+		System.arraycopy(boxes, 0, trimmed, 0, trimmed.length);
+		return new ChunkOccluders(trimmed);
+	}
+
+	// The last block stops at the last sample owned by this chunk
+	private static int blockEnd(int block, int size) {
+		return Math.min((block + 1) * BLOCK_SIZE, size - 1);
+	}
+
+	private static boolean isSolid(float[][][] scalars, float threshold, int blockX, int blockY, int blockZ) {
+		for (int i = blockX * BLOCK_SIZE; i <= blockEnd(blockX, scalars.length); i++) {
+			for (int j = blockY * BLOCK_SIZE; j <= blockEnd(blockY, scalars.length); j++) {
+				for (int k = blockZ * BLOCK_SIZE; k <= blockEnd(blockZ, scalars.length); k++) {
+					if (scalars[i][j][k] <= threshold) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isFilled(boolean[][][] solid, int minI, int maxI, int minJ, int maxJ, int minK, int maxK) {
+		for (int i = minI; i <= maxI; i++) {
+			for (int j = minJ; j <= maxJ; j++) {
+				for (int k = minK; k <= maxK; k++) {
+					if (!solid[i][j][k]) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	public int numBoxes() {
+		return boxes.length / 6;
+	}
+}
@@ -0,0 +1,214 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.time.LatencyHistogram;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Schedules the {@link PipelineNode}s of every chunk in a terrain and keeps per-stage counters.
+ * <p>
+ * Latencies are in nanoseconds. The wait latency of a stage runs from its request until its job starts
+ * (including waiting on dependencies), and the edit latency runs from an edit being submitted
+ * until the stage publishes a result that includes it.
+ */
+public class ChunkPipeline {
+	private static final PipelineStage[] STAGES = PipelineStage.values();
+	private final TerrainExecutor executor;
+	private final Executor[] executors = new Executor[STAGES.length];
+	private final LongAdder[] scheduled = new LongAdder[STAGES.length];
+	private final LongAdder[] published = new LongAdder[STAGES.length];
+	private final LongAdder[] coalesced = new LongAdder[STAGES.length];
+	private final LongAdder[] stale = new LongAdder[STAGES.length];
+	private final LongAdder[] failed = new LongAdder[STAGES.length];
+	private final AtomicInteger[] inFlight = new AtomicInteger[STAGES.length];
+	private final LatencyHistogram[] waitLatency = new LatencyHistogram[STAGES.length];
+	private final LatencyHistogram[] runLatency = new LatencyHistogram[STAGES.length];
+	private final LatencyHistogram[] editLatency = new LatencyHistogram[STAGES.length];
+	private final LongAdder batchedEdits = new LongAdder();
+	private final LongAdder editBatches = new LongAdder();
+
+	public ChunkPipeline(TerrainExecutor executor, Executor generationExecutor, Executor mainThreadExecutor) {
+		this.executor = executor;
+		for (var stage : STAGES) {
+			executors[stage.ordinal()] = switch (stage) {
+				case DATA -> generationExecutor;
+				case OCCLUDERS, MESH -> executor.executor(TerrainStage.MESH);
+				case COLLISION -> executor.executor(TerrainStage.COLLISION);
+				case MODEL -> executor.executor(TerrainStage.MODEL);
+				case NORMALS -> executor.executor(TerrainStage.NORMALS);
+				case DRAWABLE_DATA, LOD_DRAWABLE_DATA -> executor.executor(TerrainStage.DRAWABLE_DATA);
+				case DRAWABLE -> mainThreadExecutor;
+			};
+			scheduled[stage.ordinal()] = new LongAdder();
+			published[stage.ordinal()] = new LongAdder();
+			coalesced[stage.ordinal()] = new LongAdder();
+			stale[stage.ordinal()] = new LongAdder();
+			failed[stage.ordinal()] = new LongAdder();
+			inFlight[stage.ordinal()] = new AtomicInteger();
+			waitLatency[stage.ordinal()] = new LatencyHistogram();
+			runLatency[stage.ordinal()] = new LatencyHistogram();
+			editLatency[stage.ordinal()] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * The job is given the previously published value (or null), and may return it again to keep edits made in place
+	 */
+	public <T> PipelineNode<T> newNode(Object owner, PipelineStage stage,
+									   Supplier<List<PipelineNode<?>>> dependencies, UnaryOperator<T> job) {
+		return newNode(owner, stage, executors[stage.ordinal()], dependencies, job);
+	}
+
+	/**
+	 * Creates a node whose jobs run on the given executor instead of the stage's executor
+	 */
+	public <T> PipelineNode<T> newNode(Object owner, PipelineStage stage, Executor executor,
+									   Supplier<List<PipelineNode<?>>> dependencies, UnaryOperator<T> job) {
+		return new PipelineNode<>(this, stage, owner, executor, dependencies, job);
+	}
+
+	/**
+	 * Runs an edit off the render thread, ahead of meshing work
+	 */
+	public void edit(Runnable edit) {
+		executor.execute(TerrainStage.EDIT, edit);
+	}
+
+	void onEditBatch(int edits) {
+		batchedEdits.add(edits);
+		editBatches.increment();
+	}
+
+	void onScheduled(PipelineStage stage) {
+		scheduled[stage.ordinal()].increment();
+		inFlight[stage.ordinal()].incrementAndGet();
+	}
+
+	void onStarted(PipelineStage stage, long waitNanos) {
+		waitLatency[stage.ordinal()].record(waitNanos);
+	}
+
+	void onFinished(PipelineStage stage, long runNanos) {
+		runLatency[stage.ordinal()].record(runNanos);
+		inFlight[stage.ordinal()].decrementAndGet();
+	}
+
+	// The job stays in flight, since it is retried
+	void onFailed(PipelineStage stage, long runNanos) {
+		runLatency[stage.ordinal()].record(runNanos);
+		failed[stage.ordinal()].increment();
+	}
+
+	void onEditPublished(PipelineStage stage, long editNanos) {
+		editLatency[stage.ordinal()].record(editNanos);
+	}
+
+	void onPublished(PipelineStage stage) {
+		published[stage.ordinal()].increment();
+	}
+
+	void onCoalesced(PipelineStage stage) {
+		coalesced[stage.ordinal()].increment();
+	}
+
+	void onStale(PipelineStage stage) {
+		stale[stage.ordinal()].increment();
+	}
+
+	public long scheduledCount(PipelineStage stage) {
+		return scheduled[stage.ordinal()].sum();
+	}
+
+	public long publishedCount(PipelineStage stage) {
+		return published[stage.ordinal()].sum();
+	}
+
+	/**
+	 * Invalidations that landed on a node that was already waiting for a rebuild
+	 */
+	public long coalescedCount(PipelineStage stage) {
+		return coalesced[stage.ordinal()].sum();
+	}
+
+	/**
+	 * Results that were computed from an older version than the one already published
+	 */
+	public long staleCount(PipelineStage stage) {
+		return stale[stage.ordinal()].sum();
+	}
+
+	/**
+	 * Jobs that threw, each of which is retried
+	 */
+	public long failedCount(PipelineStage stage) {
+		return failed[stage.ordinal()].sum();
+	}
+
+	/**
+	 * Jobs that have been scheduled but have not finished, including those waiting on dependencies
+	 */
+	public int inFlight(PipelineStage stage) {
+		return inFlight[stage.ordinal()].get();
+	}
+
+	public int inFlight() {
+		int sum = 0;
+		for (var counter : inFlight) {
+			sum += counter.get();
+		}
+		return sum;
+	}
+
+	/**
+	 * Edits that have been applied, counting each of a batch's edits
+	 */
+	public long batchedEditCount() {
+		return batchedEdits.sum();
+	}
+
+	/**
+	 * Batches of edits that have been applied, each as one new version of its chunk's data
+	 */
+	public long editBatchCount() {
+		return editBatches.sum();
+	}
+
+	/**
+	 * Edits that were applied along with an earlier edit to the same chunk instead of invalidating (and remeshing) it again
+	 */
+	public long savedRemeshCount() {
+		return batchedEditCount() - editBatchCount();
+	}
+
+	public LatencyHistogram waitLatency(PipelineStage stage) {
+		return waitLatency[stage.ordinal()];
+	}
+
+	public LatencyHistogram runLatency(PipelineStage stage) {
+		return runLatency[stage.ordinal()];
+	}
+
+	public LatencyHistogram editLatency(PipelineStage stage) {
+		return editLatency[stage.ordinal()];
+	}
+
+	/**
+	 * Time from submitting an edit until a drawable that includes it has been uploaded
+	 */
+	public LatencyHistogram editToVisibleLatency() {
+		return editLatency(PipelineStage.DRAWABLE);
+	}
+
+	public void resetLatencies() {
+		for (var stage : STAGES) {
+			waitLatency[stage.ordinal()].reset();
+			runLatency[stage.ordinal()].reset();
+			editLatency[stage.ordinal()].reset();
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Camera;
+import lemon.engine.math.InterpolatedCameraByTime;
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Requests chunks ahead of where the camera and projectiles are heading, so that they have been meshed by the time
+ * they are drawn. Paths are extrapolated for {@link TerrainSettings#prefetchTicks()} ticks, and the chunks around
+ * them are requested soonest first, at most {@link TerrainSettings#prefetchBudget()} per frame.
+ * Each chunk's level of detail is predicted from its distance to where the camera will be when the path gets there,
+ * so that only the level the renderer will pick is meshed. Only used on the main thread.
+ * <p>
+ * A prefetched chunk is a hit if it is first drawn at the predicted level and that level's drawable was ready,
+ * and a miss otherwise (it was drawn as a hole, or at another level); prefetched chunks that are not drawn
+ * within twice the horizon expire.
+ */
+public class ChunkPrefetcher {
+	private final Terrain terrain;
+	private final LodPredictor lodPredictor;
+	private final BiConsumer<TerrainChunk, Integer> onRequested;
+	private final List<Candidate> candidates = new ArrayList<>();
+	private final Map<TerrainChunk, Prefetch> prefetched = new HashMap<>();
+	private Vector3D lastCameraPosition = null;
+	private double ticks = 0; // ticks flushed so far, so that expiry does not depend on the frame rate
+	private long requestCount = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long mispredictedCount = 0;
+	private long expiredCount = 0;
+
+	/**
+	 * Always prefetches the full resolution level
+	 */
+	public ChunkPrefetcher(Terrain terrain) {
+		this(terrain, (chunk, viewpoint) -> 0, (chunk, lod) -> {});
+	}
+
+	/**
+	 * @param onRequested called with each chunk and level that is requested, so the renderer can free it if it is not drawn
+	 */
+	public ChunkPrefetcher(Terrain terrain, LodPredictor lodPredictor, BiConsumer<TerrainChunk, Integer> onRequested) {
+		this.terrain = terrain;
+		this.lodPredictor = lodPredictor;
+		this.onRequested = onRequested;
+	}
+
+	/**
+	 * Extrapolates the camera from its movement since the last frame, and heads for the destination of a camera
+	 * that is still interpolating to another one
+	 */
+	public void prefetchCamera(Camera camera) {
+		var position = camera.position();
+		if (lastCameraPosition != null) {
+			// The camera is on its own path, so each chunk is seen from where the path enters it
+			addPath(position, position.subtract(lastCameraPosition), Vector3D.ZERO, 1f, true);
+		}
+		lastCameraPosition = position;
+		if (camera instanceof InterpolatedCameraByTime interpolated && !interpolated.done()) {
+			var destination = interpolated.to().position();
+			addChunksAround(destination, 0, destination);
+		}
+	}
+
+	/**
+	 * @param velocity distance moved per tick
+	 * @param acceleration change in velocity per tick, such as gravity
+	 * @param dt ticks per step of the extrapolation
+	 */
+	public void prefetchPath(Vector3D position, Vector3D velocity, Vector3D acceleration, float dt) {
+		addPath(position, velocity, acceleration, dt, false);
+	}
+
+	// Paths other than the camera's are seen from where the camera is now
+	private void addPath(Vector3D position, Vector3D velocity, Vector3D acceleration, float dt, boolean followedByCamera) {
+		var camera = lastCameraPosition == null ? position : lastCameraPosition;
+		int steps = (int) Math.ceil(terrain.settings().prefetchTicks() / dt);
+		float x = position.x();
+		float y = position.y();
+		float z = position.z();
+		float velocityX = velocity.x();
+		float velocityY = velocity.y();
+		float velocityZ = velocity.z();
+		int lastChunkX = terrain.getChunkX(x);
+		int lastChunkY = terrain.getChunkY(y);
+		int lastChunkZ = terrain.getChunkZ(z);
+		for (int i = 1; i <= steps; i++) {
+			x += velocityX * dt;
+			y += velocityY * dt;
+			z += velocityZ * dt;
+			velocityX += acceleration.x() * dt;
+			velocityY += acceleration.y() * dt;
+			velocityZ += acceleration.z() * dt;
+			int chunkX = terrain.getChunkX(x);
+			int chunkY = terrain.getChunkY(y);
+			int chunkZ = terrain.getChunkZ(z);
+			// Only the chunks the path enters, since the ones around the current chunk are already being drawn
+			if (chunkX != lastChunkX || chunkY != lastChunkY || chunkZ != lastChunkZ) {
+				addChunksAround(chunkX, chunkY, chunkZ, i * dt, followedByCamera ? Vector3D.of(x, y, z) : camera);
+				lastChunkX = chunkX;
+				lastChunkY = chunkY;
+				lastChunkZ = chunkZ;
+			}
+		}
+	}
+
+	private void addChunksAround(Vector3D position, float ticks, Vector3D viewpoint) {
+		addChunksAround(terrain.getChunkX(position.x()), terrain.getChunkY(position.y()), terrain.getChunkZ(position.z()), ticks, viewpoint);
+	}
+
+	private void addChunksAround(int chunkX, int chunkY, int chunkZ, float ticks, Vector3D viewpoint) {
+		for (int i = -1; i <= 1; i++) {
+			for (int j = -1; j <= 1; j++) {
+				for (int k = -1; k <= 1; k++) {
+					candidates.add(new Candidate(chunkX + i, chunkY + j, chunkZ + k, ticks, i * i + j * j + k * k, viewpoint));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Requests the candidates added this frame that are not meshed yet, soonest first and within the budget
+	 *
+	 * @param dt ticks since the last flush
+	 */
+	public void flush(float dt) {
+		ticks += dt;
+		double expireBefore = ticks - 2.0 * terrain.settings().prefetchTicks();
+		prefetched.values().removeIf(prefetch -> {
+			if (prefetch.ticks() < expireBefore) {
+				expiredCount++;
+				return true;
+			}
+			return false;
+		});
+		candidates.sort(Comparator.comparingDouble(Candidate::ticks).thenComparingInt(Candidate::distanceSquared));
+		int budget = terrain.settings().prefetchBudget();
+		for (var candidate : candidates) {
+			if (budget == 0) {
+				break;
+			}
+			var chunk = terrain.getChunk(candidate.chunkX(), candidate.chunkY(), candidate.chunkZ());
+			if (prefetched.containsKey(chunk)) {
+				continue;
+			}
+			int lod = lodPredictor.predict(chunk, candidate.viewpoint());
+			var drawable = chunk.drawable(lod);
+			if (drawable.getValue().isPresent()) {
+				continue;
+			}
+			drawable.request();
+			onRequested.accept(chunk, lod);
+			prefetched.put(chunk, new Prefetch(ticks, lod));
+			requestCount++;
+			budget--;
+		}
+		candidates.clear();
+	}
+
+	/**
+	 * Called by the renderer for every chunk it draws, with the level it draws it at and whether that level's drawable was ready
+	 */
+	public void onDrawn(TerrainChunk chunk, int lod, boolean ready) {
+		if (prefetched.isEmpty()) {
+			return;
+		}
+		var prefetch = prefetched.remove(chunk);
+		if (prefetch == null) {
+			return;
+		}
+		if (prefetch.lod() != lod) {
+			mispredictedCount++;
+			missCount++;
+		} else if (ready) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+	}
+
+	public long requestCount() {
+		return requestCount;
+	}
+
+	public long hitCount() {
+		return hitCount;
+	}
+
+	public long missCount() {
+		return missCount;
+	}
+
+	/**
+	 * Misses where the chunk was drawn at another level than the one prefetched
+	 */
+	public long mispredictedCount() {
+		return mispredictedCount;
+	}
+
+	public long expiredCount() {
+		return expiredCount;
+	}
+
+	/**
+	 * Hits over prefetched chunks that have been drawn, or 0 if none have
+	 */
+	public float hitRate() {
+		long drawn = hitCount + missCount;
+		return drawn == 0 ? 0f : hitCount / (float) drawn;
+	}
+
+	@FunctionalInterface
+	public interface LodPredictor {
+		/**
+		 * Level of detail the renderer would pick for the chunk when the camera is at the viewpoint
+		 */
+		public int predict(TerrainChunk chunk, Vector3D viewpoint);
+	}
+
+	// Distance in chunks from the chunk on the path, so that chunks on the path go before the ones around it
+	private record Candidate(int chunkX, int chunkY, int chunkZ, float ticks, int distanceSquared, Vector3D viewpoint) {}
+
+	private record Prefetch(double ticks, int lod) {}
+}
@@ -0,0 +1,123 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.MutableVector3D;
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Render-only mesh of a chunk at a coarser level of detail.
+ * <p>
+ * Normals come from the mesh's own faces rather than {@link PreNormals}, so a level never waits on its neighbors.
+ * Open edges on the chunk's border get a skirt pushed into the terrain along the normals, which hides the cracks
+ * where the border does not line up with a neighbor meshed at another level.
+ */
+public record LodMesh(int[] indices, Vector3D[] vertices, Vector3D[] normals, float[][] textureWeights, int skirtTriangles) {
+	private static final float BORDER_EPSILON = 1e-4f;
+
+	/**
+	 * @param size length of the chunk along each axis, in the mesh's coordinates
+	 * @param skirtDepth how far skirts extend into the terrain, in the mesh's coordinates
+	 */
+	public static LodMesh of(MarchingCubeMesh mesh, float size, float skirtDepth) {
+		return of(mesh, size, 0f, skirtDepth);
+	}
+
+	/**
+	 * @param maxBorderDistance how far from the chunk's border the open edges to skirt may be (see {@link ChunkMesher#maxBorderDistance(int)})
+	 */
+	public static LodMesh of(MarchingCubeMesh mesh, float size, float maxBorderDistance, float skirtDepth) {
+		var vertices = mesh.vertices();
+		var indices = mesh.indices();
+		var normals = new MutableVector3D[vertices.length];
+		for (int i = 0; i < normals.length; i++) {
+			normals[i] = MutableVector3D.ofZero();
+		}
+		// Unnormalized cross products weigh each face by its area
+		for (int i = 0; i < indices.length; i += 3) {
+			var a = vertices[indices[i]];
+			var normal = vertices[indices[i + 2]].subtract(a).crossProduct(vertices[indices[i + 1]].subtract(a));
+			normals[indices[i]].add(normal);
+			normals[indices[i + 1]].add(normal);
+			normals[indices[i + 2]].add(normal);
+		}
+		var newVertices = new ArrayList<Vector3D>(List.of(vertices));
+		var newNormals = new ArrayList<Vector3D>(vertices.length);
+		var newTextureWeights = new ArrayList<float[]>(List.of(mesh.textureWeights()));
+		for (var mutableNormal : normals) {
+			var normal = mutableNormal.asImmutable();
+			newNormals.add(normal.isZero() ? Vector3D.ZERO : normal.normalize());
+		}
+		// Edges used by a single triangle are open
+		Map<Long, Integer> edgeCounts = new HashMap<>();
+		for (int i = 0; i < indices.length; i += 3) {
+			for (int j = 0; j < 3; j++) {
+				edgeCounts.merge(edgeKey(indices[i + j], indices[i + (j + 1) % 3]), 1, Integer::sum);
+			}
+		}
+		var newIndices = new ArrayList<Integer>(indices.length);
+		for (int index : indices) {
+			newIndices.add(index);
+		}
+		Map<Integer, Integer> skirtVertices = new HashMap<>();
+		int skirtTriangles = 0;
+		for (int i = 0; i < indices.length; i += 3) {
+			for (int j = 0; j < 3; j++) {
+				int a = indices[i + j];
+				int b = indices[i + (j + 1) % 3];
+				if (edgeCounts.get(edgeKey(a, b)) != 1 || !onSameBorder(vertices[a], vertices[b], size, maxBorderDistance + BORDER_EPSILON)) {
+					continue;
+				}
+				int skirtA = skirtVertices.computeIfAbsent(a, index ->
+						addSkirtVertex(index, skirtDepth, newVertices, newNormals, newTextureWeights));
+				int skirtB = skirtVertices.computeIfAbsent(b, index ->
+						addSkirtVertex(index, skirtDepth, newVertices, newNormals, newTextureWeights));
+				// Both windings, since a skirt may be seen from either side
+				addTriangle(newIndices, a, b, skirtB);
+				addTriangle(newIndices, a, skirtB, skirtA);
+				addTriangle(newIndices, a, skirtB, b);
+				addTriangle(newIndices, a, skirtA, skirtB);
+				skirtTriangles += 4;
+			}
+		}
+		return new LodMesh(newIndices.stream().mapToInt(Integer::intValue).toArray(),
+				newVertices.toArray(Vector3D[]::new), newNormals.toArray(Vector3D[]::new),
+				newTextureWeights.toArray(float[][]::new), skirtTriangles);
+	}
+
+	private static int addSkirtVertex(int index, float skirtDepth, List<Vector3D> vertices, List<Vector3D> normals, List<float[]> textureWeights) {
+		var normal = normals.get(index);
+		vertices.add(vertices.get(index).subtract(normal.multiply(skirtDepth)));
+		normals.add(normal);
+		textureWeights.add(textureWeights.get(index));
+		return vertices.size() - 1;
+	}
+
+	private static void addTriangle(List<Integer> indices, int a, int b, int c) {
+		indices.add(a);
+		indices.add(b);
+		indices.add(c);
+	}
+
+	private static long edgeKey(int a, int b) {
+		return (((long) Math.min(a, b)) << 32) | Math.max(a, b);
+	}
+
+	private static boolean onSameBorder(Vector3D a, Vector3D b, float size, float tolerance) {
+		return onSameBorder(a.x(), b.x(), size, tolerance)
+				|| onSameBorder(a.y(), b.y(), size, tolerance)
+				|| onSameBorder(a.z(), b.z(), size, tolerance);
+	}
+
+	private static boolean onSameBorder(float a, float b, float size, float tolerance) {
+		return (Math.abs(a) < tolerance && Math.abs(b) < tolerance)
+				|| (Math.abs(a - size) < tolerance && Math.abs(b - size) < tolerance);
+	}
+
+	public int triangleCount() {
+		return indices.length / 3;
+	}
+}
@@ -6,8 +6,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 
-public class MarchingCube {
+public class MarchingCube implements ChunkMesher {
 	private final float[] offsets; // [offsetX, offsetY, offsetZ]
 	private final float[] strides; // [strideX, strideY, strideZ]
 	private final float threshold;
@@ -26,18 +27,70 @@ public class MarchingCube {
 		};
 	}
 
-	public MarchingCubeMesh generateMesh() {
-		List<Integer> indices = new ArrayList<>();
-		List<Vector3D> vertices = new ArrayList<>();
-		List<float[]> textureWeights = new ArrayList<>();
-		List<Integer> prenormalHashes = new ArrayList<>();
+	/**
+	 * Edge hashes are in units of step samples, like the other cell coordinates
+	 */
+	@Override
+	public MarchingCubeMesh generateMesh(int step) {
+		return generateSlab(step, 0, (grid.getSizeX() - 1) / step).toMesh();
+	}
+
+	/**
+	 * Meshes slabs of cells along x as separate fork/join tasks, then merges them in order.
+	 * The result is identical to {@link #generateMesh(int)}: vertices on the plane between two slabs are kept
+	 * from the lower slab, which is also where the serial mesher first creates them.
+	 * <p>
+	 * Slabs are only forked to idle workers of the calling pool. In a busy pool they would queue behind other
+	 * jobs, and the worker joining them could end up running unrelated long work in the meantime.
+	 */
+	@Override
+	public MarchingCubeMesh generateMesh(int step, int slabs) {
+		return generateSlabs(step, forkableSlabs(slabs));
+	}
+
+	MarchingCubeMesh generateSlabs(int step, int slabs) {
+		int cellsX = (grid.getSizeX() - 1) / step;
+		slabs = Math.min(slabs, cellsX);
+		if (slabs <= 1) {
+			return generateMesh(step);
+		}
+		var tasks = new ArrayList<ForkJoinTask<Slab>>(slabs);
+		for (int i = 0; i < slabs; i++) {
+			int fromX = cellsX * i / slabs;
+			int toX = cellsX * (i + 1) / slabs;
+			tasks.add(ForkJoinTask.adapt(() -> generateSlab(step, fromX, toX)));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		var merged = tasks.get(0).join();
+		for (int i = 1; i < slabs; i++) {
+			merged.append(tasks.get(i).join());
+		}
+		return merged.toMesh();
+	}
+
+	/**
+	 * The calling task's slab plus one for each idle worker, or just the one outside of a fork/join pool
+	 * or while the pool has work waiting
+	 */
+	static int forkableSlabs(int slabs) {
+		var pool = ForkJoinTask.getPool();
+		if (pool == null || pool.hasQueuedSubmissions() || ForkJoinTask.getQueuedTaskCount() > 0) {
+			return 1;
+		}
+		int idleWorkers = pool.getParallelism() - pool.getActiveThreadCount();
+		return Math.max(1, Math.min(slabs, 1 + idleWorkers));
+	}
+
+	private Slab generateSlab(int step, int fromX, int toX) {
+		var slab = new Slab(fromX, toX);
 		Map<Long, Integer> edgeIndices = new HashMap<>();
-		List<TripleIndex> triangleCoords = new ArrayList<>();
 		int[] vectorIndices = new int[12];
-		for (int i = 0; i < grid.getSizeX() - 1; i++) {
-			for (int j = 0; j < grid.getSizeY() - 1; j++) {
-				for (int k = 0; k < grid.getSizeZ() - 1; k++) {
-					int index = getIndex(i, j, k);
+		int cellsY = (grid.getSizeY() - 1) / step;
+		int cellsZ = (grid.getSizeZ() - 1) / step;
+		for (int i = fromX; i < toX; i++) {
+			for (int j = 0; j < cellsY; j++) {
+				for (int k = 0; k < cellsZ; k++) {
+					int index = getIndex(i * step, j * step, k * step, step);
 					int edges = MarchingCubeConstants.EDGE_TABLE[index];
 					for (int l = 0; l < 12; l++) {
 						if (((edges >> l) & 0b1) == 1) {
@@ -52,43 +105,41 @@ public class MarchingCube {
 							int finalL = l;
 							vectorIndices[l] = edgeIndices.computeIfAbsent(hashEdgeIndex(x, y, z, w), hashed -> {
 								int[] o = MarchingCubeConstants.INTERPOLATE_OFFSETS[finalL];
-								var vertexA = Vector3D.of(offsets[0] + strides[0] * (finalI + o[0]),
-										offsets[1] + strides[1] * (finalJ + o[1]), offsets[2] + strides[2] * (finalK + o[2]));
-								var vertexB = Vector3D.of(offsets[0] + strides[0] * (finalI + o[3]),
-										offsets[1] + strides[1] * (finalJ + o[4]), offsets[2] + strides[2] * (finalK + o[5]));
-								var aX = finalI + o[0];
-								var aY = finalJ + o[1];
-								var aZ = finalK + o[2];
-								var bX = finalI + o[3];
-								var bY = finalJ + o[4];
-								var bZ = finalK + o[5];
+								var aX = (finalI + o[0]) * step;
+								var aY = (finalJ + o[1]) * step;
+								var aZ = (finalK + o[2]) * step;
+								var bX = (finalI + o[3]) * step;
+								var bY = (finalJ + o[4]) * step;
+								var bZ = (finalK + o[5]) * step;
+								var vertexA = Vector3D.of(offsets[0] + strides[0] * aX,
+										offsets[1] + strides[1] * aY, offsets[2] + strides[2] * aZ);
+								var vertexB = Vector3D.of(offsets[0] + strides[0] * bX,
+										offsets[1] + strides[1] * bY, offsets[2] + strides[2] * bZ);
 								var dataA = grid.get(aX, aY, aZ);
 								var dataB = grid.get(bX, bY, bZ);
 								var weightsA = textureWeightsGrid.get(aX, aY, aZ);
 								var weightsB = textureWeightsGrid.get(bX, bY, bZ);
-								var edgeIndex = vertices.size();
+								var edgeIndex = slab.vertices.size();
 								float percentage = (threshold - dataA) / (dataB - dataA);
-								vertices.add(interpolate(vertexA, vertexB, percentage));
-								textureWeights.add(interpolate(weightsA, weightsB, percentage));
-								prenormalHashes.add(PreNormals.hash(x, y, z, w));
+								slab.vertices.add(interpolate(vertexA, vertexB, percentage));
+								slab.textureWeights.add(interpolate(weightsA, weightsB, percentage));
+								slab.prenormalHashes.add(PreNormals.hash(x, y, z, w));
+								slab.edgeHashes.add(hashed);
 								return edgeIndex;
 							});
 						}
 					}
 					int[] triangles = MarchingCubeConstants.TRIANGLE_TABLE[index];
 					for (int l = 0; l < triangles.length; l += 3) {
-						indices.add(vectorIndices[triangles[l]]);
-						indices.add(vectorIndices[triangles[l + 1]]);
-						indices.add(vectorIndices[triangles[l + 2]]);
-						triangleCoords.add(new TripleIndex(i, j, k));
+						slab.indices.add(vectorIndices[triangles[l]]);
+						slab.indices.add(vectorIndices[triangles[l + 1]]);
+						slab.indices.add(vectorIndices[triangles[l + 2]]);
+						slab.triangleCoords.add(new TripleIndex(i, j, k));
 					}
 				}
 			}
 		}
-		return new MarchingCubeMesh(indices.stream().mapToInt(Integer::intValue).toArray(),
-				vertices.toArray(Vector3D[]::new), textureWeights.toArray(float[][]::new),
-				prenormalHashes.stream().mapToInt(Integer::intValue).toArray(),
-				triangleCoords.toArray(TripleIndex[]::new));
+		return slab;
 	}
 
 	private long hashEdgeIndex(long x, long y, long z, long w) {
@@ -109,32 +160,84 @@ public class MarchingCube {
 		return result;
 	}
 
-	private int getIndex(int i, int j, int k) {
+	private int getIndex(int i, int j, int k, int step) {
 		int index = 0;
 		if (grid.get(i, j, k) <= threshold) {
 			index |= 1;
 		}
-		if (grid.get(i + 1, j, k) <= threshold) {
+		if (grid.get(i + step, j, k) <= threshold) {
 			index |= 2;
 		}
-		if (grid.get(i + 1, j, k + 1) <= threshold) {
+		if (grid.get(i + step, j, k + step) <= threshold) {
 			index |= 4;
 		}
-		if (grid.get(i, j, k + 1) <= threshold) {
+		if (grid.get(i, j, k + step) <= threshold) {
 			index |= 8;
 		}
-		if (grid.get(i, j + 1, k) <= threshold) {
+		if (grid.get(i, j + step, k) <= threshold) {
 			index |= 16;
 		}
-		if (grid.get(i + 1, j + 1, k) <= threshold) {
+		if (grid.get(i + step, j + step, k) <= threshold) {
 			index |= 32;
 		}
-		if (grid.get(i + 1, j + 1, k + 1) <= threshold) {
+		if (grid.get(i + step, j + step, k + step) <= threshold) {
 			index |= 64;
 		}
-		if (grid.get(i, j + 1, k + 1) <= threshold) {
+		if (grid.get(i, j + step, k + step) <= threshold) {
 			index |= 128;
 		}
 		return index;
 	}
+
+	// Cells [fromX, toX) of a mesh, with the edge that each vertex was created on
+	private static class Slab {
+		private final int fromX;
+		private int toX;
+		private final List<Integer> indices = new ArrayList<>();
+		private final List<Vector3D> vertices = new ArrayList<>();
+		private final List<float[]> textureWeights = new ArrayList<>();
+		private final List<Integer> prenormalHashes = new ArrayList<>();
+		private final List<Long> edgeHashes = new ArrayList<>();
+		private final List<TripleIndex> triangleCoords = new ArrayList<>();
+
+		private Slab(int fromX, int toX) {
+			this.fromX = fromX;
+			this.toX = toX;
+		}
+
+		// Appends the next slab, reusing this slab's vertices on the plane they share
+		private void append(Slab next) {
+			Map<Long, Integer> sharedIndices = new HashMap<>();
+			for (int i = 0; i < vertices.size(); i++) {
+				if (edgeHashes.get(i) >>> 48 == toX) {
+					sharedIndices.put(edgeHashes.get(i), i);
+				}
+			}
+			var remapped = new int[next.vertices.size()];
+			for (int i = 0; i < remapped.length; i++) {
+				var shared = next.edgeHashes.get(i) >>> 48 == next.fromX ? sharedIndices.get(next.edgeHashes.get(i)) : null;
+				if (shared != null) {
+					remapped[i] = shared;
+				} else {
+					remapped[i] = vertices.size();
+					vertices.add(next.vertices.get(i));
+					textureWeights.add(next.textureWeights.get(i));
+					prenormalHashes.add(next.prenormalHashes.get(i));
+					edgeHashes.add(next.edgeHashes.get(i));
+				}
+			}
+			for (int index : next.indices) {
+				indices.add(remapped[index]);
+			}
+			triangleCoords.addAll(next.triangleCoords);
+			toX = next.toX;
+		}
+
+		private MarchingCubeMesh toMesh() {
+			return new MarchingCubeMesh(indices.stream().mapToInt(Integer::intValue).toArray(),
+					vertices.toArray(Vector3D[]::new), textureWeights.toArray(float[][]::new),
+					prenormalHashes.stream().mapToInt(Integer::intValue).toArray(),
+					triangleCoords.toArray(TripleIndex[]::new));
+		}
+	}
 }
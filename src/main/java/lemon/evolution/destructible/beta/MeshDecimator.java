@@ -0,0 +1,446 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Simplifies render meshes by collapsing edges in order of quadric error (Garland-Heckbert), so that large flat
+ * regions keep few triangles while curved ones keep most of theirs.
+ * <p>
+ * A vertex is only ever moved onto a neighboring vertex, so every remaining vertex keeps its original attributes.
+ * Locked vertices never move, and neither do vertices on open or shared-by-more-than-two edges,
+ * which keeps chunk borders (and anything stitched to them) exactly as they were meshed.
+ */
+public class MeshDecimator {
+	private static final float MIN_NORMAL_DOT = 0.2f;
+	private static final float EPSILON = 1e-12f;
+	// Bounds the work per collapse, since flat regions would otherwise all collapse into a few hub vertices
+	private static final int MAX_VALENCE = 16;
+	private final Vector3D[] vertices;
+	private final float[] positions; // vertices, flattened for the hot loops
+	private final float[][] attributes;
+	private final float attributeTolerance;
+	private final float maxError;
+	private final int[] triangles;
+	private final boolean[] removed;
+	private final int[][] vertexTriangles; // triangles of each vertex, in the first valences[vertex] elements
+	private final int[] valences;
+	private final double[] quadrics;
+	private final boolean[] pinned;
+	private final int[] marks;
+	private int mark = 0;
+	private final int[] neighbors;
+	// Binary min-heap of vertices, keyed by the cheapest collapse of each one onto a neighbor
+	private final int[] heap;
+	private final int[] heapPositions;
+	private int heapSize = 0;
+	private final int[] targets;
+	private final double[] errors;
+	private final float[] lengths;
+
+	private MeshDecimator(int[] indices, Vector3D[] vertices, float[][] attributes, float attributeTolerance,
+						  IntPredicate locked, float maxError) {
+		this.vertices = vertices;
+		this.attributes = attributes;
+		this.attributeTolerance = attributeTolerance;
+		this.maxError = maxError;
+		int numVertices = vertices.length;
+		int numTriangles = indices.length / 3;
+		this.positions = new float[numVertices * 3];
+		for (int i = 0; i < numVertices; i++) {
+			positions[i * 3] = vertices[i].x();
+			positions[i * 3 + 1] = vertices[i].y();
+			positions[i * 3 + 2] = vertices[i].z();
+		}
+		this.triangles = Arrays.copyOf(indices, numTriangles * 3);
+		this.removed = new boolean[numTriangles];
+		this.vertexTriangles = new int[numVertices][];
+		this.valences = new int[numVertices];
+		for (int i = 0; i < numTriangles * 3; i++) {
+			valences[triangles[i]]++;
+		}
+		for (int i = 0; i < numVertices; i++) {
+			vertexTriangles[i] = new int[Math.max(valences[i], MAX_VALENCE)];
+			valences[i] = 0;
+		}
+		this.quadrics = new double[numVertices * 10];
+		for (int i = 0; i < numTriangles; i++) {
+			for (int j = 0; j < 3; j++) {
+				int vertex = triangles[i * 3 + j];
+				vertexTriangles[vertex][valences[vertex]++] = i;
+			}
+			addPlaneQuadric(i);
+		}
+		this.pinned = new boolean[numVertices];
+		for (int i = 0; i < numVertices; i++) {
+			pinned[i] = locked.test(i);
+		}
+		pinNonManifoldEdges();
+		this.marks = new int[numVertices];
+		this.neighbors = new int[numVertices];
+		this.heap = new int[numVertices];
+		this.heapPositions = new int[numVertices];
+		Arrays.fill(heapPositions, -1);
+		this.targets = new int[numVertices];
+		this.errors = new double[numVertices];
+		this.lengths = new float[numVertices];
+	}
+
+	/**
+	 * @param attributes per-vertex attributes that must match (within the tolerance) for two vertices to merge
+	 * @param maxError largest sum of squared distances from a merged vertex to the original planes around it
+	 */
+	public static DecimatedMesh decimate(int[] indices, Vector3D[] vertices, float[][] attributes, float attributeTolerance,
+										 IntPredicate locked, float maxError) {
+		return new MeshDecimator(indices, vertices, attributes, attributeTolerance, locked, maxError).decimate();
+	}
+
+	private DecimatedMesh decimate() {
+		int numTriangles = removed.length;
+		for (int i = 0; i < vertices.length; i++) {
+			offer(i, false);
+		}
+		int remaining = numTriangles;
+		while (heapSize > 0) {
+			int from = heap[0];
+			int to = targets[from];
+			removeFromHeap(from);
+			if (valences[from] + valences[to] - 2 > MAX_VALENCE || !canCollapse(from, to)) {
+				// Either the topology was never checked, or a neighboring collapse has changed it since
+				offer(from, true);
+				continue;
+			}
+			var fromTriangles = vertexTriangles[from];
+			for (int i = 0; i < valences[from]; i++) {
+				int triangle = fromTriangles[i];
+				if (hasVertex(triangle, to)) {
+					removed[triangle] = true;
+					remaining--;
+					for (int j = 0; j < 3; j++) {
+						int vertex = triangles[triangle * 3 + j];
+						if (vertex != from) {
+							removeTriangle(vertex, triangle);
+						}
+					}
+				} else {
+					for (int j = 0; j < 3; j++) {
+						if (triangles[triangle * 3 + j] == from) {
+							triangles[triangle * 3 + j] = to;
+						}
+					}
+					vertexTriangles[to][valences[to]++] = triangle;
+				}
+			}
+			valences[from] = 0;
+			for (int j = 0; j < 10; j++) {
+				quadrics[to * 10 + j] += quadrics[from * 10 + j];
+			}
+			// Costs only change around the merged vertex, since its quadric and neighbors have
+			offer(to, false);
+			var toNeighbors = Arrays.copyOf(neighbors, collectNeighbors(to));
+			for (int neighbor : toNeighbors) {
+				offer(neighbor, false);
+			}
+		}
+		// Compact the vertices that are still referenced, keeping their original order
+		int numVertices = vertices.length;
+		var newVertexIndices = new int[numVertices];
+		var vertexMap = new int[numVertices];
+		int numNewVertices = 0;
+		for (int i = 0; i < numVertices; i++) {
+			if (valences[i] > 0) {
+				newVertexIndices[i] = numNewVertices;
+				vertexMap[numNewVertices++] = i;
+			}
+		}
+		var newIndices = new int[remaining * 3];
+		int n = 0;
+		for (int i = 0; i < numTriangles; i++) {
+			if (!removed[i]) {
+				for (int j = 0; j < 3; j++) {
+					newIndices[n++] = newVertexIndices[triangles[i * 3 + j]];
+				}
+			}
+		}
+		return new DecimatedMesh(newIndices, Arrays.copyOf(vertexMap, numNewVertices), numTriangles);
+	}
+
+	private void removeTriangle(int vertex, int triangle) {
+		var vertexTriangles = this.vertexTriangles[vertex];
+		for (int i = 0; i < valences[vertex]; i++) {
+			if (vertexTriangles[i] == triangle) {
+				vertexTriangles[i] = vertexTriangles[--valences[vertex]];
+				return;
+			}
+		}
+	}
+
+	// Vertices on edges that do not have exactly two triangles are on the mesh's boundary (or a seam)
+	private void pinNonManifoldEdges() {
+		Map<Long, Integer> edgeCounts = new HashMap<>();
+		for (int i = 0; i < removed.length; i++) {
+			for (int j = 0; j < 3; j++) {
+				edgeCounts.merge(edgeKey(triangles[i * 3 + j], triangles[i * 3 + (j + 1) % 3]), 1, Integer::sum);
+			}
+		}
+		int numVertices = vertices.length;
+		edgeCounts.forEach((key, count) -> {
+			if (count != 2) {
+				pinned[(int) (key / numVertices)] = true;
+				pinned[(int) (key % numVertices)] = true;
+			}
+		});
+	}
+
+	// Packed low rather than shifted apart, since Long.hashCode() would fold (a << 32) | b into a ^ b
+	private long edgeKey(int a, int b) {
+		return ((long) Math.min(a, b)) * vertices.length + Math.max(a, b);
+	}
+
+	/**
+	 * Queues the cheapest collapse of the vertex onto a neighbor, replacing any it had queued before.
+	 * Most offers go unchecked, since the topology is checked again when polled anyway;
+	 * only after that check fails are the candidates checked up front, so that a blocked one is skipped.
+	 */
+	private void offer(int from, boolean checked) {
+		removeFromHeap(from);
+		if (pinned[from] || valences[from] == 0) {
+			return;
+		}
+		int numNeighbors = collectNeighbors(from);
+		var candidates = Arrays.copyOf(neighbors, numNeighbors);
+		while (true) {
+			int best = -1;
+			double bestError = Double.MAX_VALUE;
+			float bestLength = Float.MAX_VALUE;
+			for (int i = 0; i < numNeighbors; i++) {
+				int to = candidates[i];
+				if (to < 0) {
+					continue;
+				}
+				double error = evaluate(from, to) + evaluate(to, to);
+				float length = lengthSquared(from, to);
+				if (error < bestError || (error == bestError && length < bestLength)) {
+					best = i;
+					bestError = error;
+					bestLength = length;
+				}
+			}
+			if (best < 0 || bestError > maxError) {
+				return;
+			}
+			int to = candidates[best];
+			if (valences[from] + valences[to] - 2 <= MAX_VALENCE && attributesMatch(from, to) && (!checked || canCollapse(from, to))) {
+				targets[from] = to;
+				errors[from] = bestError;
+				lengths[from] = bestLength;
+				heap[heapSize] = from;
+				heapPositions[from] = heapSize++;
+				siftUp(heapPositions[from]);
+				return;
+			}
+			candidates[best] = -1;
+		}
+	}
+
+	private void removeFromHeap(int vertex) {
+		int position = heapPositions[vertex];
+		if (position < 0) {
+			return;
+		}
+		heapPositions[vertex] = -1;
+		int last = heap[--heapSize];
+		if (last != vertex) {
+			heap[position] = last;
+			heapPositions[last] = position;
+			siftDown(siftUp(position));
+		}
+	}
+
+	private int siftUp(int position) {
+		int vertex = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!isCheaper(vertex, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			heapPositions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = vertex;
+		heapPositions[vertex] = position;
+		return position;
+	}
+
+	private void siftDown(int position) {
+		int vertex = heap[position];
+		while (position * 2 + 1 < heapSize) {
+			int child = position * 2 + 1;
+			if (child + 1 < heapSize && isCheaper(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isCheaper(heap[child], vertex)) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapPositions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = vertex;
+		heapPositions[vertex] = position;
+	}
+
+	// Among equal errors, shorter edges go first, which keeps the remaining triangles evenly sized
+	private boolean isCheaper(int a, int b) {
+		return errors[a] < errors[b] || (errors[a] == errors[b] && lengths[a] < lengths[b]);
+	}
+
+	private int collectNeighbors(int vertex) {
+		int neighborMark = ++mark;
+		int numNeighbors = 0;
+		var vertexTriangles = this.vertexTriangles[vertex];
+		for (int i = 0; i < valences[vertex]; i++) {
+			for (int j = 0; j < 3; j++) {
+				int neighbor = triangles[vertexTriangles[i] * 3 + j];
+				if (neighbor != vertex && marks[neighbor] != neighborMark) {
+					marks[neighbor] = neighborMark;
+					neighbors[numNeighbors++] = neighbor;
+				}
+			}
+		}
+		return numNeighbors;
+	}
+
+	private float lengthSquared(int a, int b) {
+		float dx = positions[a * 3] - positions[b * 3];
+		float dy = positions[a * 3 + 1] - positions[b * 3 + 1];
+		float dz = positions[a * 3 + 2] - positions[b * 3 + 2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	// v^T Q v, for the symmetric 4x4 quadric stored as its upper triangle
+	private double evaluate(int vertex, int position) {
+		int i = vertex * 10;
+		double x = positions[position * 3];
+		double y = positions[position * 3 + 1];
+		double z = positions[position * 3 + 2];
+		return quadrics[i] * x * x + 2 * quadrics[i + 1] * x * y + 2 * quadrics[i + 2] * x * z + 2 * quadrics[i + 3] * x
+				+ quadrics[i + 4] * y * y + 2 * quadrics[i + 5] * y * z + 2 * quadrics[i + 6] * y
+				+ quadrics[i + 7] * z * z + 2 * quadrics[i + 8] * z + quadrics[i + 9];
+	}
+
+	private void addPlaneQuadric(int triangle) {
+		var a = vertices[triangles[triangle * 3]];
+		var b = vertices[triangles[triangle * 3 + 1]];
+		var c = vertices[triangles[triangle * 3 + 2]];
+		var normal = b.subtract(a).crossProduct(c.subtract(a));
+		float length = normal.length();
+		if (length < EPSILON) {
+			return;
+		}
+		double nx = normal.x() / length;
+		double ny = normal.y() / length;
+		double nz = normal.z() / length;
+		double d = -(nx * a.x() + ny * a.y() + nz * a.z());
+		double[] plane = {nx * nx, nx * ny, nx * nz, nx * d, ny * ny, ny * nz, ny * d, nz * nz, nz * d, d * d};
+		for (int j = 0; j < 3; j++) {
+			int offset = triangles[triangle * 3 + j] * 10;
+			for (int k = 0; k < 10; k++) {
+				quadrics[offset + k] += plane[k];
+			}
+		}
+	}
+
+	private boolean attributesMatch(int a, int b) {
+		var attributesA = attributes[a];
+		var attributesB = attributes[b];
+		for (int i = 0; i < attributesA.length; i++) {
+			if (Math.abs(attributesA[i] - attributesB[i]) > attributeTolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean hasVertex(int triangle, int vertex) {
+		return triangles[triangle * 3] == vertex || triangles[triangle * 3 + 1] == vertex || triangles[triangle * 3 + 2] == vertex;
+	}
+
+	private boolean canCollapse(int from, int to) {
+		var fromTriangles = vertexTriangles[from];
+		// Link condition: the only neighbors shared by both ends are opposite the edge, or the mesh would pinch
+		int fromMark = ++mark;
+		int sharedTriangles = 0;
+		for (int i = 0; i < valences[from]; i++) {
+			int triangle = fromTriangles[i];
+			if (hasVertex(triangle, to)) {
+				sharedTriangles++;
+			}
+			for (int j = 0; j < 3; j++) {
+				marks[triangles[triangle * 3 + j]] = fromMark;
+			}
+		}
+		if (sharedTriangles != 2) {
+			return false;
+		}
+		int sharedMark = ++mark;
+		int sharedNeighbors = 0;
+		var toTriangles = vertexTriangles[to];
+		for (int i = 0; i < valences[to]; i++) {
+			int triangle = toTriangles[i];
+			for (int j = 0; j < 3; j++) {
+				int vertex = triangles[triangle * 3 + j];
+				if (vertex != to && vertex != from && marks[vertex] == fromMark) {
+					marks[vertex] = sharedMark;
+					sharedNeighbors++;
+				}
+			}
+		}
+		if (sharedNeighbors != 2) {
+			return false;
+		}
+		// No remaining triangle may flip or degenerate
+		for (int i = 0; i < valences[from]; i++) {
+			int triangle = fromTriangles[i];
+			if (!hasVertex(triangle, to) && flips(triangle, from, to)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean flips(int triangle, int from, int to) {
+		var a = vertices[triangles[triangle * 3]];
+		var b = vertices[triangles[triangle * 3 + 1]];
+		var c = vertices[triangles[triangle * 3 + 2]];
+		float beforeX = (b.y() - a.y()) * (c.z() - a.z()) - (b.z() - a.z()) * (c.y() - a.y());
+		float beforeY = (b.z() - a.z()) * (c.x() - a.x()) - (b.x() - a.x()) * (c.z() - a.z());
+		float beforeZ = (b.x() - a.x()) * (c.y() - a.y()) - (b.y() - a.y()) * (c.x() - a.x());
+		var target = vertices[to];
+		a = triangles[triangle * 3] == from ? target : a;
+		b = triangles[triangle * 3 + 1] == from ? target : b;
+		c = triangles[triangle * 3 + 2] == from ? target : c;
+		float afterX = (b.y() - a.y()) * (c.z() - a.z()) - (b.z() - a.z()) * (c.y() - a.y());
+		float afterY = (b.z() - a.z()) * (c.x() - a.x()) - (b.x() - a.x()) * (c.z() - a.z());
+		float afterZ = (b.x() - a.x()) * (c.y() - a.y()) - (b.y() - a.y()) * (c.x() - a.x());
+		float beforeLength = (float) Math.sqrt(beforeX * beforeX + beforeY * beforeY + beforeZ * beforeZ);
+		float afterLength = (float) Math.sqrt(afterX * afterX + afterY * afterY + afterZ * afterZ);
+		return afterLength < EPSILON
+				|| beforeX * afterX + beforeY * afterY + beforeZ * afterZ < MIN_NORMAL_DOT * beforeLength * afterLength;
+	}
+
+	/**
+	 * @param vertexMap original index of each remaining vertex, in the order the new indices refer to them
+	 * @param originalTriangles number of triangles before decimation
+	 */
+	public record DecimatedMesh(int[] indices, int[] vertexMap, int originalTriangles) {
+		public int triangleCount() {
+			return indices.length / 3;
+		}
+	}
+}
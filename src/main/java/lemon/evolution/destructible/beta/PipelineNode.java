@@ -0,0 +1,355 @@
+package lemon.evolution.destructible.beta;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One stage of one chunk in the {@link ChunkPipeline}.
+ * <p>
+ * Every invalidation bumps the node's version (and the versions of everything downstream of it).
+ * A node is current when its published result was computed at its latest version.
+ * Requesting a node that is not current counts down its dependencies and then runs its job once;
+ * invalidations and requests that arrive while it is already scheduled are coalesced into that run.
+ * A job that throws is retried with exponential backoff, keeping the node scheduled until one succeeds.
+ */
+public class PipelineNode<T> {
+	private static final Logger logger = Logger.getLogger(PipelineNode.class.getName());
+	private static final int IDLE = 0;
+	private static final int WAITING = 1;
+	private static final int RUNNING = 2;
+	private static final long RETRY_DELAY_MILLIS = 10;
+	private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+	private final ChunkPipeline pipeline;
+	private final PipelineStage stage;
+	private final Object owner;
+	private final Executor executor;
+	private final Supplier<List<PipelineNode<?>>> dependencySupplier;
+	private final UnaryOperator<T> job;
+	private volatile List<PipelineNode<?>> dependencies;
+	private final List<PipelineNode<?>> dependers = new CopyOnWriteArrayList<>();
+	private final AtomicLong version = new AtomicLong(1);
+	private final AtomicInteger state = new AtomicInteger(IDLE);
+	private final AtomicInteger pendingDependencies = new AtomicInteger();
+	private final Queue<Consumer<? super T>> whenCalculated = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final Consumer<Object> onDependencyReady = value -> this.onDependencyReady();
+	private final Runnable runJob = this::runJob;
+	private volatile Versioned<T> result = null;
+	private volatile boolean requestedWhileBusy = false;
+	private volatile long scheduledAt;
+	private int failures = 0; // consecutive failed jobs, only touched by the running job
+	private final AtomicLong editedAt = new AtomicLong(); // oldest edit not yet included in a current result, or 0
+
+	PipelineNode(ChunkPipeline pipeline, PipelineStage stage, Object owner, Executor executor,
+				 Supplier<List<PipelineNode<?>>> dependencySupplier, UnaryOperator<T> job) {
+		this.pipeline = pipeline;
+		this.stage = stage;
+		this.owner = owner;
+		this.executor = executor;
+		this.dependencySupplier = dependencySupplier;
+		this.job = job;
+	}
+
+	private List<PipelineNode<?>> dependencies() {
+		var dependencies = this.dependencies;
+		if (dependencies == null) {
+			synchronized (this) {
+				dependencies = this.dependencies;
+				if (dependencies == null) {
+					dependencies = List.copyOf(dependencySupplier.get());
+					for (var dependency : dependencies) {
+						dependency.dependers.add(this);
+					}
+					this.dependencies = dependencies;
+				}
+			}
+		}
+		return dependencies;
+	}
+
+	public boolean isCurrent() {
+		var result = this.result;
+		return result != null && result.version() == version.get();
+	}
+
+	public void request() {
+		if (isCurrent()) {
+			return;
+		}
+		if (!state.compareAndSet(IDLE, WAITING)) {
+			requestedWhileBusy = true;
+			return;
+		}
+		if (isCurrent()) {
+			// Another job finished between the check and the transition
+			state.set(IDLE);
+			drain();
+			return;
+		}
+		scheduledAt = System.nanoTime();
+		pipeline.onScheduled(stage);
+		requestDependencies();
+	}
+
+	private void requestDependencies() {
+		var dependencies = dependencies();
+		pendingDependencies.set(dependencies.size() + 1);
+		for (var dependency : dependencies) {
+			dependency.request(onDependencyReady);
+		}
+		onDependencyReady();
+	}
+
+	/**
+	 * Requests an update (if needed) and calls the callback when a result is published
+	 */
+	public void request(Consumer<? super T> whenCalculated) {
+		this.whenCalculated.add(whenCalculated);
+		request();
+		// If nothing is scheduled, the listener may have been added after the last drain
+		if (state.get() == IDLE && result != null && this.whenCalculated.remove(whenCalculated)) {
+			whenCalculated.accept(result.value());
+		}
+	}
+
+	private void onDependencyReady() {
+		if (pendingDependencies.decrementAndGet() == 0) {
+			state.set(RUNNING);
+			executor.execute(runJob);
+		}
+	}
+
+	private void runJob() {
+		long jobVersion = version.get();
+		// A dependency may have been invalidated after it was ready, in which case its value is stale.
+		// Any later invalidation of a dependency also bumps this node past jobVersion.
+		for (var dependency : dependencies()) {
+			if (!dependency.isCurrent()) {
+				state.set(WAITING);
+				requestDependencies();
+				return;
+			}
+		}
+		long startedAt = System.nanoTime();
+		pipeline.onStarted(stage, startedAt - scheduledAt);
+		requestedWhileBusy = false;
+		try {
+			var previous = result;
+			publish(job.apply(previous == null ? null : previous.value()), jobVersion);
+		} catch (RuntimeException e) {
+			pipeline.onFailed(stage, System.nanoTime() - startedAt);
+			long delay = Math.min(MAX_RETRY_DELAY_MILLIS, RETRY_DELAY_MILLIS << Math.min(failures, 20));
+			failures++;
+			logger.log(failures == 1 ? Level.SEVERE : Level.WARNING,
+					String.format("Failed to compute %s (attempt %d), retrying in %dms", this, failures, delay), e);
+			// Stays scheduled, so that the listeners (waiting dependers and queued edits) run once a retry succeeds
+			state.set(WAITING);
+			CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::requestDependencies);
+			return;
+		}
+		failures = 0;
+		pipeline.onFinished(stage, System.nanoTime() - startedAt);
+		state.set(IDLE);
+		drain();
+		if (version.get() != jobVersion && (requestedWhileBusy || !whenCalculated.isEmpty())) {
+			request();
+		}
+	}
+
+	private void publish(T value, long jobVersion) {
+		writeLock.lock();
+		try {
+			var current = result;
+			if (current != null && current.version() > jobVersion) {
+				pipeline.onStale(stage);
+				return;
+			}
+			result = new Versioned<>(value, jobVersion);
+		} finally {
+			writeLock.unlock();
+		}
+		pipeline.onPublished(stage);
+		long editedAt = this.editedAt.get();
+		if (editedAt != 0 && isCurrent() && this.editedAt.compareAndSet(editedAt, 0)) {
+			pipeline.onEditPublished(stage, System.nanoTime() - editedAt);
+		}
+	}
+
+	private void drain() {
+		var value = result.value();
+		Consumer<? super T> listener;
+		while ((listener = whenCalculated.poll()) != null) {
+			listener.accept(value);
+		}
+	}
+
+	/**
+	 * Mutates the published value in place once it exists and publishes it as a new version,
+	 * invalidating everything downstream.
+	 */
+	public void update(Consumer<? super T> updater) {
+		update(updater, System.nanoTime());
+	}
+
+	/**
+	 * @param editedAt {@link System#nanoTime()} when the edit was submitted, used for the edit latency
+	 */
+	public void update(Consumer<? super T> updater, long editedAt) {
+		request(value -> {
+			writeLock.lock();
+			try {
+				var current = result.value();
+				updater.accept(current);
+				result = new Versioned<>(current, version.incrementAndGet());
+			} finally {
+				writeLock.unlock();
+			}
+			pipeline.onEditPublished(stage, System.nanoTime() - editedAt);
+			invalidateDependers(editedAt);
+		});
+	}
+
+	/**
+	 * Publishes the editor's result as a new version once a value exists, invalidating everything downstream.
+	 * The editor is given the published value and must not mutate it (readers may still hold it),
+	 * so it returns a modified copy instead.
+	 *
+	 * @param editedAt {@link System#nanoTime()} when the edit was submitted, used for the edit latency
+	 */
+	public void replace(UnaryOperator<T> editor, long editedAt) {
+		request(value -> {
+			writeLock.lock();
+			try {
+				result = new Versioned<>(editor.apply(result.value()), version.incrementAndGet());
+			} finally {
+				writeLock.unlock();
+			}
+			pipeline.onEditPublished(stage, System.nanoTime() - editedAt);
+			invalidateDependers(editedAt);
+		});
+	}
+
+	/**
+	 * Drops the published value, unless a job is scheduled, and passes it to the disposer.
+	 * The next request computes it again from scratch (the job is given null).
+	 *
+	 * @return whether a value was dropped
+	 */
+	public boolean evict(Consumer<? super T> disposer) {
+		if (state.get() != IDLE) {
+			return false;
+		}
+		Versioned<T> evicted;
+		writeLock.lock();
+		try {
+			evicted = result;
+			result = null;
+		} finally {
+			writeLock.unlock();
+		}
+		editedAt.set(0);
+		if (evicted == null) {
+			return false;
+		}
+		disposer.accept(evicted.value());
+		return true;
+	}
+
+	public void invalidate() {
+		markInvalid(0);
+		invalidateDependers(0);
+	}
+
+	private void markInvalid(long editedAt) {
+		// Only a node with a result to replace (or a job on the way) publishes the edit; one that is first
+		// computed much later, like a level of detail that was never drawn, would time how long it went unused
+		if (result == null && state.get() == IDLE) {
+			this.editedAt.set(0);
+		} else if (editedAt != 0) {
+			this.editedAt.compareAndSet(0, editedAt);
+		}
+		// Always bump: a job that is already running read older inputs and must not become current
+		if (!isCurrent() && state.get() == IDLE) {
+			pipeline.onCoalesced(stage);
+		}
+		version.incrementAndGet();
+	}
+
+	private void invalidateDependers(long editedAt) {
+		if (dependers.isEmpty()) {
+			return;
+		}
+		Set<PipelineNode<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		var stack = new ArrayDeque<PipelineNode<?>>(dependers);
+		while (!stack.isEmpty()) {
+			var depender = stack.pop();
+			if (visited.add(depender)) {
+				depender.markInvalid(editedAt);
+				stack.addAll(depender.dependers);
+			}
+		}
+	}
+
+	public Optional<T> getValue() {
+		var result = this.result;
+		return result == null ? Optional.empty() : Optional.of(result.value());
+	}
+
+	public Optional<T> requestAndGetValue() {
+		request();
+		return getValue();
+	}
+
+	public T getValueOrThrow(Supplier<? extends RuntimeException> exceptionSupplier) {
+		var result = this.result;
+		if (result == null) {
+			throw exceptionSupplier.get();
+		}
+		return result.value();
+	}
+
+	public T getValueOrThrow() {
+		return getValueOrThrow(() -> new IllegalStateException(this + " has not been computed"));
+	}
+
+	/**
+	 * Version that the published value was computed at, or 0 if nothing has been published
+	 */
+	public long publishedVersion() {
+		var result = this.result;
+		return result == null ? 0 : result.version();
+	}
+
+	public long version() {
+		return version.get();
+	}
+
+	public PipelineStage stage() {
+		return stage;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PipelineNode[%s, %s, version=%d, published=%d]", owner, stage, version(), publishedVersion());
+	}
+
+	private record Versioned<T>(T value, long version) {}
+}
@@ -0,0 +1,16 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Products of the chunk pipeline, in dependency order
+ */
+public enum PipelineStage {
+	DATA,
+	OCCLUDERS,
+	MESH,
+	COLLISION,
+	MODEL,
+	NORMALS,
+	DRAWABLE_DATA,
+	LOD_DRAWABLE_DATA,
+	DRAWABLE
+}
@@ -1,18 +1,29 @@
 package lemon.evolution.destructible.beta;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public class SparseGrid3D<T> {
-    private final Map<Long, T> map = new HashMap<>();
+    private final Map<Long, T> map;
     private final long sizeA;
     private final long sizeB;
     private final long sizeC;
     private final int capacity;
     private final Supplier<T> defaultSupplier;
+    // Keys whose values are still shared with the grid this was copied from, and the copier that unshares them
+    private final Set<Long> shared;
+    private final UnaryOperator<T> copier;
 
     public SparseGrid3D(long sizeA, long sizeB, long sizeC, Supplier<T> defaultSupplier) {
+        this(sizeA, sizeB, sizeC, defaultSupplier, new HashMap<>(), Set.of(), UnaryOperator.identity());
+    }
+
+    private SparseGrid3D(long sizeA, long sizeB, long sizeC, Supplier<T> defaultSupplier,
+                         Map<Long, T> map, Set<Long> shared, UnaryOperator<T> copier) {
         // Check out of bounds
         try {
             this.capacity = Math.toIntExact(Math.multiplyExact(Math.multiplyExact(sizeA, sizeB), sizeC));
@@ -23,6 +34,17 @@ public class SparseGrid3D<T> {
         this.sizeB = sizeB;
         this.sizeC = sizeC;
         this.defaultSupplier = defaultSupplier;
+        this.map = map;
+        this.shared = shared;
+        this.copier = copier;
+    }
+
+    /**
+     * Copies the grid without copying its values: a value is only copied (with the copier)
+     * the first time it is computed in the copy, so this grid's values are never mutated through it
+     */
+    public SparseGrid3D<T> copyOnWrite(UnaryOperator<T> copier) {
+        return new SparseGrid3D<>(sizeA, sizeB, sizeC, defaultSupplier, new HashMap<>(map), new HashSet<>(map.keySet()), copier);
     }
 
     public T getOrDefault(int a, int b, int c, T defaultValue) {
@@ -30,7 +52,13 @@ public class SparseGrid3D<T> {
     }
 
     public T compute(int a, int b, int c) {
-        return map.computeIfAbsent(hash(a, b, c), key -> defaultSupplier.get());
+        long hashed = hash(a, b, c);
+        if (!shared.isEmpty() && shared.remove(hashed)) {
+            var copy = copier.apply(map.get(hashed));
+            map.put(hashed, copy);
+            return copy;
+        }
+        return map.computeIfAbsent(hashed, key -> defaultSupplier.get());
     }
 
     public long hash(int a, int b, int c) {
@@ -50,6 +78,9 @@ public class SparseGrid3D<T> {
 
     public void clear() {
         map.clear();
+        if (!shared.isEmpty()) {
+            shared.clear();
+        }
     }
 
     public int size() {
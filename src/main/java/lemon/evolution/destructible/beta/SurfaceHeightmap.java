@@ -0,0 +1,151 @@
+package lemon.evolution.destructible.beta;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Height of the top surface (the highest crossing from solid to air) of every column of samples, over the chunks
+ * whose data has been generated, with the texture that is heaviest there.
+ * <p>
+ * Each chunk's data is scanned once when it is generated and again when an edit to it is published,
+ * and only the heights of its column of chunks are recombined, so lookups never touch chunk data.
+ * Heights and textures are in samples and texture indices; {@link Terrain#surfaceHeight(float, float)} scales them.
+ */
+public class SurfaceHeightmap {
+	public static final float NO_SURFACE = Float.NEGATIVE_INFINITY;
+	public static final int NO_TEXTURE = -1;
+	// The top solid sample is the chunk's last, so the crossing depends on the bottom samples of the chunk above
+	private static final float SOLID_TO_TOP = Float.NaN;
+	private final int size;
+	private final ChunkMap<Column> columns = new ChunkMap<>();
+
+	public SurfaceHeightmap(int chunkSize) {
+		this.size = chunkSize;
+	}
+
+	/**
+	 * Rescans a chunk's data and recombines its column; called with data that is about to be published
+	 */
+	public void update(int chunkX, int chunkY, int chunkZ, TerrainChunkData data) {
+		var scan = scan(data);
+		var column = columns.computeIfAbsent(ChunkMap.pack(chunkX, 0, chunkZ), key -> new Column(size));
+		synchronized (column) {
+			column.scans.put(chunkY, scan);
+			column.combine(size);
+		}
+	}
+
+	/**
+	 * @return the height in samples, or {@link #NO_SURFACE} if no generated chunk has solid samples in the column
+	 */
+	public float get(int x, int z) {
+		var column = columns.get(ChunkMap.pack(Math.floorDiv(x, size), 0, Math.floorDiv(z, size)));
+		return column == null ? NO_SURFACE : column.combined.heights()[Math.floorMod(x, size) * size + Math.floorMod(z, size)];
+	}
+
+	/**
+	 * @return the texture with the most weight at the top solid sample, or {@link #NO_TEXTURE} if it has none
+	 */
+	public int getTexture(int x, int z) {
+		var column = columns.get(ChunkMap.pack(Math.floorDiv(x, size), 0, Math.floorDiv(z, size)));
+		return column == null ? NO_TEXTURE : column.combined.textures()[Math.floorMod(x, size) * size + Math.floorMod(z, size)];
+	}
+
+	/**
+	 * Number of times a column of chunks has changed, for callers that cache what they built from the heightmap
+	 */
+	public long version(int chunkX, int chunkZ) {
+		var column = columns.get(ChunkMap.pack(chunkX, 0, chunkZ));
+		return column == null ? 0 : column.combined.version();
+	}
+
+	private Scan scan(TerrainChunkData data) {
+		var scalars = data.scalars();
+		var heights = new float[size * size];
+		var bottoms = new float[size * size];
+		var tops = new float[size * size];
+		var textures = new int[size * size];
+		for (int i = 0; i < size; i++) {
+			for (int k = 0; k < size; k++) {
+				int index = i * size + k;
+				bottoms[index] = scalars[i][0][k];
+				tops[index] = scalars[i][size - 1][k];
+				heights[index] = NO_SURFACE;
+				textures[index] = NO_TEXTURE;
+				for (int j = size - 1; j >= 0; j--) {
+					float value = scalars[i][j][k];
+					if (value > 0f) {
+						heights[index] = j == size - 1 ? SOLID_TO_TOP : j + value / (value - scalars[i][j + 1][k]);
+						textures[index] = heaviest(data.textureWeights().getOrDefault(i, j, k, null));
+						break;
+					}
+				}
+			}
+		}
+		return new Scan(heights, bottoms, tops, textures);
+	}
+
+	private static int heaviest(float[] weights) {
+		if (weights == null) {
+			return NO_TEXTURE;
+		}
+		int texture = NO_TEXTURE;
+		float max = 0f;
+		for (int i = 0; i < weights.length; i++) {
+			if (weights[i] > max) {
+				max = weights[i];
+				texture = i;
+			}
+		}
+		return texture;
+	}
+
+	private record Scan(float[] heights, float[] bottoms, float[] tops, int[] textures) {}
+
+	private record Combined(float[] heights, int[] textures, long version) {}
+
+	private static class Column {
+		private final TreeMap<Integer, Scan> scans = new TreeMap<>();
+		// Replaced rather than mutated, so that lookups never see a half-combined column
+		private volatile Combined combined;
+
+		private Column(int size) {
+			var heights = new float[size * size];
+			var textures = new int[size * size];
+			Arrays.fill(heights, NO_SURFACE);
+			Arrays.fill(textures, NO_TEXTURE);
+			this.combined = new Combined(heights, textures, 0);
+		}
+
+		// Only called while holding the column's lock
+		private void combine(int size) {
+			var chunkYs = scans.descendingKeySet().stream().mapToInt(Integer::intValue).toArray();
+			var descending = scans.descendingMap().values().toArray(Scan[]::new);
+			var heights = new float[size * size];
+			var textures = new int[size * size];
+			Arrays.fill(heights, NO_SURFACE);
+			Arrays.fill(textures, NO_TEXTURE);
+			for (int index = 0; index < heights.length; index++) {
+				for (int i = 0; i < descending.length; i++) {
+					var scan = descending[i];
+					float height = scan.heights()[index];
+					if (height == NO_SURFACE) {
+						continue;
+					}
+					if (Float.isNaN(height)) {
+						// Without the chunk above, the top solid sample is the best guess
+						height = size - 1;
+						if (i > 0 && chunkYs[i - 1] == chunkYs[i] + 1) {
+							float value = scan.tops()[index];
+							height += value / (value - descending[i - 1].bottoms()[index]);
+						}
+					}
+					heights[index] = chunkYs[i] * size + height;
+					textures[index] = scan.textures()[index];
+					break;
+				}
+			}
+			this.combined = new Combined(heights, textures, combined.version() + 1);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Naive surface nets: one vertex per cell that the surface passes through (at the average of its edge crossings),
+ * and one quad per crossed edge joining the four cells around it.
+ * On the voxelized maps this meshes as many triangles as marching cubes, but a quarter as many slivers,
+ * so that far more of them can be decimated (see MesherBenchmark).
+ * <p>
+ * Vertices are in cells, not on edges, so the last layer of cells reads one step past the grid's upper bounds
+ * (into the next chunk). Each chunk only emits the quads of edges whose lowest cells are its own,
+ * which leaves the mesh open along its border where the neighbors continue it.
+ */
+public class SurfaceNets implements ChunkMesher {
+	// Marks prenormal hashes of cell vertices, after the three edge axes of marching cubes
+	public static final int PRENORMAL_W = 3;
+	private static final int[][] CORNER_OFFSETS = new int[8][];
+	private static final int[][] EDGE_CORNERS = new int[12][];
+
+	static {
+		int edge = 0;
+		for (int corner = 0; corner < 8; corner++) {
+			CORNER_OFFSETS[corner] = new int[] {corner & 1, (corner >> 1) & 1, (corner >> 2) & 1};
+			for (int axis = 0; axis < 3; axis++) {
+				if ((corner & (1 << axis)) == 0) {
+					EDGE_CORNERS[edge++] = new int[] {corner, corner | (1 << axis)};
+				}
+			}
+		}
+	}
+
+	private final float[] strides; // [strideX, strideY, strideZ]
+	private final float threshold;
+	private final BoundedScalarGrid3D grid;
+	private final BoundedGrid3D<float[]> textureWeightsGrid;
+
+	public SurfaceNets(BoundedScalarGrid3D grid, BoundedGrid3D<float[]> textureWeightsGrid, Vector3D size, float threshold) {
+		this.grid = grid;
+		this.textureWeightsGrid = textureWeightsGrid;
+		this.threshold = threshold;
+		this.strides = new float[] {
+				size.x() / grid.getSizeX(),
+				size.y() / grid.getSizeY(),
+				size.z() / grid.getSizeZ()
+		};
+	}
+
+	@Override
+	public MarchingCubeMesh generateMesh(int step) {
+		// Cells 0 to n - 1 are the chunk's own; cell n is the next chunk's cell 0
+		int[] cells = {(grid.getSizeX() - 1) / step + 1, (grid.getSizeY() - 1) / step + 1, (grid.getSizeZ() - 1) / step + 1};
+		int samplesY = cells[1] + 1;
+		int samplesZ = cells[2] + 1;
+		var samples = new float[(cells[0] + 1) * samplesY * samplesZ];
+		for (int i = 0; i <= cells[0]; i++) {
+			for (int j = 0; j <= cells[1]; j++) {
+				for (int k = 0; k <= cells[2]; k++) {
+					samples[(i * samplesY + j) * samplesZ + k] = grid.get(i * step, j * step, k * step);
+				}
+			}
+		}
+		List<Vector3D> vertices = new ArrayList<>();
+		List<float[]> textureWeights = new ArrayList<>();
+		List<Integer> prenormalHashes = new ArrayList<>();
+		var cellVertices = new int[cells[0] * cells[1] * cells[2]];
+		Arrays.fill(cellVertices, -1);
+		var corners = new float[8];
+		for (int i = 0; i < cells[0]; i++) {
+			for (int j = 0; j < cells[1]; j++) {
+				for (int k = 0; k < cells[2]; k++) {
+					int inside = 0;
+					for (int corner = 0; corner < 8; corner++) {
+						var offset = CORNER_OFFSETS[corner];
+						corners[corner] = samples[((i + offset[0]) * samplesY + j + offset[1]) * samplesZ + k + offset[2]];
+						if (corners[corner] > threshold) {
+							inside |= 1 << corner;
+						}
+					}
+					if (inside == 0 || inside == 0xFF) {
+						continue;
+					}
+					float x = 0f;
+					float y = 0f;
+					float z = 0f;
+					float[] weights = null;
+					int crossings = 0;
+					for (var edge : EDGE_CORNERS) {
+						int a = edge[0];
+						int b = edge[1];
+						if (((inside >> a) & 1) == ((inside >> b) & 1)) {
+							continue;
+						}
+						float percentage = (threshold - corners[a]) / (corners[b] - corners[a]);
+						var offsetA = CORNER_OFFSETS[a];
+						var offsetB = CORNER_OFFSETS[b];
+						x += offsetA[0] + (offsetB[0] - offsetA[0]) * percentage;
+						y += offsetA[1] + (offsetB[1] - offsetA[1]) * percentage;
+						z += offsetA[2] + (offsetB[2] - offsetA[2]) * percentage;
+						var weightsA = textureWeightsGrid.get((i + offsetA[0]) * step, (j + offsetA[1]) * step, (k + offsetA[2]) * step);
+						var weightsB = textureWeightsGrid.get((i + offsetB[0]) * step, (j + offsetB[1]) * step, (k + offsetB[2]) * step);
+						if (weights == null) {
+							weights = new float[weightsA.length];
+						}
+						for (int l = 0; l < weights.length; l++) {
+							weights[l] += weightsA[l] + (weightsB[l] - weightsA[l]) * percentage;
+						}
+						crossings++;
+					}
+					for (int l = 0; l < weights.length; l++) {
+						weights[l] /= crossings;
+					}
+					cellVertices[(i * cells[1] + j) * cells[2] + k] = vertices.size();
+					vertices.add(Vector3D.of(strides[0] * step * (i + x / crossings),
+							strides[1] * step * (j + y / crossings), strides[2] * step * (k + z / crossings)));
+					textureWeights.add(weights);
+					prenormalHashes.add(PreNormals.hash(i, j, k, PRENORMAL_W));
+				}
+			}
+		}
+		List<Integer> indices = new ArrayList<>();
+		List<TripleIndex> triangleCoords = new ArrayList<>();
+		var quad = new int[4];
+		var cell = new int[3];
+		for (int axis = 0; axis < 3; axis++) {
+			int axisU = (axis + 1) % 3;
+			int axisV = (axis + 2) % 3;
+			// An edge from sample p along the axis is surrounded by the cells p - u - v, p - v, p and p - u
+			for (int i = 0; i < cells[0]; i++) {
+				for (int j = 0; j < cells[1]; j++) {
+					for (int k = 0; k < cells[2]; k++) {
+						cell[0] = i;
+						cell[1] = j;
+						cell[2] = k;
+						if (cell[axis] == cells[axis] - 1 || cell[axisU] == 0 || cell[axisV] == 0) {
+							continue;
+						}
+						float a = samples[(i * samplesY + j) * samplesZ + k];
+						cell[axis]++;
+						float b = samples[(cell[0] * samplesY + cell[1]) * samplesZ + cell[2]];
+						cell[axis]--;
+						if ((a > threshold) == (b > threshold)) {
+							continue;
+						}
+						cell[axisU]--;
+						cell[axisV]--;
+						quad[0] = cellVertices[(cell[0] * cells[1] + cell[1]) * cells[2] + cell[2]];
+						var coords = new TripleIndex(cell[0], cell[1], cell[2]);
+						cell[axisU]++;
+						quad[1] = cellVertices[(cell[0] * cells[1] + cell[1]) * cells[2] + cell[2]];
+						cell[axisV]++;
+						quad[2] = cellVertices[(cell[0] * cells[1] + cell[1]) * cells[2] + cell[2]];
+						cell[axisU]--;
+						quad[3] = cellVertices[(cell[0] * cells[1] + cell[1]) * cells[2] + cell[2]];
+						if (a > threshold) {
+							// Wind the other way, so the quad faces out of the solid
+							int swap = quad[1];
+							quad[1] = quad[3];
+							quad[3] = swap;
+						}
+						// Split along the shorter diagonal, which keeps the quad's triangles closer to the surface
+						var vertex0 = vertices.get(quad[0]);
+						var vertex1 = vertices.get(quad[1]);
+						var vertex2 = vertices.get(quad[2]);
+						var vertex3 = vertices.get(quad[3]);
+						if (vertex0.subtract(vertex2).lengthSquared() <= vertex1.subtract(vertex3).lengthSquared()) {
+							addTriangle(indices, quad[0], quad[1], quad[2]);
+							addTriangle(indices, quad[0], quad[2], quad[3]);
+						} else {
+							addTriangle(indices, quad[1], quad[2], quad[3]);
+							addTriangle(indices, quad[1], quad[3], quad[0]);
+						}
+						triangleCoords.add(coords);
+						triangleCoords.add(coords);
+					}
+				}
+			}
+		}
+		return new MarchingCubeMesh(indices.stream().mapToInt(Integer::intValue).toArray(),
+				vertices.toArray(Vector3D[]::new), textureWeights.toArray(float[][]::new),
+				prenormalHashes.stream().mapToInt(Integer::intValue).toArray(),
+				triangleCoords.toArray(TripleIndex[]::new));
+	}
+
+	private static void addTriangle(List<Integer> indices, int a, int b, int c) {
+		indices.add(a);
+		indices.add(b);
+		indices.add(c);
+	}
+
+	/**
+	 * The open edges join vertices in the first or last layer of cells
+	 */
+	@Override
+	public float maxBorderDistance(int step) {
+		return step * Math.max(strides[0], Math.max(strides[1], strides[2]));
+	}
+}
@@ -4,41 +4,88 @@ import lemon.engine.math.MathUtil;
 import lemon.engine.math.Matrix;
 import lemon.engine.math.Triangle;
 import lemon.engine.math.Vector3D;
-import lemon.engine.toolbox.TaskQueue;
+import lemon.engine.draw.BufferArena;
 import lemon.engine.draw.Drawable;
-import lemon.engine.function.AbsoluteIntValue;
-import lemon.engine.function.SzudzikIntPair;
+import lemon.engine.toolbox.Disposable;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-public class Terrain {
-	private final Map<Long, TerrainChunk> chunks;
+public class Terrain implements Disposable {
+	private static final int VERTICES_PER_PAGE = 1 << 18;
+	private static final int INDICES_PER_PAGE = 1 << 20;
+	private final ChunkMap<TerrainChunk> chunks;
 	private final TerrainGenerator generator;
-	private final Executor poolExecutor;
 	private final Vector3D scalar;
-	private final TaskQueue updaters = TaskQueue.ofConcurrent();
+	private final UploadScheduler uploads;
+	private final TerrainExecutor executor;
+	private final ChunkPipeline pipeline;
+	private final BufferArena arena;
+	private final TerrainSettings settings;
+	private final int chunkSize;
+	private final int collisionCellSize;
+	private final SurfaceHeightmap heightmap;
+	private final Queue<TerrainChunk> editedChunks = new ConcurrentLinkedQueue<>();
 
-	public Terrain(TerrainGenerator generator, Executor poolExecutor, Vector3D scalar) {
-		this.chunks = new ConcurrentHashMap<>();
+	public Terrain(TerrainGenerator generator, TerrainExecutor executor, Vector3D scalar) {
+		this(generator, executor, scalar, UploadBudget.DEFAULT);
+	}
+
+	public Terrain(TerrainGenerator generator, TerrainExecutor executor, Vector3D scalar, UploadBudget uploadBudget) {
+		this(generator, executor, scalar, uploadBudget, TerrainSettings.DEFAULT);
+	}
+
+	public Terrain(TerrainGenerator generator, TerrainExecutor executor, Vector3D scalar, UploadBudget uploadBudget,
+				   TerrainSettings settings) {
+		int chunkSize = settings.chunkSize();
+		int collisionCellSize = settings.collisionCellSize();
+		// Every level of detail and occluder block must tile the chunk, and cell coordinates must fit in a byte
+		if (chunkSize <= 0 || chunkSize % (1 << (TerrainChunk.NUM_LODS - 1)) != 0
+				|| chunkSize % ChunkOccluders.BLOCK_SIZE != 0 || chunkSize > 252) {
+			throw new IllegalArgumentException(String.format("Invalid chunk size: %d", chunkSize));
+		}
+		if (collisionCellSize <= 0 || chunkSize % collisionCellSize != 0) {
+			throw new IllegalArgumentException(
+					String.format("Collision cell size %d does not divide chunk size %d", collisionCellSize, chunkSize));
+		}
+		this.settings = settings;
+		this.chunkSize = chunkSize;
+		this.collisionCellSize = collisionCellSize;
+		this.heightmap = new SurfaceHeightmap(chunkSize);
+		this.chunks = new ChunkMap<>();
 		this.generator = generator;
-		this.poolExecutor = poolExecutor;
 		this.scalar = scalar;
+		this.executor = executor;
+		this.uploads = new UploadScheduler(uploadBudget);
+		this.pipeline = new ChunkPipeline(executor, generator.executor(), uploads);
+		this.arena = new BufferArena(TerrainChunk.VERTEX_LAYOUT, VERTICES_PER_PAGE, INDICES_PER_PAGE);
+	}
+
+	public void flushForRendering(Vector3D cameraPosition) {
+		flushEdits();
+		uploads.flush(cameraPosition);
+	}
+
+	/**
+	 * Submits the edits made since the last flush, one batch per chunk
+	 */
+	public void flushEdits() {
+		TerrainChunk chunk;
+		while ((chunk = editedChunks.poll()) != null) {
+			chunk.flushEdits();
+		}
 	}
 
-	public void flushForRendering() {
-		var time = System.nanoTime();
-		updaters.run(() -> System.nanoTime() - time <= 10_000_000L);
+	void queueEdits(TerrainChunk chunk) {
+		editedChunks.add(chunk);
 	}
 
 	public void preloadChunk(int chunkX, int chunkY, int chunkZ) {
 		var chunk = getChunk(chunkX, chunkY, chunkZ);
 		chunk.data().request();
-		chunk.textureData().request();
 	}
 
 	public void preinitChunk(int chunkX, int chunkY, int chunkZ) {
@@ -49,33 +96,39 @@ public class Terrain {
 		return getChunk(chunkX, chunkY, chunkZ, hashChunkCoordinates(chunkX, chunkY, chunkZ));
 	}
 
+	/**
+	 * Returns the chunk if it has been created, or null; unlike {@link #getChunk(int, int, int)}, never creates it
+	 */
+	public TerrainChunk findChunk(int chunkX, int chunkY, int chunkZ) {
+		return chunks.get(hashChunkCoordinates(chunkX, chunkY, chunkZ));
+	}
+
 	public TerrainChunk getChunk(int chunkX, int chunkY, int chunkZ, long hashed) {
-		return chunks.computeIfAbsent(hashed, currentHashed -> {
-			int offsetX = chunkX * TerrainChunk.SIZE;
-			int offsetY = chunkY * TerrainChunk.SIZE;
-			int offsetZ = chunkZ * TerrainChunk.SIZE;
-			int subTerrainSize = TerrainChunk.SIZE + 1;
-			return new TerrainChunk(this, chunkX, chunkY, chunkZ,
-					getSubTerrain(offsetX, offsetY, offsetZ,
-							subTerrainSize, subTerrainSize, subTerrainSize),
-					getSubTerrainTextureWeights(offsetX, offsetY, offsetZ,
-							subTerrainSize, subTerrainSize, subTerrainSize),
-					generator, poolExecutor, updaters::add);
-		});
+		return chunks.computeIfAbsent(hashed, currentHashed -> new TerrainChunk(this, chunkX, chunkY, chunkZ, generator, pipeline));
 	}
 
 	public void drawOrQueue(int chunkX, int chunkY, int chunkZ, BiConsumer<Matrix, Drawable> drawer) {
-		TerrainChunk chunk = getChunk(chunkX, chunkY, chunkZ);
-		chunk.drawable().requestAndGetValue().ifPresent(
-				drawable -> drawer.accept(chunk.getTransformationMatrix(), drawable));
+		drawOrQueue(getChunk(chunkX, chunkY, chunkZ), drawer);
 	}
 
-	private BoundedScalarGrid3D getSubTerrain(int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
-		return BoundedScalarGrid3D.of((a, b, c) -> this.get(a + x, b + y, c + z), sizeX, sizeY, sizeZ);
+	public void drawOrQueue(TerrainChunk chunk, BiConsumer<Matrix, Drawable> drawer) {
+		drawOrQueue(chunk, 0, drawer);
 	}
 
-	private BoundedGrid3D<float[]> getSubTerrainTextureWeights(int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
-		return BoundedGrid3D.of((a, b, c) -> this.getTextureWeights(a + x, b + y, c + z), sizeX, sizeY, sizeZ);
+	/**
+	 * Until the level has been uploaded, draws the nearest level that has been (preferring finer levels)
+	 */
+	public void drawOrQueue(TerrainChunk chunk, int lod, BiConsumer<Matrix, Drawable> drawer) {
+		var drawable = chunk.drawable(lod).requestAndGetValue();
+		for (int i = 1; drawable.isEmpty() && i < TerrainChunk.NUM_LODS; i++) {
+			if (lod - i >= 0) {
+				drawable = chunk.drawable(lod - i).getValue();
+			}
+			if (drawable.isEmpty() && lod + i < TerrainChunk.NUM_LODS) {
+				drawable = chunk.drawable(lod + i).getValue();
+			}
+		}
+		drawable.ifPresent(value -> drawer.accept(chunk.getTransformationMatrix(), value));
 	}
 
 	public void forEachChunk(Vector3D point, float radius, Consumer<TerrainChunk> chunk) {
@@ -85,12 +138,12 @@ public class Terrain {
 		int ceilY = (int) Math.ceil((point.y() + radius) / scalar.y());
 		int floorZ = (int) Math.floor((point.z() - radius) / scalar.z());
 		int ceilZ = (int) Math.ceil((point.z() + radius) / scalar.z());
-		int floorChunkX = Math.floorDiv(floorX, TerrainChunk.SIZE);
-		int ceilChunkX = Math.floorDiv(ceilX, TerrainChunk.SIZE);
-		int floorChunkY = Math.floorDiv(floorY, TerrainChunk.SIZE);
-		int ceilChunkY = Math.floorDiv(ceilY, TerrainChunk.SIZE);
-		int floorChunkZ = Math.floorDiv(floorZ, TerrainChunk.SIZE);
-		int ceilChunkZ = Math.floorDiv(ceilZ, TerrainChunk.SIZE);
+		int floorChunkX = Math.floorDiv(floorX, chunkSize);
+		int ceilChunkX = Math.floorDiv(ceilX, chunkSize);
+		int floorChunkY = Math.floorDiv(floorY, chunkSize);
+		int ceilChunkY = Math.floorDiv(ceilY, chunkSize);
+		int floorChunkZ = Math.floorDiv(floorZ, chunkSize);
+		int ceilChunkZ = Math.floorDiv(ceilZ, chunkSize);
 		for (int i = floorChunkX; i <= ceilChunkX; i++) {
 			for (int j = floorChunkY; j <= ceilChunkY; j++) {
 				for (int k = floorChunkZ; k <= ceilChunkZ; k++) {
@@ -119,13 +172,13 @@ public class Terrain {
 		var originY = origin.y();
 		var originZ = origin.z();
 		var radiusSquared = radius * radius;
-		int offsetX = chunk.getChunkX() * TerrainChunk.SIZE;
-		int offsetY = chunk.getChunkY() * TerrainChunk.SIZE;
-		int offsetZ = chunk.getChunkZ() * TerrainChunk.SIZE;
+		int offsetX = chunk.getChunkX() * chunkSize;
+		int offsetY = chunk.getChunkY() * chunkSize;
+		int offsetZ = chunk.getChunkZ() * chunkSize;
 		chunk.updateAllData((data, textureData) -> {
-			for (int i = 0; i < TerrainChunk.SIZE; i++) {
-				for (int j = 0; j < TerrainChunk.SIZE; j++) {
-					for (int k = 0; k < TerrainChunk.SIZE; k++) {
+			for (int i = 0; i < chunkSize; i++) {
+				for (int j = 0; j < chunkSize; j++) {
+					for (int k = 0; k < chunkSize; k++) {
 						var pointX = scalar.x() * (offsetX + i);
 						var pointY = scalar.y() * (offsetY + j);
 						var pointZ = scalar.z() * (offsetZ + k);
@@ -148,12 +201,12 @@ public class Terrain {
 	}
 
 	public float get(int x, int y, int z) {
-		int chunkX = Math.floorDiv(x, TerrainChunk.SIZE);
-		int chunkY = Math.floorDiv(y, TerrainChunk.SIZE);
-		int chunkZ = Math.floorDiv(z, TerrainChunk.SIZE);
-		int localX = Math.floorMod(x, TerrainChunk.SIZE);
-		int localY = Math.floorMod(y, TerrainChunk.SIZE);
-		int localZ = Math.floorMod(z, TerrainChunk.SIZE);
+		int chunkX = Math.floorDiv(x, chunkSize);
+		int chunkY = Math.floorDiv(y, chunkSize);
+		int chunkZ = Math.floorDiv(z, chunkSize);
+		int localX = Math.floorMod(x, chunkSize);
+		int localY = Math.floorMod(y, chunkSize);
+		int localZ = Math.floorMod(z, chunkSize);
 		long hashed = hashChunkCoordinates(chunkX, chunkY, chunkZ);
 		TerrainChunk chunk = chunks.get(hashed);
 		if (chunk == null) {
@@ -165,12 +218,12 @@ public class Terrain {
 	}
 
 	public float[] getTextureWeights(int x, int y, int z) {
-		int chunkX = Math.floorDiv(x, TerrainChunk.SIZE);
-		int chunkY = Math.floorDiv(y, TerrainChunk.SIZE);
-		int chunkZ = Math.floorDiv(z, TerrainChunk.SIZE);
-		int localX = Math.floorMod(x, TerrainChunk.SIZE);
-		int localY = Math.floorMod(y, TerrainChunk.SIZE);
-		int localZ = Math.floorMod(z, TerrainChunk.SIZE);
+		int chunkX = Math.floorDiv(x, chunkSize);
+		int chunkY = Math.floorDiv(y, chunkSize);
+		int chunkZ = Math.floorDiv(z, chunkSize);
+		int localX = Math.floorMod(x, chunkSize);
+		int localY = Math.floorMod(y, chunkSize);
+		int localZ = Math.floorMod(z, chunkSize);
 		long hashed = hashChunkCoordinates(chunkX, chunkY, chunkZ);
 		TerrainChunk chunk = chunks.get(hashed);
 		if (chunk == null) {
@@ -182,55 +235,132 @@ public class Terrain {
 	}
 
 	private static long hashChunkCoordinates(int chunkX, int chunkY, int chunkZ) {
-		chunkX = AbsoluteIntValue.HASHED.applyAsInt(chunkX);
-		chunkY = AbsoluteIntValue.HASHED.applyAsInt(chunkY);
-		chunkZ = AbsoluteIntValue.HASHED.applyAsInt(chunkZ);
-		return SzudzikIntPair.pair(chunkX, chunkY, chunkZ);
+		return ChunkMap.pack(chunkX, chunkY, chunkZ);
 	}
 
 	public int getChunkX(float x) {
-		return Math.floorDiv((int) Math.floor(x / scalar.x()), TerrainChunk.SIZE);
+		return Math.floorDiv((int) Math.floor(x / scalar.x()), chunkSize);
 	}
 
 	public int getChunkY(float y) {
-		return Math.floorDiv((int) Math.floor(y / scalar.y()), TerrainChunk.SIZE);
+		return Math.floorDiv((int) Math.floor(y / scalar.y()), chunkSize);
 	}
 
 	public int getChunkZ(float z) {
-		return Math.floorDiv((int) Math.floor(z / scalar.z()), TerrainChunk.SIZE);
+		return Math.floorDiv((int) Math.floor(z / scalar.z()), chunkSize);
 	}
 
 	public int getCollideX(float x) {
-		return Math.floorDiv((int) Math.floor(x / scalar.x()), TerrainChunk.TRIANGLE_COORDS_TO_SUBDIVISION_COORDS);
+		return Math.floorDiv((int) Math.floor(x / scalar.x()), collisionCellSize);
 	}
 
 	public int getCollideY(float y) {
-		return Math.floorDiv((int) Math.floor(y / scalar.y()), TerrainChunk.TRIANGLE_COORDS_TO_SUBDIVISION_COORDS);
+		return Math.floorDiv((int) Math.floor(y / scalar.y()), collisionCellSize);
 	}
 
 	public int getCollideZ(float z) {
-		return Math.floorDiv((int) Math.floor(z / scalar.z()), TerrainChunk.TRIANGLE_COORDS_TO_SUBDIVISION_COORDS);
+		return Math.floorDiv((int) Math.floor(z / scalar.z()), collisionCellSize);
 	}
 
+	/**
+	 * Triangles in a collision cell, for physics: only builds the chunk's collision product (not its render stages),
+	 * and finds no triangles in chunks that have not been created instead of creating them
+	 */
 	public List<Triangle> getTriangles(int collideX, int collideY, int collideZ) {
-		var chunkX = Math.floorDiv(collideX, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		var chunkY = Math.floorDiv(collideY, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		var chunkZ = Math.floorDiv(collideZ, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		var collideXPart = Math.floorMod(collideX, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		var collideYPart = Math.floorMod(collideY, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		var collideZPart = Math.floorMod(collideZ, TerrainChunk.TRIANGLES_SUBDIVISION_SIZE);
-		return getChunk(chunkX, chunkY, chunkZ).getTriangles(collideXPart, collideYPart, collideZPart);
+		int cells = chunkSize / collisionCellSize;
+		var chunkX = Math.floorDiv(collideX, cells);
+		var chunkY = Math.floorDiv(collideY, cells);
+		var chunkZ = Math.floorDiv(collideZ, cells);
+		var collideXPart = Math.floorMod(collideX, cells);
+		var collideYPart = Math.floorMod(collideY, cells);
+		var collideZPart = Math.floorMod(collideZ, cells);
+		var chunk = findChunk(chunkX, chunkY, chunkZ);
+		return chunk == null ? List.of() : chunk.getTriangles(collideXPart, collideYPart, collideZPart);
 	}
 
 	public float getChunkDistance(float distance) {
-		return distance / scalar.x() / TerrainChunk.SIZE;
+		return distance / scalar.x() / chunkSize;
+	}
+
+	/**
+	 * Height of the top surface at a point, from the heightmap kept up to date as chunks are generated and edited,
+	 * or {@link SurfaceHeightmap#NO_SURFACE} if no generated chunk has solid terrain there
+	 */
+	public float surfaceHeight(float x, float z) {
+		return heightmap.get((int) Math.floor(x / scalar.x()), (int) Math.floor(z / scalar.z())) * scalar.y();
+	}
+
+	/**
+	 * Heaviest texture on the top surface at a point, or {@link SurfaceHeightmap#NO_TEXTURE}
+	 */
+	public int surfaceTexture(float x, float z) {
+		return heightmap.getTexture((int) Math.floor(x / scalar.x()), (int) Math.floor(z / scalar.z()));
+	}
+
+	/**
+	 * Changes whenever the surface changes (or is generated) anywhere in the rectangle, and only then
+	 */
+	public long surfaceVersion(float minX, float minZ, float maxX, float maxZ) {
+		long version = 0;
+		for (int chunkX = getChunkX(minX); chunkX <= getChunkX(maxX); chunkX++) {
+			for (int chunkZ = getChunkZ(minZ); chunkZ <= getChunkZ(maxZ); chunkZ++) {
+				version += heightmap.version(chunkX, chunkZ);
+			}
+		}
+		return version;
+	}
+
+	SurfaceHeightmap heightmap() {
+		return heightmap;
+	}
+
+	/**
+	 * Samples along each side of a chunk
+	 */
+	public int chunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Samples along each side of a collision cell, the unit of {@link #getCollideX(float)} and friends
+	 */
+	public int collisionCellSize() {
+		return collisionCellSize;
+	}
+
+	public UploadScheduler uploads() {
+		return uploads;
+	}
+
+	public TerrainExecutor executor() {
+		return executor;
+	}
+
+	public ChunkPipeline pipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Vertex and index buffers shared by every chunk; only used on the main thread
+	 */
+	public BufferArena arena() {
+		return arena;
 	}
 
 	public Vector3D scalar() {
 		return scalar;
 	}
 
+	public TerrainSettings settings() {
+		return settings;
+	}
+
 	public int chunkCount() {
 		return chunks.size();
 	}
+
+	@Override
+	public void dispose() {
+		arena.dispose();
+	}
 }
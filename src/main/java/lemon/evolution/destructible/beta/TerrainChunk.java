@@ -1,10 +1,10 @@
 package lemon.evolution.destructible.beta;
 
-import com.google.common.collect.ImmutableList;
 import lemon.engine.draw.DrawableData;
-import lemon.engine.draw.DynamicIndexedDrawable;
-import lemon.engine.event.Computable;
-import lemon.engine.math.FloatData;
+import lemon.engine.draw.ArenaDrawable;
+import lemon.engine.draw.VertexCacheOptimizer;
+import lemon.engine.draw.VertexLayout;
+import lemon.engine.draw.VertexWriter;
 import lemon.engine.math.Matrix;
 import lemon.engine.math.MutableVector3D;
 import lemon.engine.math.Triangle;
@@ -15,95 +15,103 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.logging.Logger;
 
 public class TerrainChunk {
-	public static final int SIZE = 32;
-	public static final int TRIANGLES_SUBDIVISION_SIZE = 8;
-	public static final int TRIANGLE_COORDS_TO_SUBDIVISION_COORDS = SIZE / TRIANGLES_SUBDIVISION_SIZE;
-	public static final Vector3D MARCHING_CUBE_SIZE = Vector3D.of(SIZE + 1, SIZE + 1, SIZE + 1);
+	private static final Logger logger = Logger.getLogger(TerrainChunk.class.getName());
+	// Samples along each side of a chunk and of a collision cell, unless the terrain's settings say otherwise
+	public static final int DEFAULT_SIZE = 32;
+	public static final int DEFAULT_COLLISION_CELL_SIZE = 4;
 	public static final int NUM_TEXTURES = 48;
+	// Level n meshes every 2^n-th sample; only level 0 is used for collision
+	public static final int NUM_LODS = 3;
 	private static final float[] ZERO_TEXTURE_WEIGHTS = new float[NUM_TEXTURES];
+	private static final float BORDER_EPSILON = 1e-4f;
+	// [position, normal, 12 vec4s of texture weights]
+	public static final VertexLayout VERTEX_LAYOUT = vertexLayout();
 	private final Terrain terrain;
 	private final int chunkX;
 	private final int chunkY;
 	private final int chunkZ;
-	private final MarchingCube marchingCube;
+	private final int size;
+	private final TerrainSettings.Mesher mesher;
 	private final Matrix transformationMatrix;
-	private final Computable<float[][][]> data;
-	private final Computable<SparseGrid3D<float[]>> textureData;
+	private final PipelineNode<TerrainChunkData> data;
+	private final PipelineNode<ChunkOccluders> occluders;
 	private static final int[] MESH_PREREQUISITE_CHUNK_OFFSET_X = {1, 0, 0, 1, 0, 1, 1};
 	private static final int[] MESH_PREREQUISITE_CHUNK_OFFSET_Y = {0, 1, 0, 1, 1, 0, 1};
 	private static final int[] MESH_PREREQUISITE_CHUNK_OFFSET_Z = {0, 0, 1, 0, 1, 1, 1};
-	private final Computable<MarchingCubeMesh> mesh;
-	private final Computable<MarchingCubeModel> model;
+	private final PipelineNode<MarchingCubeMesh> mesh;
+	private final PipelineNode<ChunkCollision> collision;
+	private final PipelineNode<MarchingCubeModel> model;
 	private static final int[] NORMALS_PREREQUISITE_CHUNK_OFFSET_X = {-1,  0,  0,  0,  1, -1, -1, -1,  0, 0,  1, 1, 1, -1,  0, 0, 0, 1};
 	private static final int[] NORMALS_PREREQUISITE_CHUNK_OFFSET_Y = { 0, -1,  0,  1,  0, -1,  0,  1, -1, 1, -1, 0, 1,  0, -1, 0, 1, 0};
 	private static final int[] NORMALS_PREREQUISITE_CHUNK_OFFSET_Z = {-1, -1, -1, -1, -1,  0,  0,  0,  0, 0,  0, 0, 0,  1,  1, 1, 1, 1};
-	private final Computable<MarchingCubeNormals> normals;
-	private final Computable<DrawableData> drawableData;
-	private final Computable<DynamicIndexedDrawable> drawable;
-	private final Executor poolExecutor;
+	private final PipelineNode<MarchingCubeNormals> normals;
+	private final PipelineNode<DrawableData> drawableData;
+	private final List<PipelineNode<DrawableData>> drawableDatas;
+	private final List<PipelineNode<ArenaDrawable>> drawables;
+	private final DrawableData[] uploadedData = new DrawableData[NUM_LODS]; // only accessed on the main thread
+	private final AtomicReferenceArray<MeshStats> meshStats = new AtomicReferenceArray<>(NUM_LODS);
+	private final ChunkPipeline pipeline;
+	private volatile boolean nearCamera = false;
+	private final Queue<PendingEdit> pendingEdits = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean editsQueued = new AtomicBoolean();
+	// The 3x3x3 block of chunks around this one (itself in the middle), filled in as they are first looked up.
+	// Racy on purpose: a reader that misses a link just looks the chunk up, and chunks are safely published (final fields).
+	private final TerrainChunk[] neighbors = new TerrainChunk[27];
 
 	public TerrainChunk(Terrain terrain,
 						int chunkX,
 						int chunkY,
 						int chunkZ,
-						BoundedScalarGrid3D scalarGrid,
-						BoundedGrid3D<float[]> textureWeightsGrid,
 						TerrainGenerator generator,
-						Executor poolExecutor,
-						Executor mainThreadExecutor) {
-		this.poolExecutor = poolExecutor;
+						ChunkPipeline pipeline) {
+		this.pipeline = pipeline;
 		var scalar = terrain.scalar();
 		this.terrain = terrain;
 		this.chunkX = chunkX;
 		this.chunkY = chunkY;
 		this.chunkZ = chunkZ;
-		this.marchingCube = new MarchingCube(scalarGrid, textureWeightsGrid, MARCHING_CUBE_SIZE, 0f);
+		this.size = terrain.chunkSize();
+		this.neighbors[neighborIndex(0, 0, 0)] = this;
+		this.mesher = terrain.settings().mesher();
 		this.transformationMatrix = new Matrix(4);
 		try (var translationMatrix = MatrixPool.ofTranslation(
-				scalar.x() * chunkX * TerrainChunk.SIZE,
-				scalar.y() * chunkY * TerrainChunk.SIZE,
-				scalar.z() * chunkZ * TerrainChunk.SIZE);
+				scalar.x() * chunkX * size,
+				scalar.y() * chunkY * size,
+				scalar.z() * chunkZ * size);
 			 var scalarMatrix = MatrixPool.ofScalar(scalar)) {
 			Matrix.multiply(transformationMatrix, translationMatrix, scalarMatrix);
 		}
-		this.data = new Computable<>(computable -> {
-			generator.queueChunk(TerrainChunk.this, computable::compute);
-		});
-		this.textureData = new Computable<>(computable -> {
-			computable.compute(new SparseGrid3D<>(TerrainChunk.SIZE, TerrainChunk.SIZE, TerrainChunk.SIZE, () -> new float[NUM_TEXTURES]));
-		});
-		this.mesh = Computable.all(poolExecutor, () -> {
-			// this.data computable + 7 additional neighbors
-			return Stream.concat(Stream.of(this),
-					IntStream.range(0, MESH_PREREQUISITE_CHUNK_OFFSET_X.length)
-							.mapToObj(i -> getNeighboringChunk(MESH_PREREQUISITE_CHUNK_OFFSET_X[i],
-									MESH_PREREQUISITE_CHUNK_OFFSET_Y[i], MESH_PREREQUISITE_CHUNK_OFFSET_Z[i])))
-					.<Computable<?>>mapMulti((chunk, consumer) -> {
-						consumer.accept(chunk.textureData());
-						consumer.accept(chunk.data());
-					}).toList();
-		}, computable -> {
-			computable.compute(marchingCube.generateMesh());
-		});
-		this.model = this.mesh.then(poolExecutor, (computable, mesh) -> {
+		// Data is generated once; edits publish modified copies of it as new versions
+		this.data = pipeline.newNode(this, PipelineStage.DATA, List::of, previous -> previous != null ? previous :
+				updateHeightmap(new TerrainChunkData(generator.generate(this),
+						new SparseGrid3D<>(size, size, size, () -> new float[NUM_TEXTURES]))));
+		this.occluders = pipeline.newNode(this, PipelineStage.OCCLUDERS, () -> List.of(data),
+				previous -> ChunkOccluders.of(data.getValueOrThrow().scalars(), 0f));
+		this.mesh = pipeline.newNode(this, PipelineStage.MESH, this::getMeshDependencies,
+				previous -> pinMesher().generateMesh(1, nearCamera ? terrain.settings().meshSlabs() : 1));
+		var offset = Vector3D.of(chunkX * size, chunkY * size, chunkZ * size);
+		this.collision = pipeline.newNode(this, PipelineStage.COLLISION, () -> List.of(mesh),
+				previous -> ChunkCollision.of(this.mesh.getValueOrThrow(), offset, scalar, size, terrain.collisionCellSize()));
+		this.model = pipeline.newNode(this, PipelineStage.MODEL, () -> List.of(mesh), previous -> {
+			var mesh = this.mesh.getValueOrThrow();
 			var vertices = mesh.vertices();
 			var textureWeights = mesh.textureWeights();
 			var indices = mesh.indices();
 			var hashes = mesh.prenormalHashes();
-			var triangleCoords = mesh.triangleCoords();
 			var preNormals = new PreNormals();
-			SparseGrid3D<List<Triangle>> triangles = new SparseGrid3D<>(TRIANGLES_SUBDIVISION_SIZE, TRIANGLES_SUBDIVISION_SIZE, TRIANGLES_SUBDIVISION_SIZE, ArrayList::new);
 			Vector3D[] transformed = new Vector3D[vertices.length];
-			var x = Vector3D.of(chunkX * TerrainChunk.SIZE, chunkY * TerrainChunk.SIZE, chunkZ * TerrainChunk.SIZE);
 			for (int i = 0; i < vertices.length; i++) {
-				transformed[i] = vertices[i].add(x).multiply(scalar);
+				transformed[i] = vertices[i].add(offset).multiply(scalar);
 			}
 			for (int i = 0; i < indices.length; i += 3) {
 				Vector3D a = transformed[indices[i]];
@@ -117,62 +125,185 @@ public class TerrainChunk {
 					preNormals.addNormal(hashes[indices[i]], scaledNormal);
 					preNormals.addNormal(hashes[indices[i + 1]], scaledNormal);
 					preNormals.addNormal(hashes[indices[i + 2]], scaledNormal);
-					var coords = triangleCoords[i / 3];
-					triangles.compute(coords.x() / TRIANGLE_COORDS_TO_SUBDIVISION_COORDS,
-							coords.y() / TRIANGLE_COORDS_TO_SUBDIVISION_COORDS,
-							coords.z() / TRIANGLE_COORDS_TO_SUBDIVISION_COORDS).add(triangle);
 				}
 			}
-			computable.compute(new MarchingCubeModel(indices, vertices, textureWeights, hashes, preNormals, triangles));
+			return new MarchingCubeModel(indices, vertices, textureWeights, hashes, preNormals);
 		});
-		this.normals = Computable.all(() -> {
-			// this.model computable + 18 additional neighbors
-			return Stream.concat(Stream.of(this),
-					IntStream.range(0, NORMALS_PREREQUISITE_CHUNK_OFFSET_X.length)
-							.mapToObj(i -> getNeighboringChunk(NORMALS_PREREQUISITE_CHUNK_OFFSET_X[i],
-									NORMALS_PREREQUISITE_CHUNK_OFFSET_Y[i], NORMALS_PREREQUISITE_CHUNK_OFFSET_Z[i])))
-					.map(TerrainChunk::model).toList();
-		}, computable -> {
+		this.normals = pipeline.newNode(this, PipelineStage.NORMALS, () -> {
+			// this.model + 18 additional neighbors
+			var dependencies = new ArrayList<PipelineNode<?>>(NORMALS_PREREQUISITE_CHUNK_OFFSET_X.length + 1);
+			dependencies.add(model);
+			for (int i = 0; i < NORMALS_PREREQUISITE_CHUNK_OFFSET_X.length; i++) {
+				dependencies.add(getNeighboringChunk(NORMALS_PREREQUISITE_CHUNK_OFFSET_X[i],
+						NORMALS_PREREQUISITE_CHUNK_OFFSET_Y[i], NORMALS_PREREQUISITE_CHUNK_OFFSET_Z[i]).model());
+			}
+			if (mesher == TerrainSettings.Mesher.SURFACE_NETS) {
+				// Vertices in corner cells are shared with the diagonal neighbors too
+				for (int i = 0; i < 8; i++) {
+					dependencies.add(getNeighboringChunk((i & 1) * 2 - 1, ((i >> 1) & 1) * 2 - 1, ((i >> 2) & 1) * 2 - 1).model());
+				}
+			}
+			return dependencies;
+		}, previous -> {
 			var model = this.model.getValueOrThrow();
 			var preNormals = model.preNormals();
 			var normals = Arrays.stream(model.hashes()).mapToObj(hash -> {
 				var preNormal = preNormals.getNormal(hash);
 				return getBorderingPreNormal(hash).map(preNormal::add).orElse(preNormal);
 			}).map(Vector3D::normalize).toArray(Vector3D[]::new);
-			computable.compute(new MarchingCubeNormals(model, normals));
+			return new MarchingCubeNormals(model, normals);
 		});
-		this.drawableData = this.normals.then(poolExecutor, (computable, normals) -> {
+		this.drawableData = pipeline.newNode(this, PipelineStage.DRAWABLE_DATA, () -> List.of(normals), previous -> {
+			var normals = this.normals.getValueOrThrow();
 			var model = normals.model(); // Normals MUST be the same as the model
 			// (cannot use this.model.getValueOrThrow() because model could have changed already and desync with normals)
-			var indices = model.indices();
 			var vertices = model.vertices();
-			var textureWeights = model.textureWeights();
-			var numVec4s = NUM_TEXTURES / 4;
-			var weights = new FloatData[numVec4s][];
-			for (int i = 0; i < numVec4s; i++) {
-				int finalI = i;
-				weights[i] = Arrays.stream(textureWeights)
-						.map(array -> FloatData.of(array, 4 * finalI, 4))
-						.toArray(FloatData[]::new);
+			return toDrawableData(0, model.indices(), vertices, normals.normals(), model.textureWeights(), vertices.length);
+		});
+		var center = Vector3D.of(chunkX * size + size / 2f, chunkY * size + size / 2f, chunkZ * size + size / 2f).multiply(scalar);
+		var drawableDatas = new ArrayList<PipelineNode<DrawableData>>(NUM_LODS);
+		drawableDatas.add(drawableData);
+		for (int lod = 1; lod < NUM_LODS; lod++) {
+			drawableDatas.add(newLodDrawableData(lod));
+		}
+		this.drawableDatas = List.copyOf(drawableDatas);
+		var drawables = new ArrayList<PipelineNode<ArenaDrawable>>(NUM_LODS);
+		for (int lod = 0; lod < NUM_LODS; lod++) {
+			drawables.add(newDrawable(lod, drawableDatas.get(lod), center));
+		}
+		this.drawables = List.copyOf(drawables);
+	}
+
+	/**
+	 * A mesher over the data of this chunk and its 7 neighbors (in +x, +y and +z) as currently published,
+	 * so that edits published while it runs cannot tear the mesh
+	 */
+	private ChunkMesher pinMesher() {
+		// Bits 0, 1 and 2 of the index are the offsets in x, y and z
+		var snapshots = new TerrainChunkData[8];
+		for (int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = getNeighboringChunk(i & 1, (i >> 1) & 1, (i >> 2) & 1).data().getValueOrThrow();
+		}
+		int samples = size + 1;
+		return mesher.create(BoundedScalarGrid3D.of((x, y, z) -> getSnapshot(snapshots, x, y, z).scalars()[x % size][y % size][z % size],
+				samples, samples, samples), BoundedGrid3D.of((x, y, z) -> getSnapshot(snapshots, x, y, z).textureWeights()
+				.getOrDefault(x % size, y % size, z % size, ZERO_TEXTURE_WEIGHTS), samples, samples, samples),
+				marchingCubeSize(size), 0f);
+	}
+
+	/**
+	 * Size of the mesh of a chunk with the given number of samples along each side, in samples
+	 */
+	public static Vector3D marchingCubeSize(int size) {
+		return Vector3D.of(size + 1, size + 1, size + 1);
+	}
+
+	private TerrainChunkData getSnapshot(TerrainChunkData[] snapshots, int x, int y, int z) {
+		return snapshots[(x / size) | (y / size) << 1 | (z / size) << 2];
+	}
+
+	// this.data + 7 additional neighbors
+	private List<PipelineNode<?>> getMeshDependencies() {
+		var dependencies = new ArrayList<PipelineNode<?>>(MESH_PREREQUISITE_CHUNK_OFFSET_X.length + 1);
+		dependencies.add(data);
+		for (int i = 0; i < MESH_PREREQUISITE_CHUNK_OFFSET_X.length; i++) {
+			dependencies.add(getNeighboringChunk(MESH_PREREQUISITE_CHUNK_OFFSET_X[i],
+					MESH_PREREQUISITE_CHUNK_OFFSET_Y[i], MESH_PREREQUISITE_CHUNK_OFFSET_Z[i]).data());
+		}
+		return dependencies;
+	}
+
+	// Meshed straight from the data with face normals and skirts, skipping the model and normals stages
+	private PipelineNode<DrawableData> newLodDrawableData(int lod) {
+		int step = 1 << lod;
+		return pipeline.newNode(this, PipelineStage.LOD_DRAWABLE_DATA, this::getMeshDependencies, previous -> {
+			var mesher = pinMesher();
+			var surface = mesher.generateMesh(step);
+			var mesh = LodMesh.of(surface, size, mesher.maxBorderDistance(step), step);
+			return toDrawableData(lod, mesh.indices(), mesh.vertices(), mesh.normals(), mesh.textureWeights(), surface.vertices().length);
+		});
+	}
+
+	/**
+	 * Decimates (if enabled) and reorders the mesh on the drawable data jobs, so the render thread only uploads.
+	 * Vertices from numSurfaceVertices onwards (skirts) are kept as they are.
+	 */
+	private DrawableData toDrawableData(int lod, int[] indices, Vector3D[] vertices, Vector3D[] normals,
+										float[][] textureWeights, int numSurfaceVertices) {
+		int meshedTriangles = indices.length / 3;
+		var settings = terrain.settings();
+		if (settings.decimationError() > 0f) {
+			var surfaceVertices = vertices;
+			var decimated = MeshDecimator.decimate(indices, vertices, textureWeights, settings.decimationTextureTolerance(),
+					i -> i >= numSurfaceVertices || isOnBorder(surfaceVertices[i]), settings.decimationError());
+			var vertexMap = decimated.vertexMap();
+			indices = decimated.indices();
+			vertices = gather(vertices, vertexMap);
+			normals = gather(normals, vertexMap);
+			textureWeights = gather(textureWeights, vertexMap);
+		}
+		var optimized = VertexCacheOptimizer.optimize(indices, vertices.length);
+		var stats = new MeshStats(meshedTriangles, optimized.length / 3,
+				VertexCacheOptimizer.getAcmr(indices), VertexCacheOptimizer.getAcmr(optimized));
+		meshStats.set(lod, stats);
+		logger.finer(() -> String.format("%s LOD %d: %d -> %d triangles, ACMR %.3f -> %.3f", this, lod,
+				stats.meshedTriangles(), stats.triangles(), stats.originalAcmr(), stats.optimizedAcmr()));
+		// [position, normal, 12 vec4s of texture weights]
+		var writer = VertexWriter.builder(vertices.length)
+				.add(vertices)
+				.add(normals)
+				.add(textureWeights, 0, 4, NUM_TEXTURES / 4)
+				.build();
+		return new DrawableData(optimized, writer);
+	}
+
+	private boolean isOnBorder(Vector3D vertex) {
+		return isOnBorder(vertex.x()) || isOnBorder(vertex.y()) || isOnBorder(vertex.z());
+	}
+
+	private boolean isOnBorder(float coordinate) {
+		return Math.abs(coordinate) < BORDER_EPSILON || Math.abs(coordinate - size) < BORDER_EPSILON;
+	}
+
+	private static <T> T[] gather(T[] array, int[] indices) {
+		var gathered = Arrays.copyOf(array, indices.length);
+		for (int i = 0; i < indices.length; i++) {
+			gathered[i] = array[indices[i]];
+		}
+		return gathered;
+	}
+
+	private PipelineNode<ArenaDrawable> newDrawable(int lod, PipelineNode<DrawableData> drawableData, Vector3D center) {
+		// Each level needs its own key, since the scheduler keeps only one pending upload per key
+		Executor uploadExecutor = upload -> terrain.uploads().submit(drawableData, center,
+				drawableData.getValue().map(DrawableData::byteSize).orElse(0L), upload);
+		return pipeline.newNode(this, PipelineStage.DRAWABLE, uploadExecutor, () -> List.of(drawableData), previous -> {
+			var data = drawableData.getValueOrThrow();
+			if (data == uploadedData[lod]) {
+				// Already on the GPU, and its buffer has been released
+				return previous;
 			}
-			var vertexData = new FloatData[2 + numVec4s][];
-			vertexData[0] = vertices;
-			vertexData[1] = normals.normals();
-			for (int i = 0; i < numVec4s; i++) {
-				vertexData[2 + i] = weights[i];
+			ArenaDrawable drawable;
+			if (previous == null) {
+				drawable = terrain.arena().allocate(data);
+			} else {
+				previous.setData(data);
+				drawable = previous;
 			}
-			computable.compute(new DrawableData(indices, vertexData));
-		});
-		this.drawable = this.drawableData.then((computable, data) -> {
-			mainThreadExecutor.execute(() -> {
-				computable.compute(drawable -> {
-					drawable.setData(data);
-					return drawable;
-				}, () -> new DynamicIndexedDrawable(data));
-			});
+			uploadedData[lod] = data;
+			data.release();
+			return drawable;
 		});
 	}
 
+	private static VertexLayout vertexLayout() {
+		int[] dimensions = new int[2 + NUM_TEXTURES / 4];
+		Arrays.fill(dimensions, 4);
+		dimensions[0] = 3;
+		dimensions[1] = 3;
+		return VertexLayout.of(dimensions);
+	}
+
 	private static final int mask = 0b11111111;
 	private Optional<Vector3D> getBorderingPreNormal(int hash) {
 		var x = (hash >>> 24) & mask;
@@ -181,52 +312,70 @@ public class TerrainChunk {
 		var w = hash & mask;
 		if (w == 0) {
 			MutableVector3D sum = MutableVector3D.ofZero();
-			boolean borderY = (y == 0 || y == SIZE);
-			boolean borderZ = (z == 0 || z == SIZE);
+			boolean borderY = (y == 0 || y == size);
+			boolean borderZ = (z == 0 || z == size);
 			int chunkOffsetY = y == 0 ? -1 : 1;
 			int chunkOffsetZ = z == 0 ? -1 : 1;
 			if (borderY) {
-				sum.add(getNeighboringChunk(0, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(x, SIZE - y, z, w));
+				sum.add(getNeighboringChunk(0, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(x, size - y, z, w));
 			}
 			if (borderZ) {
-				sum.add(getNeighboringChunk(0, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, y, SIZE - z, w));
+				sum.add(getNeighboringChunk(0, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, y, size - z, w));
 			}
 			if (borderY && borderZ) {
-				sum.add(getNeighboringChunk(0, chunkOffsetY, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, SIZE - y, SIZE - z, w));
+				sum.add(getNeighboringChunk(0, chunkOffsetY, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, size - y, size - z, w));
 			}
 			return Optional.of(sum.asImmutable());
 		}
 		if (w == 1) {
 			MutableVector3D sum = MutableVector3D.ofZero();
-			boolean borderX = (x == 0 || x == SIZE);
-			boolean borderZ = (z == 0 || z == SIZE);
+			boolean borderX = (x == 0 || x == size);
+			boolean borderZ = (z == 0 || z == size);
 			int chunkOffsetX = x == 0 ? -1 : 1;
 			int chunkOffsetZ = z == 0 ? -1 : 1;
 			if (borderX) {
-				sum.add(getNeighboringChunk(chunkOffsetX, 0, 0).model().getValueOrThrow().preNormals().getNormal(SIZE - x, y, z, w));
+				sum.add(getNeighboringChunk(chunkOffsetX, 0, 0).model().getValueOrThrow().preNormals().getNormal(size - x, y, z, w));
 			}
 			if (borderZ) {
-				sum.add(getNeighboringChunk(0, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, y, SIZE - z, w));
+				sum.add(getNeighboringChunk(0, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(x, y, size - z, w));
 			}
 			if (borderX && borderZ) {
-				sum.add(getNeighboringChunk(chunkOffsetX, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(SIZE - x, y, SIZE - z, w));
+				sum.add(getNeighboringChunk(chunkOffsetX, 0, chunkOffsetZ).model().getValueOrThrow().preNormals().getNormal(size - x, y, size - z, w));
 			}
 			return Optional.of(sum.asImmutable());
 		}
 		if (w == 2) {
 			MutableVector3D sum = MutableVector3D.ofZero();
-			boolean borderX = (x == 0 || x == SIZE);
-			boolean borderY = (y == 0 || y == SIZE);
+			boolean borderX = (x == 0 || x == size);
+			boolean borderY = (y == 0 || y == size);
 			int chunkOffsetX = x == 0 ? -1 : 1;
 			int chunkOffsetY = y == 0 ? -1 : 1;
 			if (borderX) {
-				sum.add(getNeighboringChunk(chunkOffsetX, 0, 0).model().getValueOrThrow().preNormals().getNormal(SIZE - x, y, z, w));
+				sum.add(getNeighboringChunk(chunkOffsetX, 0, 0).model().getValueOrThrow().preNormals().getNormal(size - x, y, z, w));
 			}
 			if (borderY) {
-				sum.add(getNeighboringChunk(0, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(x, SIZE - y, z, w));
+				sum.add(getNeighboringChunk(0, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(x, size - y, z, w));
 			}
 			if (borderX && borderY) {
-				sum.add(getNeighboringChunk(chunkOffsetX, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(SIZE - x, SIZE - y, z, w));
+				sum.add(getNeighboringChunk(chunkOffsetX, chunkOffsetY, 0).model().getValueOrThrow().preNormals().getNormal(size - x, size - y, z, w));
+			}
+			return Optional.of(sum.asImmutable());
+		}
+		if (w == SurfaceNets.PRENORMAL_W) {
+			// Cells on the border are also the neighbors' cells on their opposite border
+			MutableVector3D sum = MutableVector3D.ofZero();
+			int chunkOffsetX = x == 0 ? -1 : (x == size ? 1 : 0);
+			int chunkOffsetY = y == 0 ? -1 : (y == size ? 1 : 0);
+			int chunkOffsetZ = z == 0 ? -1 : (z == size ? 1 : 0);
+			for (int i = 0; i <= Math.abs(chunkOffsetX); i++) {
+				for (int j = 0; j <= Math.abs(chunkOffsetY); j++) {
+					for (int k = 0; k <= Math.abs(chunkOffsetZ); k++) {
+						if (i + j + k > 0) {
+							sum.add(getNeighboringChunk(i * chunkOffsetX, j * chunkOffsetY, k * chunkOffsetZ).model().getValueOrThrow().preNormals()
+									.getNormal(i == 0 ? x : size - x, j == 0 ? y : size - y, k == 0 ? z : size - z, w));
+						}
+					}
+				}
 			}
 			return Optional.of(sum.asImmutable());
 		}
@@ -245,62 +394,186 @@ public class TerrainChunk {
 		return chunkZ;
 	}
 
+	/**
+	 * Samples along each side of the chunk
+	 */
+	public int size() {
+		return size;
+	}
+
 	public float get(int x, int y, int z) {
-		return data.getValueOrThrow(() -> new IllegalStateException("Data has not been computed for " + this))[x][y][z];
+		return data.getValueOrThrow(() -> new IllegalStateException("Data has not been computed for " + this)).scalars()[x][y][z];
 	}
 
 	public float[] getTextureWeights(int x, int y, int z) {
-		return textureData.getValueOrThrow(() -> new IllegalStateException("TextureData has not been computed for " + this)).getOrDefault(x, y, z, ZERO_TEXTURE_WEIGHTS);
+		return data.getValueOrThrow(() -> new IllegalStateException("Data has not been computed for " + this))
+				.textureWeights().getOrDefault(x, y, z, ZERO_TEXTURE_WEIGHTS);
 	}
 
 	public void updateData(Consumer<float[][][]> updater) {
-		data.compute(updater);
+		data.replace(data -> {
+			var copy = data.copy();
+			updater.accept(copy.scalars());
+			return updateHeightmap(copy);
+		}, System.nanoTime());
 	}
 
 	public void updateTextureData(Consumer<SparseGrid3D<float[]>> updater) {
-		textureData.compute(updater);
+		data.replace(data -> {
+			var copy = data.copy();
+			updater.accept(copy.textureWeights());
+			return updateHeightmap(copy);
+		}, System.nanoTime());
 	}
 
+	/**
+	 * Edits are batched until the terrain's next {@link Terrain#flushEdits()}, then applied together once the data
+	 * has been generated, so every stage that depends on it is rebuilt once however many edits hit the chunk
+	 */
 	public void updateAllData(BiConsumer<float[][][], SparseGrid3D<float[]>> updater) {
-		poolExecutor.execute(() -> {
-			this.data.compute(c -> {
-				this.textureData.compute(d -> {
-					updater.accept(c, d);
-				});
-			});
-		});
+		pendingEdits.add(new PendingEdit(updater, System.nanoTime()));
+		if (editsQueued.compareAndSet(false, true)) {
+			terrain.queueEdits(this);
+		}
 	}
 
-	public Computable<DynamicIndexedDrawable> drawable() {
-		return drawable;
+	/**
+	 * Submits the batch of pending edits as a single edit job
+	 */
+	void flushEdits() {
+		pipeline.edit(this::applyPendingEdits);
 	}
 
-	public Computable<MarchingCubeModel> model() {
+	private void applyPendingEdits() {
+		// Edits added from here on are either drained below or queue the next batch
+		editsQueued.set(false);
+		var edits = new ArrayList<PendingEdit>();
+		PendingEdit edit;
+		while ((edit = pendingEdits.poll()) != null) {
+			edits.add(edit);
+		}
+		if (edits.isEmpty()) {
+			return;
+		}
+		pipeline.onEditBatch(edits.size());
+		data.replace(data -> {
+			var copy = data.copy();
+			for (var pending : edits) {
+				pending.updater().accept(copy.scalars(), copy.textureWeights());
+			}
+			return updateHeightmap(copy);
+		}, edits.get(0).editedAt());
+	}
+
+	// Before the data is published, so that the surface never lags behind what physics and meshing see
+	private TerrainChunkData updateHeightmap(TerrainChunkData data) {
+		terrain.heightmap().update(chunkX, chunkY, chunkZ, data);
+		return data;
+	}
+
+	/**
+	 * Near chunks are meshed in parallel slabs, since their edits are the most visible
+	 */
+	public void setNearCamera(boolean nearCamera) {
+		this.nearCamera = nearCamera;
+	}
+
+	public boolean isNearCamera() {
+		return nearCamera;
+	}
+
+	public PipelineNode<ArenaDrawable> drawable() {
+		return drawables.get(0);
+	}
+
+	/**
+	 * @param lod level of detail, from 0 (full resolution) to {@link #NUM_LODS} - 1
+	 */
+	public PipelineNode<ArenaDrawable> drawable(int lod) {
+		return drawables.get(lod);
+	}
+
+	/**
+	 * Frees the level's allocation in the arena, if it has one and is not being uploaded.
+	 * Its drawable data was released after the upload, so it is rebuilt if the level is requested again.
+	 * Only called on the main thread.
+	 *
+	 * @return whether the level was evicted
+	 */
+	public boolean evictDrawable(int lod) {
+		if (!drawables.get(lod).evict(ArenaDrawable::dispose)) {
+			return false;
+		}
+		uploadedData[lod] = null;
+		drawableDatas.get(lod).invalidate();
+		return true;
+	}
+
+	/**
+	 * Decimation and vertex cache efficiency of the level's last drawable data
+	 */
+	public Optional<MeshStats> meshStats(int lod) {
+		return Optional.ofNullable(meshStats.get(lod));
+	}
+
+	public PipelineNode<MarchingCubeModel> model() {
 		return model;
 	}
 
-	public Computable<float[][][]> data() {
+	public PipelineNode<TerrainChunkData> data() {
 		return data;
 	}
 
-	public Computable<SparseGrid3D<float[]>> textureData() {
-		return textureData;
+	public PipelineNode<ChunkOccluders> occluders() {
+		return occluders;
 	}
 
 	public Matrix getTransformationMatrix() {
 		return transformationMatrix;
 	}
 
+	/**
+	 * Requests the collision product if it is out of date, and returns the triangles of the last one built
+	 * (or none if none has been built yet)
+	 */
 	public List<Triangle> getTriangles(int x, int y, int z) {
-		return model.getValue().map(model -> model.triangles().getOrDefault(x, y, z, ImmutableList.of())).orElse(ImmutableList.of());
+		return collision.requestAndGetValue().map(collision -> collision.getTriangles(x, y, z)).orElse(List.of());
+	}
+
+	public PipelineNode<ChunkCollision> collision() {
+		return collision;
 	}
 
+	/**
+	 * Creates the chunk if needed; adjacent chunks are linked both ways after the first lookup, skipping the chunk map
+	 */
 	public TerrainChunk getNeighboringChunk(int offsetX, int offsetY, int offsetZ) {
-		return terrain.getChunk(chunkX + offsetX, chunkY + offsetY, chunkZ + offsetZ);
+		if (Math.abs(offsetX) > 1 || Math.abs(offsetY) > 1 || Math.abs(offsetZ) > 1) {
+			return terrain.getChunk(chunkX + offsetX, chunkY + offsetY, chunkZ + offsetZ);
+		}
+		int index = neighborIndex(offsetX, offsetY, offsetZ);
+		var neighbor = neighbors[index];
+		if (neighbor == null) {
+			neighbor = terrain.getChunk(chunkX + offsetX, chunkY + offsetY, chunkZ + offsetZ);
+			neighbors[index] = neighbor;
+			neighbor.neighbors[neighborIndex(-offsetX, -offsetY, -offsetZ)] = this;
+		}
+		return neighbor;
+	}
+
+	private static int neighborIndex(int offsetX, int offsetY, int offsetZ) {
+		return ((offsetX + 1) * 3 + offsetY + 1) * 3 + offsetZ + 1;
 	}
 
 	@Override
 	public String toString() {
 		return String.format("TerrainChunk[%d, %d, %d]", chunkX, chunkY, chunkZ);
 	}
+
+	/**
+	 * Triangles as meshed and after decimation, and average cache miss ratios before and after reordering
+	 */
+	public record MeshStats(int meshedTriangles, int triangles, float originalAcmr, float optimizedAcmr) {}
+
+	private record PendingEdit(BiConsumer<float[][][], SparseGrid3D<float[]>> updater, long editedAt) {}
 }
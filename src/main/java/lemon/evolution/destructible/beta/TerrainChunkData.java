@@ -0,0 +1,21 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * A published version of a chunk's data. Readers (meshers, collision, queries) may hold on to it
+ * while edits are made, so it is never mutated once published; edits are made to a {@link #copy()}.
+ */
+public record TerrainChunkData(float[][][] scalars, SparseGrid3D<float[]> textureWeights) {
+	/**
+	 * Copies the scalars, and the texture weights of each point only once the copy's weights are computed there
+	 */
+	public TerrainChunkData copy() {
+		var scalars = new float[this.scalars.length][][];
+		for (int i = 0; i < scalars.length; i++) {
+			scalars[i] = new float[this.scalars[i].length][];
+			for (int j = 0; j < scalars[i].length; j++) {
+				scalars[i][j] = this.scalars[i][j].clone();
+			}
+		}
+		return new TerrainChunkData(scalars, textureWeights.copyOnWrite(float[]::clone));
+	}
+}
@@ -0,0 +1,157 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.toolbox.Disposable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Work-stealing pool shared by every stage of the terrain pipeline.
+ * Each stage has its own queue; every submission schedules one token on the pool,
+ * and a token runs the head of the highest priority non-empty queue.
+ */
+public class TerrainExecutor implements Disposable {
+	private static final Logger logger = Logger.getLogger(TerrainExecutor.class.getName());
+	private static final TerrainStage[] STAGES = TerrainStage.values();
+	private final ForkJoinPool pool;
+	private final TerrainStage[] stagesByPriority;
+	private final Executor[] executors = new Executor[STAGES.length];
+	@SuppressWarnings("unchecked")
+	private final Queue<Runnable>[] queues = (Queue<Runnable>[]) new Queue<?>[STAGES.length];
+	private final AtomicInteger[] queueDepths = new AtomicInteger[STAGES.length];
+	private final AtomicInteger[] activeWorkers = new AtomicInteger[STAGES.length];
+	private final LongAdder[] rejected = new LongAdder[STAGES.length];
+	private final LongAdder completed = new LongAdder();
+	private final AtomicBoolean loggedRejection = new AtomicBoolean(false);
+
+	public TerrainExecutor() {
+		this(TerrainExecutorSettings.DEFAULT);
+	}
+
+	public TerrainExecutor(TerrainExecutorSettings settings) {
+		var threadCount = new AtomicInteger();
+		this.pool = new ForkJoinPool(settings.parallelism(), forkJoinPool -> {
+			var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+			thread.setName("terrain-worker-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}, (thread, throwable) -> logger.log(Level.SEVERE, "Uncaught exception in " + thread.getName(), throwable), true);
+		this.stagesByPriority = Arrays.stream(STAGES)
+				.sorted(Comparator.comparingInt(stage -> -settings.priority(stage)))
+				.toArray(TerrainStage[]::new);
+		for (var stage : STAGES) {
+			int i = stage.ordinal();
+			queues[i] = new ConcurrentLinkedQueue<>();
+			queueDepths[i] = new AtomicInteger();
+			activeWorkers[i] = new AtomicInteger();
+			rejected[i] = new LongAdder();
+			executors[i] = runnable -> execute(stage, runnable);
+		}
+	}
+
+	public Executor executor(TerrainStage stage) {
+		return executors[stage.ordinal()];
+	}
+
+	public void execute(TerrainStage stage, Runnable runnable) {
+		int i = stage.ordinal();
+		if (pool.isShutdown()) {
+			reject(stage);
+			return;
+		}
+		queueDepths[i].incrementAndGet();
+		queues[i].add(runnable);
+		try {
+			pool.execute(this::runNext);
+		} catch (RejectedExecutionException e) {
+			if (queues[i].remove(runnable)) {
+				queueDepths[i].decrementAndGet();
+			}
+			reject(stage);
+		}
+	}
+
+	private void runNext() {
+		for (var stage : stagesByPriority) {
+			int i = stage.ordinal();
+			var runnable = queues[i].poll();
+			if (runnable != null) {
+				queueDepths[i].decrementAndGet();
+				activeWorkers[i].incrementAndGet();
+				try {
+					runnable.run();
+				} finally {
+					activeWorkers[i].decrementAndGet();
+					completed.increment();
+				}
+				return;
+			}
+		}
+	}
+
+	private void reject(TerrainStage stage) {
+		rejected[stage.ordinal()].increment();
+		if (!loggedRejection.getAndSet(true)) {
+			logger.warning("Rejected " + stage + " task: executor has been shut down");
+		}
+	}
+
+	public int queueDepth(TerrainStage stage) {
+		return queueDepths[stage.ordinal()].get();
+	}
+
+	public int queueDepth() {
+		int sum = 0;
+		for (var depth : queueDepths) {
+			sum += depth.get();
+		}
+		return sum;
+	}
+
+	public int activeWorkers(TerrainStage stage) {
+		return activeWorkers[stage.ordinal()].get();
+	}
+
+	public int activeWorkers() {
+		int sum = 0;
+		for (var active : activeWorkers) {
+			sum += active.get();
+		}
+		return sum;
+	}
+
+	public long rejectedCount(TerrainStage stage) {
+		return rejected[stage.ordinal()].sum();
+	}
+
+	public long rejectedCount() {
+		long sum = 0;
+		for (var count : rejected) {
+			sum += count.sum();
+		}
+		return sum;
+	}
+
+	public long completedCount() {
+		return completed.sum();
+	}
+
+	public int parallelism() {
+		return pool.getParallelism();
+	}
+
+	@Override
+	public void dispose() {
+		pool.shutdown();
+	}
+}
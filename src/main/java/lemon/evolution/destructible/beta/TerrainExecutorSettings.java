@@ -0,0 +1,19 @@
+package lemon.evolution.destructible.beta;
+
+public interface TerrainExecutorSettings {
+	public static final TerrainExecutorSettings DEFAULT = new TerrainExecutorSettings() {};
+
+	/**
+	 * Number of worker threads - by default one per core, leaving one core for the main thread
+	 */
+	public default int parallelism() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	/**
+	 * Higher priorities are polled first whenever a worker becomes free
+	 */
+	public default int priority(TerrainStage stage) {
+		return stage.defaultPriority();
+	}
+}
@@ -2,38 +2,50 @@ package lemon.evolution.destructible.beta;
 
 import lemon.engine.math.Vector3D;
 
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.LongAdder;
-import java.util.function.Consumer;
 
 public class TerrainGenerator {
-	private final ExecutorService pool;
 	private final ScalarField<Vector3D> scalarField;
 	private final LongAdder queueSize;
+	private final Executor executor;
 
-	public TerrainGenerator(ExecutorService pool, ScalarField<Vector3D> scalarField) {
-		this.pool = pool;
+	public TerrainGenerator(Executor pool, ScalarField<Vector3D> scalarField) {
 		this.scalarField = scalarField;
 		this.queueSize = new LongAdder();
+		this.executor = task -> {
+			queueSize.increment();
+			pool.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					queueSize.decrement();
+				}
+			});
+		};
 	}
 
-	public void queueChunk(TerrainChunk chunk, Consumer<float[][][]> consumer) {
-		queueSize.increment();
-		pool.execute(() -> {
-			int offsetX = chunk.getChunkX() * TerrainChunk.SIZE;
-			int offsetY = chunk.getChunkY() * TerrainChunk.SIZE;
-			int offsetZ = chunk.getChunkZ() * TerrainChunk.SIZE;
-			float[][][] data = new float[TerrainChunk.SIZE][TerrainChunk.SIZE][TerrainChunk.SIZE];
-			for (int i = 0; i < TerrainChunk.SIZE; i++) {
-				for (int j = 0; j < TerrainChunk.SIZE; j++) {
-					for (int k = 0; k < TerrainChunk.SIZE; k++) {
-						data[i][j][k] = scalarField.get(Vector3D.of(offsetX + i, offsetY + j, offsetZ + k));
-					}
+	public float[][][] generate(TerrainChunk chunk) {
+		int size = chunk.size();
+		int offsetX = chunk.getChunkX() * size;
+		int offsetY = chunk.getChunkY() * size;
+		int offsetZ = chunk.getChunkZ() * size;
+		float[][][] data = new float[size][size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				for (int k = 0; k < size; k++) {
+					data[i][j][k] = scalarField.get(Vector3D.of(offsetX + i, offsetY + j, offsetZ + k));
 				}
 			}
-			consumer.accept(data);
-			queueSize.decrement();
-		});
+		}
+		return data;
+	}
+
+	/**
+	 * Executor for generation jobs that counts towards {@link #getQueueSize()}
+	 */
+	public Executor executor() {
+		return executor;
 	}
 
 	public int getQueueSize() {
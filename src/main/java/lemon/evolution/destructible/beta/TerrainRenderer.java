@@ -1,24 +1,65 @@
 package lemon.evolution.destructible.beta;
 
 import com.google.common.collect.ImmutableList;
+import lemon.engine.draw.ArenaDrawable;
 import lemon.engine.draw.Drawable;
+import lemon.engine.math.Frustum;
 import lemon.engine.math.Matrix;
 import lemon.engine.math.Vector3D;
 import lemon.engine.render.MatrixType;
+import lemon.engine.render.OcclusionCuller;
 import lemon.evolution.util.CommonPrograms3D;
 import org.lwjgl.opengl.GL11;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 public class TerrainRenderer {
+	private static final Logger logger = Logger.getLogger(TerrainRenderer.class.getName());
 	private final Terrain terrain;
+	private final ChunkPrefetcher prefetcher;
 	private float renderDistance;
 	private ImmutableList<TerrainOffset> terrainOffsets;
+	private static final int OCCLUSION_WIDTH = 128;
+	private static final int OCCLUSION_HEIGHT = 72;
+	private static final int MAX_OCCLUDER_CHUNKS = 128;
+	// Chunks within this distance of a boundary keep their current level, so they do not flicker between levels
+	private static final float LOD_HYSTERESIS = 0.25f;
+	// Levels that have not been drawn for this many frames are freed from the arena, checked every interval
+	private static final int EVICT_AFTER_FRAMES = 600;
+	private static final int EVICT_INTERVAL_FRAMES = 60;
+	private final OcclusionCuller occlusionCuller = new OcclusionCuller(OCCLUSION_WIDTH, OCCLUSION_HEIGHT);
+	private final List<TerrainChunk> visibleChunks = new ArrayList<>();
+	private boolean occlusionCulling = true;
+	private int visibleChunkCount = 0;
+	private int occludedChunkCount = 0;
+	private long occlusionNanos = 0;
+	private boolean lodEnabled = true;
+	private float[] lodDistances = {2f, 4f};
+	private final Map<TerrainChunk, ChunkLevels> levels = new HashMap<>();
+	private long frame = 0;
+	private long evictedLevelCount = 0;
+	private final int[] lodChunkCounts = new int[TerrainChunk.NUM_LODS];
+	private long triangleCount = 0;
+	private long meshedTriangleCount = 0;
+	private float originalAcmr = 0f;
+	private float optimizedAcmr = 0f;
 
 	public TerrainRenderer(Terrain terrain, float renderDistance) {
 		this.terrain = terrain;
+		this.prefetcher = new ChunkPrefetcher(terrain, this::predictLod, this::markDrawn);
 		setRenderDistance(renderDistance);
 	}
 
@@ -39,26 +80,257 @@ public class TerrainRenderer {
 	}
 
 	public void render(Vector3D position) {
-		terrain.flushForRendering();
+		terrain.flushForRendering(position);
+		render(drawer -> draw(position, drawer));
+	}
+
+	/**
+	 * Only draws (and requests) chunks that intersect the frustum. With occlusion culling, chunks hidden behind closer
+	 * terrain are not drawn either; their occluders are rasterized on a terrain worker while uploads are flushed.
+	 */
+	public void render(Vector3D position, Frustum frustum) {
+		var occlusion = cull(terrain.getChunkX(position.x()), terrain.getChunkY(position.y()), terrain.getChunkZ(position.z()), frustum);
+		terrain.flushForRendering(position);
+		render(drawer -> drawVisible(occlusion, position, drawer));
+	}
+
+	private void render(Consumer<BiConsumer<Matrix, Drawable>> draw) {
 		GL11.glEnable(GL11.GL_DEPTH_TEST);
 		GL11.glEnable(GL11.GL_CULL_FACE);
 		GL11.glCullFace(GL11.GL_FRONT);
+		triangleCount = 0;
 		CommonPrograms3D.TERRAIN.use(program -> {
-			draw(position, (matrix, drawable) -> {
+			// Chunks share the arena's VAOs, which stay bound between draws
+			terrain.arena().drawAll(() -> draw.accept((matrix, drawable) -> {
 				program.loadMatrix(MatrixType.MODEL_MATRIX, matrix);
 				drawable.draw();
-			});
+				if (drawable instanceof ArenaDrawable arenaDrawable) {
+					triangleCount += arenaDrawable.numIndices() / 3;
+				}
+			}));
 		});
 		GL11.glDisable(GL11.GL_CULL_FACE);
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 	}
 
 	public void draw(Vector3D position, BiConsumer<Matrix, Drawable> drawer) {
-		draw(terrain.getChunkX(position.x()), terrain.getChunkY(position.y()), terrain.getChunkZ(position.z()), drawer);
+		int chunkX = terrain.getChunkX(position.x());
+		int chunkY = terrain.getChunkY(position.y());
+		int chunkZ = terrain.getChunkZ(position.z());
+		nextFrame();
+		Arrays.fill(lodChunkCounts, 0);
+		var meshStats = new MeshStatsSum();
+		for (var offset : terrainOffsets) {
+			var chunk = terrain.getChunk(chunkX + offset.x, chunkY + offset.y, chunkZ + offset.z);
+			int lod = selectLod(chunk, position);
+			prefetcher.onDrawn(chunk, lod, chunk.drawable(lod).getValue().isPresent());
+			terrain.drawOrQueue(chunk, lod, drawer);
+			meshStats.add(chunk, lod);
+		}
+		meshStats.publish();
+		visibleChunkCount = terrainOffsets.size();
+		occludedChunkCount = 0;
 	}
 
 	public void draw(int chunkX, int chunkY, int chunkZ, BiConsumer<Matrix, Drawable> drawer) {
-		terrainOffsets.forEach(offset -> terrain.drawOrQueue(chunkX + offset.x, chunkY + offset.y, chunkZ + offset.z, drawer));
+		draw(getChunkCenter(chunkX, chunkY, chunkZ), drawer);
+	}
+
+	public void draw(Vector3D position, Frustum frustum, BiConsumer<Matrix, Drawable> drawer) {
+		drawVisible(cull(terrain.getChunkX(position.x()), terrain.getChunkY(position.y()), terrain.getChunkZ(position.z()), frustum),
+				position, drawer);
+	}
+
+	public void draw(int chunkX, int chunkY, int chunkZ, Frustum frustum, BiConsumer<Matrix, Drawable> drawer) {
+		drawVisible(cull(chunkX, chunkY, chunkZ, frustum), getChunkCenter(chunkX, chunkY, chunkZ), drawer);
+	}
+
+	private Vector3D getChunkCenter(int chunkX, int chunkY, int chunkZ) {
+		return Vector3D.of(chunkX + 0.5f, chunkY + 0.5f, chunkZ + 0.5f).multiply(terrain.chunkSize()).multiply(terrain.scalar());
+	}
+
+	/**
+	 * Picks a level by the distance from the position to the chunk's center, in chunks.
+	 * A chunk only moves to another level once it is {@value #LOD_HYSTERESIS} chunks past the boundary.
+	 * Also marks whether the chunk is near enough to be meshed in slabs.
+	 */
+	private int selectLod(TerrainChunk chunk, Vector3D position) {
+		float distance = chunkDistance(chunk, position);
+		chunk.setNearCamera(distance < terrain.settings().slabMeshDistance());
+		var chunkLevels = levels.computeIfAbsent(chunk, key -> new ChunkLevels());
+		int lod = 0;
+		if (lodEnabled) {
+			int minLod = 0;
+			int maxLod = 0;
+			for (float lodDistance : lodDistances) {
+				if (distance >= lodDistance + LOD_HYSTERESIS) {
+					minLod++;
+				}
+				if (distance >= lodDistance - LOD_HYSTERESIS) {
+					maxLod++;
+				}
+			}
+			int previous = chunkLevels.lod;
+			lod = previous == ChunkLevels.NONE ? targetLod(distance) : Math.max(minLod, Math.min(maxLod, previous));
+		}
+		chunkLevels.lod = lodEnabled ? lod : ChunkLevels.NONE;
+		chunkLevels.drawnAt[lod] = frame;
+		lodChunkCounts[lod]++;
+		return lod;
+	}
+
+	private void markDrawn(TerrainChunk chunk, int lod) {
+		levels.computeIfAbsent(chunk, key -> new ChunkLevels()).drawnAt[lod] = frame;
+	}
+
+	private void nextFrame() {
+		frame++;
+		if (frame % EVICT_INTERVAL_FRAMES == 0) {
+			evictStaleLevels();
+		}
+	}
+
+	/**
+	 * Frees the levels that have not been drawn recently, and forgets chunks that have not been drawn at all
+	 * (they left the render distance or the frustum). A chunk's other levels are kept until its current one is ready,
+	 * since they are drawn in its place.
+	 */
+	private void evictStaleLevels() {
+		long evictBefore = frame - EVICT_AFTER_FRAMES;
+		var iterator = levels.entrySet().iterator();
+		while (iterator.hasNext()) {
+			var entry = iterator.next();
+			var chunk = entry.getKey();
+			var drawnAt = entry.getValue().drawnAt;
+			int current = 0;
+			for (int lod = 1; lod < TerrainChunk.NUM_LODS; lod++) {
+				if (drawnAt[lod] > drawnAt[current]) {
+					current = lod;
+				}
+			}
+			boolean stale = drawnAt[current] < evictBefore;
+			if (!stale && chunk.drawable(current).getValue().isEmpty()) {
+				continue;
+			}
+			for (int lod = 0; lod < TerrainChunk.NUM_LODS; lod++) {
+				if (drawnAt[lod] < evictBefore && chunk.evictDrawable(lod)) {
+					evictedLevelCount++;
+				}
+			}
+			if (stale) {
+				iterator.remove();
+			}
+		}
+	}
+
+	// The level a chunk would be given when seen from the viewpoint for the first time, for the prefetcher
+	private int predictLod(TerrainChunk chunk, Vector3D viewpoint) {
+		return lodEnabled ? targetLod(chunkDistance(chunk, viewpoint)) : 0;
+	}
+
+	private int targetLod(float distance) {
+		int lod = 0;
+		for (float lodDistance : lodDistances) {
+			if (distance >= lodDistance) {
+				lod++;
+			}
+		}
+		return lod;
+	}
+
+	// Distance from the position to the chunk's center, in chunks
+	private float chunkDistance(TerrainChunk chunk, Vector3D position) {
+		var scalar = terrain.scalar();
+		float deltaX = chunk.getChunkX() + 0.5f - position.x() / scalar.x() / terrain.chunkSize();
+		float deltaY = chunk.getChunkY() + 0.5f - position.y() / scalar.y() / terrain.chunkSize();
+		float deltaZ = chunk.getChunkZ() + 0.5f - position.z() / scalar.z() / terrain.chunkSize();
+		return (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
+	}
+
+	// Collects the chunks in the frustum, and starts rasterizing occluders from the nearest of them
+	private OcclusionTask cull(int chunkX, int chunkY, int chunkZ, Frustum frustum) {
+		var scalar = terrain.scalar();
+		float sizeX = scalar.x() * terrain.chunkSize();
+		float sizeY = scalar.y() * terrain.chunkSize();
+		float sizeZ = scalar.z() * terrain.chunkSize();
+		visibleChunks.clear();
+		for (var offset : terrainOffsets) {
+			int x = chunkX + offset.x;
+			int y = chunkY + offset.y;
+			int z = chunkZ + offset.z;
+			if (frustum.intersectsBox(x * sizeX, y * sizeY, z * sizeZ, (x + 1) * sizeX, (y + 1) * sizeY, (z + 1) * sizeZ)) {
+				visibleChunks.add(terrain.getChunk(x, y, z));
+			}
+		}
+		visibleChunkCount = visibleChunks.size();
+		if (!occlusionCulling) {
+			return null;
+		}
+		var occluderChunks = List.copyOf(visibleChunks.subList(0, Math.min(visibleChunks.size(), MAX_OCCLUDER_CHUNKS)));
+		for (var chunk : occluderChunks) {
+			chunk.occluders().request();
+		}
+		var task = new OcclusionTask(frustum.viewProjection(), occluderChunks);
+		terrain.executor().execute(TerrainStage.OCCLUSION, task);
+		return task;
+	}
+
+	private void drawVisible(OcclusionTask occlusion, Vector3D position, BiConsumer<Matrix, Drawable> drawer) {
+		boolean occlusionReady = occlusion != null && occlusion.await();
+		int occluded = 0;
+		nextFrame();
+		Arrays.fill(lodChunkCounts, 0);
+		var meshStats = new MeshStatsSum();
+		for (var chunk : visibleChunks) {
+			int lod = selectLod(chunk, position);
+			if (occlusionReady && !isUnoccluded(chunk)) {
+				// Keep hidden chunks meshed, since they are likely to be uncovered soon
+				chunk.drawable(lod).request();
+				occluded++;
+			} else {
+				prefetcher.onDrawn(chunk, lod, chunk.drawable(lod).getValue().isPresent());
+				terrain.drawOrQueue(chunk, lod, drawer);
+				meshStats.add(chunk, lod);
+			}
+		}
+		meshStats.publish();
+		occludedChunkCount = occluded;
+	}
+
+	private boolean isUnoccluded(TerrainChunk chunk) {
+		var scalar = terrain.scalar();
+		float sizeX = scalar.x() * terrain.chunkSize();
+		float sizeY = scalar.y() * terrain.chunkSize();
+		float sizeZ = scalar.z() * terrain.chunkSize();
+		return occlusionCuller.isVisible(chunk.getChunkX() * sizeX, chunk.getChunkY() * sizeY, chunk.getChunkZ() * sizeZ,
+				(chunk.getChunkX() + 1) * sizeX, (chunk.getChunkY() + 1) * sizeY, (chunk.getChunkZ() + 1) * sizeZ);
+	}
+
+	private void rasterizeOccluders(Matrix viewProjection, List<TerrainChunk> chunks) {
+		long start = System.nanoTime();
+		var scalar = terrain.scalar();
+		occlusionCuller.begin(viewProjection);
+		for (var chunk : chunks) {
+			var occluders = chunk.occluders().getValue();
+			if (occluders.isEmpty()) {
+				continue;
+			}
+			var boxes = occluders.get().boxes();
+			int offsetX = chunk.getChunkX() * terrain.chunkSize();
+			int offsetY = chunk.getChunkY() * terrain.chunkSize();
+			int offsetZ = chunk.getChunkZ() * terrain.chunkSize();
+			for (int i = 0; i < boxes.length; i += 6) {
+				occlusionCuller.addOccluderBox(
+						scalar.x() * (offsetX + boxes[i]), scalar.y() * (offsetY + boxes[i + 1]), scalar.z() * (offsetZ + boxes[i + 2]),
+						scalar.x() * (offsetX + boxes[i + 3]), scalar.y() * (offsetY + boxes[i + 4]), scalar.z() * (offsetZ + boxes[i + 5]));
+			}
+		}
+		occlusionCuller.finish();
+		occlusionNanos = System.nanoTime() - start;
+	}
+
+	public ChunkPrefetcher prefetcher() {
+		return prefetcher;
 	}
 
 	public void setRenderDistance(float chunkDistance) {
@@ -90,9 +362,189 @@ public class TerrainRenderer {
 		return terrainOffsets;
 	}
 
+	/**
+	 * Number of chunks in the frustum during the last draw, including occluded ones
+	 */
+	public int getVisibleChunkCount() {
+		return visibleChunkCount;
+	}
+
+	/**
+	 * Number of levels of detail that have been freed from the arena because they were not drawn
+	 */
+	public long getEvictedLevelCount() {
+		return evictedLevelCount;
+	}
+
+	/**
+	 * Number of chunks in the frustum that the last draw skipped because they were occluded
+	 */
+	public int getOccludedChunkCount() {
+		return occludedChunkCount;
+	}
+
+	/**
+	 * Time spent rasterizing occluders for the last culled draw
+	 */
+	public long getOcclusionNanos() {
+		return occlusionNanos;
+	}
+
+	/**
+	 * Number of triangles drawn by the last render, including skirts
+	 */
+	public long getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * Number of chunks given the level of detail during the last draw, including occluded ones
+	 */
+	public int getLodChunkCount(int lod) {
+		return lodChunkCounts[lod];
+	}
+
+	/**
+	 * Number of triangles the chunks drawn by the last draw had before decimation, excluding chunks without stats
+	 */
+	public long getMeshedTriangleCount() {
+		return meshedTriangleCount;
+	}
+
+	/**
+	 * Average cache miss ratio of the chunks drawn by the last draw, in the order they were meshed
+	 */
+	public float getOriginalAcmr() {
+		return originalAcmr;
+	}
+
+	/**
+	 * Average cache miss ratio of the chunks drawn by the last draw, after reordering
+	 */
+	public float getOptimizedAcmr() {
+		return optimizedAcmr;
+	}
+
+	public boolean isLodEnabled() {
+		return lodEnabled;
+	}
+
+	/**
+	 * When disabled, every chunk is drawn at full resolution
+	 */
+	public void setLodEnabled(boolean lodEnabled) {
+		this.lodEnabled = lodEnabled;
+		resetLevels();
+	}
+
+	/**
+	 * @param lodDistances distances in chunks at which each coarser level starts, in increasing order
+	 */
+	public void setLodDistances(float... lodDistances) {
+		if (lodDistances.length >= TerrainChunk.NUM_LODS) {
+			throw new IllegalArgumentException("Expected at most " + (TerrainChunk.NUM_LODS - 1) + " distances");
+		}
+		this.lodDistances = lodDistances.clone();
+		resetLevels();
+	}
+
+	// Picks every chunk's level again without hysteresis, keeping track of when levels were drawn
+	private void resetLevels() {
+		levels.values().forEach(chunkLevels -> chunkLevels.lod = ChunkLevels.NONE);
+	}
+
+	public boolean isOcclusionCulling() {
+		return occlusionCulling;
+	}
+
+	public void setOcclusionCulling(boolean occlusionCulling) {
+		this.occlusionCulling = occlusionCulling;
+	}
+
+	/**
+	 * Number of chunks within the render distance
+	 */
+	public int getTotalChunkCount() {
+		return terrainOffsets.size();
+	}
+
 	public float getRenderDistance() {
 		return renderDistance;
 	}
 
+	/**
+	 * Rasterizes occluders once, on whichever thread gets to it first:
+	 * if no worker has started it by the time the frame needs it, the render thread runs it instead.
+	 */
+	private class OcclusionTask implements Runnable {
+		private final Matrix viewProjection;
+		private final List<TerrainChunk> chunks;
+		private final AtomicBoolean claimed = new AtomicBoolean(false);
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		public OcclusionTask(Matrix viewProjection, List<TerrainChunk> chunks) {
+			this.viewProjection = viewProjection;
+			this.chunks = chunks;
+		}
+
+		@Override
+		public void run() {
+			if (claimed.compareAndSet(false, true)) {
+				try {
+					rasterizeOccluders(viewProjection, chunks);
+					done.complete(null);
+				} catch (RuntimeException e) {
+					done.completeExceptionally(e);
+				}
+			}
+		}
+
+		/**
+		 * Returns whether the occluders were rasterized successfully
+		 */
+		public boolean await() {
+			run();
+			try {
+				done.join();
+				return true;
+			} catch (CompletionException e) {
+				logger.log(Level.WARNING, "Failed to rasterize occluders", e.getCause());
+				return false;
+			}
+		}
+	}
+
+	private class MeshStatsSum {
+		private long meshedTriangles = 0;
+		private float originalSum = 0f;
+		private float optimizedSum = 0f;
+		private int count = 0;
+
+		public void add(TerrainChunk chunk, int lod) {
+			chunk.meshStats(lod).ifPresent(stats -> {
+				meshedTriangles += stats.meshedTriangles();
+				originalSum += stats.originalAcmr();
+				optimizedSum += stats.optimizedAcmr();
+				count++;
+			});
+		}
+
+		public void publish() {
+			meshedTriangleCount = meshedTriangles;
+			originalAcmr = count == 0 ? 0f : originalSum / count;
+			optimizedAcmr = count == 0 ? 0f : optimizedSum / count;
+		}
+	}
+
+	private static class ChunkLevels {
+		private static final int NONE = -1;
+		private int lod = NONE; // the level last picked, for hysteresis
+		private final long[] drawnAt = new long[TerrainChunk.NUM_LODS]; // frame each level was last drawn or requested
+
+		private ChunkLevels() {
+			Arrays.fill(drawnAt, Long.MIN_VALUE);
+		}
+	}
+
 	public record TerrainOffset(int x, int y, int z) {}
 }
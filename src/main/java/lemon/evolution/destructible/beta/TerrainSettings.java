@@ -0,0 +1,91 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+
+/**
+ * Per-terrain options for how chunks are meshed
+ */
+public interface TerrainSettings {
+	public static final TerrainSettings DEFAULT = new TerrainSettings() {};
+
+	/**
+	 * Samples along each side of a chunk: smaller chunks remesh faster after an edit, larger ones take fewer draw calls.
+	 * Must be a multiple of 4 and at most 252.
+	 */
+	public default int chunkSize() {
+		return TerrainChunk.DEFAULT_SIZE;
+	}
+
+	/**
+	 * Samples along each side of the cells that collision triangles are bucketed into; must divide the chunk size
+	 */
+	public default int collisionCellSize() {
+		return TerrainChunk.DEFAULT_COLLISION_CELL_SIZE;
+	}
+
+	public default Mesher mesher() {
+		return Mesher.MARCHING_CUBES;
+	}
+
+	/**
+	 * Fork/join tasks that the mesh of a chunk near the camera is split into, so that an edit in front of the player
+	 * is meshed by the idle workers too rather than one; 1 to always mesh serially
+	 */
+	public default int meshSlabs() {
+		return 4;
+	}
+
+	/**
+	 * Distance from the camera to a chunk's center, in chunks, within which the chunk is meshed in slabs
+	 */
+	public default float slabMeshDistance() {
+		return 1.5f;
+	}
+
+	/**
+	 * Largest quadric error (sum of squared distances in voxels) of an edge collapse in render meshes,
+	 * or 0 to draw every meshed triangle. Collision always uses the full resolution mesh.
+	 */
+	public default float decimationError() {
+		return 0f;
+	}
+
+	/**
+	 * Largest difference in any texture weight between two vertices that may be merged by decimation
+	 */
+	public default float decimationTextureTolerance() {
+		return 0.05f;
+	}
+
+	/**
+	 * Most chunks that the prefetcher requests per frame, so that it does not starve the chunks being drawn
+	 */
+	public default int prefetchBudget() {
+		return 8;
+	}
+
+	/**
+	 * How far ahead (in ticks) the prefetcher extrapolates the camera and projectiles
+	 */
+	public default int prefetchTicks() {
+		return 60;
+	}
+
+	public enum Mesher {
+		MARCHING_CUBES {
+			@Override
+			public ChunkMesher create(BoundedScalarGrid3D grid, BoundedGrid3D<float[]> textureWeightsGrid, Vector3D size, float threshold) {
+				return new MarchingCube(grid, textureWeightsGrid, size, threshold);
+			}
+		},
+		// Fewer vertices and triangles, with rounder corners on blocky terrain
+		SURFACE_NETS {
+			@Override
+			public ChunkMesher create(BoundedScalarGrid3D grid, BoundedGrid3D<float[]> textureWeightsGrid, Vector3D size, float threshold) {
+				return new SurfaceNets(grid, textureWeightsGrid, size, threshold);
+			}
+		};
+
+		public abstract ChunkMesher create(BoundedScalarGrid3D grid, BoundedGrid3D<float[]> textureWeightsGrid, Vector3D size, float threshold);
+	}
+}
@@ -0,0 +1,26 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Stages of the terrain pipeline that run on the {@link TerrainExecutor}.
+ * Later stages default to a higher priority so that work which is almost visible drains first.
+ */
+public enum TerrainStage {
+	GENERATION(0),
+	EDIT(5),
+	COLLISION(5),
+	MESH(1),
+	MODEL(2),
+	NORMALS(3),
+	DRAWABLE_DATA(4),
+	OCCLUSION(6);
+
+	private final int defaultPriority;
+
+	private TerrainStage(int defaultPriority) {
+		this.defaultPriority = defaultPriority;
+	}
+
+	public int defaultPriority() {
+		return defaultPriority;
+	}
+}
@@ -0,0 +1,55 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.time.TimeSync;
+
+/**
+ * How much main-thread work {@link UploadScheduler} may spend on GPU uploads each frame
+ */
+public interface UploadBudget {
+	public static final UploadBudget DEFAULT = new UploadBudget() {};
+
+	public static UploadBudget of(TimeSync timeSync) {
+		return new UploadBudget() {
+			@Override
+			public long remainingFrameNanos() {
+				return timeSync.getRemainingFrameNanos();
+			}
+		};
+	}
+
+	public default long maxBytesPerFrame() {
+		return 16L * 1024 * 1024;
+	}
+
+	/**
+	 * Upper bound on upload time in a frame, even if the frame has more time left
+	 */
+	public default long maxNanosPerFrame() {
+		return 10_000_000L;
+	}
+
+	/**
+	 * Time kept free for drawing the rest of the frame after uploads
+	 */
+	public default long reservedNanosPerFrame() {
+		return 4_000_000L;
+	}
+
+	/**
+	 * Uploads that run every frame regardless of budget, so that the backlog always drains
+	 */
+	public default int minUploadsPerFrame() {
+		return 1;
+	}
+
+	/**
+	 * Time left in the current frame - by default enough for {@link #maxNanosPerFrame()}
+	 */
+	public default long remainingFrameNanos() {
+		return maxNanosPerFrame() + reservedNanosPerFrame();
+	}
+
+	public default long nanosForUploads() {
+		return Math.max(0, Math.min(maxNanosPerFrame(), remainingFrameNanos() - reservedNanosPerFrame()));
+	}
+}
@@ -0,0 +1,115 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Main-thread GPU uploads, run nearest to the camera first within a per-frame byte and time budget.
+ * <p>
+ * There is at most one pending upload per key: submitting again replaces the pending upload with the newer one.
+ */
+public class UploadScheduler implements Executor {
+	private final UploadBudget budget;
+	private final Map<Object, Upload> pending = new ConcurrentHashMap<>();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder totalUploads = new LongAdder();
+	private final LongAdder totalBytes = new LongAdder();
+	private volatile int uploadsLastFrame;
+	private volatile long bytesLastFrame;
+
+	public UploadScheduler(UploadBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * @param position where the upload will be drawn, or null if it has no position (it runs after positioned uploads)
+	 * @param bytes estimated size of the upload
+	 */
+	public void submit(Object key, Vector3D position, long bytes, Runnable upload) {
+		if (pending.put(key, new Upload(position, bytes, upload)) != null) {
+			coalesced.increment();
+		}
+	}
+
+	@Override
+	public void execute(Runnable upload) {
+		submit(upload, null, 0, upload);
+	}
+
+	public void flush(Vector3D cameraPosition) {
+		long start = System.nanoTime();
+		int uploads = 0;
+		long bytes = 0;
+		if (!pending.isEmpty()) {
+			long nanosForUploads = budget.nanosForUploads();
+			long maxBytes = budget.maxBytesPerFrame();
+			int minUploads = budget.minUploadsPerFrame();
+			var queue = new ArrayList<>(pending.entrySet());
+			queue.sort(Comparator.comparingDouble(entry -> entry.getValue().distanceSquared(cameraPosition)));
+			for (var entry : queue) {
+				var upload = entry.getValue();
+				if (uploads >= minUploads &&
+						(bytes + upload.bytes() > maxBytes || System.nanoTime() - start >= nanosForUploads)) {
+					break;
+				}
+				// Skip uploads that were replaced since the snapshot; the replacement is not in this frame's order
+				if (pending.remove(entry.getKey(), upload)) {
+					upload.task().run();
+					uploads++;
+					bytes += upload.bytes();
+				}
+			}
+		}
+		uploadsLastFrame = uploads;
+		bytesLastFrame = bytes;
+		totalUploads.add(uploads);
+		totalBytes.add(bytes);
+	}
+
+	public int uploadsLastFrame() {
+		return uploadsLastFrame;
+	}
+
+	public long bytesLastFrame() {
+		return bytesLastFrame;
+	}
+
+	public int backlog() {
+		return pending.size();
+	}
+
+	public long backlogBytes() {
+		long sum = 0;
+		for (var upload : pending.values()) {
+			sum += upload.bytes();
+		}
+		return sum;
+	}
+
+	/**
+	 * Pending uploads that were replaced by a newer one before they ran
+	 */
+	public long coalescedCount() {
+		return coalesced.sum();
+	}
+
+	public long totalUploads() {
+		return totalUploads.sum();
+	}
+
+	public long totalBytes() {
+		return totalBytes.sum();
+	}
+
+	private record Upload(Vector3D position, long bytes, Runnable task) {
+		public float distanceSquared(Vector3D cameraPosition) {
+			return position == null ? Float.POSITIVE_INFINITY : position.distanceSquared(cameraPosition);
+		}
+	}
+}
@@ -11,6 +11,8 @@ import lemon.evolution.world.Location;
 import lemon.evolution.world.World;
 
 public class ItemDropEntity extends AbstractEntity implements Disposable {
+    // Height above the surface that drops are released from
+    public static final float DROP_HEIGHT = 30f;
     private final Disposables disposables = new Disposables();
     private final float radius;
     private final ItemType item;
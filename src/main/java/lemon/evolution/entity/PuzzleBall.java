@@ -8,4 +8,9 @@ public class PuzzleBall extends AbstractEntity {
 	public PuzzleBall(Location location, Vector3D velocity, Vector3D scalar) {
 		super(location, velocity, scalar);
 	}
+
+	@Override
+	public boolean collidesWithEntities() {
+		return true;
+	}
 }
@@ -1,5 +1,6 @@
 package lemon.evolution.particle.beta;
 
+import lemon.engine.draw.BufferPool;
 import lemon.engine.math.Matrix;
 import lemon.engine.math.Vector3D;
 import lemon.engine.render.MatrixType;
@@ -9,7 +10,6 @@ import lemon.engine.texture.Texture;
 import lemon.engine.toolbox.Color;
 import lemon.engine.toolbox.Disposable;
 import lemon.evolution.util.CommonPrograms3D;
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
@@ -49,7 +49,9 @@ public class ParticleSystem implements Disposable {
 			});
 			vertexBuffer = new VertexBuffer();
 			vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> { // Particle Center [x, y, z] + Size [w] + Color [r, g, b, a]
-				GL15.glBufferData(target, getInitialFloatBuffer(), GL15.GL_STREAM_DRAW);
+				var buffer = getInitialFloatBuffer();
+				GL15.glBufferData(target, buffer, GL15.GL_STREAM_DRAW);
+				BufferPool.shared().release(buffer);
 				GL20.glVertexAttribPointer(2, 4, GL11.GL_FLOAT, false, 8 * 4, 0);
 				GL20.glVertexAttribPointer(3, 4, GL11.GL_FLOAT, false, 8 * 4, 4 * 4);
 			});
@@ -66,7 +68,7 @@ public class ParticleSystem implements Disposable {
 
 	public FloatBuffer getInitialFloatBuffer() {
 		var numFloats = FLOATS_PER_PARTICLE * maxParticles;
-		var buffer = BufferUtils.createFloatBuffer(numFloats);
+		var buffer = BufferPool.shared().floats(numFloats);
 		for (int i = 0; i < numFloats; i++) {
 			buffer.put(0f);
 		}
@@ -77,7 +79,7 @@ public class ParticleSystem implements Disposable {
 	public FloatBuffer getFloatBuffer(Vector3D viewPosition) {
 		var particles = this.particles.stream().sorted(
 				Comparator.comparingDouble(p -> -p.position().distanceSquared(viewPosition))).toList();
-		var buffer = BufferUtils.createFloatBuffer(FLOATS_PER_PARTICLE * particles.size());
+		var buffer = BufferPool.shared().floats(FLOATS_PER_PARTICLE * particles.size());
 		for (Particle particle : particles) {
 			particle.position().putInBuffer(buffer);
 			buffer.put(particle.size()); // size
@@ -108,7 +110,9 @@ public class ParticleSystem implements Disposable {
 		}
 		// Update VBO
 		vertexBuffer.bind(GL15.GL_ARRAY_BUFFER, (target, vbo) -> {
-			GL15.glBufferSubData(target, 0, getFloatBuffer(viewPosition));
+			var buffer = getFloatBuffer(viewPosition);
+			GL15.glBufferSubData(target, 0, buffer);
+			BufferPool.shared().release(buffer);
 		});
 		GL11.glEnable(GL11.GL_BLEND);
 		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
@@ -14,6 +14,18 @@ public interface CollisionContext {
 
 	public default void collideWithWorld(MutableVector3D position, MutableVector3D velocity, MutableVector3D force,
 										 Vector3D scalar, float dt, BiConsumer<Vector3D, Vector3D> onCollide, Supplier<CollisionResponse> responder) {
+		collideWithWorld(position, velocity, force, scalar, dt, onCollide, responder, SphereObstacles.NONE);
+	}
+
+	/**
+	 * Also collides with the obstacles, which are spheres in world space. They are scaled into the unit sphere's space
+	 * by the smallest component of the scalar, which is exact for entities scaled the same along every axis.
+	 */
+	public default void collideWithWorld(MutableVector3D position, MutableVector3D velocity, MutableVector3D force,
+										 Vector3D scalar, float dt, BiConsumer<Vector3D, Vector3D> onCollide, Supplier<CollisionResponse> responder,
+										 SphereObstacles obstacles) {
+		float radius = Math.max(scalar.x(), Math.max(scalar.y(), scalar.z()));
+		float minScalar = Math.min(scalar.x(), Math.min(scalar.y(), scalar.z()));
 		var scalarSquared = scalar.multiply(scalar);
 		var transformed = new MutableTriangle();
 		position.divide(scalar);
@@ -21,10 +33,14 @@ public interface CollisionContext {
 		force.divide(scalar);
 		CollisionPacket.collideWithWorld((p, v) -> {
 			var collision = new Collision();
-			checkCollision(p.multiply(scalar), v.multiply(scalar), triangle -> {
+			var worldPosition = p.multiply(scalar);
+			var worldVelocity = v.multiply(scalar);
+			checkCollision(worldPosition, worldVelocity, triangle -> {
 				transformed.setAndDivideByScalar(triangle, scalar, scalarSquared);
 				CollisionPacket.checkTriangle(p, v, transformed, collision);
 			});
+			obstacles.forEachNear(worldPosition, worldVelocity, radius, sphere ->
+					CollisionPacket.checkSphere(p, v, sphere.center().divide(scalar), sphere.radius() / minScalar, collision));
 			return collision;
 		}, position, velocity, force, dt, collision -> {
 			onCollide.accept(collision.intersection().multiply(scalar), collision.negSlidePlaneNormal().multiply(scalar));
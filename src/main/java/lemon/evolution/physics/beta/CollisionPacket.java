@@ -59,6 +59,33 @@ public class CollisionPacket {
 		}
 	}
 
+	/**
+	 * Checks the unit sphere against a sphere that stays in place, the way {@link #checkTriangle} checks a triangle.
+	 * Spheres that already overlap only collide if the unit sphere is moving towards the other's center, so they can separate.
+	 */
+	public static void checkSphere(Vector3D position, Vector3D velocity, Vector3D center, float radius, Collision collision) {
+		var offset = position.subtract(center);
+		float reach = 1f + radius;
+		float a = velocity.lengthSquared();
+		float b = 2f * velocity.dotProduct(offset);
+		float c = offset.lengthSquared() - reach * reach;
+		if (c < 0f) {
+			if (b < 0f && !offset.isZero()) {
+				collision.test(0f, position.add(center.subtract(position).normalize()));
+			}
+			return;
+		}
+		float det = b * b - 4f * a * c;
+		if (a == 0f || det < 0f) {
+			return;
+		}
+		float t = (-b - (float) Math.sqrt(det)) / (2f * a);
+		if (t >= 0f && t <= 1f) {
+			var contact = position.add(velocity.multiply(t));
+			collision.test(t, contact.add(center.subtract(contact).normalize()));
+		}
+	}
+
 	private static void checkEdge(Vector3D position, Vector3D velocity, Vector3D vertexA, Vector3D vertexB, Collision collision) {
 		// https://mrl.nyu.edu/~dzorin/rend05/lecture2.pdf
 		var deltaP = position.subtract(vertexA);
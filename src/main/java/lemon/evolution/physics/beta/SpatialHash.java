@@ -0,0 +1,215 @@
+package lemon.evolution.physics.beta;
+
+import lemon.engine.math.Vector3D;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Broadphase over spheres on a uniform grid: each sphere is filed under the cell holding its center,
+ * and queries visit the cells within reach of the largest radius.
+ * <p>
+ * Spheres are added after {@link #clear()} and the grid is built by the first query after that, by counting sort
+ * into a hash table of cells, so that rebuilding every step allocates nothing once the arrays have grown.
+ * Cells that share a bucket are told apart by their packed coordinates. Not thread safe.
+ */
+public class SpatialHash<T> {
+	private static final int INITIAL_CAPACITY = 64;
+	// Cell coordinates are 21-bit two's complement, from -2^20 to 2^20 - 1
+	private static final int COORDINATE_BITS = 21;
+	private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+	private final float cellSize;
+	private final float inverseCellSize;
+	private Object[] items = new Object[INITIAL_CAPACITY];
+	private float[] xs = new float[INITIAL_CAPACITY];
+	private float[] ys = new float[INITIAL_CAPACITY];
+	private float[] zs = new float[INITIAL_CAPACITY];
+	private float[] radii = new float[INITIAL_CAPACITY];
+	private long[] cells = new long[INITIAL_CAPACITY];
+	private int[] sorted = new int[INITIAL_CAPACITY];
+	private int[] bucketStarts = new int[2 * INITIAL_CAPACITY + 1];
+	private int bucketMask = 0;
+	private int count = 0;
+	private float maxRadius = 0f;
+	private boolean built = false;
+
+	public SpatialHash(float cellSize) {
+		if (!(cellSize > 0f)) {
+			throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+		}
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1f / cellSize;
+	}
+
+	public void clear() {
+		Arrays.fill(items, 0, count, null);
+		count = 0;
+		maxRadius = 0f;
+		built = false;
+	}
+
+	public void add(T item, Vector3D center, float radius) {
+		if (count == items.length) {
+			int capacity = items.length * 2;
+			items = Arrays.copyOf(items, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			zs = Arrays.copyOf(zs, capacity);
+			radii = Arrays.copyOf(radii, capacity);
+			cells = Arrays.copyOf(cells, capacity);
+		}
+		items[count] = item;
+		xs[count] = center.x();
+		ys[count] = center.y();
+		zs[count] = center.z();
+		radii[count] = radius;
+		cells[count] = pack(cell(center.x()), cell(center.y()), cell(center.z()));
+		maxRadius = Math.max(maxRadius, radius);
+		count++;
+		built = false;
+	}
+
+	/**
+	 * Passes every sphere that overlaps (or touches) the given sphere, once each
+	 */
+	public void forEachWithin(Vector3D center, float radius, Consumer<? super T> consumer) {
+		float x = center.x();
+		float y = center.y();
+		float z = center.z();
+		forEachIn(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius, i -> {
+			float dx = xs[i] - x;
+			float dy = ys[i] - y;
+			float dz = zs[i] - z;
+			float reach = radius + radii[i];
+			return dx * dx + dy * dy + dz * dz <= reach * reach;
+		}, consumer);
+	}
+
+	/**
+	 * Passes the spheres that a sphere of the given radius may touch while moving along the displacement;
+	 * they are only tested against the bounds of the path, so the caller does the exact test
+	 */
+	public void forEachAlong(Vector3D start, Vector3D displacement, float radius, Consumer<? super T> consumer) {
+		var end = start.add(displacement);
+		float minX = Math.min(start.x(), end.x()) - radius;
+		float minY = Math.min(start.y(), end.y()) - radius;
+		float minZ = Math.min(start.z(), end.z()) - radius;
+		float maxX = Math.max(start.x(), end.x()) + radius;
+		float maxY = Math.max(start.y(), end.y()) + radius;
+		float maxZ = Math.max(start.z(), end.z()) + radius;
+		forEachOverlapping(minX, minY, minZ, maxX, maxY, maxZ, consumer);
+	}
+
+	/**
+	 * Passes every sphere that overlaps (or touches) the box from min to max, once each;
+	 * they are only tested against the box, so the caller does the exact test
+	 */
+	public void forEachOverlapping(Vector3D min, Vector3D max, Consumer<? super T> consumer) {
+		forEachOverlapping(min.x(), min.y(), min.z(), max.x(), max.y(), max.z(), consumer);
+	}
+
+	private void forEachOverlapping(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+									Consumer<? super T> consumer) {
+		forEachIn(minX, minY, minZ, maxX, maxY, maxZ, i ->
+				xs[i] + radii[i] >= minX && xs[i] - radii[i] <= maxX &&
+				ys[i] + radii[i] >= minY && ys[i] - radii[i] <= maxY &&
+				zs[i] + radii[i] >= minZ && zs[i] - radii[i] <= maxZ, consumer);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void forEachIn(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+						   IndexPredicate test, Consumer<? super T> consumer) {
+		if (count == 0) {
+			return;
+		}
+		build();
+		// A sphere is filed under its center, which can be up to the largest radius outside of the bounds
+		int minCellX = cell(minX - maxRadius);
+		int minCellY = cell(minY - maxRadius);
+		int minCellZ = cell(minZ - maxRadius);
+		int maxCellX = cell(maxX + maxRadius);
+		int maxCellY = cell(maxY + maxRadius);
+		int maxCellZ = cell(maxZ + maxRadius);
+		long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1) * ((long) maxCellZ - minCellZ + 1);
+		if (cellCount > count) {
+			// Fewer spheres than cells to visit, so scanning them all is cheaper
+			for (int i = 0; i < count; i++) {
+				if (test.test(i)) {
+					consumer.accept((T) items[i]);
+				}
+			}
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+					long key = pack(cellX, cellY, cellZ);
+					int bucket = mix(key) & bucketMask;
+					for (int j = bucketStarts[bucket]; j < bucketStarts[bucket + 1]; j++) {
+						int i = sorted[j];
+						if (cells[i] == key && test.test(i)) {
+							consumer.accept((T) items[i]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void build() {
+		if (built) {
+			return;
+		}
+		// At least twice as many buckets as spheres, so that few cells share one
+		int buckets = Math.max(2, Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1);
+		if (bucketStarts.length < buckets + 1) {
+			bucketStarts = new int[buckets + 1];
+		}
+		if (sorted.length < count) {
+			sorted = new int[items.length];
+		}
+		bucketMask = buckets - 1;
+		Arrays.fill(bucketStarts, 0, buckets + 1, 0);
+		for (int i = 0; i < count; i++) {
+			bucketStarts[mix(cells[i]) & bucketMask]++;
+		}
+		for (int i = 1; i < buckets; i++) {
+			bucketStarts[i] += bucketStarts[i - 1];
+		}
+		// Each bucket's entry holds its end until it is filled from there, which leaves its start
+		for (int i = count - 1; i >= 0; i--) {
+			sorted[--bucketStarts[mix(cells[i]) & bucketMask]] = i;
+		}
+		bucketStarts[buckets] = count;
+		built = true;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public float cellSize() {
+		return cellSize;
+	}
+
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate * inverseCellSize);
+	}
+
+	private static long pack(int x, int y, int z) {
+		return ((x & COORDINATE_MASK) << (2 * COORDINATE_BITS)) | ((y & COORDINATE_MASK) << COORDINATE_BITS) | (z & COORDINATE_MASK);
+	}
+
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private interface IndexPredicate {
+		boolean test(int index);
+	}
+}
@@ -0,0 +1,19 @@
+package lemon.evolution.physics.beta;
+
+import lemon.engine.math.Sphere;
+import lemon.engine.math.Vector3D;
+
+import java.util.function.Consumer;
+
+/**
+ * Spheres besides the terrain that a moving sphere collides with, such as other entities
+ */
+@FunctionalInterface
+public interface SphereObstacles {
+	public static final SphereObstacles NONE = (position, displacement, radius, consumer) -> {};
+
+	/**
+	 * Passes the spheres that a sphere of the given radius may touch while moving along the displacement
+	 */
+	public void forEachNear(Vector3D position, Vector3D displacement, float radius, Consumer<Sphere> consumer);
+}
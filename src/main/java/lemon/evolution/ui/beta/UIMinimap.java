@@ -5,18 +5,18 @@ import lemon.engine.frameBuffer.FrameBuffer;
 import lemon.engine.game.Player;
 import lemon.engine.math.Box2D;
 import lemon.engine.math.MathUtil;
+import lemon.engine.math.Matrix;
 import lemon.engine.math.Vector3D;
 import lemon.engine.render.CommonRenderables;
 import lemon.engine.render.MatrixType;
 import lemon.engine.texture.Texture;
 import lemon.engine.texture.TextureBank;
 import lemon.engine.toolbox.Color;
-import lemon.evolution.destructible.beta.TerrainChunk;
-import lemon.evolution.destructible.beta.TerrainRenderer;
+import lemon.evolution.destructible.beta.SurfaceHeightmap;
 import lemon.evolution.pool.MatrixPool;
 import lemon.evolution.util.CommonPrograms2D;
-import lemon.evolution.util.CommonPrograms3D;
 import lemon.evolution.world.World;
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL14;
 import org.lwjgl.opengl.GL30;
@@ -26,25 +26,47 @@ import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.function.Supplier;
 
+/**
+ * Top-down map around the current player, shaded from the terrain's surface heightmap (higher is lighter)
+ * instead of rendering the terrain a second time, with the players drawn over it
+ * <p>
+ * The terrain layer is cached in its own texture and only rebuilt when the surface in view changes,
+ * the player moves or turns noticeably, or the zoom steps; the players are drawn over a copy of it every frame.
+ */
 public class UIMinimap extends AbstractUIChildComponent {
+	private static final Color LOW_COLOR = new Color(0.1f, 0.25f, 0.1f);
+	private static final Color HIGH_COLOR = new Color(0.85f, 0.8f, 0.6f);
+	private static final float ZOOM_STEP = 10f;
+	private static final float MOVE_THRESHOLD_PIXELS = 2f;
+	private static final float TURN_THRESHOLD = MathUtil.toRadians(2f);
 	private final FrameBuffer frameBuffer;
+	private final FrameBuffer terrainFrameBuffer;
 	private final Box2D box;
 	private final World world;
 	private final Set<Player> players;
-	private final TerrainRenderer terrainRenderer;
 	private final Supplier<Player> playerSupplier;
+	private final ByteBuffer pixels;
+	private Texture colorTexture;
+	private Texture terrainTexture;
+	// State that the cached terrain layer was built for; markers are placed with it too, so they stay on the terrain
+	private Vector3D cachedCenter = null;
+	private float cachedYaw;
+	private float cachedZoom;
+	private long cachedSurfaceVersion;
+	private int rebuildCount = 0;
 
 	public UIMinimap(UIComponent parent, Box2D box, World world, Supplier<Player> entitySupplier) {
 		super(parent);
 		this.frameBuffer = disposables.add(new FrameBuffer(box));
+		this.terrainFrameBuffer = disposables.add(new FrameBuffer(box));
 		this.box = box;
 		this.world = world;
-		this.terrainRenderer = new TerrainRenderer(world.terrain(), 80f / world.terrain().scalar().x() / TerrainChunk.SIZE);
 		this.players = world.entities().ofFiltered(Player.class, disposables::add);
 		this.playerSupplier = entitySupplier;
+		this.pixels = BufferUtils.createByteBuffer((int) box.width() * (int) box.height() * 4);
 		frameBuffer.bind(frameBuffer -> {
 			GL11.glDrawBuffer(GL30.GL_COLOR_ATTACHMENT0);
-			Texture colorTexture = disposables.add(new Texture());
+			colorTexture = disposables.add(new Texture());
 			var boxWidth = (int) box.width();
 			var boxHeight = (int) box.height();
 			TextureBank.MINIMAP_COLOR.bind(() -> {
@@ -65,28 +87,54 @@ public class UIMinimap extends AbstractUIChildComponent {
 				GL32.glFramebufferTexture(GL30.GL_FRAMEBUFFER, GL30.GL_DEPTH_ATTACHMENT, depthTexture.id(), 0);
 			});
 		});
+		terrainFrameBuffer.bind(frameBuffer -> {
+			GL11.glDrawBuffer(GL30.GL_COLOR_ATTACHMENT0);
+			terrainTexture = disposables.add(new Texture());
+			TextureBank.REUSE.bind(() -> {
+				GL11.glBindTexture(GL11.GL_TEXTURE_2D, terrainTexture.id());
+				GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, (int) box.width(), (int) box.height(), 0, GL11.GL_RGBA,
+						GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+				GL11.glTexParameterf(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+				GL11.glTexParameterf(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+				GL32.glFramebufferTexture(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, terrainTexture.id(), 0);
+			});
+		});
 	}
 
 	@Override
 	public void render() {
-		frameBuffer.bind(frameBuffer -> {
-			GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-			var currentPlayer = playerSupplier.get();
-			var currentPosition = currentPlayer.position();
-			var currentRotation = currentPlayer.rotation();
-			var zoom = (float) Math.sqrt(players.stream().mapToDouble(player -> currentPosition.toXZVector().distanceSquared(player.position().toXZVector())).max().orElse(250.0)) + 20f;
-			zoom = MathUtil.clamp(zoom, 20f, 100f);
-			terrainRenderer.setRenderDistance(world.terrain().getChunkDistance(zoom + 1f));
-			var projectionMatrix = MathUtil.getOrtho(-zoom, zoom, zoom, -zoom, 0f, 1000f);
-			CommonPrograms3D.setMatrices(MatrixType.PROJECTION_MATRIX, projectionMatrix);
-			try (var translationMatrix = MatrixPool.ofTranslation(currentPosition.add(Vector3D.of(0f, 100f, 0f)).inverse());
-                 var pitchMatrix = MatrixPool.ofRotationX(MathUtil.PI / 2f);
-                 var rollMatrix = MatrixPool.ofRotationZ(-currentRotation.toEulerAngles().yaw());
-                 var rotationMatrix = MatrixPool.ofMultiplied(rollMatrix, pitchMatrix);
-                 var viewMatrix = MatrixPool.ofMultiplied(rotationMatrix, translationMatrix)) {
-				CommonPrograms3D.setMatrices(MatrixType.VIEW_MATRIX, viewMatrix);
-				terrainRenderer.render(currentPosition);
-
+		var currentPlayer = playerSupplier.get();
+		var currentPosition = currentPlayer.position();
+		var zoom = (float) Math.sqrt(players.stream().mapToDouble(player -> currentPosition.toXZVector().distanceSquared(player.position().toXZVector())).max().orElse(250.0)) + 20f;
+		zoom = MathUtil.clamp((float) Math.ceil(zoom / ZOOM_STEP) * ZOOM_STEP, 20f, 100f);
+		float yaw = currentPlayer.rotation().toEulerAngles().yaw();
+		// The map is a rotated square, so this covers its corners
+		float reach = zoom * (float) Math.sqrt(2.0);
+		long surfaceVersion = world.terrain().surfaceVersion(currentPosition.x() - reach, currentPosition.z() - reach,
+				currentPosition.x() + reach, currentPosition.z() + reach);
+		boolean rebuild = needsRebuild(currentPosition, yaw, zoom, surfaceVersion);
+		if (rebuild) {
+			cachedCenter = currentPosition;
+			cachedYaw = yaw;
+			cachedZoom = zoom;
+			cachedSurfaceVersion = surfaceVersion;
+			rebuildCount++;
+		}
+		var projectionMatrix = MathUtil.getOrtho(-cachedZoom, cachedZoom, cachedZoom, -cachedZoom, 0f, 1000f);
+		try (var translationMatrix = MatrixPool.ofTranslation(cachedCenter.add(Vector3D.of(0f, 100f, 0f)).inverse());
+			 var pitchMatrix = MatrixPool.ofRotationX(MathUtil.PI / 2f);
+			 var rollMatrix = MatrixPool.ofRotationZ(-cachedYaw);
+			 var rotationMatrix = MatrixPool.ofMultiplied(rollMatrix, pitchMatrix);
+			 var viewMatrix = MatrixPool.ofMultiplied(rotationMatrix, translationMatrix)) {
+			if (rebuild) {
+				drawTerrain(projectionMatrix, viewMatrix, cachedCenter, cachedZoom);
+			}
+			frameBuffer.bind(frameBuffer -> {
+				GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, terrainFrameBuffer.getId());
+				GL30.glBlitFramebuffer(0, 0, (int) box.width(), (int) box.height(), 0, 0, (int) box.width(), (int) box.height(),
+						GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+				GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, frameBuffer.getId());
+				GL11.glClear(GL11.GL_DEPTH_BUFFER_BIT);
 				for (var player : players) {
 					var projectedCurrentPosition = projectionMatrix.multiply(viewMatrix.multiply(player.position()));
 					var width = 8;
@@ -97,8 +145,8 @@ public class UIMinimap extends AbstractUIChildComponent {
 					CommonRenderables.renderQuad2D(new Box2D(x, y, width, height), color);
 					CommonRenderables.renderQuad2D(new Box2D(x, y, width, height), color, MathUtil.PI / 4f);
 				}
-			}
-		});
+			});
+		}
 		CommonPrograms2D.MINIMAP.use(program -> {
 			try (var translationMatrix = MatrixPool.ofTranslation(box.x() + box.width() / 2f, box.y() + box.height() / 2f, 0f);
 				 var scalarMatrix = MatrixPool.ofScalar(box.width() / 2f, box.height() / 2f, 1f);
@@ -108,4 +156,58 @@ public class UIMinimap extends AbstractUIChildComponent {
 			}
 		});
 	}
+
+	private boolean needsRebuild(Vector3D center, float yaw, float zoom, long surfaceVersion) {
+		if (cachedCenter == null || zoom != cachedZoom || surfaceVersion != cachedSurfaceVersion) {
+			return true;
+		}
+		// Moving vertically changes the shading, which is relative to the player's height
+		float moveThreshold = MOVE_THRESHOLD_PIXELS * 2f * zoom / box.width();
+		return center.distanceSquared(cachedCenter) > moveThreshold * moveThreshold
+				|| Math.abs(Math.IEEEremainder(yaw - cachedYaw, MathUtil.TAU)) > TURN_THRESHOLD;
+	}
+
+	/**
+	 * Times the terrain layer has been rebuilt
+	 */
+	public int rebuildCount() {
+		return rebuildCount;
+	}
+
+	// Looks up the surface under every pixel and uploads the shaded pixels as the cached terrain layer
+	private void drawTerrain(Matrix projectionMatrix, Matrix viewMatrix, Vector3D center, float zoom) {
+		// The projection is orthographic, so screen coordinates are an affine function of the world's x and z
+		var origin = projectionMatrix.multiply(viewMatrix.multiply(center));
+		var alongX = projectionMatrix.multiply(viewMatrix.multiply(center.add(Vector3D.of(1f, 0f, 0f)))).subtract(origin);
+		var alongZ = projectionMatrix.multiply(viewMatrix.multiply(center.add(Vector3D.of(0f, 0f, 1f)))).subtract(origin);
+		float determinant = alongX.x() * alongZ.y() - alongZ.x() * alongX.y();
+		int width = (int) box.width();
+		int height = (int) box.height();
+		var terrain = world.terrain();
+		pixels.clear();
+		for (int j = 0; j < height; j++) {
+			float v = (j + 0.5f) / height * 2f - 1f - origin.y();
+			for (int i = 0; i < width; i++) {
+				float u = (i + 0.5f) / width * 2f - 1f - origin.x();
+				float x = center.x() + (u * alongZ.y() - alongZ.x() * v) / determinant;
+				float z = center.z() + (alongX.x() * v - u * alongX.y()) / determinant;
+				float surface = terrain.surfaceHeight(x, z);
+				// Black where nothing has been generated (or there is no ground)
+				float t = surface == SurfaceHeightmap.NO_SURFACE ? -1f : MathUtil.saturate(0.5f + (surface - center.y()) / zoom);
+				pixels.put(shade(LOW_COLOR.red(), HIGH_COLOR.red(), t))
+						.put(shade(LOW_COLOR.green(), HIGH_COLOR.green(), t))
+						.put(shade(LOW_COLOR.blue(), HIGH_COLOR.blue(), t))
+						.put((byte) 255);
+			}
+		}
+		pixels.flip();
+		TextureBank.REUSE.bind(() -> {
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, terrainTexture.id());
+			GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+		});
+	}
+
+	private static byte shade(float low, float high, float t) {
+		return t < 0f ? 0 : (byte) (int) ((low + (high - low) * t) * 255f);
+	}
 }
@@ -89,6 +89,7 @@ public class CsvWorldLoader implements Loader {
 						}
 					}
 				}
+				terrain.flushEdits();
 				numLinesProcessed = totalLines;
 				postLoadCallback.accept(this);
 			} catch (IOException e) {
@@ -24,6 +24,13 @@ public interface Entity {
 	public default Vector3D scalar() {
 		return Vector3D.ONE;
 	}
+	/**
+	 * Radius of the sphere that bounds the entity, which other entities collide with and radius queries test
+	 */
+	public default float boundingRadius() {
+		var scalar = scalar();
+		return Math.max(scalar.x(), Math.max(scalar.y(), scalar.z()));
+	}
 	public MutableVector3D mutablePosition();
 	public MutableVector3D mutableVelocity();
 	public MutableVector3D mutableForce();
@@ -38,6 +45,13 @@ public interface Entity {
 	public default CollisionResponse getCollisionResponse() {
 		return CollisionResponse.SLIDE;
 	}
+	/**
+	 * Whether the entity collides with the other entities that do; off by default,
+	 * so that projectiles and pickups pass through whatever they are launched from or collected by
+	 */
+	public default boolean collidesWithEntities() {
+		return false;
+	}
 	public GroundWatcher groundWatcher();
 	public EntityMeta meta();
 	public default void setType(Object o) {
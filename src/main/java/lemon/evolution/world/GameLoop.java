@@ -89,7 +89,8 @@ public class GameLoop implements Disposable {
 			var angle = MathUtil.TAU * Math.random();
 			var cos = Math.cos(angle);
 			var sin = Math.sin(angle);
-			var location = new Location(player.world(), Vector3D.of((float) (radius * cos), 100f, (float) (radius * sin)));
+			var location = new Location(player.world(),
+					world.spawnPosition((float) (radius * cos), (float) (radius * sin), ItemDropEntity.DROP_HEIGHT));
 			world.entities().add(new ItemDropEntity(location));
 		}));
 	}
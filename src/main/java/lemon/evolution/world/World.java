@@ -2,48 +2,54 @@ package lemon.evolution.world;
 
 import lemon.engine.event.EventWith2;
 import lemon.engine.game.Player;
+import lemon.engine.math.MutableVector3D;
+import lemon.engine.math.Sphere;
 import lemon.engine.math.Vector3D;
 import lemon.engine.toolbox.Disposable;
 import lemon.engine.toolbox.Disposables;
 import lemon.evolution.MapInfo;
+import lemon.evolution.destructible.beta.SurfaceHeightmap;
 import lemon.evolution.destructible.beta.Terrain;
 import lemon.evolution.physics.beta.CollisionContext;
+import lemon.evolution.physics.beta.SpatialHash;
+import lemon.evolution.physics.beta.SphereObstacles;
 import lemon.futility.FBufferedSetWithEvents;
 import lemon.futility.FilterableFSetWithEvents;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class World implements Disposable {
 	public static final Vector3D GRAVITY_VECTOR = Vector3D.of(0, -0.07f, 0);
 	public static final float AIR_RESISTANCE = -0.02f;
 	public static final float VOID_Y_COORDINATE = 0f;
+	public static final float SPAWN_Y_COORDINATE = 100f;
+	// Around twice the radius of most entities, so that a query usually visits a few cells with few entities each
+	public static final float ENTITY_CELL_SIZE = 4f;
 	private final Disposables disposables = new Disposables();
 	private final Terrain terrain;
 	private final CollisionContext collisionContext;
 	private final FBufferedSetWithEvents<Entity> entities = new FBufferedSetWithEvents<>();
 	private final FilterableFSetWithEvents<Entity> filterableEntities = new FilterableFSetWithEvents<>(entities);
+	private final SpatialHash<Entity> entityIndex = new SpatialHash<>(ENTITY_CELL_SIZE);
 	private final EventWith2<Vector3D, Float> onExplosion = new EventWith2<>();
+	private final List<Explosion> pendingExplosions = new ArrayList<>();
+	private final MutableVector3D explosionImpulse = MutableVector3D.ofZero();
+	private float maxEntitySpeed = 0f;
+	private float indexMargin = 0f;
 	private final MapInfo mapInfo;
 
 	public World(Terrain terrain, CollisionContext collisionContext, MapInfo mapInfo) {
-		this.terrain = terrain;
+		this.terrain = disposables.add(terrain);
 		this.collisionContext = collisionContext;
 		this.mapInfo = mapInfo;
 	}
 
 	public void generateExplosion(Vector3D position, float radius) {
-		terrain.generateExplosion(position, radius);
-		players().forEach(player -> {
-			float strength = Math.min(radius / 3f, 3f * radius / player.position().distanceSquared(position));
-			var direction = player.position().subtract(position);
-			if (direction.isZero()) {
-				direction = Vector3D.ofRandomUnitVector();
-			}
-			player.mutableVelocity().add(direction.scaleToLength(strength));
-			player.damage(strength * 20f);
-		});
-		onExplosion.callListeners(position, radius);
+		generateExplosion(position, radius, null);
 	}
 
 	public void generateLineExplosion() {
@@ -51,22 +57,19 @@ public class World implements Disposable {
 	}
 
 	public void generateExclusiveExplosion(Vector3D position, float radius, Player playerExcluded) {
+		generateExplosion(position, radius, playerExcluded);
+	}
+
+	// The terrain is carved right away (and remeshed on flush), but knockback and damage wait for the end of the step
+	private void generateExplosion(Vector3D position, float radius, Entity excluded) {
 		terrain.generateExplosion(position, radius);
-		players().forEach(player -> {
-			if (player != playerExcluded) {
-				float strength = Math.min(radius / 3f, 3f * radius / player.position().distanceSquared(position));
-				var direction = player.position().subtract(position);
-				if (direction.equals(Vector3D.ZERO)) {
-					direction = Vector3D.ofRandomUnitVector();
-				}
-				player.mutableVelocity().add(direction.scaleToLength(strength));
-				player.damage(strength * 20f);
-			}
-		});
+		pendingExplosions.add(new Explosion(position, radius, excluded));
 		onExplosion.callListeners(position, radius);
 	}
 
 	public void update(float dt) {
+		// Entities that have already moved this step can be this far from where they were indexed
+		indexMargin = maxEntitySpeed * dt;
 		entities.forEach(entity -> {
 			entity.onUpdate().callListeners();
 			collisionContext.collideWithWorld(
@@ -76,13 +79,124 @@ public class World implements Disposable {
 					entity.scalar(),
 					dt,
 					entity.onCollide()::callListeners,
-					entity::getCollisionResponse
+					entity::getCollisionResponse,
+					entity.collidesWithEntities() ? entityObstacles(entity) : SphereObstacles.NONE
 			);
 			entity.mutableForce().set(entity.getEnvironmentalForce());
 		});
 		entities.removeIf(entity -> entity.position().y() < VOID_Y_COORDINATE ||
 				entity.position().toXZVector().lengthSquared() > mapInfo.worldRadius() * mapInfo.worldRadius());
 		entities.flush();
+		rebuildEntityIndex();
+		applyExplosions();
+		// Explosions this frame are applied together, so a chunk hit by several is only remeshed once
+		terrain.flushEdits();
+	}
+
+	/**
+	 * Entities whose bounding spheres overlap the sphere, found through the index rebuilt at the end of every step
+	 * (so entities added since then are not included)
+	 */
+	public List<Entity> entitiesWithin(Vector3D position, float radius) {
+		List<Entity> within = new ArrayList<>();
+		forEachEntityWithin(position, radius, within::add);
+		return within;
+	}
+
+	private void forEachEntityWithin(Vector3D position, float radius, Consumer<Entity> consumer) {
+		entityIndex.forEachWithin(position, radius + indexMargin, entity -> {
+			float reach = radius + entity.boundingRadius();
+			if (entity.position().distanceSquared(position) <= reach * reach) {
+				consumer.accept(entity);
+			}
+		});
+	}
+
+	private void rebuildEntityIndex() {
+		entityIndex.clear();
+		indexMargin = 0f;
+		maxEntitySpeed = 0f;
+		entities.forEach(entity -> {
+			entityIndex.add(entity, entity.position(), entity.boundingRadius());
+			maxEntitySpeed = Math.max(maxEntitySpeed, entity.velocity().length());
+		});
+	}
+
+	// The other entities that collide with entities, where they are now rather than where they were indexed
+	private SphereObstacles entityObstacles(Entity entity) {
+		return (position, displacement, radius, consumer) ->
+				entityIndex.forEachAlong(position, displacement, radius + indexMargin, other -> {
+					if (other != entity && other.collidesWithEntities()) {
+						consumer.accept(new Sphere(other.position(), other.boundingRadius()));
+					}
+				});
+	}
+
+	// Sums the knockback and damage of this step's explosions, so that each entity is pushed and damaged once.
+	// The index is queried once over the bounds of all of them, rather than once per explosion,
+	// since a volley's explosions reach over far more cells than there are entities near them.
+	private void applyExplosions() {
+		if (pendingExplosions.isEmpty()) {
+			return;
+		}
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		float maxZ = -Float.MAX_VALUE;
+		for (var explosion : pendingExplosions) {
+			var position = explosion.position();
+			float reach = explosion.reach() + indexMargin;
+			minX = Math.min(minX, position.x() - reach);
+			minY = Math.min(minY, position.y() - reach);
+			minZ = Math.min(minZ, position.z() - reach);
+			maxX = Math.max(maxX, position.x() + reach);
+			maxY = Math.max(maxY, position.y() + reach);
+			maxZ = Math.max(maxZ, position.z() + reach);
+		}
+		entityIndex.forEachOverlapping(Vector3D.of(minX, minY, minZ), Vector3D.of(maxX, maxY, maxZ), entity -> {
+			explosionImpulse.set(0f, 0f, 0f);
+			float damage = 0f;
+			boolean reached = false;
+			for (var explosion : pendingExplosions) {
+				if (entity == explosion.excluded()) {
+					continue;
+				}
+				var direction = entity.position().subtract(explosion.position());
+				float distanceSquared = direction.lengthSquared();
+				float reach = explosion.reach() + entity.boundingRadius();
+				if (distanceSquared > reach * reach) {
+					continue;
+				}
+				float strength = explosion.strength(distanceSquared);
+				if (direction.isZero()) {
+					direction = Vector3D.ofRandomUnitVector();
+				}
+				explosionImpulse.add(direction.scaleToLength(strength));
+				damage += strength * 20f;
+				reached = true;
+			}
+			if (!reached) {
+				return;
+			}
+			entity.mutableVelocity().add(explosionImpulse.asImmutable());
+			// Keeps the margin for next step's entity collisions covering entities that were blasted
+			maxEntitySpeed = Math.max(maxEntitySpeed, entity.velocity().length());
+			if (entity instanceof Player player) {
+				player.damage(damage);
+			}
+		});
+		pendingExplosions.clear();
+	}
+
+	/**
+	 * The point at the given height above the terrain's surface, or at {@link #SPAWN_Y_COORDINATE}
+	 * (to fall onto the terrain) where it has not been generated yet
+	 */
+	public Vector3D spawnPosition(float x, float z, float clearance) {
+		float surface = terrain.surfaceHeight(x, z);
+		return Vector3D.of(x, surface == SurfaceHeightmap.NO_SURFACE ? SPAWN_Y_COORDINATE : surface + clearance, z);
 	}
 
 	public Vector3D getEnvironmentalForce(Entity entity) {
@@ -117,4 +231,18 @@ public class World implements Disposable {
 	public Disposable onExplosion(BiConsumer<Vector3D, Float> listener) {
 		return onExplosion.add(listener);
 	}
+
+	private record Explosion(Vector3D position, float radius, Entity excluded) {
+		// Knockback weaker than this is dropped, which bounds how far the explosion reaches
+		private static final float MIN_STRENGTH = 0.01f;
+
+		private float strength(float distanceSquared) {
+			return Math.min(radius / 3f, 3f * radius / distanceSquared);
+		}
+
+		private float reach() {
+			return (float) Math.sqrt(3f * radius / MIN_STRENGTH);
+		}
+	}
+
 }
@@ -1,19 +1,19 @@
 package lemon.evolution.world;
 
+import lemon.engine.math.Frustum;
 import lemon.engine.math.Vector3D;
 import lemon.engine.toolbox.Disposable;
 import lemon.engine.toolbox.Disposables;
-import lemon.evolution.destructible.beta.TerrainChunk;
 import lemon.evolution.destructible.beta.TerrainRenderer;
 
 public class WorldRenderer implements Disposable {
-	private static final float RENDER_DISTANCE = 160f / TerrainChunk.SIZE;
+	private static final float RENDER_DISTANCE = 160f; // in samples, whatever the chunk size
 	private final Disposables disposables = new Disposables();
 	private final TerrainRenderer terrainRenderer;
 	private final EntityRenderer entityRenderer;
 
 	public WorldRenderer(World world) {
-		this.terrainRenderer = new TerrainRenderer(world.terrain(), RENDER_DISTANCE);
+		this.terrainRenderer = new TerrainRenderer(world.terrain(), RENDER_DISTANCE / world.terrain().chunkSize());
 		this.entityRenderer = new EntityRenderer(world.filterableEntities());
 	}
 
@@ -22,6 +22,11 @@ public class WorldRenderer implements Disposable {
 		entityRenderer.render();
 	}
 
+	public void render(Vector3D position, Frustum frustum) {
+		terrainRenderer.render(position, frustum);
+		entityRenderer.render();
+	}
+
 	public TerrainRenderer terrainRenderer() {
 		return terrainRenderer;
 	}
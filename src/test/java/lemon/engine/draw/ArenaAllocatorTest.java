@@ -0,0 +1,120 @@
+package lemon.engine.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArenaAllocatorTest {
+	@Test
+	public void testAllocateAndFree() {
+		var allocator = new ArenaAllocator(100);
+		var a = allocator.allocate(30).orElseThrow();
+		var b = allocator.allocate(30).orElseThrow();
+		var c = allocator.allocate(40).orElseThrow();
+		assertEquals(0, a.offset());
+		assertEquals(30, b.offset());
+		assertEquals(60, c.offset());
+		assertTrue(allocator.allocate(1).isEmpty());
+		allocator.free(b);
+		assertTrue(b.isFreed());
+		assertThrows(IllegalArgumentException.class, () -> allocator.free(b));
+		assertEquals(30, allocator.freeUnits());
+		// Best fit reuses the hole
+		assertEquals(30, allocator.allocate(20).orElseThrow().offset());
+	}
+
+	@Test
+	public void testFreeBlocksAreMerged() {
+		var allocator = new ArenaAllocator(90);
+		var a = allocator.allocate(30).orElseThrow();
+		var b = allocator.allocate(30).orElseThrow();
+		var c = allocator.allocate(30).orElseThrow();
+		allocator.free(a);
+		allocator.free(c);
+		assertEquals(2, allocator.freeBlockCount());
+		assertEquals(0.5f, allocator.fragmentation());
+		allocator.free(b);
+		assertEquals(1, allocator.freeBlockCount());
+		assertEquals(90, allocator.largestFreeBlock());
+		assertEquals(0f, allocator.fragmentation());
+	}
+
+	@Test
+	public void testCompaction() {
+		var allocator = new ArenaAllocator(100);
+		var blocks = new ArrayList<ArenaAllocator.Block>();
+		for (int i = 0; i < 10; i++) {
+			blocks.add(allocator.allocate(10).orElseThrow());
+		}
+		for (int i = 0; i < 10; i += 2) {
+			allocator.free(blocks.get(i));
+		}
+		// 50 units free, but no single block can fit 20
+		assertEquals(50, allocator.freeUnits());
+		assertTrue(allocator.allocate(20).isEmpty());
+		assertTrue(allocator.fitsAfterCompaction(20));
+		// Simulate the backing buffer: each unit stores the id of the block that owns it
+		int[] memory = new int[100];
+		for (int i = 1; i < 10; i += 2) {
+			Arrays.fill(memory, blocks.get(i).offset(), blocks.get(i).offset() + 10, i);
+		}
+		int moved = allocator.compact((from, to, size) -> {
+			assertTrue(to < from);
+			System.arraycopy(memory, from, memory, to, size);
+		});
+		assertEquals(5, moved);
+		assertEquals(1, allocator.freeBlockCount());
+		assertEquals(0f, allocator.fragmentation());
+		for (int i = 1; i < 10; i += 2) {
+			var block = blocks.get(i);
+			for (int j = 0; j < block.size(); j++) {
+				assertEquals(i, memory[block.offset() + j]);
+			}
+		}
+		assertEquals(50, allocator.allocate(50).orElseThrow().offset());
+	}
+
+	@Test
+	public void testRandomChurn() {
+		var random = new Random(0);
+		var allocator = new ArenaAllocator(1 << 16);
+		var live = new ArrayList<ArenaAllocator.Block>();
+		int failures = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (!live.isEmpty() && random.nextInt(3) == 0) {
+				allocator.free(live.remove(random.nextInt(live.size())));
+			} else {
+				int size = 1 + random.nextInt(2000);
+				var block = allocator.allocate(size);
+				if (block.isEmpty() && allocator.fitsAfterCompaction(size)) {
+					failures++;
+					allocator.compact((from, to, count) -> {});
+					block = allocator.allocate(size);
+					assertTrue(block.isPresent());
+				}
+				block.ifPresent(live::add);
+			}
+			assertInvariants(allocator, live);
+		}
+		assertTrue(failures > 0, "Expected fragmentation to require compaction");
+	}
+
+	private static void assertInvariants(ArenaAllocator allocator, List<ArenaAllocator.Block> live) {
+		int used = 0;
+		int end = 0;
+		for (var block : allocator.blocks()) {
+			assertTrue(block.offset() >= end, "Overlapping blocks");
+			end = block.offset() + block.size();
+			used += block.size();
+		}
+		assertTrue(end <= allocator.capacity());
+		assertEquals(live.size(), allocator.blockCount());
+		assertEquals(used, allocator.usedUnits());
+		assertTrue(allocator.largestFreeBlock() <= allocator.freeUnits());
+	}
+}
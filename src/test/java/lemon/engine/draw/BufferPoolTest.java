@@ -0,0 +1,66 @@
+package lemon.engine.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+	@Test
+	public void testReleasedBuffersAreReused() {
+		var pool = new BufferPool(1024 * 1024);
+		var buffer = pool.floats(1000);
+		assertTrue(buffer.isDirect());
+		assertEquals(ByteOrder.nativeOrder(), buffer.order());
+		assertEquals(1024, buffer.capacity());
+		assertEquals(1000, buffer.limit());
+		assertEquals(0, buffer.position());
+		buffer.put(1f);
+		pool.release(buffer);
+		var reused = pool.floats(600);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(600, reused.limit());
+		// Different size class
+		assertNotSame(buffer, pool.floats(300));
+	}
+
+	@Test
+	public void testTypesArePooledSeparately() {
+		var pool = new BufferPool(1024 * 1024);
+		pool.release(pool.ints(256));
+		pool.release(pool.bytes(256));
+		assertEquals(256 * Integer.BYTES + 256, pool.pooledBytes());
+		var floats = pool.floats(256);
+		assertEquals(256 * Integer.BYTES + 256 + 256 * Float.BYTES, pool.offHeapBytes());
+		pool.release(floats);
+	}
+
+	@Test
+	public void testUsageStatistics() {
+		var pool = new BufferPool(4096);
+		var first = pool.bytes(4096);
+		var second = pool.bytes(4096);
+		assertEquals(8192, pool.offHeapBytes());
+		assertEquals(8192, pool.inUseBytes());
+		pool.release(first);
+		assertEquals(4096, pool.pooledBytes());
+		assertEquals(4096, pool.inUseBytes());
+		// Over the pooling limit, so the buffer is dropped
+		pool.release(second);
+		assertEquals(4096, pool.offHeapBytes());
+		assertEquals(0, pool.inUseBytes());
+		assertEquals(8192, pool.peakOffHeapBytes());
+	}
+
+	@Test
+	public void testOversizedBuffersAreNotPooled() {
+		var pool = new BufferPool(Long.MAX_VALUE);
+		var buffer = pool.bytes((1 << 24) + 1);
+		assertEquals((1 << 24) + 1, buffer.capacity());
+		pool.release(buffer);
+		assertEquals(0, pool.offHeapBytes());
+		assertEquals(0, pool.pooledBytes());
+	}
+}
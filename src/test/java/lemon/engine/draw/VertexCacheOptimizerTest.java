@@ -0,0 +1,82 @@
+package lemon.engine.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VertexCacheOptimizerTest {
+	private static final int GRID_SIZE = 64;
+
+	// Two triangles per cell, in row order
+	private static int[] grid() {
+		var indices = new int[(GRID_SIZE - 1) * (GRID_SIZE - 1) * 6];
+		int n = 0;
+		for (int i = 0; i < GRID_SIZE - 1; i++) {
+			for (int j = 0; j < GRID_SIZE - 1; j++) {
+				int a = i * GRID_SIZE + j;
+				int b = a + 1;
+				int c = a + GRID_SIZE;
+				int d = c + 1;
+				indices[n++] = a;
+				indices[n++] = c;
+				indices[n++] = b;
+				indices[n++] = b;
+				indices[n++] = c;
+				indices[n++] = d;
+			}
+		}
+		return indices;
+	}
+
+	// Canonical rotation of each triangle, so windings must match
+	private static Map<List<Integer>, Integer> triangles(int[] indices) {
+		Map<List<Integer>, Integer> triangles = new HashMap<>();
+		for (int i = 0; i < indices.length; i += 3) {
+			var triangle = new ArrayList<>(List.of(indices[i], indices[i + 1], indices[i + 2]));
+			while (triangle.get(0) != Math.min(indices[i], Math.min(indices[i + 1], indices[i + 2]))) {
+				triangle.add(triangle.remove(0));
+			}
+			triangles.merge(triangle, 1, Integer::sum);
+		}
+		return triangles;
+	}
+
+	@Test
+	public void testSameTriangles() {
+		var indices = grid();
+		var optimized = VertexCacheOptimizer.optimize(indices, GRID_SIZE * GRID_SIZE);
+		assertEquals(indices.length, optimized.length);
+		assertEquals(triangles(indices), triangles(optimized));
+	}
+
+	@Test
+	public void testLowerAcmr() {
+		var indices = grid();
+		var optimized = VertexCacheOptimizer.optimize(indices, GRID_SIZE * GRID_SIZE);
+		float original = VertexCacheOptimizer.getAcmr(indices);
+		float acmr = VertexCacheOptimizer.getAcmr(optimized);
+		assertTrue(acmr < original, () -> acmr + " >= " + original);
+		assertTrue(acmr < 0.8f, () -> "ACMR " + acmr);
+	}
+
+	@Test
+	public void testAcmr() {
+		// Every vertex is a miss in a cache of one vertex
+		assertEquals(3f, VertexCacheOptimizer.getAcmr(new int[] {0, 1, 2, 2, 1, 3}, 1));
+		// Only the new vertex of the second triangle misses
+		assertEquals(2f, VertexCacheOptimizer.getAcmr(new int[] {0, 1, 2, 2, 1, 3}, 3));
+		assertEquals(0f, VertexCacheOptimizer.getAcmr(new int[0]));
+	}
+
+	@Test
+	public void testDegenerateAndEmpty() {
+		assertEquals(0, VertexCacheOptimizer.optimize(new int[0], 0).length);
+		var indices = new int[] {0, 0, 1, 1, 2, 3, 0, 3, 3};
+		assertEquals(triangles(indices), triangles(VertexCacheOptimizer.optimize(indices, 4)));
+	}
+}
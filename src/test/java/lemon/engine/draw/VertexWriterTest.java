@@ -0,0 +1,65 @@
+package lemon.engine.draw;
+
+import lemon.engine.math.FloatData;
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VertexWriterTest {
+	@Test
+	public void testLayout() {
+		var layout = VertexLayout.of(3, 3, 4, 4);
+		assertEquals(4, layout.numAttributes());
+		assertEquals(14, layout.stride());
+		assertEquals(6, layout.offset(2));
+		assertEquals(VertexLayout.of(3, 3, 4, 4), layout);
+		assertNotEquals(VertexLayout.of(3, 3, 4), layout);
+		assertThrows(IllegalArgumentException.class, () -> VertexLayout.of(5));
+	}
+
+	@Test
+	public void testInterleavesSources() {
+		Vector3D[] positions = {Vector3D.of(1f, 2f, 3f), Vector3D.of(4f, 5f, 6f)};
+		float[] uvs = {0.1f, 0.2f, 0.3f, 0.4f};
+		float[][] weights = {{1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f}, {9f, 10f, 11f, 12f, 13f, 14f, 15f, 16f}};
+		var writer = VertexWriter.builder(2)
+				.add(positions)
+				.add(uvs, 2)
+				.add(weights, 0, 4, 1)
+				.add(weights, 4, 4, 1)
+				.build();
+		assertEquals(VertexLayout.of(3, 2, 4, 4), writer.layout());
+		var buffer = FloatBuffer.allocate(writer.numFloats());
+		writer.write(buffer);
+		assertArrayEquals(new float[] {
+				1f, 2f, 3f, 0.1f, 0.2f, 1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f,
+				4f, 5f, 6f, 0.3f, 0.4f, 9f, 10f, 11f, 12f, 13f, 14f, 15f, 16f
+		}, buffer.array());
+	}
+
+	@Test
+	public void testMatchesFloatData() {
+		float[][] weights = {{1f, 2f, 3f, 4f}, {5f, 6f, 7f, 8f}, {9f, 10f, 11f, 12f}};
+		Vector3D[] positions = {Vector3D.ZERO, Vector3D.ONE, Vector3D.of(1f, 2f, 3f)};
+		FloatData[][] vertices = {
+				positions,
+				{FloatData.of(weights[0], 2, 2), FloatData.of(weights[1], 2, 2), FloatData.of(weights[2], 2, 2)}
+		};
+		var expected = VertexWriter.of(vertices);
+		var actual = VertexWriter.builder(3).add(positions).add(weights, 2, 2, 1).build();
+		assertEquals(expected.layout(), actual.layout());
+		var expectedBuffer = FloatBuffer.allocate(expected.numFloats());
+		var actualBuffer = FloatBuffer.allocate(actual.numFloats());
+		expected.write(expectedBuffer);
+		actual.write(actualBuffer);
+		assertArrayEquals(expectedBuffer.array(), actualBuffer.array());
+	}
+
+	@Test
+	public void testMismatchedLengths() {
+		assertThrows(IllegalArgumentException.class, () -> VertexWriter.builder(2).add(new float[] {1f, 2f}, 2));
+	}
+}
@@ -0,0 +1,76 @@
+package lemon.engine.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention benchmark: many reader threads polling {@link Computable#requestAndGetValue()} the way the render
+ * thread polls every visible chunk, while a small pool of writers keeps invalidating and recomputing the graph.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.engine.event.ComputableBenchmark [readers] [writers] [seconds]
+ */
+public class ComputableBenchmark {
+	private static final int NUM_COMPUTABLES = 1024;
+
+	public static void main(String[] args) throws InterruptedException {
+		int numReaders = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int numWriters = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		ExecutorService pool = Executors.newFixedThreadPool(numWriters);
+		List<Computable<float[]>> sources = new ArrayList<>();
+		List<Computable<Float>> dependers = new ArrayList<>();
+		for (int i = 0; i < NUM_COMPUTABLES; i++) {
+			var source = new Computable<float[]>(c -> c.compute(new float[64]));
+			source.request();
+			sources.add(source);
+			dependers.add(source.then(pool, (c, data) -> {
+				float sum = 0f;
+				for (float f : data) {
+					sum += f;
+				}
+				c.compute(sum);
+			}));
+		}
+		var running = new AtomicBoolean(true);
+		var reads = new LongAdder();
+		var writes = new LongAdder();
+		var threads = new ArrayList<Thread>();
+		for (int i = 0; i < numReaders; i++) {
+			int seed = i;
+			threads.add(new Thread(() -> {
+				int index = seed;
+				while (running.get()) {
+					dependers.get(index).requestAndGetValue();
+					index = (index + 1) % NUM_COMPUTABLES;
+					reads.increment();
+				}
+			}));
+		}
+		for (int i = 0; i < numWriters; i++) {
+			int seed = i * 7919;
+			threads.add(new Thread(() -> {
+				int index = seed % NUM_COMPUTABLES;
+				while (running.get()) {
+					sources.get(index).compute(data -> data[0]++);
+					index = (index + 31) % NUM_COMPUTABLES;
+					writes.increment();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		TimeUnit.SECONDS.sleep(seconds);
+		running.set(false);
+		for (var thread : threads) {
+			thread.join();
+		}
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		System.out.printf("readers=%d, writers=%d, reads/s=%.0f, writes/s=%.0f%n",
+				numReaders, numWriters, reads.sum() / (double) seconds, writes.sum() / (double) seconds);
+	}
+}
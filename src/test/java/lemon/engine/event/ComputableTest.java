@@ -0,0 +1,153 @@
+package lemon.engine.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputableTest {
+	private static final int NUM_THREADS = 8;
+	private static final int ITERATIONS = 20000;
+	private ExecutorService pool;
+
+	@BeforeEach
+	public void setup() {
+		pool = Executors.newFixedThreadPool(NUM_THREADS);
+	}
+
+	@AfterEach
+	public void cleanup() throws InterruptedException {
+		pool.shutdownNow();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testRequestComputesOnce() {
+		var count = new AtomicInteger();
+		var computable = new Computable<String>(c -> {
+			count.incrementAndGet();
+			c.compute("value");
+		});
+		assertTrue(computable.needsUpdate());
+		assertEquals("value", computable.requestAndGetValue().orElseThrow());
+		computable.request();
+		assertFalse(computable.needsUpdate());
+		assertFalse(computable.isComputing());
+		assertEquals(1, count.get());
+	}
+
+	@Test
+	public void testComputePropagatesToDependers() {
+		var source = new Computable<Integer>(c -> c.compute(1));
+		Computable<Integer> doubled = source.then((c, value) -> c.compute(value * 2));
+		Computable<Integer> quadrupled = doubled.then((c, value) -> c.compute(value * 2));
+		assertEquals(4, quadrupled.requestAndGetValue().orElseThrow());
+		source.compute(3);
+		assertTrue(doubled.needsUpdate());
+		assertTrue(quadrupled.needsUpdate());
+		assertEquals(12, quadrupled.requestAndGetValue().orElseThrow());
+	}
+
+	@Test
+	public void testListenerNeverGetsOlderValue() throws InterruptedException {
+		var source = new Computable<Integer>(c -> c.compute(1));
+		var version = new AtomicInteger(1);
+		var computable = new Computable<Integer>(c -> pool.execute(() -> c.compute(version.get())));
+		source.addDepender(computable);
+		var received = new LinkedBlockingQueue<Integer>();
+		computable.request(first -> {
+			// Invalidated while its listeners are being called, so the next listener starts a newer computation
+			version.set(2);
+			source.compute(2);
+			computable.request(received::add);
+		});
+		assertEquals(2, received.poll(10, TimeUnit.SECONDS));
+		assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testConcurrentInPlaceWritesAreNotLost() throws InterruptedException {
+		var computable = new Computable<int[]>(c -> c.compute(new int[1]));
+		computable.request();
+		var latch = new CountDownLatch(NUM_THREADS);
+		for (int i = 0; i < NUM_THREADS; i++) {
+			pool.execute(() -> {
+				for (int j = 0; j < ITERATIONS; j++) {
+					computable.compute(array -> {
+						array[0]++;
+					});
+				}
+				latch.countDown();
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		assertEquals(NUM_THREADS * ITERATIONS, computable.getValueOrThrow()[0]);
+	}
+
+	@Test
+	public void testInvalidationDuringComputeIsNotLost() throws InterruptedException {
+		var source = new Computable<Long>(c -> c.compute(0L));
+		source.request();
+		Computable<Long> depender = source.then(pool, (c, value) -> c.compute(value));
+		var lastWritten = new AtomicLong();
+		var writers = new CountDownLatch(NUM_THREADS / 2);
+		for (int i = 0; i < NUM_THREADS / 2; i++) {
+			pool.execute(() -> {
+				for (int j = 0; j < ITERATIONS; j++) {
+					source.compute((UnaryOperator<Long>) current -> lastWritten.incrementAndGet(), () -> 0L);
+				}
+				writers.countDown();
+			});
+		}
+		// Readers hammer the depender while the source keeps changing underneath it
+		while (writers.getCount() > 0) {
+			depender.requestAndGetValue();
+		}
+		assertTrue(writers.await(30, TimeUnit.SECONDS));
+		var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (System.nanoTime() < deadline && !depender.getValue().equals(source.getValue())) {
+			depender.request();
+			Thread.onSpinWait();
+		}
+		assertEquals(lastWritten.get(), source.getValueOrThrow());
+		assertEquals(source.getValueOrThrow(), depender.getValueOrThrow());
+	}
+
+	@Test
+	public void testEveryCallbackIsCalledExactlyOnce() throws InterruptedException {
+		var source = new Computable<Integer>(c -> c.compute(0));
+		Computable<Integer> depender = source.then(pool, (c, value) -> c.compute(value));
+		var calls = new AtomicInteger();
+		var callbacks = new CountDownLatch(NUM_THREADS * ITERATIONS);
+		var threads = new CountDownLatch(NUM_THREADS);
+		for (int i = 0; i < NUM_THREADS; i++) {
+			int finalI = i;
+			new Thread(() -> {
+				for (int j = 0; j < ITERATIONS; j++) {
+					if (finalI == 0 && j % 10 == 0) {
+						source.compute(j);
+					}
+					depender.request(value -> {
+						calls.incrementAndGet();
+						callbacks.countDown();
+					});
+				}
+				threads.countDown();
+			}).start();
+		}
+		assertTrue(threads.await(30, TimeUnit.SECONDS));
+		assertTrue(callbacks.await(30, TimeUnit.SECONDS), () -> "Missing callbacks: " + callbacks.getCount());
+		Thread.sleep(50);
+		assertEquals(NUM_THREADS * ITERATIONS, calls.get());
+	}
+}
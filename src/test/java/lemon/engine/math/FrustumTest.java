@@ -0,0 +1,58 @@
+package lemon.engine.math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrustumTest {
+	// Camera at the origin looking down -z with a 90 degree field of view
+	private static final Frustum PERSPECTIVE = Frustum.of(MathUtil.getPerspective(new Projection(MathUtil.PI / 2f, 1f, 0.1f, 100f)));
+
+	@Test
+	public void testPoints() {
+		assertTrue(PERSPECTIVE.contains(Vector3D.of(0f, 0f, -10f)));
+		assertTrue(PERSPECTIVE.contains(Vector3D.of(9f, -9f, -10f)));
+		assertFalse(PERSPECTIVE.contains(Vector3D.of(11f, 0f, -10f)));
+		assertFalse(PERSPECTIVE.contains(Vector3D.of(0f, 0f, 10f)));
+		assertFalse(PERSPECTIVE.contains(Vector3D.of(0f, 0f, -0.05f)));
+		assertFalse(PERSPECTIVE.contains(Vector3D.of(0f, 0f, -101f)));
+	}
+
+	@Test
+	public void testBoxes() {
+		assertTrue(PERSPECTIVE.intersectsBox(-1f, -1f, -11f, 1f, 1f, -9f));
+		// Behind the camera
+		assertFalse(PERSPECTIVE.intersectsBox(-1f, -1f, 9f, 1f, 1f, 11f));
+		// Straddling the right plane
+		assertTrue(PERSPECTIVE.intersectsBox(9f, -1f, -11f, 12f, 1f, -9f));
+		// Entirely to the right
+		assertFalse(PERSPECTIVE.intersectsBox(12f, -1f, -11f, 14f, 1f, -9f));
+		// Beyond the far plane
+		assertFalse(PERSPECTIVE.intersects(Vector3D.of(-1f, -1f, -200f), Vector3D.of(1f, 1f, -150f)));
+		// Contains the whole frustum
+		assertTrue(PERSPECTIVE.intersectsBox(-1000f, -1000f, -1000f, 1000f, 1000f, 1000f));
+	}
+
+	@Test
+	public void testSpheres() {
+		assertTrue(PERSPECTIVE.intersects(new Sphere(Vector3D.of(0f, 0f, 1f), 2f)));
+		assertFalse(PERSPECTIVE.intersects(new Sphere(Vector3D.of(0f, 0f, 5f), 2f)));
+	}
+
+	@Test
+	public void testViewMatrix() {
+		// Turned around to look down +z
+		var view = MathUtil.getRotationY(MathUtil.PI);
+		var frustum = Frustum.of(MathUtil.getPerspective(new Projection(MathUtil.PI / 2f, 1f, 0.1f, 100f)), view);
+		assertTrue(frustum.contains(Vector3D.of(0f, 0f, 10f)));
+		assertFalse(frustum.contains(Vector3D.of(0f, 0f, -10f)));
+	}
+
+	@Test
+	public void testOrtho() {
+		var frustum = Frustum.of(MathUtil.getOrtho(-10f, 10f, 10f, -10f, 0f, 100f));
+		assertTrue(frustum.intersectsBox(5f, 5f, -50f, 15f, 15f, -40f));
+		assertFalse(frustum.intersectsBox(11f, 0f, -50f, 15f, 1f, -40f));
+		assertTrue(frustum.contains(Vector3D.of(-9f, 9f, -99f)));
+	}
+}
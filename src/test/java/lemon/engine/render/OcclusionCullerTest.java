@@ -0,0 +1,119 @@
+package lemon.engine.render;
+
+import lemon.engine.math.MathUtil;
+import lemon.engine.math.Matrix;
+import lemon.engine.math.Projection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OcclusionCullerTest {
+	// Camera at the origin looking down -z with a 90 degree field of view
+	private static final Matrix PERSPECTIVE = MathUtil.getPerspective(new Projection(MathUtil.PI / 2f, 1f, 0.1f, 1000f));
+	private OcclusionCuller culler;
+
+	@BeforeEach
+	public void setup() {
+		culler = new OcclusionCuller(64, 64);
+	}
+
+	@Test
+	public void testPyramid() {
+		assertEquals(7, culler.levelCount());
+		assertEquals(4, new OcclusionCuller(5, 3).levelCount());
+	}
+
+	@Test
+	public void testEmptyScene() {
+		culler.begin(PERSPECTIVE);
+		culler.finish();
+		assertTrue(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+		assertEquals(0, culler.occludedCount());
+	}
+
+	@Test
+	public void testWall() {
+		culler.begin(PERSPECTIVE);
+		// Covers the middle half of the screen at z = -10
+		culler.addOccluderBox(-5f, -5f, -11f, 5f, 5f, -10f);
+		culler.finish();
+		assertTrue(culler.occluderTriangleCount() > 0);
+		assertTrue(culler.getDepth(32, 32) < 1f);
+		assertEquals(1f, culler.getDepth(0, 0));
+		// Directly behind the wall
+		assertFalse(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+		// Behind the wall, but it is big enough to still be hidden
+		assertFalse(culler.isVisible(3f, -3f, -31f, 8f, 3f, -29f));
+		// In front of the wall
+		assertTrue(culler.isVisible(-1f, -1f, -6f, 1f, 1f, -5f));
+		// Behind the wall, off to the side
+		assertTrue(culler.isVisible(20f, -1f, -31f, 22f, 1f, -29f));
+		// Peeking out from behind the wall
+		assertTrue(culler.isVisible(10f, -1f, -31f, 20f, 1f, -29f));
+		// Intersecting the wall
+		assertTrue(culler.isVisible(-1f, -1f, -12f, 1f, 1f, -9f));
+		// Crossing the near plane
+		assertTrue(culler.isVisible(-1f, -1f, -1f, 1f, 1f, 1f));
+		assertEquals(2, culler.occludedCount());
+		assertEquals(7, culler.testedCount());
+	}
+
+	@Test
+	public void testPeekingLessThanTexel() {
+		culler.begin(PERSPECTIVE);
+		// Right edge at x = 49.7 on screen, which covers the center of texel 49 but not all of it
+		culler.addOccluderBox(-5f, -5f, -11f, 5.53125f, 5f, -10f);
+		culler.finish();
+		assertEquals(1f, culler.getDepth(49, 32));
+		assertTrue(culler.getDepth(48, 32) < 1f);
+		// Spans x = 48 to 49.9 on screen, so only a fifth of a texel shows past the edge
+		assertTrue(culler.isVisible(15.5f, -0.3f, -31f, 16.221875f, 0.3f, -29f));
+		// Entirely behind the edge
+		assertFalse(culler.isVisible(13.6f, -0.3f, -31f, 14.4f, 0.3f, -29f));
+	}
+
+	@Test
+	public void testCameraInsideOccluder() {
+		culler.begin(PERSPECTIVE);
+		culler.addOccluderBox(-5f, -5f, -5f, 5f, 5f, 5f);
+		culler.finish();
+		// Only back faces are visible from inside, which do not occlude
+		assertEquals(1f, culler.getDepth(32, 32));
+		assertTrue(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+	}
+
+	@Test
+	public void testOccluderCrossingNearPlane() {
+		culler.begin(PERSPECTIVE);
+		// Ground plane slab below the camera that extends behind it
+		culler.addOccluderBox(-100f, -20f, -100f, 100f, -2f, 100f);
+		culler.finish();
+		// Buried under the ground
+		assertFalse(culler.isVisible(-1f, -10f, -31f, 1f, -8f, -29f));
+		// Above the ground
+		assertTrue(culler.isVisible(-1f, 0f, -31f, 1f, 2f, -29f));
+	}
+
+	@Test
+	public void testTriangleOccluder() {
+		culler.begin(PERSPECTIVE);
+		// Both windings occlude
+		culler.addOccluderTriangle(-50f, -50f, -10f, 50f, -50f, -10f, 0f, 50f, -10f);
+		culler.addOccluderTriangle(-50f, -50f, -10f, 0f, 50f, -10f, 50f, -50f, -10f);
+		culler.finish();
+		assertEquals(2, culler.occluderTriangleCount());
+		assertFalse(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+	}
+
+	@Test
+	public void testBeginClears() {
+		culler.begin(PERSPECTIVE);
+		culler.addOccluderBox(-5f, -5f, -11f, 5f, 5f, -10f);
+		culler.finish();
+		assertFalse(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+		culler.begin(PERSPECTIVE);
+		culler.finish();
+		assertTrue(culler.isVisible(-1f, -1f, -31f, 1f, 1f, -29f));
+	}
+}
@@ -0,0 +1,44 @@
+package lemon.engine.time;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+	private static final double RELATIVE_ERROR = 1.0 / 32.0;
+
+	@Test
+	public void testEmpty() {
+		var histogram = new LatencyHistogram();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.percentile(99));
+		assertEquals(0.0, histogram.mean());
+	}
+
+	@Test
+	public void testBucketsCoverValues() {
+		for (long value : new long[] {0, 1, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE}) {
+			int index = LatencyHistogram.index(value);
+			long highest = LatencyHistogram.highestEquivalentValue(index);
+			assertTrue(highest >= value, () -> value + " > " + highest);
+			assertTrue(highest - value <= value * RELATIVE_ERROR, () -> value + " reported as " + highest);
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		var histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(1_000_000L, histogram.max());
+		assertEquals(500_500.0, histogram.mean(), 0.001);
+		assertEquals(500_000.0, histogram.percentile(50), 500_000.0 * RELATIVE_ERROR);
+		assertEquals(990_000.0, histogram.percentile(99), 990_000.0 * RELATIVE_ERROR);
+		assertEquals(1_000_000L, histogram.percentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.max());
+	}
+}
@@ -0,0 +1,85 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.function.AbsoluteIntValue;
+import lemon.engine.function.SzudzikIntPair;
+import lemon.engine.math.Vector3D;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nanoseconds per chunk lookup: the boxed ConcurrentHashMap keyed by Szudzik pairs that Terrain used to have,
+ * the ChunkMap that replaced it, and TerrainChunk's cached links to its neighbors.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.ChunkLookupBenchmark [radius] [iterations]
+ */
+public class ChunkLookupBenchmark {
+	private static final int VISITS = 1 << 17;
+
+	public static void main(String[] args) {
+		int radius = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		var executor = new TerrainExecutor();
+		var terrain = new Terrain(new TerrainGenerator(Runnable::run, point -> -1f), executor, Vector3D.of(1f, 1f, 1f));
+		int side = radius * 2 + 1;
+		var chunks = new TerrainChunk[side * side * side];
+		Map<Long, TerrainChunk> boxed = new ConcurrentHashMap<>();
+		for (int i = 0; i < chunks.length; i++) {
+			int x = i / (side * side) - radius;
+			int y = (i / side) % side - radius;
+			int z = i % side - radius;
+			chunks[i] = terrain.getChunk(x, y, z);
+			boxed.put(szudzik(x, y, z), chunks[i]);
+		}
+		// Visit chunks in a fixed pseudorandom order, looking up the whole 3x3x3 block around each like the normals stage does.
+		// Only inner chunks are visited, since getNeighboringChunk creates missing chunks.
+		int inner = side - 2;
+		var order = new int[VISITS];
+		long seed = 42;
+		for (int i = 0; i < VISITS; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			int index = (int) ((seed >>> 33) % (inner * inner * inner));
+			order[i] = ((index / (inner * inner) + 1) * side + (index / inner) % inner + 1) * side + index % inner + 1;
+		}
+		System.out.printf("%d chunks, %d lookups%n", chunks.length, VISITS * 27);
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			long checksum = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < VISITS; i++) {
+				var chunk = chunks[order[i]];
+				for (int offset = 0; offset < 27; offset++) {
+					checksum += boxed.get(szudzik(chunk.getChunkX() + offset / 9 - 1, chunk.getChunkY() + offset / 3 % 3 - 1,
+							chunk.getChunkZ() + offset % 3 - 1)).getChunkX();
+				}
+			}
+			long boxedNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < VISITS; i++) {
+				var chunk = chunks[order[i]];
+				for (int offset = 0; offset < 27; offset++) {
+					checksum += terrain.findChunk(chunk.getChunkX() + offset / 9 - 1, chunk.getChunkY() + offset / 3 % 3 - 1,
+							chunk.getChunkZ() + offset % 3 - 1).getChunkX();
+				}
+			}
+			long mapNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < VISITS; i++) {
+				var chunk = chunks[order[i]];
+				for (int offset = 0; offset < 27; offset++) {
+					checksum += chunk.getNeighboringChunk(offset / 9 - 1, offset / 3 % 3 - 1, offset % 3 - 1).getChunkX();
+				}
+			}
+			long linkNanos = System.nanoTime() - start;
+			double lookups = VISITS * 27.0;
+			System.out.printf("boxed=%.1fns, chunkMap=%.1fns, neighborLinks=%.1fns (checksum=%d)%n",
+					boxedNanos / lookups, mapNanos / lookups, linkNanos / lookups, checksum);
+		}
+		terrain.dispose();
+		executor.dispose();
+	}
+
+	private static long szudzik(int x, int y, int z) {
+		return SzudzikIntPair.pair(AbsoluteIntValue.HASHED.applyAsInt(x), AbsoluteIntValue.HASHED.applyAsInt(y),
+				AbsoluteIntValue.HASHED.applyAsInt(z));
+	}
+}
@@ -0,0 +1,64 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkMapTest {
+	private static final int NUM_THREADS = 4;
+
+	@Test
+	public void testPackIsUniqueAroundOrigin() {
+		var keys = new HashSet<Long>();
+		for (int x = -8; x <= 8; x++) {
+			for (int y = -8; y <= 8; y++) {
+				for (int z = -8; z <= 8; z++) {
+					assertTrue(keys.add(ChunkMap.pack(x, y, z)));
+				}
+			}
+		}
+		assertNotEquals(ChunkMap.pack(-1 << 20, 0, 0), ChunkMap.pack((1 << 20) - 1, 0, 0));
+	}
+
+	@Test
+	public void testGetAfterGrowing() {
+		var map = new ChunkMap<String>();
+		for (int i = -5000; i < 5000; i++) {
+			int value = i;
+			assertEquals(Integer.toString(i), map.computeIfAbsent(ChunkMap.pack(i, -i, i * 7), key -> Integer.toString(value)));
+		}
+		assertEquals(10000, map.size());
+		for (int i = -5000; i < 5000; i++) {
+			assertEquals(Integer.toString(i), map.get(ChunkMap.pack(i, -i, i * 7)));
+		}
+		assertNull(map.get(ChunkMap.pack(1, 1, 1)));
+		assertEquals("0", map.computeIfAbsent(ChunkMap.pack(0, 0, 0), key -> "other"));
+	}
+
+	@Test
+	public void testConcurrentComputeCreatesOnce() throws InterruptedException {
+		var map = new ChunkMap<Object>();
+		var created = new AtomicInteger();
+		var done = new CountDownLatch(NUM_THREADS);
+		for (int i = 0; i < NUM_THREADS; i++) {
+			new Thread(() -> {
+				for (int x = 0; x < 40; x++) {
+					for (int z = 0; z < 40; z++) {
+						assertNotNull(map.computeIfAbsent(ChunkMap.pack(x, 0, z), key -> {
+							created.incrementAndGet();
+							return new Object();
+						}));
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+		done.await();
+		assertEquals(1600, created.get());
+		assertEquals(1600, map.size());
+	}
+}
@@ -0,0 +1,59 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkOccludersTest {
+	private static float[][][] scalars(ScalarFunction function) {
+		var scalars = new float[TerrainChunk.DEFAULT_SIZE][TerrainChunk.DEFAULT_SIZE][TerrainChunk.DEFAULT_SIZE];
+		for (int i = 0; i < TerrainChunk.DEFAULT_SIZE; i++) {
+			for (int j = 0; j < TerrainChunk.DEFAULT_SIZE; j++) {
+				for (int k = 0; k < TerrainChunk.DEFAULT_SIZE; k++) {
+					scalars[i][j][k] = function.get(i, j, k);
+				}
+			}
+		}
+		return scalars;
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, ChunkOccluders.of(scalars((x, y, z) -> -1f), 0f).numBoxes());
+	}
+
+	@Test
+	public void testSolidChunkIsOneBox() {
+		var occluders = ChunkOccluders.of(scalars((x, y, z) -> 1f), 0f);
+		assertArrayEquals(new int[] {0, 0, 0, 31, 31, 31}, occluders.boxes());
+	}
+
+	@Test
+	public void testGroundStopsBelowSurface() {
+		// Solid below y = 16; the block from 12 to 16 touches the surface and is excluded
+		var occluders = ChunkOccluders.of(scalars((x, y, z) -> 16f - y - 0.5f), 0f);
+		assertArrayEquals(new int[] {0, 0, 0, 31, 12, 31}, occluders.boxes());
+	}
+
+	@Test
+	public void testHoleSplitsBoxes() {
+		var occluders = ChunkOccluders.of(scalars((x, y, z) -> x == 10 && y == 10 && z == 10 ? -1f : 1f), 0f);
+		int volume = 0;
+		for (int i = 0; i < occluders.boxes().length; i += 6) {
+			var boxes = occluders.boxes();
+			int blocksX = (int) Math.ceil((boxes[i + 3] - boxes[i]) / (float) ChunkOccluders.BLOCK_SIZE);
+			int blocksY = (int) Math.ceil((boxes[i + 4] - boxes[i + 1]) / (float) ChunkOccluders.BLOCK_SIZE);
+			int blocksZ = (int) Math.ceil((boxes[i + 5] - boxes[i + 2]) / (float) ChunkOccluders.BLOCK_SIZE);
+			volume += blocksX * blocksY * blocksZ;
+			// No box contains the hole
+			assertFalse(boxes[i] <= 10 && 10 <= boxes[i + 3] && boxes[i + 1] <= 10 && 10 <= boxes[i + 4]
+					&& boxes[i + 2] <= 10 && 10 <= boxes[i + 5]);
+		}
+		assertEquals(8 * 8 * 8 - 1, volume);
+		assertTrue(occluders.numBoxes() < 10);
+	}
+
+	private interface ScalarFunction {
+		float get(int x, int y, int z);
+	}
+}
@@ -0,0 +1,108 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkPrefetcherTest {
+	private TerrainExecutor executor;
+	private Terrain terrain;
+	private ChunkPrefetcher prefetcher;
+
+	@BeforeEach
+	public void setup() {
+		executor = new TerrainExecutor();
+		terrain = new Terrain(new TerrainGenerator(Runnable::run, point -> -1f), executor, Vector3D.of(1f, 1f, 1f));
+		prefetcher = new ChunkPrefetcher(terrain);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		terrain.dispose();
+		executor.dispose();
+	}
+
+	@Test
+	public void testRequestsSoonestChunksWithinBudget() {
+		// Enters chunk 1 after 16 ticks and chunk 2 after 48
+		prefetcher.prefetchPath(Vector3D.of(16f, 16f, 16f), Vector3D.of(1f, 0f, 0f), Vector3D.ZERO, 1f);
+		prefetcher.flush(1f);
+		assertEquals(TerrainSettings.DEFAULT.prefetchBudget(), prefetcher.requestCount());
+		// The chunk entered first, then its faces; its corners are past the budget
+		assertTrue(isPrefetched(1, 0, 0));
+		assertTrue(isPrefetched(1, 0, 1));
+		assertFalse(isPrefetched(1, 1, 1));
+		// Nothing new was added since
+		prefetcher.flush(1f);
+		assertEquals(TerrainSettings.DEFAULT.prefetchBudget(), prefetcher.requestCount());
+	}
+
+	@Test
+	public void testExpiresAfterTwiceTheHorizon() {
+		prefetcher.prefetchPath(Vector3D.of(16f, 16f, 16f), Vector3D.of(1f, 0f, 0f), Vector3D.ZERO, 1f);
+		prefetcher.flush(1f);
+		int horizon = TerrainSettings.DEFAULT.prefetchTicks();
+		// Many short frames add up to less than twice the horizon
+		for (int i = 0; i < 4 * horizon; i++) {
+			prefetcher.flush(0.25f);
+		}
+		assertEquals(0, prefetcher.expiredCount());
+		prefetcher.flush(horizon + 1f);
+		assertEquals(TerrainSettings.DEFAULT.prefetchBudget(), prefetcher.expiredCount());
+	}
+
+	@Test
+	public void testGravityBendsPath() {
+		// Falls out of chunk 0 after about 17 ticks, when it has only moved 3.4 along x
+		prefetcher.prefetchPath(Vector3D.of(16f, 16f, 16f), Vector3D.of(0.2f, 0f, 0f), Vector3D.of(0f, -0.1f, 0f), 1f);
+		prefetcher.flush(1f);
+		assertTrue(isPrefetched(0, -1, 0));
+	}
+
+	@Test
+	public void testHitRate() {
+		prefetcher.prefetchPath(Vector3D.of(16f, 16f, 16f), Vector3D.of(1f, 0f, 0f), Vector3D.ZERO, 1f);
+		prefetcher.flush(1f);
+		prefetcher.onDrawn(terrain.getChunk(1, 0, 0), 0, true);
+		prefetcher.onDrawn(terrain.getChunk(1, 0, 0), 0, true);
+		prefetcher.onDrawn(terrain.getChunk(1, 1, 0), 0, false);
+		// Drawn at another level than the one prefetched
+		prefetcher.onDrawn(terrain.getChunk(1, 0, 1), 1, true);
+		// Not prefetched
+		prefetcher.onDrawn(terrain.getChunk(3, 0, 0), 0, false);
+		assertEquals(1, prefetcher.hitCount());
+		assertEquals(2, prefetcher.missCount());
+		assertEquals(1, prefetcher.mispredictedCount());
+		assertEquals(1f / 3f, prefetcher.hitRate(), 1e-6f);
+	}
+
+	@Test
+	public void testPredictsLevelFromCamera() {
+		// Coarser levels further than 2 chunks from the viewpoint
+		var requested = new HashMap<TerrainChunk, Integer>();
+		var predicting = new ChunkPrefetcher(terrain, (chunk, viewpoint) ->
+				Math.abs(chunk.getChunkX() - terrain.getChunkX(viewpoint.x())) >= 2 ? 1 : 0, requested::put);
+		// Without a camera yet, the path is seen from its start
+		predicting.prefetchPath(Vector3D.of(16f, 16f, 16f), Vector3D.of(1f, 0f, 0f), Vector3D.ZERO, 1f);
+		predicting.flush(1f);
+		assertEquals(0, requested.get(terrain.getChunk(1, 0, 0)));
+		assertEquals(1, requested.get(terrain.getChunk(2, 0, 0)));
+		predicting.onDrawn(terrain.getChunk(1, 0, 0), 0, true);
+		predicting.onDrawn(terrain.getChunk(2, 0, 0), 1, true);
+		predicting.onDrawn(terrain.getChunk(1, 0, 1), 1, true);
+		assertEquals(2, predicting.hitCount());
+		assertEquals(1, predicting.mispredictedCount());
+	}
+
+	// Draws the chunk, which counts as a hit if it was prefetched
+	private boolean isPrefetched(int chunkX, int chunkY, int chunkZ) {
+		long hits = prefetcher.hitCount();
+		prefetcher.onDrawn(terrain.getChunk(chunkX, chunkY, chunkZ), 0, true);
+		return prefetcher.hitCount() > hits;
+	}
+}
@@ -0,0 +1,111 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps chunk sizes over the same rolling hills (128x64x128 samples): the time to generate, mesh and build collision
+ * for the whole area, the time from a small terraform until every chunk's model is current again,
+ * the draw calls (chunks with triangles at full detail) and the memory held by samples and models.
+ * Smaller chunks remesh less after an edit but take more draw calls; the default is {@link TerrainChunk#DEFAULT_SIZE}.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.ChunkSizeBenchmark [sizes] [edits]
+ */
+public class ChunkSizeBenchmark {
+	private static final int AREA_XZ = 128;
+	private static final int AREA_Y = 64;
+
+	public static void main(String[] args) throws InterruptedException {
+		String[] sizes = (args.length > 0 ? args[0] : "16,32,64").split(",");
+		int edits = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		for (var size : sizes) {
+			run(Integer.parseInt(size), edits);
+		}
+	}
+
+	private static void run(int chunkSize, int edits) throws InterruptedException {
+		var executor = new TerrainExecutor();
+		var settings = new TerrainSettings() {
+			@Override
+			public int chunkSize() {
+				return chunkSize;
+			}
+		};
+		var terrain = new Terrain(new TerrainGenerator(executor.executor(TerrainStage.GENERATION), ChunkSizeBenchmark::hills),
+				executor, Vector3D.of(1f, 1f, 1f), UploadBudget.DEFAULT, settings);
+		List<TerrainChunk> chunks = new ArrayList<>();
+		for (int i = 0; i < AREA_XZ / chunkSize; i++) {
+			for (int j = 0; j < AREA_Y / chunkSize; j++) {
+				for (int k = 0; k < AREA_XZ / chunkSize; k++) {
+					chunks.add(terrain.getChunk(i, j, k));
+				}
+			}
+		}
+		long start = System.nanoTime();
+		var loaded = new CountDownLatch(chunks.size() * 2);
+		for (var chunk : chunks) {
+			chunk.model().request(model -> loaded.countDown());
+			chunk.collision().request(collision -> loaded.countDown());
+		}
+		await(loaded);
+		long loadNanos = System.nanoTime() - start;
+		long remeshNanos = 0;
+		long seed = 42;
+		for (int i = 0; i < edits; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			float x = 16f + (seed >>> 33) % (AREA_XZ - 32);
+			float z = 16f + (seed >>> 17) % (AREA_XZ - 32);
+			var point = Vector3D.of(x, hills(Vector3D.of(x, 0f, z)), z);
+			var edited = new int[1];
+			terrain.forEachChunk(point, 4f, chunk -> edited[0]++);
+			long published = terrain.pipeline().editLatency(PipelineStage.DATA).count() + edited[0];
+			long editStart = System.nanoTime();
+			terrain.terraform(point, 4f, 1f, -100f, 0);
+			terrain.flushEdits();
+			// Wait for the edited data to be published before requesting, or the stale models would count as current
+			while (terrain.pipeline().editLatency(PipelineStage.DATA).count() < published) {
+				Thread.onSpinWait();
+			}
+			var remeshed = new CountDownLatch(chunks.size());
+			for (var chunk : chunks) {
+				chunk.model().request(model -> remeshed.countDown());
+			}
+			await(remeshed);
+			remeshNanos += System.nanoTime() - editStart;
+		}
+		int drawCalls = 0;
+		long sampleBytes = 0;
+		long modelBytes = 0;
+		for (var chunk : chunks) {
+			var model = chunk.model().getValueOrThrow();
+			if (model.indices().length > 0) {
+				drawCalls++;
+			}
+			sampleBytes += (long) chunkSize * chunkSize * chunkSize * Float.BYTES;
+			modelBytes += (long) model.vertices().length * TerrainChunk.VERTEX_LAYOUT.stride() * Float.BYTES
+					+ (long) model.indices().length * Integer.BYTES;
+		}
+		System.out.printf("size=%d: chunks=%d, load=%.1fms, remesh=%.2fms/edit, drawCalls=%d, samples=%.1fMB, models=%.1fMB%n",
+				chunkSize, chunks.size(), loadNanos / 1e6, remeshNanos / 1e6 / edits, drawCalls,
+				sampleBytes / 1e6, modelBytes / 1e6);
+		terrain.dispose();
+		executor.dispose();
+	}
+
+	private static void await(CountDownLatch latch) throws InterruptedException {
+		if (!latch.await(60, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Timed out waiting for the terrain");
+		}
+	}
+
+	// Solid below a height field of overlapping waves, crossing the middle of the area
+	private static float hills(Vector3D point) {
+		float height = 32f + 8f * (float) (Math.sin(point.x() * 0.07) * Math.cos(point.z() * 0.05))
+				+ 3f * (float) Math.sin((point.x() + point.z()) * 0.3);
+		return height - point.y();
+	}
+}
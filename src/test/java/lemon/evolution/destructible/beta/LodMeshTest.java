@@ -0,0 +1,53 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LodMeshTest {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE + 1;
+
+	// Solid below y = 10.5
+	private static MarchingCube newFlatMarchingCube() {
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		return new MarchingCube(BoundedScalarGrid3D.of((x, y, z) -> 10.5f - y, SIZE, SIZE, SIZE),
+				BoundedGrid3D.of((x, y, z) -> textureWeights, SIZE, SIZE, SIZE), TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+	}
+
+	@Test
+	public void testCoarserStepsHaveFewerTriangles() {
+		var marchingCube = newFlatMarchingCube();
+		int full = marchingCube.generateMesh().indices().length / 3;
+		int half = marchingCube.generateMesh(2).indices().length / 3;
+		int quarter = marchingCube.generateMesh(4).indices().length / 3;
+		assertEquals(full, marchingCube.generateMesh(1).indices().length / 3);
+		assertEquals(full / 4, half);
+		assertEquals(full / 16, quarter);
+	}
+
+	@Test
+	public void testSkirtsAlongBorder() {
+		var mesh = newFlatMarchingCube().generateMesh(2);
+		var lodMesh = LodMesh.of(mesh, TerrainChunk.DEFAULT_SIZE, 2f);
+		// 16 cells along each of the 4 sides, with 4 skirt triangles per border edge
+		assertEquals(4 * 16 * 4, lodMesh.skirtTriangles());
+		assertEquals(mesh.indices().length / 3 + lodMesh.skirtTriangles(), lodMesh.triangleCount());
+		for (int i = 0; i < mesh.vertices().length; i++) {
+			assertEquals(mesh.vertices()[i], lodMesh.vertices()[i]);
+		}
+		for (int i = mesh.vertices().length; i < lodMesh.vertices().length; i++) {
+			// Skirts hang below the surface
+			assertEquals(8.5f, lodMesh.vertices()[i].y(), 1e-4f);
+		}
+	}
+
+	@Test
+	public void testFaceNormals() {
+		var lodMesh = LodMesh.of(newFlatMarchingCube().generateMesh(4), TerrainChunk.DEFAULT_SIZE, 4f);
+		for (var normal : lodMesh.normals()) {
+			assertEquals(0f, normal.x(), 1e-4f);
+			assertEquals(1f, Math.abs(normal.y()), 1e-4f);
+			assertEquals(0f, normal.z(), 1e-4f);
+		}
+	}
+}
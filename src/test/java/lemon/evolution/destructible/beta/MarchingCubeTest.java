@@ -0,0 +1,59 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MarchingCubeTest {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE + 1;
+
+	@Test
+	public void testSlabsMatchSerialMesh() {
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		var marchingCube = new MarchingCube(BoundedScalarGrid3D.of((x, y, z) ->
+				12f + 4f * (float) Math.sin(x * 0.4) * (float) Math.cos(z * 0.3) - y, SIZE),
+				BoundedGrid3D.of((x, y, z) -> textureWeights, SIZE), TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+		for (int step : new int[] {1, 2}) {
+			var serial = marchingCube.generateMesh(step);
+			// Including uneven splits, and more slabs than cells
+			for (int slabs : new int[] {2, 3, 4, 7, 64}) {
+				var slabbed = marchingCube.generateSlabs(step, slabs);
+				assertArrayEquals(serial.indices(), slabbed.indices());
+				assertArrayEquals(serial.vertices(), slabbed.vertices());
+				assertArrayEquals(serial.prenormalHashes(), slabbed.prenormalHashes());
+				assertArrayEquals(serial.triangleCoords(), slabbed.triangleCoords());
+				assertEquals(serial.textureWeights().length, slabbed.textureWeights().length);
+			}
+		}
+	}
+
+	@Test
+	public void testForksOnlyToIdleWorkers() throws InterruptedException, ExecutionException {
+		// Not in a fork/join pool
+		assertEquals(1, MarchingCube.forkableSlabs(4));
+		var pool = new ForkJoinPool(2);
+		try {
+			assertEquals(2, pool.submit(() -> MarchingCube.forkableSlabs(4)).get());
+			// Every other worker is busy
+			var started = new CountDownLatch(1);
+			var release = new CountDownLatch(1);
+			pool.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			started.await();
+			assertEquals(1, pool.submit(() -> MarchingCube.forkableSlabs(4)).get());
+			release.countDown();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Reports the triangles removed by {@link MeshDecimator} per chunk on blocky terrain like the voxelized maps
+ * (terraces with vertical walls), and how long decimation takes.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.MeshDecimationBenchmark [chunks] [maxError] [iterations]
+ */
+public class MeshDecimationBenchmark {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE + 1;
+	private static final float BORDER_EPSILON = 1e-4f;
+
+	public static void main(String[] args) {
+		int chunks = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		float maxError = args.length > 1 ? Float.parseFloat(args[1]) : 0.01f;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		long totalOriginal = 0;
+		long totalDecimated = 0;
+		for (int chunkX = 0; chunkX < chunks; chunkX++) {
+			for (int chunkZ = 0; chunkZ < chunks; chunkZ++) {
+				int offsetX = chunkX * TerrainChunk.DEFAULT_SIZE;
+				int offsetZ = chunkZ * TerrainChunk.DEFAULT_SIZE;
+				var marchingCube = new MarchingCube(BoundedScalarGrid3D.of((x, y, z) -> {
+					// Terraces 4 voxels high, stepping every 10 voxels
+					int terrace = Math.floorDiv(offsetX + x, 10) + Math.floorDiv(offsetZ + z, 10);
+					return 8.5f + 4f * Math.floorMod(terrace, 4) - y;
+				}, SIZE, SIZE, SIZE), BoundedGrid3D.of((x, y, z) -> textureWeights, SIZE, SIZE, SIZE),
+						TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+				// Best of several runs, so that the JIT has warmed up
+				long meshNanos = Long.MAX_VALUE;
+				long decimateNanos = Long.MAX_VALUE;
+				MarchingCubeMesh mesh = null;
+				MeshDecimator.DecimatedMesh decimated = null;
+				for (int i = 0; i < iterations; i++) {
+					long start = System.nanoTime();
+					mesh = marchingCube.generateMesh();
+					meshNanos = Math.min(meshNanos, System.nanoTime() - start);
+					var vertices = mesh.vertices();
+					start = System.nanoTime();
+					decimated = MeshDecimator.decimate(mesh.indices(), vertices, mesh.textureWeights(), 0.05f,
+							index -> isOnBorder(vertices[index].x()) || isOnBorder(vertices[index].y()) || isOnBorder(vertices[index].z()), maxError);
+					decimateNanos = Math.min(decimateNanos, System.nanoTime() - start);
+				}
+				System.out.printf("chunk=[%d, %d]: triangles=%d -> %d (%.1f%%), vertices=%d -> %d, mesh=%.1fms, decimate=%.1fms%n",
+						chunkX, chunkZ, decimated.originalTriangles(), decimated.triangleCount(),
+						100.0 * decimated.triangleCount() / decimated.originalTriangles(),
+						mesh.vertices().length, decimated.vertexMap().length, meshNanos / 1_000_000.0, decimateNanos / 1_000_000.0);
+				totalOriginal += decimated.originalTriangles();
+				totalDecimated += decimated.triangleCount();
+			}
+		}
+		System.out.printf("maxError=%f: triangles=%d -> %d (%.1f%%)%n", maxError, totalOriginal, totalDecimated, 100.0 * totalDecimated / totalOriginal);
+	}
+
+	private static boolean isOnBorder(float coordinate) {
+		return Math.abs(coordinate) < BORDER_EPSILON || Math.abs(coordinate - TerrainChunk.DEFAULT_SIZE) < BORDER_EPSILON;
+	}
+}
@@ -0,0 +1,87 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshDecimatorTest {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE + 1;
+
+	private static MarchingCubeMesh mesh(ScalarGrid3D scalars) {
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		return new MarchingCube(BoundedScalarGrid3D.of(scalars, SIZE, SIZE, SIZE),
+				BoundedGrid3D.of((x, y, z) -> textureWeights, SIZE, SIZE, SIZE), TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f).generateMesh();
+	}
+
+	private static boolean onBorder(Vector3D vertex) {
+		return vertex.x() == 0f || vertex.x() == TerrainChunk.DEFAULT_SIZE || vertex.y() == 0f || vertex.y() == TerrainChunk.DEFAULT_SIZE
+				|| vertex.z() == 0f || vertex.z() == TerrainChunk.DEFAULT_SIZE;
+	}
+
+	private static MeshDecimator.DecimatedMesh decimate(MarchingCubeMesh mesh, float maxError) {
+		var vertices = mesh.vertices();
+		return MeshDecimator.decimate(mesh.indices(), vertices, mesh.textureWeights(), 0f, i -> onBorder(vertices[i]), maxError);
+	}
+
+	@Test
+	public void testFlatGroundCollapses() {
+		var mesh = mesh((x, y, z) -> 10.5f - y);
+		var decimated = decimate(mesh, 1e-4f);
+		assertEquals(mesh.indices().length / 3, decimated.originalTriangles());
+		assertTrue(decimated.triangleCount() * 4 < decimated.originalTriangles(),
+				() -> decimated.triangleCount() + " of " + decimated.originalTriangles());
+		for (int index : decimated.vertexMap()) {
+			assertEquals(10.5f, mesh.vertices()[index].y(), 1e-4f);
+		}
+	}
+
+	@Test
+	public void testBordersAreKept() {
+		var mesh = mesh((x, y, z) -> 10.5f - y);
+		var decimated = decimate(mesh, 1e-4f);
+		int borderVertices = 0;
+		for (var vertex : mesh.vertices()) {
+			if (onBorder(vertex)) {
+				borderVertices++;
+			}
+		}
+		int keptBorderVertices = 0;
+		for (int index : decimated.vertexMap()) {
+			if (onBorder(mesh.vertices()[index])) {
+				keptBorderVertices++;
+			}
+		}
+		assertEquals(borderVertices, keptBorderVertices);
+	}
+
+	@Test
+	public void testNoFlippedTriangles() {
+		// Sloped ground, so that every collapse moves vertices along the plane
+		var mesh = mesh((x, y, z) -> 10.5f + 0.3f * x - y);
+		var decimated = decimate(mesh, 1e-3f);
+		assertTrue(decimated.triangleCount() < decimated.originalTriangles());
+		var indices = decimated.indices();
+		var map = decimated.vertexMap();
+		var reference = Vector3D.ZERO;
+		for (int i = 0; i < mesh.indices().length; i += 3) {
+			reference = reference.add(normal(mesh.vertices()[mesh.indices()[i]], mesh.vertices()[mesh.indices()[i + 1]], mesh.vertices()[mesh.indices()[i + 2]]));
+		}
+		for (int i = 0; i < indices.length; i += 3) {
+			var normal = normal(mesh.vertices()[map[indices[i]]], mesh.vertices()[map[indices[i + 1]]], mesh.vertices()[map[indices[i + 2]]]);
+			// Degenerate triangles from the mesher have no normal
+			assertTrue(normal.isZero() || normal.dotProduct(reference) > 0f);
+		}
+	}
+
+	@Test
+	public void testCurvedSurfaceKeepsDetail() {
+		var mesh = mesh((x, y, z) -> 14f - (float) Math.sqrt((x - 16) * (x - 16) + (y - 16) * (y - 16) + (z - 16) * (z - 16)));
+		var decimated = decimate(mesh, 1e-6f);
+		assertTrue(decimated.triangleCount() * 2 > decimated.originalTriangles());
+	}
+
+	private static Vector3D normal(Vector3D a, Vector3D b, Vector3D c) {
+		return b.subtract(a).crossProduct(c.subtract(a));
+	}
+}
@@ -0,0 +1,168 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import lemon.evolution.MCMaterial;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Compares marching cubes and surface nets on a bundled map, voxelized like CsvWorldLoader does
+ * (a terraform brush of radius 1.4 per block, at the game's scale of 0.5): meshing time,
+ * vertices, triangles (how many are slivers, and how many are left after decimation at 0.01)
+ * and the bytes each chunk's drawable data would take.
+ * Texture weights are the same everywhere, since they do not change the mesh.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.MesherBenchmark [map.csv] [iterations]
+ */
+public class MesherBenchmark {
+	private static final float SCALE = 0.5f;
+	private static final float BRUSH_RADIUS = 1.4f;
+	private static final float BRUSH_AMOUNT = 10f;
+	private static final float SLIVER_COSINE = (float) Math.cos(Math.toRadians(10.0));
+	private static final float DECIMATION_ERROR = 0.01f;
+	private static final float BORDER_EPSILON = 1e-4f;
+
+	public static void main(String[] args) throws IOException {
+		String map = args.length > 0 ? args[0] : "castle.csv";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		var voxels = voxelize("/res/" + map);
+		int chunksX = (voxels.length + TerrainChunk.DEFAULT_SIZE - 1) / TerrainChunk.DEFAULT_SIZE;
+		int chunksY = (voxels[0].length + TerrainChunk.DEFAULT_SIZE - 1) / TerrainChunk.DEFAULT_SIZE;
+		int chunksZ = (voxels[0][0].length + TerrainChunk.DEFAULT_SIZE - 1) / TerrainChunk.DEFAULT_SIZE;
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		textureWeights[0] = 1f;
+		int size = TerrainChunk.DEFAULT_SIZE + 1;
+		int bytesPerVertex = TerrainChunk.VERTEX_LAYOUT.stride() * Float.BYTES;
+		System.out.printf("map=%s: %d x %d x %d voxels, %d chunks%n", map, voxels.length, voxels[0].length, voxels[0][0].length,
+				chunksX * chunksY * chunksZ);
+		for (var mesher : TerrainSettings.Mesher.values()) {
+			long nanos = 0;
+			long vertices = 0;
+			long triangles = 0;
+			long slivers = 0;
+			long decimatedTriangles = 0;
+			int meshedChunks = 0;
+			for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+				for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+					for (int chunkZ = 0; chunkZ < chunksZ; chunkZ++) {
+						int offsetX = chunkX * TerrainChunk.DEFAULT_SIZE;
+						int offsetY = chunkY * TerrainChunk.DEFAULT_SIZE;
+						int offsetZ = chunkZ * TerrainChunk.DEFAULT_SIZE;
+						var chunkMesher = mesher.create(BoundedScalarGrid3D.of((x, y, z) -> get(voxels, offsetX + x, offsetY + y, offsetZ + z),
+								size, size, size), BoundedGrid3D.of((x, y, z) -> textureWeights, size, size, size),
+								TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+						// Best of several runs, so that the JIT has warmed up
+						long best = Long.MAX_VALUE;
+						MarchingCubeMesh mesh = null;
+						for (int i = 0; i < iterations; i++) {
+							long start = System.nanoTime();
+							mesh = chunkMesher.generateMesh();
+							best = Math.min(best, System.nanoTime() - start);
+						}
+						nanos += best;
+						vertices += mesh.vertices().length;
+						triangles += mesh.indices().length / 3;
+						if (mesh.indices().length > 0) {
+							meshedChunks++;
+						}
+						slivers += countSlivers(mesh);
+						var meshVertices = mesh.vertices();
+						decimatedTriangles += MeshDecimator.decimate(mesh.indices(), meshVertices, mesh.textureWeights(), 0.05f,
+								index -> isOnBorder(meshVertices[index]), DECIMATION_ERROR).triangleCount();
+					}
+				}
+			}
+			long bytes = vertices * bytesPerVertex + triangles * 3 * Integer.BYTES;
+			System.out.printf("%s: mesh=%.1fms total (%.2fms/chunk), vertices=%d, triangles=%d (slivers=%d, decimated=%d), drawable data=%.1fMB (%d chunks with triangles)%n",
+					mesher, nanos / 1_000_000.0, nanos / 1_000_000.0 / (chunksX * chunksY * chunksZ), vertices, triangles,
+					slivers, decimatedTriangles, bytes / 1024.0 / 1024.0, meshedChunks);
+		}
+	}
+
+	// Triangles with an angle under 10 degrees, which shade and decimate poorly
+	private static int countSlivers(MarchingCubeMesh mesh) {
+		var vertices = mesh.vertices();
+		var indices = mesh.indices();
+		int slivers = 0;
+		for (int i = 0; i < indices.length; i += 3) {
+			for (int j = 0; j < 3; j++) {
+				var a = vertices[indices[i + j]];
+				var u = vertices[indices[i + (j + 1) % 3]].subtract(a);
+				var v = vertices[indices[i + (j + 2) % 3]].subtract(a);
+				float lengths = u.length() * v.length();
+				if (lengths == 0f || u.dotProduct(v) / lengths > SLIVER_COSINE) {
+					slivers++;
+					break;
+				}
+			}
+		}
+		return slivers;
+	}
+
+	private static boolean isOnBorder(Vector3D vertex) {
+		return isOnBorder(vertex.x()) || isOnBorder(vertex.y()) || isOnBorder(vertex.z());
+	}
+
+	private static boolean isOnBorder(float coordinate) {
+		return Math.abs(coordinate) < BORDER_EPSILON || Math.abs(coordinate - TerrainChunk.DEFAULT_SIZE) < BORDER_EPSILON;
+	}
+
+	private static float get(float[][][] voxels, int x, int y, int z) {
+		if (x >= voxels.length || y >= voxels[0].length || z >= voxels[0][0].length) {
+			return -1f;
+		}
+		return voxels[x][y][z];
+	}
+
+	// Solid around each block, on the same -1 background as the game's scalar field
+	private static float[][][] voxelize(String file) throws IOException {
+		try (var reader = new BufferedReader(new InputStreamReader(MesherBenchmark.class.getResourceAsStream(file)))) {
+			var split = reader.readLine().split(",");
+			int sizeX = Integer.parseInt(split[0]) + 1;
+			int sizeY = Integer.parseInt(split[1]) + 1;
+			int sizeZ = Integer.parseInt(split[2]) + 1;
+			int reach = (int) Math.ceil(BRUSH_RADIUS / SCALE);
+			// Padded by the brush's reach on every side
+			var voxels = new float[(int) (sizeX / SCALE) + reach * 2][(int) (sizeY / SCALE) + reach * 2][(int) (sizeZ / SCALE) + reach * 2];
+			for (var plane : voxels) {
+				for (var row : plane) {
+					Arrays.fill(row, -1f);
+				}
+			}
+			for (int i = 0; i < sizeX; i++) {
+				for (int j = 0; j < sizeY; j++) {
+					for (int k = 0; k < sizeZ; k++) {
+						if (MCMaterial.values()[Integer.parseInt(reader.readLine())].isEmpty()) {
+							continue;
+						}
+						int centerX = (int) (i / SCALE) + reach;
+						int centerY = (int) (j / SCALE) + reach;
+						int centerZ = (int) (k / SCALE) + reach;
+						for (int x = centerX - reach; x <= centerX + reach; x++) {
+							for (int y = centerY - reach; y <= centerY + reach; y++) {
+								for (int z = centerZ - reach; z <= centerZ + reach; z++) {
+									float deltaX = (x - centerX) * SCALE;
+									float deltaY = (y - centerY) * SCALE;
+									float deltaZ = (z - centerZ) * SCALE;
+									float distance = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
+									if (distance <= BRUSH_RADIUS) {
+										voxels[x][y][z] += BRUSH_AMOUNT * smoothstep(BRUSH_RADIUS, BRUSH_RADIUS * 0.7f, distance);
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+			return voxels;
+		}
+	}
+
+	private static float smoothstep(float min, float max, float t) {
+		t = Math.max(0f, Math.min(1f, (t - min) / (max - min)));
+		return t * t * (3 - 2 * t);
+	}
+}
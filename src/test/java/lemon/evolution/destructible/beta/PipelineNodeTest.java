@@ -0,0 +1,169 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineNodeTest {
+	private static final int NUM_THREADS = 4;
+	private static final int ITERATIONS = 10000;
+	private TerrainExecutor executor;
+	private ChunkPipeline pipeline;
+
+	@BeforeEach
+	public void setup() {
+		executor = new TerrainExecutor();
+		// DATA and DRAWABLE run inline, every other stage runs on the executor
+		pipeline = new ChunkPipeline(executor, Runnable::run, Runnable::run);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		executor.dispose();
+	}
+
+	@Test
+	public void testRunsOnceAllDependenciesAreReady() {
+		var runs = new AtomicInteger();
+		PipelineNode<int[]> a = pipeline.newNode("a", PipelineStage.DATA, List::of, previous -> new int[] {1});
+		PipelineNode<int[]> b = pipeline.newNode("b", PipelineStage.DATA, List::of, previous -> new int[] {2});
+		PipelineNode<Integer> sum = pipeline.newNode("sum", PipelineStage.DRAWABLE, () -> List.of(a, b), previous -> {
+			runs.incrementAndGet();
+			return a.getValueOrThrow()[0] + b.getValueOrThrow()[0];
+		});
+		assertEquals(3, sum.requestAndGetValue().orElseThrow());
+		sum.request();
+		assertTrue(sum.isCurrent());
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	public void testInvalidationsAreCoalesced() {
+		var runs = new AtomicInteger();
+		PipelineNode<int[]> source = pipeline.newNode("source", PipelineStage.DATA, List::of,
+				previous -> previous == null ? new int[1] : previous);
+		PipelineNode<Integer> depender = pipeline.newNode("depender", PipelineStage.DRAWABLE, () -> List.of(source), previous -> {
+			runs.incrementAndGet();
+			return source.getValueOrThrow()[0];
+		});
+		depender.request();
+		for (int i = 0; i < 100; i++) {
+			source.update(array -> array[0]++);
+		}
+		assertFalse(depender.isCurrent());
+		assertEquals(100, depender.requestAndGetValue().orElseThrow());
+		assertEquals(2, runs.get());
+		assertEquals(99, pipeline.coalescedCount(PipelineStage.DRAWABLE));
+		assertEquals(100, pipeline.editLatency(PipelineStage.DATA).count());
+		assertEquals(1, pipeline.editToVisibleLatency().count());
+		assertEquals(0, pipeline.inFlight());
+	}
+
+	@Test
+	public void testEditsAreOnlyTimedOnNodesWithResults() {
+		PipelineNode<int[]> source = pipeline.newNode("source", PipelineStage.DATA, List::of,
+				previous -> previous == null ? new int[1] : previous);
+		PipelineNode<Integer> depender = pipeline.newNode("depender", PipelineStage.DRAWABLE, () -> List.of(source),
+				previous -> source.getValueOrThrow()[0]);
+		// Dependers are only linked on their first request, so request it once and drop its result again,
+		// like a level of detail that is no longer drawn
+		assertEquals(0, depender.requestAndGetValue().orElseThrow());
+		assertTrue(depender.evict(value -> {}));
+		// Invalidated with no result and nothing scheduled, so its next result is not the edit's
+		source.update(array -> array[0]++, System.nanoTime());
+		assertEquals(1, depender.requestAndGetValue().orElseThrow());
+		assertEquals(0, pipeline.editToVisibleLatency().count());
+		source.update(array -> array[0]++, System.nanoTime());
+		assertEquals(2, depender.requestAndGetValue().orElseThrow());
+		assertEquals(1, pipeline.editToVisibleLatency().count());
+		// Nor is the result recomputed after an eviction
+		source.update(array -> array[0]++, System.nanoTime());
+		assertTrue(depender.evict(value -> {}));
+		assertEquals(3, depender.requestAndGetValue().orElseThrow());
+		assertEquals(1, pipeline.editToVisibleLatency().count());
+	}
+
+	@Test
+	public void testEvictedValueIsRecomputed() {
+		var previousValues = new ArrayList<int[]>();
+		PipelineNode<int[]> node = pipeline.newNode("node", PipelineStage.DATA, List::of, previous -> {
+			previousValues.add(previous);
+			return new int[] {previousValues.size()};
+		});
+		node.request();
+		var evicted = new AtomicInteger();
+		assertTrue(node.evict(value -> evicted.set(value[0])));
+		assertEquals(1, evicted.get());
+		assertTrue(node.getValue().isEmpty());
+		assertFalse(node.evict(value -> fail("Nothing to evict")));
+		assertEquals(2, node.requestAndGetValue().orElseThrow()[0]);
+		// Recomputed from scratch rather than from the evicted value
+		assertNull(previousValues.get(1));
+	}
+
+	@Test
+	public void testFailedJobIsRetried() throws InterruptedException {
+		var failures = new AtomicInteger(1);
+		PipelineNode<int[]> source = pipeline.newNode("source", PipelineStage.DATA, List::of, previous -> {
+			if (failures.getAndDecrement() > 0) {
+				throw new IllegalStateException("Expected failure");
+			}
+			return new int[] {1};
+		});
+		PipelineNode<Integer> mesh = pipeline.newNode("mesh", PipelineStage.MESH, () -> List.of(source),
+				previous -> source.getValueOrThrow()[0]);
+		// The edit is queued behind the failed job, and must not be lost
+		source.replace(array -> new int[] {array[0] + 10}, System.nanoTime());
+		var published = new CountDownLatch(1);
+		mesh.request(value -> published.countDown());
+		assertTrue(published.await(10, TimeUnit.SECONDS));
+		var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (System.nanoTime() < deadline && !(mesh.isCurrent() && source.isCurrent())) {
+			mesh.request();
+			Thread.onSpinWait();
+		}
+		assertEquals(11, mesh.getValueOrThrow());
+		assertEquals(1, pipeline.failedCount(PipelineStage.DATA));
+		assertEquals(0, pipeline.inFlight(PipelineStage.DATA));
+	}
+
+	@Test
+	public void testConcurrentEditsConverge() throws InterruptedException {
+		PipelineNode<int[]> source = pipeline.newNode("source", PipelineStage.DATA, List::of,
+				previous -> previous == null ? new int[1] : previous);
+		PipelineNode<Integer> mesh = pipeline.newNode("mesh", PipelineStage.MESH, () -> List.of(source),
+				previous -> source.getValueOrThrow()[0]);
+		PipelineNode<Integer> model = pipeline.newNode("model", PipelineStage.MODEL, () -> List.of(mesh),
+				previous -> mesh.getValueOrThrow());
+		var writers = new CountDownLatch(NUM_THREADS);
+		for (int i = 0; i < NUM_THREADS; i++) {
+			new Thread(() -> {
+				for (int j = 0; j < ITERATIONS; j++) {
+					source.update(array -> array[0]++);
+				}
+				writers.countDown();
+			}).start();
+		}
+		// Keep requesting the end of the chain while the source changes underneath it
+		while (writers.getCount() > 0) {
+			model.request();
+		}
+		assertTrue(writers.await(30, TimeUnit.SECONDS));
+		var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (System.nanoTime() < deadline && !model.isCurrent()) {
+			model.request();
+			Thread.onSpinWait();
+		}
+		assertEquals(NUM_THREADS * ITERATIONS, source.getValueOrThrow()[0]);
+		assertTrue(model.isCurrent());
+		assertEquals(NUM_THREADS * ITERATIONS, model.getValueOrThrow());
+	}
+}
@@ -0,0 +1,71 @@
+package lemon.evolution.destructible.beta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the latency of meshing one chunk serially and in slabs on a fork/join pool, as the mesh stage does for
+ * chunks near the camera. This is the meshing part of the edit-to-visible latency (the "editToVisible" histogram
+ * in game), which also includes the model, normals and drawable data stages and waiting for an upload.
+ * <p>
+ * It is measured on an idle pool, and on a loaded one where every worker has a serial mesh job for a far chunk
+ * when the near chunk's job starts. There the slabs are compared to forking them regardless of idle workers,
+ * with the time until the whole batch is done showing the cost to the other jobs.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.SlabMeshBenchmark [workers] [iterations]
+ */
+public class SlabMeshBenchmark {
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		var pool = new ForkJoinPool(workers);
+		var marchingCube = TerrainLodBenchmark.newMarchingCube(0, 0);
+		System.out.printf("workers=%d, triangles=%d%n", workers, marchingCube.generateMesh().indices().length / 3);
+		for (int slabs : new int[] {1, 2, 4, 8}) {
+			measure(pool, 0, count -> marchingCube.generateMesh(1, count), slabs, iterations, "idle, slabs=" + slabs);
+		}
+		for (int slabs : new int[] {1, 4}) {
+			measure(pool, workers, count -> marchingCube.generateMesh(1, count), slabs, iterations, "loaded, slabs=" + slabs);
+		}
+		measure(pool, workers, count -> marchingCube.generateSlabs(1, count), 4, iterations, "loaded, slabs=4 always forked");
+		pool.shutdown();
+	}
+
+	// Times the near chunk's job from when it starts running, and the batch with the background jobs from submission
+	private static void measure(ForkJoinPool pool, int backgroundJobs, IntFunction<MarchingCubeMesh> mesh, int slabs,
+								int iterations, String label) throws InterruptedException, ExecutionException {
+		var background = TerrainLodBenchmark.newMarchingCube(1, 0);
+		var nanos = new long[iterations];
+		var batchNanos = new long[iterations];
+		// The first half warms up the JIT
+		for (int i = -iterations; i < iterations; i++) {
+			long submitted = System.nanoTime();
+			var jobs = new ArrayList<ForkJoinTask<?>>();
+			for (int j = 0; j < backgroundJobs; j++) {
+				jobs.add(pool.submit(() -> background.generateMesh(1)));
+			}
+			var job = pool.submit(() -> {
+				long start = System.nanoTime();
+				mesh.apply(slabs);
+				return System.nanoTime() - start;
+			});
+			long jobNanos = job.get();
+			for (var backgroundJob : jobs) {
+				backgroundJob.get();
+			}
+			if (i >= 0) {
+				nanos[i] = jobNanos;
+				batchNanos[i] = System.nanoTime() - submitted;
+			}
+		}
+		Arrays.sort(nanos);
+		Arrays.sort(batchNanos);
+		System.out.printf("%s: median=%.2fms, p90=%.2fms, batch median=%.2fms%n", label,
+				nanos[iterations / 2] / 1_000_000.0, nanos[iterations * 9 / 10] / 1_000_000.0,
+				batchNanos[iterations / 2] / 1_000_000.0);
+	}
+}
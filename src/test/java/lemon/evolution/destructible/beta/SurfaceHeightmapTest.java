@@ -0,0 +1,82 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SurfaceHeightmapTest {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE;
+
+	// Samples of the chunk at the given chunk height, for a field in world samples
+	private static TerrainChunkData data(int chunkY, ScalarFunction function) {
+		var scalars = new float[SIZE][SIZE][SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				for (int k = 0; k < SIZE; k++) {
+					scalars[i][j][k] = function.get(i, chunkY * SIZE + j, k);
+				}
+			}
+		}
+		return new TerrainChunkData(scalars, new SparseGrid3D<>(SIZE, SIZE, SIZE, () -> new float[TerrainChunk.NUM_TEXTURES]));
+	}
+
+	@Test
+	public void testNoSurfaceUntilGenerated() {
+		var heightmap = new SurfaceHeightmap(SIZE);
+		assertEquals(SurfaceHeightmap.NO_SURFACE, heightmap.get(0, 0));
+		heightmap.update(0, 0, 0, data(0, (x, y, z) -> -1f));
+		assertEquals(SurfaceHeightmap.NO_SURFACE, heightmap.get(0, 0));
+		assertEquals(SurfaceHeightmap.NO_TEXTURE, heightmap.getTexture(0, 0));
+	}
+
+	@Test
+	public void testSurfaceIsInterpolated() {
+		var heightmap = new SurfaceHeightmap(SIZE);
+		var data = data(0, (x, y, z) -> 16.25f + x * 0.25f - y);
+		data.textureWeights().compute(4, 17, 0)[3] = 1f;
+		heightmap.update(0, 0, 0, data);
+		assertEquals(16.25f, heightmap.get(0, 0), 1e-4f);
+		assertEquals(17.25f, heightmap.get(4, 31), 1e-4f);
+		assertEquals(3, heightmap.getTexture(4, 0));
+		assertEquals(SurfaceHeightmap.NO_TEXTURE, heightmap.getTexture(0, 0));
+		assertEquals(SurfaceHeightmap.NO_SURFACE, heightmap.get(-1, 0));
+	}
+
+	@Test
+	public void testHighestChunkWins() {
+		var heightmap = new SurfaceHeightmap(SIZE);
+		// A floating island above the ground
+		ScalarFunction field = (x, y, z) -> y < 10.5f || (y > 40.5f && y < 50.5f) ? 1f : -1f;
+		heightmap.update(0, 0, 0, data(0, field));
+		assertEquals(10.5f, heightmap.get(0, 0), 1e-4f);
+		heightmap.update(0, 1, 0, data(1, field));
+		assertEquals(50.5f, heightmap.get(0, 0), 1e-4f);
+		heightmap.update(0, 1, 0, data(1, (x, y, z) -> -1f));
+		assertEquals(10.5f, heightmap.get(0, 0), 1e-4f);
+	}
+
+	@Test
+	public void testSurfaceOnChunkBorder() {
+		var heightmap = new SurfaceHeightmap(SIZE);
+		ScalarFunction field = (x, y, z) -> 31.75f - y;
+		heightmap.update(0, 0, 0, data(0, field));
+		// The crossing is between the chunks, so until the chunk above exists the top solid sample is used
+		assertEquals(31f, heightmap.get(0, 0), 1e-4f);
+		heightmap.update(0, 1, 0, data(1, field));
+		assertEquals(31.75f, heightmap.get(0, 0), 1e-4f);
+	}
+
+	@Test
+	public void testVersionCountsChangesToColumn() {
+		var heightmap = new SurfaceHeightmap(SIZE);
+		assertEquals(0, heightmap.version(0, 0));
+		heightmap.update(0, 0, 0, data(0, (x, y, z) -> 1f));
+		heightmap.update(0, 1, 0, data(1, (x, y, z) -> -1f));
+		assertEquals(2, heightmap.version(0, 0));
+		assertEquals(0, heightmap.version(1, 0));
+	}
+
+	private interface ScalarFunction {
+		float get(int x, int y, int z);
+	}
+}
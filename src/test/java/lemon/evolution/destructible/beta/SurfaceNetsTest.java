@@ -0,0 +1,81 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SurfaceNetsTest {
+	private static final int SIZE = TerrainChunk.DEFAULT_SIZE + 1;
+	private static final float[] TEXTURE_WEIGHTS = new float[TerrainChunk.NUM_TEXTURES];
+
+	private static SurfaceNets newSurfaceNets(ScalarGrid3D grid) {
+		return new SurfaceNets(BoundedScalarGrid3D.of(grid, SIZE), BoundedGrid3D.of((x, y, z) -> TEXTURE_WEIGHTS, SIZE),
+				TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+	}
+
+	@Test
+	public void testFlatGroundMatchesMarchingCubes() {
+		ScalarGrid3D ground = (x, y, z) -> 10.5f - y;
+		var mesh = newSurfaceNets(ground).generateMesh();
+		var marchingCubeMesh = new MarchingCube(BoundedScalarGrid3D.of(ground, SIZE), BoundedGrid3D.of((x, y, z) -> TEXTURE_WEIGHTS, SIZE),
+				TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f).generateMesh();
+		// One quad per vertical edge the chunk owns
+		assertEquals(TerrainChunk.DEFAULT_SIZE * TerrainChunk.DEFAULT_SIZE * 2, mesh.indices().length / 3);
+		assertEquals(marchingCubeMesh.indices().length, mesh.indices().length);
+		for (var vertex : mesh.vertices()) {
+			assertEquals(10.5f, vertex.y(), 1e-4f);
+		}
+		// Wound the same way as marching cubes
+		assertEquals(Math.signum(faceNormal(marchingCubeMesh, 0).y()), Math.signum(faceNormal(mesh, 0).y()));
+	}
+
+	@Test
+	public void testClosedSurfaceIsWatertight() {
+		var mesh = newSurfaceNets((x, y, z) -> 8f - Vector3D.of(x - 16f, y - 16f, z - 16f).length()).generateMesh();
+		Map<Long, Integer> edgeCounts = new HashMap<>();
+		var indices = mesh.indices();
+		for (int i = 0; i < indices.length; i += 3) {
+			for (int j = 0; j < 3; j++) {
+				int a = indices[i + j];
+				int b = indices[i + (j + 1) % 3];
+				edgeCounts.merge(((long) Math.min(a, b)) * mesh.vertices().length + Math.max(a, b), 1, Integer::sum);
+			}
+		}
+		assertFalse(edgeCounts.isEmpty());
+		edgeCounts.values().forEach(count -> assertEquals(2, count));
+	}
+
+	@Test
+	public void testNeighborsShareBorderVertices() {
+		// Slanted, so that vertices are not on a regular grid
+		ScalarGrid3D world = (x, y, z) -> 10.5f + 0.3f * x + 0.2f * z - y;
+		var mesh = newSurfaceNets(world).generateMesh();
+		var neighborMesh = newSurfaceNets((x, y, z) -> world.get(x + TerrainChunk.DEFAULT_SIZE, y, z)).generateMesh();
+		var neighborVertices = new HashSet<Vector3D>();
+		for (var vertex : neighborMesh.vertices()) {
+			if (vertex.x() < 1f) {
+				neighborVertices.add(vertex.add(Vector3D.of(TerrainChunk.DEFAULT_SIZE, 0f, 0f)));
+			}
+		}
+		int shared = 0;
+		for (var vertex : mesh.vertices()) {
+			if (vertex.x() >= TerrainChunk.DEFAULT_SIZE) {
+				assertTrue(neighborVertices.contains(vertex), vertex::toString);
+				shared++;
+			}
+		}
+		assertEquals(neighborVertices.size(), shared);
+	}
+
+	private static Vector3D faceNormal(MarchingCubeMesh mesh, int triangle) {
+		var vertices = mesh.vertices();
+		var indices = mesh.indices();
+		var a = vertices[indices[triangle * 3]];
+		return vertices[indices[triangle * 3 + 2]].subtract(a).crossProduct(vertices[indices[triangle * 3 + 1]].subtract(a));
+	}
+}
@@ -0,0 +1,102 @@
+package lemon.evolution.destructible.beta;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerrainExecutorTest {
+	private static final TerrainExecutorSettings SINGLE_WORKER = new TerrainExecutorSettings() {
+		@Override
+		public int parallelism() {
+			return 1;
+		}
+	};
+	private TerrainExecutor executor;
+	private CountDownLatch started;
+	private CountDownLatch release;
+
+	@BeforeEach
+	public void setup() {
+		executor = new TerrainExecutor(SINGLE_WORKER);
+		started = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		release.countDown();
+		executor.dispose();
+	}
+
+	@Test
+	public void testHighestPriorityRunsFirst() throws InterruptedException {
+		blockWorker(TerrainStage.GENERATION);
+		List<TerrainStage> order = new CopyOnWriteArrayList<>();
+		var done = new CountDownLatch(4);
+		for (var stage : List.of(TerrainStage.GENERATION, TerrainStage.MESH, TerrainStage.OCCLUSION, TerrainStage.NORMALS)) {
+			executor.execute(stage, () -> {
+				order.add(stage);
+				done.countDown();
+			});
+		}
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(List.of(TerrainStage.OCCLUSION, TerrainStage.NORMALS, TerrainStage.MESH, TerrainStage.GENERATION), order);
+	}
+
+	@Test
+	public void testCounters() throws InterruptedException {
+		blockWorker(TerrainStage.MESH);
+		assertEquals(1, executor.activeWorkers(TerrainStage.MESH));
+		assertEquals(1, executor.activeWorkers());
+		var done = new CountDownLatch(3);
+		executor.execute(TerrainStage.MODEL, done::countDown);
+		executor.execute(TerrainStage.MODEL, done::countDown);
+		executor.executor(TerrainStage.NORMALS).execute(done::countDown);
+		assertEquals(2, executor.queueDepth(TerrainStage.MODEL));
+		assertEquals(1, executor.queueDepth(TerrainStage.NORMALS));
+		assertEquals(3, executor.queueDepth());
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(0, executor.queueDepth());
+		// The counters are updated right after each task returns
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (executor.completedCount() < 4 && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		assertEquals(4, executor.completedCount());
+		assertEquals(0, executor.activeWorkers());
+	}
+
+	@Test
+	public void testRejectsAfterDispose() {
+		executor.dispose();
+		var ran = new boolean[] {false};
+		executor.execute(TerrainStage.EDIT, () -> ran[0] = true);
+		executor.executor(TerrainStage.EDIT).execute(() -> ran[0] = true);
+		assertFalse(ran[0]);
+		assertEquals(2, executor.rejectedCount(TerrainStage.EDIT));
+		assertEquals(2, executor.rejectedCount());
+		assertEquals(0, executor.queueDepth());
+	}
+
+	// Occupies the only worker until released, so that later tasks queue up
+	private void blockWorker(TerrainStage stage) throws InterruptedException {
+		executor.execute(stage, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,88 @@
+package lemon.evolution.destructible.beta;
+
+/**
+ * Compares meshing time and triangle counts of each level of detail on rolling hills, and the triangles drawn for
+ * a ring of chunks with and without LOD (using the renderer's default distances of 2 and 4 chunks).
+ * Frame times are compared in game by toggling LOD (F4) with the debug overlay open.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.TerrainLodBenchmark [renderDistance] [iterations]
+ */
+public class TerrainLodBenchmark {
+	private static final float[] LOD_DISTANCES = {2f, 4f};
+
+	public static void main(String[] args) {
+		float renderDistance = args.length > 0 ? Float.parseFloat(args[0]) : 5f;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int ceil = (int) Math.ceil(renderDistance);
+		long[] nanos = new long[TerrainChunk.NUM_LODS];
+		long[] triangles = new long[TerrainChunk.NUM_LODS];
+		long[] skirtTriangles = new long[TerrainChunk.NUM_LODS];
+		long fullTriangles = 0;
+		long lodTriangles = 0;
+		int numChunks = 0;
+		for (int chunkX = -ceil; chunkX <= ceil; chunkX++) {
+			for (int chunkZ = -ceil; chunkZ <= ceil; chunkZ++) {
+				if (chunkX * chunkX + chunkZ * chunkZ > renderDistance * renderDistance) {
+					continue;
+				}
+				var marchingCube = newMarchingCube(chunkX * TerrainChunk.DEFAULT_SIZE, chunkZ * TerrainChunk.DEFAULT_SIZE);
+				float distance = (float) Math.sqrt(chunkX * chunkX + chunkZ * chunkZ);
+				int selectedLod = 0;
+				for (float lodDistance : LOD_DISTANCES) {
+					if (distance >= lodDistance) {
+						selectedLod++;
+					}
+				}
+				for (int lod = 0; lod < TerrainChunk.NUM_LODS; lod++) {
+					int step = 1 << lod;
+					long best = Long.MAX_VALUE;
+					int count = 0;
+					int skirts = 0;
+					for (int i = 0; i < iterations; i++) {
+						long start = System.nanoTime();
+						var mesh = marchingCube.generateMesh(step);
+						if (lod == 0) {
+							count = mesh.indices().length / 3;
+						} else {
+							var lodMesh = LodMesh.of(mesh, TerrainChunk.DEFAULT_SIZE, step);
+							count = lodMesh.triangleCount();
+							skirts = lodMesh.skirtTriangles();
+						}
+						best = Math.min(best, System.nanoTime() - start);
+					}
+					nanos[lod] += best;
+					triangles[lod] += count;
+					skirtTriangles[lod] += skirts;
+					if (lod == 0) {
+						fullTriangles += count;
+					}
+					if (lod == selectedLod) {
+						lodTriangles += count;
+					}
+				}
+				numChunks++;
+			}
+		}
+		for (int lod = 0; lod < TerrainChunk.NUM_LODS; lod++) {
+			System.out.printf("lod=%d (step=%d): mesh=%.1fus/chunk, triangles=%d/chunk (skirts=%d)%n",
+					lod, 1 << lod, nanos[lod] / 1000.0 / numChunks, triangles[lod] / numChunks, skirtTriangles[lod] / numChunks);
+		}
+		System.out.printf("renderDistance=%.1f, chunks=%d, triangles=%d without LOD, %d with LOD (%.1f%%)%n",
+				renderDistance, numChunks, fullTriangles, lodTriangles, 100.0 * lodTriangles / fullTriangles);
+	}
+
+	// Solid below a height field of overlapping waves
+	static MarchingCube newMarchingCube(int offsetX, int offsetZ) {
+		int size = TerrainChunk.DEFAULT_SIZE + 1;
+		var textureWeights = new float[TerrainChunk.NUM_TEXTURES];
+		textureWeights[0] = 1f;
+		return new MarchingCube(BoundedScalarGrid3D.of((x, y, z) -> {
+			float worldX = offsetX + x;
+			float worldZ = offsetZ + z;
+			float height = 16f + 6f * (float) (Math.sin(worldX * 0.15) * Math.cos(worldZ * 0.11))
+					+ 3f * (float) Math.sin((worldX + worldZ) * 0.3);
+			return height - y;
+		}, size, size, size), BoundedGrid3D.of((x, y, z) -> textureWeights, size, size, size),
+				TerrainChunk.marchingCubeSize(TerrainChunk.DEFAULT_SIZE), 0f);
+	}
+}
@@ -0,0 +1,175 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerrainTest {
+	private static final long TIMEOUT_NANOS = 10_000_000_000L;
+	private TerrainExecutor executor;
+	private Terrain terrain;
+
+	@BeforeEach
+	public void setup() {
+		executor = new TerrainExecutor();
+		// Solid below y = 16.5
+		terrain = new Terrain(new TerrainGenerator(Runnable::run, point -> 16.5f - point.y()), executor, Vector3D.of(1f, 1f, 1f));
+	}
+
+	@AfterEach
+	public void cleanup() {
+		terrain.dispose();
+		executor.dispose();
+	}
+
+	@Test
+	public void testEditsAreBatchedUntilFlushed() throws InterruptedException {
+		var center = Vector3D.of(16f, 16f, 16f);
+		var chunk = terrain.getChunk(0, 0, 0);
+		chunk.data().request();
+		long version = chunk.data().version();
+		for (int i = 0; i < 10; i++) {
+			terrain.terraform(center, 2f, 1f, 1f, 0);
+		}
+		assertEquals(0, terrain.pipeline().batchedEditCount());
+		assertEquals(0.5f, chunk.get(16, 16, 16));
+		terrain.flushEdits();
+		awaitBatches(1);
+		assertEquals(version + 1, chunk.data().version());
+		assertEquals(10.5f, chunk.get(16, 16, 16), 1e-4f);
+		assertEquals(10, terrain.pipeline().batchedEditCount());
+		assertEquals(9, terrain.pipeline().savedRemeshCount());
+	}
+
+	@Test
+	public void testEditsAfterFlushStartNewBatch() throws InterruptedException {
+		var center = Vector3D.of(16f, 16f, 16f);
+		var chunk = terrain.getChunk(0, 0, 0);
+		terrain.terraform(center, 2f, 1f, 1f, 0);
+		terrain.flushEdits();
+		awaitBatches(1);
+		terrain.terraform(center, 2f, 1f, 1f, 0);
+		terrain.flushEdits();
+		awaitBatches(2);
+		assertEquals(2.5f, chunk.get(16, 16, 16), 1e-4f);
+		assertEquals(0, terrain.pipeline().savedRemeshCount());
+	}
+
+	@Test
+	public void testEditsDoNotMutatePublishedSnapshots() throws InterruptedException {
+		var center = Vector3D.of(16f, 16f, 16f);
+		var chunk = terrain.getChunk(0, 0, 0);
+		terrain.terraform(center, 2f, 1f, 1f, 0);
+		terrain.flushEdits();
+		awaitBatches(1);
+		var snapshot = chunk.data().getValueOrThrow();
+		float weight = snapshot.textureWeights().getOrDefault(16, 16, 16, null)[0];
+		terrain.terraform(center, 2f, 1f, 1f, 0);
+		terrain.flushEdits();
+		awaitBatches(2);
+		assertNotSame(snapshot, chunk.data().getValueOrThrow());
+		assertEquals(1.5f, snapshot.scalars()[16][16][16], 1e-4f);
+		assertEquals(weight, snapshot.textureWeights().getOrDefault(16, 16, 16, null)[0]);
+		assertEquals(2.5f, chunk.get(16, 16, 16), 1e-4f);
+		assertEquals(weight + 1f, chunk.getTextureWeights(16, 16, 16)[0], 1e-4f);
+	}
+
+	@Test
+	public void testPhysicsDoesNotCreateChunks() {
+		assertTrue(terrain.getTriangles(0, 4, 0).isEmpty());
+		assertEquals(0, terrain.chunkCount());
+		assertNull(terrain.findChunk(0, 0, 0));
+	}
+
+	@Test
+	public void testCollisionIsBuiltWithoutRenderStages() throws InterruptedException {
+		var chunk = terrain.getChunk(0, 0, 0);
+		var built = new CountDownLatch(1);
+		chunk.collision().request(collision -> built.countDown());
+		assertTrue(built.await(10, TimeUnit.SECONDS));
+		// The surface at y = 16.5 is in the fifth layer of collision cells
+		assertFalse(chunk.getTriangles(0, 4, 0).isEmpty());
+		assertEquals(0, chunk.model().publishedVersion());
+		assertEquals(0, terrain.pipeline().scheduledCount(PipelineStage.MODEL));
+	}
+
+	@Test
+	public void testSurfaceHeightFollowsEdits() throws InterruptedException {
+		assertEquals(SurfaceHeightmap.NO_SURFACE, terrain.surfaceHeight(16f, 16f));
+		var chunk = terrain.getChunk(0, 0, 0);
+		var generated = new CountDownLatch(1);
+		chunk.data().request(data -> generated.countDown());
+		assertTrue(generated.await(10, TimeUnit.SECONDS));
+		assertEquals(16.5f, terrain.surfaceHeight(16f, 16f), 1e-4f);
+		terrain.generateExplosion(Vector3D.of(16f, 16f, 16f), 4f);
+		terrain.flushEdits();
+		awaitBatches(1);
+		assertTrue(terrain.surfaceHeight(16f, 16f) < 13f);
+		assertEquals(16.5f, terrain.surfaceHeight(4f, 4f), 1e-4f);
+	}
+
+	@Test
+	public void testChunkSizeFromSettings()throws InterruptedException {
+		var settings = new TerrainSettings() {
+			@Override
+			public int chunkSize() {
+				return 16;
+			}
+
+			@Override
+			public int collisionCellSize() {
+				return 8;
+			}
+		};
+		var small = new Terrain(new TerrainGenerator(Runnable::run, point -> 16.5f - point.y()), executor,
+				Vector3D.of(1f, 1f, 1f), UploadBudget.DEFAULT, settings);
+		try {
+			assertEquals(1, small.getChunkY(16.5f));
+			assertEquals(2, small.getCollideY(16.5f));
+			var chunk = small.getChunk(0, 1, 0);
+			var built = new CountDownLatch(1);
+			chunk.collision().request(collision -> built.countDown());
+			assertTrue(built.await(10, TimeUnit.SECONDS));
+			assertEquals(16, chunk.data().getValueOrThrow().scalars().length);
+			assertFalse(small.getTriangles(0, 2, 0).isEmpty());
+			assertTrue(small.getTriangles(0, 3, 0).isEmpty());
+		} finally {
+			small.dispose();
+		}
+	}
+
+	@Test
+	public void testInvalidChunkSizes() {
+		var generator = new TerrainGenerator(Runnable::run, point -> 0f);
+		assertThrows(IllegalArgumentException.class, () -> new Terrain(generator, executor, Vector3D.of(1f, 1f, 1f),
+				UploadBudget.DEFAULT, new TerrainSettings() {
+					@Override
+					public int chunkSize() {
+						return 30;
+					}
+				}));
+		assertThrows(IllegalArgumentException.class, () -> new Terrain(generator, executor, Vector3D.of(1f, 1f, 1f),
+				UploadBudget.DEFAULT, new TerrainSettings() {
+					@Override
+					public int collisionCellSize() {
+						return 3;
+					}
+				}));
+	}
+
+	private void awaitBatches(long batches) throws InterruptedException {
+		long deadline = System.nanoTime() + TIMEOUT_NANOS;
+		// The batch is counted before it is applied, so wait for its data edit to be published as well
+		while (terrain.pipeline().editBatchCount() < batches
+				|| terrain.pipeline().editLatency(PipelineStage.DATA).count() < batches) {
+			assertTrue(System.nanoTime() < deadline, "Timed out waiting for edits");
+			Thread.sleep(1);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadSchedulerTest {
+	private static final UploadBudget BUDGET = new UploadBudget() {
+		@Override
+		public long maxBytesPerFrame() {
+			return 100;
+		}
+
+		@Override
+		public long maxNanosPerFrame() {
+			return Long.MAX_VALUE / 2;
+		}
+	};
+
+	@Test
+	public void testNearestFirstWithinByteBudget() {
+		var scheduler = new UploadScheduler(BUDGET);
+		List<String> order = new ArrayList<>();
+		scheduler.submit("far", Vector3D.of(100f, 0f, 0f), 40, () -> order.add("far"));
+		scheduler.submit("near", Vector3D.of(1f, 0f, 0f), 40, () -> order.add("near"));
+		scheduler.execute(() -> order.add("unpositioned"));
+		scheduler.submit("middle", Vector3D.of(10f, 0f, 0f), 40, () -> order.add("middle"));
+		scheduler.flush(Vector3D.ZERO);
+		assertEquals(List.of("near", "middle"), order);
+		assertEquals(2, scheduler.uploadsLastFrame());
+		assertEquals(80, scheduler.bytesLastFrame());
+		assertEquals(2, scheduler.backlog());
+		assertEquals(40, scheduler.backlogBytes());
+		scheduler.flush(Vector3D.ZERO);
+		assertEquals(List.of("near", "middle", "far", "unpositioned"), order);
+		assertEquals(0, scheduler.backlog());
+	}
+
+	@Test
+	public void testAlwaysMakesProgress() {
+		var scheduler = new UploadScheduler(BUDGET);
+		List<String> order = new ArrayList<>();
+		scheduler.submit("huge", Vector3D.ZERO, 1000, () -> order.add("huge"));
+		scheduler.submit("small", Vector3D.ONE, 1, () -> order.add("small"));
+		scheduler.flush(Vector3D.ZERO);
+		assertEquals(List.of("huge"), order);
+	}
+
+	@Test
+	public void testNewestUploadReplacesPending() {
+		var scheduler = new UploadScheduler(BUDGET);
+		List<String> order = new ArrayList<>();
+		scheduler.submit("chunk", Vector3D.ZERO, 10, () -> order.add("old"));
+		scheduler.submit("chunk", Vector3D.ZERO, 10, () -> order.add("new"));
+		scheduler.flush(Vector3D.ZERO);
+		assertEquals(List.of("new"), order);
+		assertEquals(1, scheduler.coalescedCount());
+	}
+}
@@ -0,0 +1,53 @@
+package lemon.evolution.destructible.beta;
+
+import lemon.engine.draw.VertexCacheOptimizer;
+
+/**
+ * Compares the average cache miss ratio (ACMR) of chunk meshes in the order they are meshed against the order
+ * from {@link VertexCacheOptimizer}, for every level of detail, on the same hills as {@link TerrainLodBenchmark}.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.destructible.beta.VertexCacheBenchmark [chunks] [cacheSize]
+ */
+public class VertexCacheBenchmark {
+	public static void main(String[] args) {
+		int chunks = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : VertexCacheOptimizer.CACHE_SIZE;
+		// The first pass warms up the JIT
+		run(chunks, cacheSize, false);
+		run(chunks, cacheSize, true);
+	}
+
+	private static void run(int chunks, int cacheSize, boolean print) {
+		for (int lod = 0; lod < TerrainChunk.NUM_LODS; lod++) {
+			int step = 1 << lod;
+			double originalSum = 0;
+			double optimizedSum = 0;
+			long nanos = 0;
+			int triangles = 0;
+			for (int chunkX = 0; chunkX < chunks; chunkX++) {
+				for (int chunkZ = 0; chunkZ < chunks; chunkZ++) {
+					var mesh = TerrainLodBenchmark.newMarchingCube(chunkX * TerrainChunk.DEFAULT_SIZE, chunkZ * TerrainChunk.DEFAULT_SIZE)
+							.generateMesh(step);
+					var indices = mesh.indices();
+					int numVertices = mesh.vertices().length;
+					if (lod > 0) {
+						var lodMesh = LodMesh.of(mesh, TerrainChunk.DEFAULT_SIZE, step);
+						indices = lodMesh.indices();
+						numVertices = lodMesh.vertices().length;
+					}
+					long start = System.nanoTime();
+					var optimized = VertexCacheOptimizer.optimize(indices, numVertices);
+					nanos += System.nanoTime() - start;
+					originalSum += VertexCacheOptimizer.getAcmr(indices, cacheSize);
+					optimizedSum += VertexCacheOptimizer.getAcmr(optimized, cacheSize);
+					triangles += indices.length / 3;
+				}
+			}
+			int numChunks = chunks * chunks;
+			if (print) {
+				System.out.printf("lod=%d, cacheSize=%d: ACMR %.3f -> %.3f, triangles=%d/chunk, optimize=%.1fus/chunk%n",
+					lod, cacheSize, originalSum / numChunks, optimizedSum / numChunks, triangles / numChunks, nanos / 1000.0 / numChunks);
+			}
+		}
+	}
+}
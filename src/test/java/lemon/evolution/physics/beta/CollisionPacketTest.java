@@ -0,0 +1,50 @@
+package lemon.evolution.physics.beta;
+
+import lemon.engine.math.MutableVector3D;
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollisionPacketTest {
+	@Test
+	public void testSphereHeadOn() {
+		var collision = new Collision();
+		CollisionPacket.checkSphere(Vector3D.ZERO, Vector3D.of(4f, 0f, 0f), Vector3D.of(5f, 0f, 0f), 2f, collision);
+		assertEquals(0.5f, collision.t(), 1e-5f);
+		assertEquals(3f, collision.intersection().x(), 1e-5f);
+	}
+
+	@Test
+	public void testSphereMissed() {
+		var collision = new Collision();
+		CollisionPacket.checkSphere(Vector3D.ZERO, Vector3D.of(4f, 0f, 0f), Vector3D.of(5f, 4f, 0f), 2f, collision);
+		CollisionPacket.checkSphere(Vector3D.ZERO, Vector3D.of(1f, 0f, 0f), Vector3D.of(5f, 0f, 0f), 2f, collision);
+		assertEquals(Float.MAX_VALUE, collision.t());
+	}
+
+	@Test
+	public void testOverlappingSpheresCanSeparate() {
+		var collision = new Collision();
+		CollisionPacket.checkSphere(Vector3D.ZERO, Vector3D.of(-1f, 0f, 0f), Vector3D.of(2f, 0f, 0f), 2f, collision);
+		assertEquals(Float.MAX_VALUE, collision.t());
+		CollisionPacket.checkSphere(Vector3D.ZERO, Vector3D.of(1f, 0f, 0f), Vector3D.of(2f, 0f, 0f), 2f, collision);
+		assertEquals(0f, collision.t());
+	}
+
+	@Test
+	public void testSlideAroundSphere() {
+		var position = MutableVector3D.ofZero();
+		var velocity = MutableVector3D.of(Vector3D.of(1f, 0f, 0f));
+		var force = MutableVector3D.ofZero();
+		var obstacle = Vector3D.of(3f, 0f, 0f);
+		CollisionPacket.collideWithWorld((p, v) -> {
+			var collision = new Collision();
+			CollisionPacket.checkSphere(p, v, obstacle, 1f, collision);
+			return collision;
+		}, position, velocity, force, 4f, collision -> CollisionResponse.SLIDE);
+		// Stopped at the obstacle, not through it
+		assertTrue(position.asImmutable().distance(obstacle) >= 2f - 1e-3f);
+		assertEquals(0f, velocity.asImmutable().x(), 1e-4f);
+	}
+}
@@ -0,0 +1,89 @@
+package lemon.evolution.physics.beta;
+
+import lemon.engine.math.MutableVector3D;
+import lemon.engine.math.Sphere;
+import lemon.engine.math.Vector3D;
+
+import java.util.Random;
+
+/**
+ * Milliseconds per physics step for balls falling onto each other, with contacts found by testing every pair
+ * and by the {@link SpatialHash} that World rebuilds every step. Balls are spread at the same density
+ * (about the spacing of the PuzzleBall grid) for every count, so the grid's cost per ball should stay flat.
+ * Both also report the contacts per step, which should match.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes lemon.evolution.physics.beta.EntityBroadphaseBenchmark [counts] [steps]
+ */
+public class EntityBroadphaseBenchmark {
+	private static final float SPACING = 3f;
+	private static final float RADIUS = 0.8f;
+	private static final float DT = 1f;
+	private static final CollisionContext NO_TERRAIN = (position, velocity, checker) -> {};
+
+	public static void main(String[] args) {
+		String[] counts = (args.length > 0 ? args[0] : "100,1000,10000").split(",");
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		for (var count : counts) {
+			run(Integer.parseInt(count), steps);
+		}
+	}
+
+	private static void run(int count, int steps) {
+		// Brute force is quadratic, so it gets fewer steps at large counts
+		int bruteForceSteps = Math.max(1, (int) Math.min(steps, 2_000_000_000L / ((long) count * count)));
+		var bruteForce = measure(count, bruteForceSteps, false);
+		var grid = measure(count, steps, true);
+		System.out.printf("count=%d: bruteForce=%.2fms/step (contacts=%d), grid=%.3fms/step (contacts=%d, %.0fns/ball)%n",
+				count, bruteForce.millisPerStep(), bruteForce.contactsPerStep(),
+				grid.millisPerStep(), grid.contactsPerStep(), grid.millisPerStep() * 1e6 / count);
+	}
+
+	private static Result measure(int count, int steps, boolean useGrid) {
+		var random = new Random(42);
+		int side = (int) Math.ceil(Math.cbrt(count));
+		var positions = new MutableVector3D[count];
+		var velocities = new MutableVector3D[count];
+		var forces = new MutableVector3D[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = MutableVector3D.of(Vector3D.of(i % side, (i / side) % side, i / (side * side)).multiply(SPACING));
+			velocities[i] = MutableVector3D.of(Vector3D.of(random.nextFloat() - 0.5f, -1f, random.nextFloat() - 0.5f));
+			forces[i] = MutableVector3D.ofZero();
+		}
+		var scalar = Vector3D.of(RADIUS, RADIUS, RADIUS);
+		var hash = new SpatialHash<Integer>(2f * SPACING);
+		long contacts = 0;
+		long start = System.nanoTime();
+		for (int step = 0; step < steps; step++) {
+			float maxSpeed = 0f;
+			hash.clear();
+			for (int i = 0; i < count; i++) {
+				hash.add(i, positions[i].asImmutable(), RADIUS);
+				maxSpeed = Math.max(maxSpeed, velocities[i].asImmutable().length());
+			}
+			float margin = maxSpeed * DT;
+			var stepContacts = new long[1];
+			for (int i = 0; i < count; i++) {
+				int self = i;
+				SphereObstacles obstacles = useGrid ? (position, displacement, radius, consumer) ->
+						hash.forEachAlong(position, displacement, radius + margin, other -> {
+							if (other != self) {
+								consumer.accept(new Sphere(positions[other].asImmutable(), RADIUS));
+							}
+						}) : (position, displacement, radius, consumer) -> {
+							for (int other = 0; other < count; other++) {
+								if (other != self) {
+									consumer.accept(new Sphere(positions[other].asImmutable(), RADIUS));
+								}
+							}
+						};
+				forces[i].set(Vector3D.of(0f, -0.07f, 0f));
+				NO_TERRAIN.collideWithWorld(positions[i], velocities[i], forces[i], scalar, DT,
+						(intersection, normal) -> stepContacts[0]++, () -> CollisionResponse.SLIDE, obstacles);
+			}
+			contacts += stepContacts[0];
+		}
+		return new Result((System.nanoTime() - start) / 1e6 / steps, contacts / steps);
+	}
+
+	private record Result(double millisPerStep, long contactsPerStep) {}
+}
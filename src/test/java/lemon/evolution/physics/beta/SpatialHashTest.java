@@ -0,0 +1,106 @@
+package lemon.evolution.physics.beta;
+
+import lemon.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpatialHashTest {
+	@Test
+	public void testWithinMatchesBruteForce() {
+		var random = new Random(42);
+		var hash = new SpatialHash<Integer>(4f);
+		List<Vector3D> centers = new ArrayList<>();
+		List<Float> radii = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			var center = Vector3D.of(random.nextFloat() * 100f - 50f, random.nextFloat() * 20f - 10f, random.nextFloat() * 100f - 50f);
+			float radius = random.nextFloat() * 2f;
+			centers.add(center);
+			radii.add(radius);
+			hash.add(i, center, radius);
+		}
+		for (int query = 0; query < 100; query++) {
+			var center = Vector3D.of(random.nextFloat() * 100f - 50f, 0f, random.nextFloat() * 100f - 50f);
+			float radius = random.nextFloat() * (query < 90 ? 8f : 200f);
+			Set<Integer> expected = new HashSet<>();
+			for (int i = 0; i < centers.size(); i++) {
+				float reach = radius + radii.get(i);
+				if (centers.get(i).distanceSquared(center) <= reach * reach) {
+					expected.add(i);
+				}
+			}
+			List<Integer> found = new ArrayList<>();
+			hash.forEachWithin(center, radius, found::add);
+			assertEquals(expected.size(), found.size(), "Duplicates or misses");
+			assertEquals(expected, new HashSet<>(found));
+		}
+	}
+
+	@Test
+	public void testOverlappingMatchesBruteForce() {
+		var random = new Random(7);
+		var hash = new SpatialHash<Integer>(4f);
+		List<Vector3D> centers = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			var center = Vector3D.of(random.nextFloat() * 100f - 50f, random.nextFloat() * 20f - 10f, random.nextFloat() * 100f - 50f);
+			centers.add(center);
+			hash.add(i, center, 0.5f);
+		}
+		// Small boxes visit fewer cells than there are spheres, and large ones scan them all
+		for (float size : new float[] {2f, 10f, 200f}) {
+			for (int query = 0; query < 20; query++) {
+				var min = Vector3D.of(random.nextFloat() * 100f - 50f, -size / 2f, random.nextFloat() * 100f - 50f);
+				var max = min.add(Vector3D.of(size, size, size));
+				Set<Integer> expected = new HashSet<>();
+				for (int i = 0; i < centers.size(); i++) {
+					var center = centers.get(i);
+					if (center.x() + 0.5f >= min.x() && center.x() - 0.5f <= max.x() &&
+							center.y() + 0.5f >= min.y() && center.y() - 0.5f <= max.y() &&
+							center.z() + 0.5f >= min.z() && center.z() - 0.5f <= max.z()) {
+						expected.add(i);
+					}
+				}
+				List<Integer> found = new ArrayList<>();
+				hash.forEachOverlapping(min, max, found::add);
+				assertEquals(expected.size(), found.size(), "Duplicates or misses");
+				assertEquals(expected, new HashSet<>(found));
+			}
+		}
+	}
+
+	@Test
+	public void testAlongFindsSpheresOnPath() {
+		var hash = new SpatialHash<String>(4f);
+		hash.add("ahead", Vector3D.of(20f, 0f, 0f), 1f);
+		hash.add("behind", Vector3D.of(-20f, 0f, 0f), 1f);
+		hash.add("beside", Vector3D.of(10f, 0f, 10f), 1f);
+		List<String> found = new ArrayList<>();
+		hash.forEachAlong(Vector3D.ZERO, Vector3D.of(30f, 0f, 0f), 1f, found::add);
+		assertEquals(List.of("ahead"), found);
+	}
+
+	@Test
+	public void testClearAndRebuild() {
+		var hash = new SpatialHash<String>(4f);
+		hash.add("old", Vector3D.of(-100f, -100f, -100f), 0.5f);
+		List<String> found = new ArrayList<>();
+		hash.forEachWithin(Vector3D.of(-100f, -100f, -100f), 1f, found::add);
+		assertEquals(List.of("old"), found);
+		hash.clear();
+		assertEquals(0, hash.size());
+		for (int i = 0; i < 200; i++) {
+			hash.add("new", Vector3D.of(i, 0f, 0f), 0.5f);
+		}
+		found.clear();
+		hash.forEachWithin(Vector3D.of(-100f, -100f, -100f), 1f, found::add);
+		assertTrue(found.isEmpty());
+		hash.forEachWithin(Vector3D.of(50f, 0f, 0f), 0.1f, found::add);
+		assertEquals(1, found.size());
+	}
+}
@@ -0,0 +1,148 @@
+package lemon.evolution.world;
+
+import lemon.engine.math.Vector3D;
+import lemon.evolution.MapInfo;
+import lemon.evolution.SkyboxInfo;
+import lemon.evolution.destructible.beta.Terrain;
+import lemon.evolution.destructible.beta.TerrainExecutor;
+import lemon.evolution.destructible.beta.TerrainGenerator;
+import lemon.evolution.entity.PuzzleBall;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldTest {
+	private TerrainExecutor executor;
+	private World world;
+
+	@BeforeEach
+	public void setup() {
+		executor = new TerrainExecutor();
+		// No solid terrain, so only entities collide
+		var terrain = new Terrain(new TerrainGenerator(Runnable::run, point -> -1f), executor, Vector3D.of(1f, 1f, 1f));
+		world = new World(terrain, (position, velocity, checker) -> {}, new MapInfo() {
+			@Override
+			public String mapName() {
+				return "Test";
+			}
+
+			@Override
+			public String csvPath() {
+				return "";
+			}
+
+			@Override
+			public SkyboxInfo skyboxInfo() {
+				return null;
+			}
+
+			@Override
+			public float playerSpawnRadius() {
+				return 0f;
+			}
+
+			@Override
+			public float itemDropSpawnRadius() {
+				return 0f;
+			}
+
+			@Override
+			public float worldRadius() {
+				return 1000f;
+			}
+		});
+	}
+
+	@AfterEach
+	public void cleanup() {
+		world.dispose();
+		executor.dispose();
+	}
+
+	@Test
+	public void testEntitiesWithin() {
+		var near = addBall(Vector3D.of(0f, 50f, 0f), Vector3D.ZERO);
+		var edge = addBall(Vector3D.of(10.5f, 50f, 0f), Vector3D.ZERO);
+		addBall(Vector3D.of(100f, 50f, 0f), Vector3D.ZERO);
+		// Entities are only indexed once they have been added at the end of a step
+		assertTrue(world.entitiesWithin(Vector3D.of(0f, 50f, 0f), 10f).isEmpty());
+		world.update(1f);
+		assertEquals(Set.of(near, edge), Set.copyOf(world.entitiesWithin(Vector3D.of(0f, 50f, 0f), 10f)));
+		assertEquals(Set.of(near), Set.copyOf(world.entitiesWithin(Vector3D.of(0f, 50f, 0f), 9f)));
+	}
+
+	@Test
+	public void testExplosionsPushAllEntitiesOnce() {
+		var right = addBall(Vector3D.of(5f, 50f, 0f), Vector3D.ZERO);
+		var left = addBall(Vector3D.of(-5f, 50f, 0f), Vector3D.ZERO);
+		var far = addBall(Vector3D.of(200f, 50f, 0f), Vector3D.ZERO);
+		world.update(1f);
+		world.generateExplosion(Vector3D.of(0f, 50f, 0f), 4f);
+		world.generateExplosion(Vector3D.of(0f, 50f, 0f), 4f);
+		// Applied at the end of the step, summed over both explosions
+		assertEquals(0f, right.velocity().x());
+		world.update(1f);
+		float strength = 3f * 4f / 25f;
+		assertEquals(2f * strength, right.velocity().x(), 1e-2f);
+		assertEquals(-2f * strength, left.velocity().x(), 1e-2f);
+		assertEquals(0f, far.velocity().x());
+	}
+
+	@Test
+	public void testExplosionVolley() {
+		// More entities than index cells within reach of the volley, so the index is searched by cell
+		List<PuzzleBall> balls = new ArrayList<>();
+		for (int i = -10; i < 10; i++) {
+			for (int j = -10; j < 10; j++) {
+				balls.add(addBall(Vector3D.of(2f * i, 50f, 2f * j), Vector3D.ZERO));
+			}
+		}
+		world.update(1f);
+		List<Vector3D> volley = List.of(Vector3D.of(0.5f, 50f, 0.5f), Vector3D.of(1.5f, 50f, 0.5f),
+				Vector3D.of(-1f, 50f, 2f), Vector3D.of(0.5f, 50f, -2.5f));
+		volley.forEach(position -> world.generateExplosion(position, 0.05f));
+		world.update(1f);
+		// Reach of sqrt(3 * 0.05 / 0.01), plus the radius of each ball
+		float reach = (float) Math.sqrt(15f) + 0.5f;
+		int pushed = 0;
+		for (var ball : balls) {
+			var position = ball.position();
+			float expectedX = 0f;
+			for (var explosion : volley) {
+				var direction = position.subtract(explosion);
+				if (direction.lengthSquared() <= reach * reach) {
+					expectedX += direction.scaleToLength(Math.min(0.05f / 3f, 3f * 0.05f / direction.lengthSquared())).x();
+				}
+			}
+			assertEquals(expectedX, ball.velocity().x(), 1e-3f);
+			if (expectedX != 0f) {
+				pushed++;
+			}
+		}
+		assertTrue(pushed > 0 && pushed < balls.size());
+	}
+
+	@Test
+	public void testEntitiesCollideWithEachOther() {
+		var moving = addBall(Vector3D.of(0f, 50f, 0f), Vector3D.of(2f, 0f, 0f));
+		var still = addBall(Vector3D.of(4f, 50f, 0f), Vector3D.ZERO);
+		world.update(1f);
+		for (int i = 0; i < 5; i++) {
+			world.update(1f);
+		}
+		// Stopped against the other ball (radius 0.5 each) instead of passing through it
+		assertTrue(moving.position().x() < still.position().x() - 1f + 1e-2f);
+	}
+
+	private PuzzleBall addBall(Vector3D position, Vector3D velocity) {
+		var ball = new PuzzleBall(new Location(world, position), velocity, Vector3D.of(0.5f, 0.5f, 0.5f));
+		world.entities().add(ball);
+		return ball;
+	}
+}